@@ -0,0 +1,247 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Compares two sets of JMH results (as written by {@code -rf json}), reporting every benchmark whose
+ * score has moved and failing if any has regressed by more than a threshold. <p>
+ *
+ * A change only counts as a regression if it is also larger than the combined error of the two scores,
+ * so that noisy benchmarks do not fail the comparison. <p>
+ *
+ * Usage: {@code BenchmarkComparison baseline.json candidate.json [threshold-percent]}.
+ */
+public class BenchmarkComparison
+{
+  /** The regression threshold used if none is given, as a percentage. */
+  private static final double DEFAULT_THRESHOLD = 10.0;
+
+  /** The JMH mode in which a higher score is better. */
+  private static final String THROUGHPUT_MODE = "thrpt";
+
+  /**
+   * Main method.
+   * @param args Command line arguments: the baseline results, the candidate results and an optional
+   *             threshold percentage.
+   */
+  public static void main(final String[] args)
+  {
+    if (args.length < 2 || args.length > 3)
+    {
+      System.err.println("usage: BenchmarkComparison baseline.json candidate.json [threshold-percent]");
+      System.exit(2);
+      return;
+    }
+
+    try
+    {
+      final double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+      final int regressions = compare(read(args[0]), read(args[1]), threshold);
+
+      if (regressions > 0)
+      {
+        System.err.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+        System.exit(1);
+      }
+    }
+    catch (IOException | IllegalArgumentException | ConfigException e)
+    {
+      System.err.println(e.getMessage());
+      System.exit(2);
+    }
+  }
+
+  /**
+   * Compares two sets of results, printing a line per benchmark.
+   * @param baseline The baseline results.
+   * @param candidate The candidate results.
+   * @param threshold The regression threshold, as a percentage.
+   * @return The number of benchmarks that regressed beyond the threshold.
+   */
+  private static int compare(final Map<String, Score> baseline,
+                             final Map<String, Score> candidate,
+                             final double threshold)
+  {
+    int regressions = 0;
+
+    for (final Map.Entry<String, Score> entry : candidate.entrySet())
+    {
+      final Score after = entry.getValue();
+      final Score before = baseline.get(entry.getKey());
+
+      if (before == null)
+      {
+        System.out.printf("%-60s %14s %14.3f %-12s new%n", entry.getKey(), "-", after.score, after.unit);
+        continue;
+      }
+
+      // Positive changes are always the bad direction: slower, or less throughput.
+      final double change = (after.score - before.score) / before.score * 100.0 * (after.isThroughput() ? -1 : 1);
+      final boolean significant = Math.abs(after.score - before.score) > before.error + after.error;
+      final boolean regressed = significant && change > threshold;
+
+      if (regressed)
+      {
+        regressions++;
+      }
+
+      System.out.printf("%-60s %14.3f %14.3f %-12s %+7.1f%%%s%n",
+                        entry.getKey(), before.score, after.score, after.unit, change,
+                        regressed ? "  REGRESSION" : significant ? "" : "  (within error)");
+    }
+
+    for (final String name : baseline.keySet())
+    {
+      if (!candidate.containsKey(name))
+      {
+        System.out.printf("%-60s %14.3f %14s %-12s missing%n",
+                          name, baseline.get(name).score, "-", baseline.get(name).unit);
+      }
+    }
+
+    return regressions;
+  }
+
+  /**
+   * Reads a JMH results file.
+   * @param filename The filename.
+   * @return The scores, keyed by benchmark name and parameters.
+   * @throws IOException If the file cannot be read.
+   * @throws IllegalArgumentException If the file is not a set of JMH results.
+   */
+  private static ImmutableMap<String, Score> read(final String filename) throws IOException, IllegalArgumentException
+  {
+    final String json = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+    Preconditions.checkArgument(json.trim().startsWith("["), filename + " is not a JMH JSON results file");
+
+    // HOCON is a superset of JSON, but its root must be an object.
+    final Map<String, Score> scores = new TreeMap<>();
+    for (final Config result : ConfigFactory.parseString("results: " + json).getConfigList("results"))
+    {
+      final String params = result.hasPath("params")
+          ? result.getObject("params").unwrapped().entrySet().stream()
+                .map(param -> param.getKey() + "=" + param.getValue())
+                .sorted()
+                .collect(Collectors.joining(",", " [", "]"))
+          : "";
+
+      scores.put(shortName(result.getString("benchmark")) + params, new Score(
+          result.getDouble("primaryMetric.score"),
+          error(result),
+          result.getString("primaryMetric.scoreUnit"),
+          result.getString("mode")));
+    }
+
+    return ImmutableMap.copyOf(scores);
+  }
+
+  /**
+   * Shortens a benchmark name to its class and method.
+   * @param benchmark The fully qualified benchmark name.
+   * @return The short name.
+   */
+  private static String shortName(final String benchmark)
+  {
+    final int method = benchmark.lastIndexOf('.');
+    return benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1);
+  }
+
+  /**
+   * Gets the error of a result, which JMH reports as {@code NaN} if there were too few iterations.
+   * @param result The result.
+   * @return The error, or zero if it is unknown.
+   */
+  private static double error(final Config result)
+  {
+    final String error = result.hasPath("primaryMetric.scoreError")
+        ? result.getString("primaryMetric.scoreError")
+        : "NaN";
+
+    try
+    {
+      final double value = Double.parseDouble(error);
+      return Double.isFinite(value) ? value : 0;
+    }
+    catch (NumberFormatException e)
+    {
+      return 0;
+    }
+  }
+
+  /**
+   * A benchmark score.
+   */
+  private static class Score
+  {
+    /** The score. */
+    private final double score;
+
+    /** The error of the score. */
+    private final double error;
+
+    /** The unit of the score. */
+    private final String unit;
+
+    /** The JMH mode. */
+    private final String mode;
+
+    /**
+     * Constructor.
+     * @param score The score.
+     * @param error The error of the score.
+     * @param unit The unit of the score.
+     * @param mode The JMH mode.
+     */
+    public Score(final double score, final double error, final String unit, final String mode)
+    {
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+      this.mode = mode;
+    }
+
+    /**
+     * Determines if a higher score is better.
+     * @return {@code true} if the score is a throughput.
+     */
+    public boolean isThroughput()
+    {
+      return this.mode.equals(THROUGHPUT_MODE);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark of command line assembly for configurations of 1, 10 and 100 VMs.  Jars are located
+ * in memory, so that only the planning and assembly of the command lines is measured. <p>
+ *
+ * Run with: {@code java -jar target/benchmarks.jar CommandAssemblyBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandAssemblyBenchmark
+{
+  /** The number of properties per VM. */
+  private static final int PROPERTIES = 10;
+
+  /** A locator that finds every jar without touching the file system. */
+  private static final JarLocator LOCATOR = filename -> Optional.of(Paths.get("/opt/firestarter/rel", filename));
+
+  /** The number of VMs in the configuration. */
+  @Param({ "1", "10", "100" })
+  public int vms;
+
+  /** The configuration. */
+  private FirestarterConfig cfg;
+
+  /** The last VM of the configuration. */
+  private VmConfig last;
+
+  /**
+   * Generates the configuration.
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    this.cfg = FirestarterConfig.fromConfig(ConfigFactory.parseString(generate(this.vms)));
+    this.last = this.cfg.getJvms().get(this.cfg.getJvms().size() - 1);
+  }
+
+  /**
+   * Assembles the shell command lines of every VM, as {@code fs.sh} receives them.
+   * @return The command lines.
+   * @throws FileNotFoundException If a jar cannot be found.
+   */
+  @Benchmark
+  public ImmutableList<String> processAll() throws FileNotFoundException
+  {
+    return Firestarter.process(LOCATOR, this.cfg);
+  }
+
+  /**
+   * Assembles the shell command line of a single VM.
+   * @return The command line.
+   * @throws FileNotFoundException If the jar cannot be found.
+   */
+  @Benchmark
+  public String processOne() throws FileNotFoundException
+  {
+    return Firestarter.process(LOCATOR, this.cfg, this.last);
+  }
+
+  /**
+   * Assembles the launch specifications of every VM, as the supervisor receives them.
+   * @return The launch specifications.
+   * @throws FileNotFoundException If a jar cannot be found.
+   */
+  @Benchmark
+  public ImmutableList<LaunchSpec> specs() throws FileNotFoundException
+  {
+    return Firestarter.specs(LOCATOR, this.cfg);
+  }
+
+  /**
+   * Generates a configuration in which each VM depends on the one before it.
+   * @param count The number of VMs.
+   * @return The configuration text.
+   */
+  private static String generate(final int count)
+  {
+    final StringBuilder text = new StringBuilder("name: bench\njdk: 17\nnode { allowOvercommit: true }\njvms {\n");
+
+    for (int vm = 0; vm < count; vm++)
+    {
+      text.append(String.format("  vm%04d { heap: 128M, jar: app%d.jar, args: [ --id, \"%d\" ], gc { collector: g1 },",
+                                vm, vm, vm));
+      if (vm > 0)
+      {
+        text.append(String.format(" dependsOn: [ vm%04d ],", vm - 1));
+      }
+      text.append(" properties {");
+      for (int property = 0; property < PROPERTIES; property++)
+      {
+        text.append(String.format(" p%d: value-%d,", property, property));
+      }
+      text.append(" } }\n");
+    }
+
+    return text.append("}\n").toString();
+  }
+}
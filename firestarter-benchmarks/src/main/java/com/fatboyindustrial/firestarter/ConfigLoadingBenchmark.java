@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark of configuration loading for configurations of 10, 100 and 1000 VMs, each with
+ * several properties. <p>
+ *
+ * Run with: {@code java -jar target/benchmarks.jar ConfigLoadingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigLoadingBenchmark
+{
+  /** The number of properties per VM. */
+  private static final int PROPERTIES = 20;
+
+  /** The number of VMs in the configuration. */
+  @Param({ "10", "100", "1000" })
+  public int vms;
+
+  /** The configuration text. */
+  private String text;
+
+  /** The configuration, parsed but not resolved. */
+  private Config parsed;
+
+  /** The configuration file. */
+  private Path file;
+
+  /** The cache, loaded once. */
+  private ConfigCache cache;
+
+  /**
+   * Generates the configuration.
+   * @throws IOException If the configuration file cannot be written.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    this.text = generate(this.vms);
+    this.parsed = ConfigFactory.parseString(this.text);
+    this.file = Files.createTempFile("fs-bench", ".conf");
+    Files.write(this.file, this.text.getBytes(StandardCharsets.UTF_8));
+    this.cache = new ConfigCache();
+    this.cache.load(this.file);
+  }
+
+  /**
+   * Removes the configuration file.
+   * @throws IOException If the file cannot be removed.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException
+  {
+    Files.deleteIfExists(this.file);
+  }
+
+  /**
+   * Parses and loads the configuration text.
+   * @return The configuration.
+   */
+  @Benchmark
+  public FirestarterConfig parseAndLoad()
+  {
+    return FirestarterConfig.fromConfig(ConfigFactory.parseString(this.text));
+  }
+
+  /**
+   * Loads the already parsed configuration.
+   * @return The configuration.
+   */
+  @Benchmark
+  public FirestarterConfig load()
+  {
+    return FirestarterConfig.fromConfig(this.parsed);
+  }
+
+  /**
+   * Reloads the unchanged configuration file through the cache.
+   * @return The configuration.
+   * @throws IOException If the file cannot be read.
+   */
+  @Benchmark
+  public FirestarterConfig cached() throws IOException
+  {
+    return this.cache.load(this.file);
+  }
+
+  /**
+   * Generates a configuration.
+   * @param count The number of VMs.
+   * @return The configuration text.
+   */
+  private static String generate(final int count)
+  {
+    final StringBuilder text = new StringBuilder("name: bench\njvms {\n");
+
+    for (int vm = 0; vm < count; vm++)
+    {
+      text.append(String.format("  vm%04d { heap: 256M, jar: app%d.jar, args: [ --id, \"%d\" ], properties {",
+                                vm, vm, vm));
+      for (int property = 0; property < PROPERTIES; property++)
+      {
+        text.append(String.format(" p%d: \"value %d\",", property, property));
+      }
+      text.append(" } }\n");
+    }
+
+    return text.append("}\n").toString();
+  }
+}
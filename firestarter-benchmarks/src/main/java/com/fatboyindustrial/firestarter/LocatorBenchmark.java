@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A JMH benchmark of jar location on synthetic trees of configurable depth and fan-out.  The largest
+ * default tree, four levels of ten directories with ten jars in each leaf, holds 100,000 jars. <p>
+ *
+ * Run with: {@code java -jar target/benchmarks.jar LocatorBenchmark}.  The tree is built in a temporary
+ * directory unless the {@code dir} parameter names another (for example, a mount on the storage of
+ * interest): {@code -p dir=/mnt/nfs}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocatorBenchmark
+{
+  /** The filename searched for; it sits in the last directory visited. */
+  private static final String TARGET = "target.jar";
+
+  /** A filename that is not in the tree. */
+  private static final String MISSING = "missing.jar";
+
+  /** The locators, by name. */
+  private static final Map<String, Function<Path, JarLocator>> LOCATORS = ImmutableMap.of(
+      "depth-first", DepthFirstJarLocator::new,
+      "parallel", ParallelJarLocator::new);
+
+  /** The name of the locator under measurement. */
+  @Param({ "depth-first", "parallel" })
+  public String locator;
+
+  /** The number of directory levels above the jars. */
+  @Param({ "2", "3", "4" })
+  public int depth;
+
+  /** The number of subdirectories in each directory. */
+  @Param({ "4", "8", "10" })
+  public int fanOut;
+
+  /** The number of jars in each leaf directory. */
+  @Param({ "10" })
+  public int files;
+
+  /** The directory to build the tree in, or empty for a temporary directory. */
+  @Param({ "" })
+  public String dir;
+
+  /** The root of the tree. */
+  private Path root;
+
+  /** The locator under measurement. */
+  private JarLocator jarLocator;
+
+  /**
+   * Builds the synthetic tree.
+   * @throws IOException If the tree cannot be built.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    this.root = this.dir.isEmpty()
+        ? Files.createTempDirectory("fs-bench")
+        : Files.createTempDirectory(Files.createDirectories(Paths.get(this.dir)), "fs-bench");
+
+    build(this.root, this.depth);
+    placeTarget(this.root);
+
+    this.jarLocator = LOCATORS.get(this.locator).apply(this.root);
+  }
+
+  /**
+   * Removes the synthetic tree.
+   * @throws IOException If the tree cannot be removed.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException
+  {
+    try (final Stream<Path> paths = Files.walk(this.root))
+    {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /**
+   * Locates the jar that the depth-first search reaches last.
+   * @return The jar.
+   */
+  @Benchmark
+  public Optional<Path> locateLast()
+  {
+    return this.jarLocator.locate(TARGET);
+  }
+
+  /**
+   * Searches for a jar that is not in the tree, visiting every directory.
+   * @return Absent.
+   */
+  @Benchmark
+  public Optional<Path> locateMissing()
+  {
+    return this.jarLocator.locate(MISSING);
+  }
+
+  /**
+   * Builds one level of the synthetic tree.
+   * @param dir The directory to populate.
+   * @param levels The number of directory levels still to create beneath it.
+   * @throws IOException If the tree cannot be built.
+   */
+  private void build(final Path dir, final int levels) throws IOException
+  {
+    if (levels == 0)
+    {
+      for (int file = 0; file < this.files; file++)
+      {
+        Files.createFile(dir.resolve(String.format("artifact-%d.jar", file)));
+      }
+      return;
+    }
+
+    for (int sub = 0; sub < this.fanOut; sub++)
+    {
+      build(Files.createDirectory(dir.resolve("dir-" + sub)), levels - 1);
+    }
+  }
+
+  /**
+   * Places the target in whichever directory the depth-first search reaches last.
+   * @param root The root of the tree.
+   * @throws IOException If the tree cannot be read.
+   */
+  private static void placeTarget(final Path root) throws IOException
+  {
+    Path last = root;
+    while (true)
+    {
+      try (final Stream<Path> children = Files.list(last))
+      {
+        final Path[] dirs = children.filter(Files::isDirectory).toArray(Path[]::new);
+        if (dirs.length == 0)
+        {
+          break;
+        }
+        last = dirs[dirs.length - 1];
+      }
+    }
+
+    Files.createFile(last.resolve(TARGET));
+  }
+}
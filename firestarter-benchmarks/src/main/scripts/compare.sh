@@ -0,0 +1,116 @@
+#!/bin/bash
+
+# Firestarter
+#
+# Copyright 2014 Greg Kopff
+# All rights reserved.
+#
+# Permission is hereby granted, free of charge, to any person obtaining a copy
+# of this software and associated documentation files (the "Software"), to deal
+# in the Software without restriction, including without limitation the rights
+# to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+# copies of the Software, and to permit persons to whom the Software is
+# furnished to do so, subject to the following conditions:
+#
+# The above copyright notice and this permission notice shall be included in
+# all copies or substantial portions of the Software.
+#
+# THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+# IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+# FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+# AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+# LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+# OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+# THE SOFTWARE.
+
+#
+# Compares the benchmarks of two commits:
+#
+#   compare.sh base-ref [candidate-ref] [jmh options]
+#
+# The candidate defaults to the working tree.  Each side is measured with its own benchmarks: the
+# commit's firestarter is installed and its firestarter-benchmarks module packaged, so a benchmark
+# only ever runs against the classes it was compiled with.  Only commits that contain the
+# firestarter-benchmarks module can be compared; a benchmark present on one side only is reported
+# as new or missing.  Installing a commit replaces the firestarter snapshot in the local Maven
+# repository, so the working tree is installed again once the measurements are done.  Results are
+# kept in firestarter-benchmarks/target/results; set THRESHOLD to change the regression threshold (a
+# percentage; 10 by default).  The exit status is 1 if any benchmark regressed.
+#
+
+BENCH_HOME="$( cd "$( dirname "${BASH_SOURCE[0]}" )/../../.." && pwd )"
+REPO=`git -C $BENCH_HOME rev-parse --show-toplevel` || exit 1
+RESULTS=$BENCH_HOME/target/results
+BENCH_JAR=$BENCH_HOME/target/benchmarks.jar
+
+if [ $# -lt 1 ]; then
+  echo "Usage: $0 base-ref [candidate-ref] [jmh options]"
+  exit 1
+fi
+BASE=$1
+shift
+CANDIDATE=
+case "$1" in
+  ""|-*)                                         # no candidate: measure the working tree
+    ;;
+  *)
+    CANDIDATE=$1
+    shift
+    ;;
+esac
+
+#
+# Measures a commit, or the working tree if none is given.
+#   $1 - the commit, or empty
+#   $2 - the results file
+#   remaining - JMH options
+#
+measure() {
+  local ref=$1
+  local out=$2
+  shift 2
+
+  local tree=$REPO
+  if [ -n "$ref" ]; then
+    tree=`mktemp -d`
+    git -C $REPO worktree add -q --detach $tree $ref || return 1
+  fi
+
+  local status=1
+  if [ ! -f $tree/firestarter-benchmarks/pom.xml ]; then
+    echo "${ref:-working tree}: no firestarter-benchmarks module to measure with" >&2
+  else
+    install $tree &&
+      java -jar $tree/firestarter-benchmarks/target/benchmarks.jar -rf json -rff $out "$@"
+    status=$?
+  fi
+
+  if [ -n "$ref" ]; then
+    git -C $REPO worktree remove --force $tree
+  fi
+  return $status
+}
+
+#
+# Installs a tree's firestarter and packages its benchmarks against it.
+#   $1 - the tree
+#
+install() {
+  mvn -B -q -f $1/pom.xml -DskipTests -Dgpg.skip -Dmaven.javadoc.skip install &&
+    mvn -B -q -f $1/firestarter-benchmarks/pom.xml package
+}
+
+mkdir -p $RESULTS
+BASE_RESULTS=$RESULTS/`git -C $REPO rev-parse --short $BASE`.json
+CANDIDATE_RESULTS=$RESULTS/${CANDIDATE:-working}.json
+if [ -n "$CANDIDATE" ]; then
+  CANDIDATE_RESULTS=$RESULTS/`git -C $REPO rev-parse --short $CANDIDATE`.json
+fi
+
+status=0
+measure "$BASE" $BASE_RESULTS "$@" && measure "$CANDIDATE" $CANDIDATE_RESULTS "$@" || status=1
+install $REPO || exit 1                          # restore the working tree's snapshot
+[ $status -eq 0 ] || exit 1
+
+exec java -cp $BENCH_JAR com.fatboyindustrial.firestarter.BenchmarkComparison \
+  $BASE_RESULTS $CANDIDATE_RESULTS ${THRESHOLD:-10}
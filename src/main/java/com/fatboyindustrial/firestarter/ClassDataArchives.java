@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Manages the Class Data Sharing (AppCDS) archives of the launched jars, so that each VM maps its
+ * classes from an archive instead of loading them from the jar. <p>
+ *
+ * Each archive is keyed by the jar's content hash and the target JDK, so a rebuilt jar gets a fresh
+ * archive and the old one is removed.  The first VM to start without an archive dumps one when it
+ * exits ({@code -XX:ArchiveClassesAtExit}); later VMs use it ({@code -XX:SharedArchiveFile}).  From JDK
+ * 19 the VM manages this itself ({@code -XX:+AutoCreateSharedArchive}), which also recovers from an
+ * archive that was left incomplete.  Dynamic archives need JDK 13, so older targets get no flags.  The
+ * content hash comes from a {@link JarVerifier}, so a jar already verified is not read again.
+ */
+public class ClassDataArchives
+{
+  /** The number of hash characters in an archive name. */
+  private static final int HASH_LENGTH = 16;
+
+  /** The archive directory. */
+  private final Path dir;
+
+  /** The archives that a VM has already been asked to dump. */
+  private final Set<Path> dumping = new HashSet<>();
+
+  /** The verifier that hashes the jars. */
+  private final JarVerifier verifier;
+
+  /**
+   * Constructor.
+   * @param dir The archive directory; it is created when needed.
+   */
+  public ClassDataArchives(final Path dir)
+  {
+    this(dir, new JarVerifier());
+  }
+
+  /**
+   * Constructor.
+   * @param dir The archive directory; it is created when needed.
+   * @param verifier The verifier that hashes the jars.
+   */
+  public ClassDataArchives(final Path dir, final JarVerifier verifier)
+  {
+    Preconditions.checkNotNull(dir, "dir cannot be null");
+    Preconditions.checkNotNull(verifier, "verifier cannot be null");
+
+    this.dir = dir;
+    this.verifier = verifier;
+  }
+
+  /**
+   * Gets the flags that have a VM use, or create, the archive for a jar.  Stale archives of the same
+   * jar are removed.  Only one VM is asked to dump a given archive.
+   * @param jar The jar file.
+   * @param jdk The feature release of the target JDK.
+   * @return The flags; empty if the target JDK has no dynamic archives, or the jar cannot be read or
+   *         is not intact.
+   */
+  public synchronized ImmutableList<String> flags(final Path jar, final int jdk)
+  {
+    Preconditions.checkNotNull(jar, "jar cannot be null");
+
+    if (jdk < 13)
+    {
+      return ImmutableList.of();
+    }
+
+    final Path archive;
+    try
+    {
+      archive = getArchive(jar, jdk);
+      Files.createDirectories(this.dir);
+      removeStale(jar);
+    }
+    catch (IOException e)
+    {
+      return ImmutableList.of();
+    }
+
+    if (jdk >= 19)
+    {
+      return ImmutableList.of("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archive);
+    }
+
+    if (Files.isRegularFile(archive) && archive.toFile().length() > 0)
+    {
+      return ImmutableList.of("-XX:SharedArchiveFile=" + archive);
+    }
+
+    return this.dumping.add(archive)
+        ? ImmutableList.of("-XX:ArchiveClassesAtExit=" + archive)
+        : ImmutableList.of();
+  }
+
+  /**
+   * Gets the archive for a jar: {@code <jar name>-<content hash>-jdk<release>.jsa} in the archive directory.
+   * @param jar The jar file.
+   * @param jdk The feature release of the target JDK.
+   * @return The archive path.
+   * @throws IOException If the jar cannot be read.
+   */
+  public Path getArchive(final Path jar, final int jdk) throws IOException
+  {
+    Preconditions.checkNotNull(jar, "jar cannot be null");
+
+    return this.dir.resolve(String.format("%s-%s-jdk%d.jsa", stem(jar), hash(jar), jdk));
+  }
+
+  /**
+   * Removes the archives of earlier versions of a jar.
+   * @param jar The jar file.
+   * @throws IOException If the archive directory cannot be read.
+   */
+  private void removeStale(final Path jar) throws IOException
+  {
+    final String hash = hash(jar);
+    final Pattern name = Pattern.compile(
+        Pattern.quote(stem(jar)) + "-(?!" + hash + ")[0-9a-f]{" + HASH_LENGTH + "}-jdk\\d+\\.jsa");
+
+    try (final DirectoryStream<Path> archives =
+             Files.newDirectoryStream(this.dir, path -> name.matcher(path.getFileName().toString()).matches()))
+    {
+      for (final Path archive : archives)
+      {
+        Files.deleteIfExists(archive);
+      }
+    }
+  }
+
+  /**
+   * Gets the content hash of a jar, hashing it only if it has changed since it was last verified.
+   * @param jar The jar file.
+   * @return The leading characters of its SHA-256 hash, in hex.
+   * @throws IOException If the jar cannot be read, or is not intact.
+   */
+  private String hash(final Path jar) throws IOException
+  {
+    return this.verifier.verify(jar).substring(0, HASH_LENGTH);
+  }
+
+  /**
+   * Gets a jar's file name without its extension.
+   * @param jar The jar file.
+   * @return The name.
+   */
+  private static String stem(final Path jar)
+  {
+    final String filename = jar.getFileName().toString();
+    return filename.endsWith(".jar") ? filename.substring(0, filename.length() - ".jar".length()) : filename;
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a host's share of a cluster's VMs on behalf of a {@link ClusterClient}. <p>
+ *
+ * The agent listens on a TCP port and handles one request at a time, so rollouts never overlap.  A
+ * request is four lines of UTF-8 text: the command ({@code APPLY}), the cluster token (empty if there
+ * is none), the comma-separated names of the VMs this host is to run (empty for none), and the whole
+ * configuration as single-line JSON.  The agent applies the configuration restricted to its VMs and
+ * replies with a single line, {@code OK} or {@code ERROR}, followed by a description.  An agent
+ * listening on anything other than the loopback interface must be given a token, as a request can
+ * start arbitrary VMs.
+ */
+public class ClusterAgent implements AutoCloseable
+{
+  /** The command that applies a configuration. */
+  public static final String APPLY = "APPLY";
+
+  /** The start of a successful response. */
+  public static final String OK = "OK";
+
+  /** The start of a failed response. */
+  public static final String ERROR = "ERROR";
+
+  /** The time allowed for a client to send its request. */
+  private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * Applies a host's share of a configuration.
+   */
+  @FunctionalInterface
+  public interface Applier
+  {
+    /**
+     * Applies a configuration, starting, restarting and stopping VMs to match it.
+     * @param cfg The configuration, restricted to this host's VMs.
+     * @return A description of what was done.
+     * @throws IOException If the configuration cannot be applied.
+     * @throws InterruptedException If interrupted while applying.
+     */
+    String apply(FirestarterConfig cfg) throws IOException, InterruptedException;
+  }
+
+  /** The address to listen on. */
+  private final InetSocketAddress address;
+
+  /** The token every request must carry, if any. */
+  private final Optional<String> token;
+
+  /** Applies each configuration received. */
+  private final Applier applier;
+
+  /** Accepts and handles the requests. */
+  private final ExecutorService acceptor = Executors.newSingleThreadExecutor();
+
+  /** The listening socket, once started. */
+  private ServerSocket server;
+
+  /**
+   * Constructor.
+   * @param address The address to listen on.
+   * @param token The token every request must carry, if any.
+   * @param applier Applies each configuration received.
+   * @throws IllegalArgumentException If the address is not loopback and there is no token.
+   */
+  public ClusterAgent(final InetSocketAddress address, final Optional<String> token, final Applier applier)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(address, "address cannot be null");
+    Preconditions.checkNotNull(token, "token cannot be null");
+    Preconditions.checkNotNull(applier, "applier cannot be null");
+
+    Preconditions.checkArgument(!address.isUnresolved(), "cannot resolve " + address.getHostString());
+    Preconditions.checkArgument(token.isPresent() || address.getAddress().isLoopbackAddress(),
+                                "an agent listening beyond the loopback interface requires a token");
+
+    this.address = address;
+    this.token = token;
+    this.applier = applier;
+  }
+
+  /**
+   * Starts listening for requests.
+   * @return The address listened on.
+   * @throws IOException If the address cannot be bound.
+   */
+  public synchronized InetSocketAddress start() throws IOException
+  {
+    Preconditions.checkState(this.server == null, "already started");
+
+    this.server = new ServerSocket();
+    this.server.setReuseAddress(true);
+    this.server.bind(this.address);
+    this.acceptor.submit(this::serve);
+
+    return (InetSocketAddress) this.server.getLocalSocketAddress();
+  }
+
+  /**
+   * Stops listening.  A request being handled is allowed to finish.
+   */
+  @Override
+  public synchronized void close()
+  {
+    this.acceptor.shutdown();
+
+    if (this.server != null)
+    {
+      try
+      {
+        this.server.close();
+      }
+      catch (IOException ignored)
+      {
+        ;
+      }
+    }
+  }
+
+  /**
+   * Handles requests one at a time until the agent is closed.
+   */
+  private void serve()
+  {
+    while (!this.server.isClosed())
+    {
+      try (final Socket socket = this.server.accept())
+      {
+        handle(socket);
+      }
+      catch (IOException | RuntimeException e)
+      {
+        if (!this.server.isClosed())
+        {
+          System.err.println("cluster request failed: " + e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Handles a single request.
+   * @param socket The client's connection.
+   * @throws IOException If the connection fails.
+   */
+  private void handle(final Socket socket) throws IOException
+  {
+    socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+
+    final BufferedReader in =
+        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+
+    String response;
+    try
+    {
+      response = OK + " " + apply(in.readLine(), in.readLine(), in.readLine(), in.readLine());
+    }
+    catch (IllegalArgumentException | ConfigException | IOException e)
+    {
+      response = ERROR + " " + e.getMessage();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      response = ERROR + " interrupted";
+    }
+    catch (RuntimeException e)
+    {
+      response = ERROR + " " + e;
+    }
+
+    System.err.println("cluster request from " + socket.getRemoteSocketAddress() + ": " + response);
+
+    out.write(response.replace('\n', ' ') + "\n");
+    out.flush();
+  }
+
+  /**
+   * Applies a request.
+   * @param command The command.
+   * @param token The token given.
+   * @param vms The comma-separated names of this host's VMs.
+   * @param config The configuration as single-line JSON.
+   * @return A description of what was done.
+   * @throws IllegalArgumentException If the request is invalid.
+   * @throws IOException If the configuration cannot be applied.
+   * @throws InterruptedException If interrupted while applying.
+   */
+  private String apply(final String command, final String token, final String vms, final String config)
+      throws IllegalArgumentException, IOException, InterruptedException
+  {
+    Preconditions.checkArgument(APPLY.equals(command), "unknown command: " + command);
+    Preconditions.checkArgument(token != null && authorised(token), "the cluster token is not valid");
+    Preconditions.checkArgument(vms != null && config != null, "the request is incomplete");
+
+    final List<String> names = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(vms);
+    final FirestarterConfig cfg = FirestarterConfig.fromConfig(ConfigFactory.parseString(config));
+    final List<String> unknown = names.stream()
+        .filter(name -> cfg.getJvms().stream().noneMatch(vm -> vm.getName().equals(name)))
+        .collect(Collectors.toList());
+
+    Preconditions.checkArgument(unknown.isEmpty(), "the configuration has no VMs named " + unknown);
+
+    return this.applier.apply(cfg.select(names));
+  }
+
+  /**
+   * Determines whether a request's token matches the agent's, in constant time.
+   * @param given The token given.
+   * @return True if the agent has no token, or the token given matches it.
+   */
+  private boolean authorised(final String given)
+  {
+    return !this.token.isPresent()
+        || MessageDigest.isEqual(this.token.get().getBytes(StandardCharsets.UTF_8),
+                                 given.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigRenderOptions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends each host of a cluster its share of a configuration, to be applied by the host's
+ * {@link ClusterAgent}.
+ */
+public class ClusterClient
+{
+  /** The time allowed to connect to an agent. */
+  private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+
+  /**
+   * Private constructor - static methods only.
+   */
+  private ClusterClient()
+  {
+    ;
+  }
+
+  /**
+   * Renders a configuration as it is sent to the agents: resolved (so substitutions and includes are
+   * taken from this machine), without its cluster section, as single-line JSON.
+   * @param hocon The configuration.
+   * @return The rendered configuration.
+   */
+  public static String render(final Config hocon)
+  {
+    Preconditions.checkNotNull(hocon, "hocon cannot be null");
+
+    return hocon.resolve().withoutPath("cluster").root().render(ConfigRenderOptions.concise());
+  }
+
+  /**
+   * Sends every host its share of a configuration, concurrently, and waits for each to apply it.  A
+   * host given no VMs stops any it is running.
+   * @param cluster The cluster.
+   * @param placement The names of the VMs placed on each host, keyed by host name.
+   * @param config The configuration, as rendered by {@link #render}.
+   * @return Each agent's response keyed by host name, in cluster order: a line starting {@code OK} or
+   *         {@code ERROR}; an agent that cannot be reached is reported as an error.
+   */
+  public static ImmutableMap<String, String> apply(final ClusterConfig cluster,
+                                                   final Map<String, ? extends List<String>> placement,
+                                                   final String config)
+  {
+    Preconditions.checkNotNull(cluster, "cluster cannot be null");
+    Preconditions.checkNotNull(placement, "placement cannot be null");
+    Preconditions.checkNotNull(config, "config cannot be null");
+    Preconditions.checkArgument(config.indexOf('\n') == -1, "config must be a single line");
+
+    final ExecutorService executor = Executors.newFixedThreadPool(cluster.getHosts().size());
+
+    try
+    {
+      final Map<String, Future<String>> futures = new LinkedHashMap<>();
+      for (final ClusterHost host : cluster.getHosts())
+      {
+        final List<String> vms = placement.containsKey(host.getName())
+            ? placement.get(host.getName())
+            : ImmutableList.of();
+        futures.put(host.getName(), executor.submit(
+            () -> send(host.getAddress(), cluster.getToken(), vms, config, cluster.getTimeoutMillis())));
+      }
+
+      final ImmutableMap.Builder<String, String> responses = ImmutableMap.builder();
+      for (final Map.Entry<String, Future<String>> entry : futures.entrySet())
+      {
+        try
+        {
+          responses.put(entry.getKey(), entry.getValue().get());
+        }
+        catch (ExecutionException e)
+        {
+          responses.put(entry.getKey(), ClusterAgent.ERROR + " " + e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          responses.put(entry.getKey(), ClusterAgent.ERROR + " interrupted");
+        }
+      }
+
+      return responses.build();
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Sends a host its share of a configuration.
+   * @param address The address of the host's agent.
+   * @param token The cluster token, if any.
+   * @param vms The names of the host's VMs.
+   * @param config The configuration, as single-line JSON.
+   * @param timeoutMillis The time allowed for the agent to respond.
+   * @return The agent's response.
+   * @throws IOException If the agent cannot be reached, or does not respond.
+   */
+  private static String send(final InetSocketAddress address,
+                             final Optional<String> token,
+                             final List<String> vms,
+                             final String config,
+                             final long timeoutMillis) throws IOException
+  {
+    try (final Socket socket = new Socket())
+    {
+      socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+      socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+
+      final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+      out.write(ClusterAgent.APPLY + "\n");
+      out.write(token.orElse("") + "\n");
+      out.write(Joiner.on(',').join(vms) + "\n");
+      out.write(config + "\n");
+      out.flush();
+      socket.shutdownOutput();
+
+      final String response =
+          new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+      if (response == null)
+      {
+        throw new IOException("the agent at " + address + " closed the connection");
+      }
+
+      return response;
+    }
+  }
+}
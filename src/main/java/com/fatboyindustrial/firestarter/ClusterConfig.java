@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hosts a configuration's VMs are spread across, each running a Firestarter agent, given in the
+ * configuration's {@code cluster} section:
+ * <pre>
+ *   cluster {
+ *     token: ${?FS_CLUSTER_TOKEN}
+ *     hosts {
+ *       alpha { address: "10.0.0.1:7400", memory: 64G, cpus: 16 }
+ *       beta { address: "10.0.0.2", memory: 32G, cpus: 8 }
+ *     }
+ *   }
+ * </pre>
+ */
+public class ClusterConfig
+{
+  /** The time allowed for an agent to roll out its share of the VMs when none is given, in milliseconds. */
+  public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  /** The hosts. */
+  private final ImmutableList<ClusterHost> hosts;
+
+  /** The token the agents require, if any. */
+  private final Optional<String> token;
+
+  /** The time allowed for an agent to roll out its share of the VMs, in milliseconds. */
+  private final long timeoutMillis;
+
+  /**
+   * Constructor.
+   * @param hosts The hosts.
+   * @param token The token the agents require, if any.
+   * @param timeoutMillis The time allowed for an agent to roll out its share of the VMs, in milliseconds.
+   * @throws IllegalArgumentException If there are no hosts, or two share a name.
+   */
+  public ClusterConfig(final List<ClusterHost> hosts, final Optional<String> token, final long timeoutMillis)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(hosts, "hosts cannot be null");
+    Preconditions.checkNotNull(token, "token cannot be null");
+
+    Preconditions.checkArgument(!hosts.isEmpty(), "ClusterConfig.hosts cannot be empty");
+    Preconditions.checkArgument(hosts.stream().map(ClusterHost::getName).distinct().count() == hosts.size(),
+                                "ClusterConfig.hosts cannot repeat a name");
+    Preconditions.checkArgument(timeoutMillis > 0, "ClusterConfig.timeout must be > 0 but was: " + timeoutMillis);
+
+    this.hosts = ImmutableList.copyOf(hosts);
+    this.token = token;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Creates a cluster config from the {@code cluster} section of the given HOCON configuration.
+   * @param hocon The whole configuration.
+   * @return The cluster config.
+   * @throws IllegalArgumentException If the configuration has no cluster section, or it is invalid.
+   */
+  public static ClusterConfig fromConfig(final Config hocon) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(hocon, "hocon cannot be null");
+
+    final Config resolved = hocon.resolve();
+    Preconditions.checkArgument(resolved.hasPath("cluster.hosts"), "the configuration has no cluster.hosts");
+
+    final Config cluster = resolved.getConfig("cluster");
+    final List<ClusterHost> hosts = new ArrayList<>();
+
+    for (final Map.Entry<String, ConfigValue> entry : new TreeMap<>(cluster.getObject("hosts")).entrySet())
+    {
+      Preconditions.checkArgument(entry.getValue() instanceof ConfigObject,
+                                  "cluster.hosts." + entry.getKey() + " must be an object");
+      hosts.add(ClusterHost.fromConfig(entry.getKey(), ((ConfigObject) entry.getValue()).toConfig()));
+    }
+
+    return new ClusterConfig(
+        hosts,
+        cluster.hasPath("token") ? Optional.of(cluster.getString("token")) : Optional.empty(),
+        cluster.hasPath("timeout")
+            ? cluster.getDuration("timeout", TimeUnit.MILLISECONDS)
+            : DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Gets the hosts.
+   * @return The hosts, in the order given.
+   */
+  public ImmutableList<ClusterHost> getHosts()
+  {
+    return this.hosts;
+  }
+
+  /**
+   * Gets the token the agents require.
+   * @return The token, if any.
+   */
+  public Optional<String> getToken()
+  {
+    return this.token;
+  }
+
+  /**
+   * Gets the time allowed for an agent to roll out its share of the VMs.
+   * @return The timeout, in milliseconds.
+   */
+  public long getTimeoutMillis()
+  {
+    return this.timeoutMillis;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.typesafe.config.Config;
+
+import java.net.InetSocketAddress;
+import java.util.Objects;
+
+/**
+ * A node in a cluster: where its Firestarter agent listens, and the memory and processors its VMs are
+ * placed against.
+ */
+public class ClusterHost
+{
+  /** The port an agent listens on when none is given. */
+  public static final int DEFAULT_PORT = 7400;
+
+  /** The host name, as used in the configuration. */
+  private final String name;
+
+  /** The address of the host's agent. */
+  private final InetSocketAddress address;
+
+  /** The host's memory, in bytes. */
+  private final long memoryBytes;
+
+  /** The host's processor count. */
+  private final int cpus;
+
+  /**
+   * Constructor.
+   * @param name The host name, as used in the configuration.
+   * @param address The address of the host's agent.
+   * @param memoryBytes The host's memory, in bytes.
+   * @param cpus The host's processor count.
+   */
+  public ClusterHost(final String name, final InetSocketAddress address, final long memoryBytes, final int cpus)
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(address, "address cannot be null");
+
+    Preconditions.checkArgument(memoryBytes > 0, "ClusterHost.memory must be > 0 but was: " + memoryBytes);
+    Preconditions.checkArgument(cpus > 0, "ClusterHost.cpus must be > 0 but was: " + cpus);
+
+    this.name = name;
+    this.address = address;
+    this.memoryBytes = memoryBytes;
+    this.cpus = cpus;
+  }
+
+  /**
+   * Creates a host from the given HOCON configuration.  The address is given as {@code host} or
+   * {@code host:port}, and defaults to the host name.
+   * @param name The host name.
+   * @param hostConfig The configuration.
+   * @return The host.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static ClusterHost fromConfig(final String name, final Config hostConfig) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(hostConfig, "hostConfig cannot be null");
+
+    final String address = hostConfig.hasPath("address") ? hostConfig.getString("address").trim() : name;
+    final int colon = address.lastIndexOf(':');
+
+    return new ClusterHost(
+        name,
+        colon == -1
+            ? InetSocketAddress.createUnresolved(address, DEFAULT_PORT)
+            : InetSocketAddress.createUnresolved(address.substring(0, colon),
+                                                 Integer.parseInt(address.substring(colon + 1))),
+        hostConfig.getBytes("memory"),
+        hostConfig.getInt("cpus"));
+  }
+
+  /**
+   * Gets the host name.
+   * @return The host name.
+   */
+  public String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * Gets the address of the host's agent.
+   * @return The address, unresolved.
+   */
+  public InetSocketAddress getAddress()
+  {
+    return this.address;
+  }
+
+  /**
+   * Gets the host's memory.
+   * @return The memory, in bytes.
+   */
+  public long getMemoryBytes()
+  {
+    return this.memoryBytes;
+  }
+
+  /**
+   * Gets the host's processor count.
+   * @return The processor count.
+   */
+  public int getCpus()
+  {
+    return this.cpus;
+  }
+
+  /**
+   * Determines whether this host equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal ClusterHost.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof ClusterHost))
+    {
+      return false;
+    }
+
+    final ClusterHost other = (ClusterHost) obj;
+    return this.name.equals(other.name)
+        && this.address.equals(other.address)
+        && this.memoryBytes == other.memoryBytes
+        && this.cpus == other.cpus;
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.name, this.address, this.memoryBytes, this.cpus);
+  }
+}
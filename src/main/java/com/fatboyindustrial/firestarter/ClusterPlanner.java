@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads a configuration's VMs across the hosts of a cluster. <p>
+ *
+ * VMs that depend on one another (directly or not) are placed together, as a host starts its VMs in
+ * dependency order.  Each group needs the estimated memory of its VMs (heap plus off-heap overhead, as
+ * budgeted by the {@link NodePlanner}) and a processor for each VM (or the processors it is pinned
+ * to).  Groups are placed largest first, each onto the host it leaves least loaded as a fraction of
+ * its memory, so that memory pressure is balanced across the cluster rather than packed onto the
+ * first hosts.  Each host then plans its own share as it would a local configuration.
+ */
+public class ClusterPlanner
+{
+  /** One megabyte. */
+  @SuppressWarnings("MagicNumber")
+  private static final long MEGABYTES = 1024 * 1024;
+
+  /**
+   * Private constructor - static methods only.
+   */
+  private ClusterPlanner()
+  {
+    ;
+  }
+
+  /**
+   * Places every VM in a configuration on a host of the cluster.
+   * @param cfg The configuration.
+   * @param cluster The cluster.
+   * @return The names of the VMs placed on each host, in configuration order, keyed by host name in
+   *         cluster order; a host given no VMs has an empty list.
+   * @throws IllegalArgumentException If a group of VMs does not fit on any host.
+   */
+  public static ImmutableMap<String, ImmutableList<String>> place(final FirestarterConfig cfg,
+                                                                  final ClusterConfig cluster)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(cfg, "cfg cannot be null");
+    Preconditions.checkNotNull(cluster, "cluster cannot be null");
+
+    final NodeConfig node = cfg.getNode();
+    final long largest = cluster.getHosts().stream().mapToLong(host -> budget(host, node)).max().getAsLong();
+
+    final List<List<VmConfig>> groups = groups(cfg);
+    groups.sort(Comparator.comparing((List<VmConfig> group) -> memory(group, largest, node))
+                    .thenComparing(ClusterPlanner::cpus)
+                    .reversed()
+                    .thenComparing(group -> group.get(0).getName()));
+
+    final Map<String, Long> memory = new HashMap<>();
+    final Map<String, Integer> cpus = new HashMap<>();
+    final Map<String, String> placement = new HashMap<>();
+
+    for (final List<VmConfig> group : groups)
+    {
+      ClusterHost best = null;
+      double bestLoad = Double.MAX_VALUE;
+
+      for (final ClusterHost host : cluster.getHosts())
+      {
+        final long budget = budget(host, node);
+        final long needed = memory.getOrDefault(host.getName(), 0L) + memory(group, budget, node);
+        final int threads = cpus.getOrDefault(host.getName(), 0) + cpus(group);
+        final double load = (double) needed / budget;
+
+        final boolean fits = budget > 0
+            && group.stream().flatMap(vm -> vm.getCpus().stream()).allMatch(cpu -> cpu < host.getCpus())
+            && (node.isAllowOvercommit() || (needed <= budget && threads <= host.getCpus()));
+
+        if (fits && load < bestLoad)
+        {
+          best = host;
+          bestLoad = load;
+        }
+      }
+
+      Preconditions.checkArgument(best != null, String.format(
+          "%s need an estimated %d MB and %d processor(s), which no host has left",
+          names(group), memory(group, largest, node) / MEGABYTES, cpus(group)));
+
+      final ClusterHost chosen = best;
+      memory.merge(chosen.getName(), memory(group, budget(chosen, node), node), Long::sum);
+      cpus.merge(chosen.getName(), cpus(group), Integer::sum);
+      group.forEach(vm -> placement.put(vm.getName(), chosen.getName()));
+    }
+
+    final ImmutableMap.Builder<String, ImmutableList<String>> hosts = ImmutableMap.builder();
+    for (final ClusterHost host : cluster.getHosts())
+    {
+      hosts.put(host.getName(), cfg.getJvms().stream()
+          .map(VmConfig::getName)
+          .filter(name -> placement.get(name).equals(host.getName()))
+          .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf)));
+    }
+
+    return hosts.build();
+  }
+
+  /**
+   * Divides the VMs into groups that are connected by their dependencies.
+   * @param cfg The configuration.
+   * @return The groups, each in configuration order.
+   */
+  private static List<List<VmConfig>> groups(final FirestarterConfig cfg)
+  {
+    final Map<String, String> groupOf = new HashMap<>();
+    final Map<String, List<String>> groups = new LinkedHashMap<>();
+
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      groupOf.put(vm.getName(), vm.getName());
+      groups.put(vm.getName(), new ArrayList<>(ImmutableList.of(vm.getName())));
+    }
+
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      for (final String dependency : vm.getDependsOn())
+      {
+        final String into = groupOf.get(vm.getName());
+        final String from = groupOf.get(dependency);
+
+        if (!into.equals(from))
+        {
+          for (final String member : groups.remove(from))
+          {
+            groupOf.put(member, into);
+            groups.get(into).add(member);
+          }
+        }
+      }
+    }
+
+    return groups.values().stream()
+        .map(members -> cfg.getJvms().stream()
+            .filter(vm -> members.contains(vm.getName()))
+            .collect(Collectors.toList()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the memory a host has for VMs.
+   * @param host The host.
+   * @param node The node budgeting settings.
+   * @return The host's memory less the reserve, in bytes.
+   */
+  private static long budget(final ClusterHost host, final NodeConfig node)
+  {
+    return host.getMemoryBytes() - node.getReserveBytes();
+  }
+
+  /**
+   * Estimates the memory a group of VMs needs: each VM's heap plus its off-heap overhead, twice over for
+   * a VM with a warm standby.
+   * @param group The VMs.
+   * @param budget The memory the host has for VMs, against which percentage heaps are resolved.
+   * @param node The node budgeting settings.
+   * @return The estimate, in bytes.
+   */
+  private static long memory(final List<VmConfig> group, final long budget, final NodeConfig node)
+  {
+    long required = 0;
+
+    for (final VmConfig vm : group)
+    {
+      final long heap = vm.getHeapPercent()
+          .map(percent -> (long) (Math.max(0, budget) * percent / 100))
+          .orElse(vm.getHeap() * MEGABYTES);
+
+      final long footprint = heap + node.getOverheadBytes() + (long) (heap * node.getOverheadRatio());
+      required += vm.getStandby().isPresent() ? 2 * footprint : footprint;
+    }
+
+    return required;
+  }
+
+  /**
+   * Counts the processors a group of VMs needs: those each VM is pinned to, or else one.
+   * @param group The VMs.
+   * @return The processor count.
+   */
+  private static int cpus(final List<VmConfig> group)
+  {
+    return group.stream().mapToInt(vm -> Math.max(1, vm.getCpus().size())).sum();
+  }
+
+  /**
+   * Lists the names of a group of VMs.
+   * @param group The VMs.
+   * @return The names.
+   */
+  private static List<String> names(final List<VmConfig> group)
+  {
+    return group.stream().map(VmConfig::getName).collect(Collectors.toList());
+  }
+}
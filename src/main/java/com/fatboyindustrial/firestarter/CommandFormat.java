@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The ways a VM's command can be printed.  The shell format is a command line for a shell to parse;
+ * the others carry the argument vector itself, so that a consumer can execute it without a shell and
+ * any argument, however it is spelt, arrives intact:
+ * <ul>
+ *   <li>{@code nul}: the VM's name, the number of arguments, then each argument, every field ending in
+ *       a NUL byte.  An argument cannot hold a NUL, as no process could be given it, so a command with
+ *       one is refused rather than split;</li>
+ *   <li>{@code json}: a JSON object per line, {@code {"name": ..., "command": [...]}}.</li>
+ * </ul>
+ */
+public enum CommandFormat
+{
+  /** A shell command line per line. */
+  SHELL,
+
+  /** NUL-terminated fields: the name, the argument count, then each argument. */
+  NUL,
+
+  /** A JSON object per line. */
+  JSON;
+
+  /** Matches the arguments that a shell reads literally without quoting. */
+  private static final Pattern SHELL_SAFE = Pattern.compile("[A-Za-z0-9_@%+=:,./-]+");
+
+  /** The NUL byte that ends each field of the {@code nul} format. */
+  private static final char NUL_BYTE = '\0';
+
+  /**
+   * Parses a format name.
+   * @param name The name (case insensitive).
+   * @return The format.
+   * @throws IllegalArgumentException If the name is not a known format.
+   */
+  public static CommandFormat fromName(final String name) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+
+    return CommandFormat.valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Formats a VM's command, including the record's terminator.
+   * @param vm The VM.
+   * @param command The VM's command, as an argument vector.
+   * @return The formatted command.
+   * @throws IllegalArgumentException If the command cannot be written in this format.
+   */
+  public String format(final VmConfig vm, final List<String> command) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(vm, "vm cannot be null");
+    Preconditions.checkNotNull(command, "command cannot be null");
+
+    switch (this)
+    {
+      case NUL:
+        Preconditions.checkArgument(command.stream().noneMatch(arg -> arg.indexOf(NUL_BYTE) >= 0),
+                                    "the command of " + vm.getName() + " contains a NUL");
+        final StringBuilder fields = new StringBuilder();
+        fields.append(vm.getName()).append(NUL_BYTE).append(command.size()).append(NUL_BYTE);
+        command.forEach(arg -> fields.append(arg).append(NUL_BYTE));
+        return fields.toString();
+
+      case JSON:
+        return "{\"name\":" + jsonQuote(vm.getName()) + ",\"command\":["
+            + command.stream().map(CommandFormat::jsonQuote).collect(Collectors.joining(",")) + "]}\n";
+
+      default:
+        return shellCommand(vm, command) + '\n';
+    }
+  }
+
+  /**
+   * Formats a VM's command as a shell command line.  The VM's configured properties are always double
+   * quoted; any other argument is quoted only if a shell would otherwise split or expand it.
+   * @param vm The VM.
+   * @param command The VM's command, as an argument vector.
+   * @return The command line.
+   */
+  public static String shellCommand(final VmConfig vm, final List<String> command)
+  {
+    Preconditions.checkNotNull(vm, "vm cannot be null");
+    Preconditions.checkNotNull(command, "command cannot be null");
+
+    final Set<String> properties = vm.getProperties().entrySet().stream()
+        .map(entry -> "-D" + entry.getKey() + "=" + entry.getValue())
+        .collect(Collectors.toSet());
+
+    return command.stream()
+        .map(arg -> properties.contains(arg) ? doubleQuote(arg) : shellQuote(arg))
+        .collect(Collectors.joining(" "));
+  }
+
+  /**
+   * Quotes an argument for a shell if it needs it, in single quotes.
+   * @param arg The argument.
+   * @return The argument as a shell reads it.
+   */
+  static String shellQuote(final String arg)
+  {
+    return SHELL_SAFE.matcher(arg).matches() ? arg : "'" + arg.replace("'", "'\\''") + "'";
+  }
+
+  /**
+   * Quotes an argument for a shell in double quotes, escaping the characters that a shell still
+   * interprets there.
+   * @param arg The argument.
+   * @return The argument as a shell reads it.
+   */
+  static String doubleQuote(final String arg)
+  {
+    return '"' + arg.replaceAll("([\"\\\\$`])", "\\\\$1") + '"';
+  }
+
+  /**
+   * Quotes a string as a JSON string, escaping quotes, backslashes and control characters.
+   * @param value The string.
+   * @return The JSON string.
+   */
+  static String jsonQuote(final String value)
+  {
+    final StringBuilder json = new StringBuilder("\"");
+
+    for (final char c : value.toCharArray())
+    {
+      if (c == '"' || c == '\\')
+      {
+        json.append('\\').append(c);
+      }
+      else if (c < ' ')
+      {
+        json.append(String.format("\\u%04x", (int) c));
+      }
+      else
+      {
+        json.append(c);
+      }
+    }
+
+    return json.append('"').toString();
+  }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * The options given on the command line.
+ */
+public class CommandLineOptions
+{
+  /** The configuration file; absent for an agent, which is sent its configurations. */
+  private final Optional<String> config;
+
+  /** True to start the VMs directly rather than print their command lines. */
+  private final boolean launch;
+
+  /** True to supervise the VMs, restarting any that exit. */
+  private final boolean supervise;
+
+  /** True to watch the configuration while supervising, rolling out each change. */
+  private final boolean watch;
+
+  /** The maximum number of VMs started concurrently. */
+  private final int parallelism;
+
+  /** The number of VMs restarted at once when a watched configuration changes. */
+  private final int batchSize;
+
+  /** The directory holding the per-VM log files, if given. */
+  private final Optional<Path> logDir;
+
+  /** The file to which the startup metrics are written, if given. */
+  private final Optional<Path> metrics;
+
+  /** The loopback port on which the supervised VMs' resource telemetry is served, if given. */
+  private final Optional<Integer> telemetryPort;
+
+  /** True to spread the VMs across the hosts of the configuration's cluster. */
+  private final boolean cluster;
+
+  /** The address on which to run as a cluster agent, if given. */
+  private final Optional<InetSocketAddress> agent;
+
+  /** The format in which the VMs' commands are printed. */
+  private final CommandFormat format;
+
+  /** True to run as a resident daemon, answering fs.sh's requests. */
+  private final boolean daemon;
+
+  /**
+   * Constructor.
+   * @param config The configuration file; absent for an agent, which is sent its configurations.
+   * @param launch True to start the VMs directly rather than print their command lines.
+   * @param supervise True to supervise the VMs, restarting any that exit.
+   * @param watch True to watch the configuration while supervising, rolling out each change.
+   * @param parallelism The maximum number of VMs started concurrently.
+   * @param batchSize The number of VMs restarted at once when a watched configuration changes.
+   * @param logDir The directory holding the per-VM log files, if given.
+   * @param metrics The file to which the startup metrics are written, if given.
+   * @param telemetryPort The loopback port on which the supervised VMs' resource telemetry is served, if given.
+   * @param cluster True to spread the VMs across the hosts of the configuration's cluster.
+   * @param agent The address on which to run as a cluster agent, if given.
+   * @param format The format in which the VMs' commands are printed.
+   * @param daemon True to run as a resident daemon, answering fs.sh's requests.
+   */
+  public CommandLineOptions(final Optional<String> config,
+                            final boolean launch,
+                            final boolean supervise,
+                            final boolean watch,
+                            final int parallelism,
+                            final int batchSize,
+                            final Optional<Path> logDir,
+                            final Optional<Path> metrics,
+                            final Optional<Integer> telemetryPort,
+                            final boolean cluster,
+                            final Optional<InetSocketAddress> agent,
+                            final CommandFormat format,
+                            final boolean daemon)
+  {
+    Preconditions.checkNotNull(config, "config cannot be null");
+    Preconditions.checkNotNull(logDir, "logDir cannot be null");
+    Preconditions.checkNotNull(metrics, "metrics cannot be null");
+    Preconditions.checkNotNull(telemetryPort, "telemetryPort cannot be null");
+    Preconditions.checkNotNull(agent, "agent cannot be null");
+    Preconditions.checkNotNull(format, "format cannot be null");
+
+    Preconditions.checkArgument(parallelism > 0, "--parallelism must be > 0 but was: " + parallelism);
+    Preconditions.checkArgument(supervise || !watch, "--watch requires --supervise");
+    Preconditions.checkArgument(batchSize > 0, "--batch-size must be > 0 but was: " + batchSize);
+    Preconditions.checkArgument(supervise || !telemetryPort.isPresent(), "--telemetry requires --supervise");
+    Preconditions.checkArgument(telemetryPort.orElse(0) >= 0 && telemetryPort.orElse(0) <= 65535,
+                                "--telemetry must be a port number but was: " + telemetryPort.orElse(0));
+    Preconditions.checkArgument(!cluster || !(launch || supervise), "--cluster cannot be combined with --launch");
+    Preconditions.checkArgument(!agent.isPresent() || !(launch || supervise || cluster),
+                                "--agent cannot be combined with --launch or --cluster");
+    Preconditions.checkArgument(!daemon || !(launch || supervise || cluster || agent.isPresent()),
+                                "--daemon cannot be combined with --launch, --cluster or --agent");
+    Preconditions.checkArgument(!daemon || !config.isPresent(),
+                                "--daemon is sent its configurations, so takes no configuration file");
+    Preconditions.checkArgument(agent.isPresent() || daemon || config.isPresent(), "no configuration file given");
+    Preconditions.checkArgument(!agent.isPresent() || !config.isPresent(),
+                                "--agent is sent its configurations, so takes no configuration file");
+    Preconditions.checkArgument(
+        format == CommandFormat.SHELL || !(launch || supervise || cluster || agent.isPresent() || daemon),
+                                "--format applies only when printing the VMs' commands");
+
+    this.config = config;
+    this.launch = launch;
+    this.supervise = supervise;
+    this.watch = watch;
+    this.parallelism = parallelism;
+    this.batchSize = batchSize;
+    this.logDir = logDir;
+    this.metrics = metrics;
+    this.telemetryPort = telemetryPort;
+    this.cluster = cluster;
+    this.agent = agent;
+    this.format = format;
+    this.daemon = daemon;
+  }
+
+  /**
+   * Parses the command line arguments.
+   * @param args The command line arguments: options, followed by the configuration file.
+   * @return The options.
+   * @throws IllegalArgumentException If the arguments are invalid.
+   */
+  public static CommandLineOptions parse(final String[] args) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(args, "args cannot be null");
+
+    String config = null;
+    boolean launch = false;
+    boolean supervise = false;
+    boolean watch = false;
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    int batchSize = 1;
+    Optional<Path> logDir = Optional.empty();
+    Optional<Path> metrics = Optional.empty();
+    Optional<Integer> telemetryPort = Optional.empty();
+    boolean cluster = false;
+    Optional<InetSocketAddress> agent = Optional.empty();
+    CommandFormat format = CommandFormat.SHELL;
+    boolean daemon = false;
+
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--launch":
+          launch = true;
+          break;
+
+        case "--supervise":
+          supervise = true;
+          break;
+
+        case "--watch":
+          supervise = true;
+          watch = true;
+          break;
+
+        case "--parallelism":
+          parallelism = Integer.parseInt(value(args, ++i));
+          break;
+
+        case "--batch-size":
+          batchSize = Integer.parseInt(value(args, ++i));
+          break;
+
+        case "--logs":
+          logDir = Optional.of(Paths.get(value(args, ++i)));
+          break;
+
+        case "--metrics":
+          metrics = Optional.of(Paths.get(value(args, ++i)));
+          break;
+
+        case "--telemetry":
+          supervise = true;
+          telemetryPort = Optional.of(Integer.parseInt(value(args, ++i)));
+          break;
+
+        case "--cluster":
+          cluster = true;
+          break;
+
+        case "--agent":
+          agent = Optional.of(address(value(args, ++i)));
+          break;
+
+        case "--format":
+          format = CommandFormat.fromName(value(args, ++i));
+          break;
+
+        case "--daemon":
+          daemon = true;
+          break;
+
+        default:
+          Preconditions.checkArgument(!args[i].startsWith("--"), "unknown option: " + args[i]);
+          Preconditions.checkArgument(config == null, "only one configuration file may be given");
+          config = args[i];
+      }
+    }
+
+    return new CommandLineOptions(Optional.ofNullable(config), launch, supervise, watch, parallelism, batchSize,
+                                  logDir, metrics, telemetryPort, cluster, agent, format, daemon);
+  }
+
+  /**
+   * Parses an agent's address, given as {@code port} (on the loopback interface) or {@code host:port}.
+   * @param address The address.
+   * @return The address.
+   * @throws IllegalArgumentException If the address is invalid.
+   */
+  private static InetSocketAddress address(final String address) throws IllegalArgumentException
+  {
+    final int colon = address.lastIndexOf(':');
+
+    return colon == -1
+        ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address))
+        : new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+  }
+
+  /**
+   * Gets an option's value.
+   * @param args The command line arguments.
+   * @param i The index of the value.
+   * @return The value.
+   * @throws IllegalArgumentException If the value is missing.
+   */
+  private static String value(final String[] args, final int i) throws IllegalArgumentException
+  {
+    Preconditions.checkArgument(i < args.length, args[i - 1] + " requires a value");
+
+    return args[i];
+  }
+
+  /**
+   * Gets the configuration file.
+   * @return The configuration file; absent for an agent.
+   */
+  public Optional<String> getConfig()
+  {
+    return this.config;
+  }
+
+  /**
+   * Determines whether the VMs should be started directly rather than their command lines printed.
+   * @return True to start the VMs.
+   */
+  public boolean isLaunch()
+  {
+    return this.launch;
+  }
+
+  /**
+   * Determines whether the VMs should be supervised, restarting any that exit.
+   * @return True to supervise the VMs.
+   */
+  public boolean isSupervise()
+  {
+    return this.supervise;
+  }
+
+  /**
+   * Determines whether the configuration should be watched while supervising, rolling out each change.
+   * @return True to watch the configuration.
+   */
+  public boolean isWatch()
+  {
+    return this.watch;
+  }
+
+  /**
+   * Gets the maximum number of VMs started concurrently.
+   * @return The parallelism.
+   */
+  public int getParallelism()
+  {
+    return this.parallelism;
+  }
+
+  /**
+   * Gets the number of VMs restarted at once when a watched configuration changes.
+   * @return The batch size.
+   */
+  public int getBatchSize()
+  {
+    return this.batchSize;
+  }
+
+  /**
+   * Gets the directory holding the per-VM log files.
+   * @return The log directory, if given.
+   */
+  public Optional<Path> getLogDir()
+  {
+    return this.logDir;
+  }
+
+  /**
+   * Gets the file to which the startup metrics are written.
+   * @return The metrics file, if given.
+   */
+  public Optional<Path> getMetrics()
+  {
+    return this.metrics;
+  }
+
+  /**
+   * Gets the loopback port on which the supervised VMs' resource telemetry is served.
+   * @return The port (zero for any free port), if given.
+   */
+  public Optional<Integer> getTelemetryPort()
+  {
+    return this.telemetryPort;
+  }
+
+  /**
+   * Determines whether the VMs should be spread across the hosts of the configuration's cluster.
+   * @return True to drive the cluster's agents.
+   */
+  public boolean isCluster()
+  {
+    return this.cluster;
+  }
+
+  /**
+   * Gets the address on which to run as a cluster agent.
+   * @return The address, if given.
+   */
+  public Optional<InetSocketAddress> getAgent()
+  {
+    return this.agent;
+  }
+
+  /**
+   * Gets the format in which the VMs' commands are printed.
+   * @return The format.
+   */
+  public CommandFormat getFormat()
+  {
+    return this.format;
+  }
+
+  /**
+   * Determines whether to run as a resident daemon, answering fs.sh's requests.
+   * @return True to run as a daemon.
+   */
+  public boolean isDaemon()
+  {
+    return this.daemon;
+  }
+}
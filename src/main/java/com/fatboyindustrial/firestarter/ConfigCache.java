@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigList;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigParseOptions;
+import com.typesafe.config.ConfigValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Loads configuration files, keeping each parsed and resolved configuration until the content of the
+ * file, or of any file it includes, changes.  Reloading an unchanged configuration costs only the
+ * hashing of its files.  The files are hashed both before and after they are parsed, and a configuration
+ * is only kept if the two agree, so that an edit made while a file is being parsed is not mistaken for
+ * the content that was parsed.
+ */
+public class ConfigCache
+{
+  /** The number of times a configuration is parsed before giving up on its files holding still. */
+  private static final int ATTEMPTS = 2;
+
+  /** The cached configurations, keyed by configuration file. */
+  private final Map<Path, Entry> entries = new HashMap<>();
+
+  /**
+   * Loads a configuration, from the cache if none of its files has changed.
+   * @param dotConf The configuration file.
+   * @return The configuration.
+   * @throws IOException If a file cannot be read.
+   * @throws IllegalArgumentException If the configuration cannot be parsed or is invalid.
+   */
+  public synchronized FirestarterConfig load(final Path dotConf) throws IOException, IllegalArgumentException
+  {
+    Preconditions.checkNotNull(dotConf, "dotConf cannot be null");
+
+    final Path file = dotConf.toAbsolutePath().normalize();
+    final Entry cached = this.entries.get(file);
+    if (cached != null && cached.isCurrent())
+    {
+      return cached.config;
+    }
+
+    Set<Path> files = cached != null ? cached.hashes.keySet() : ImmutableSet.of(file);
+    FirestarterConfig config = null;
+    for (int attempt = 0; attempt < ATTEMPTS; attempt++)
+    {
+      final ImmutableMap<Path, HashCode> before = hashes(files);
+
+      final Config hocon;
+      try
+      {
+        hocon = parse(file);
+        config = FirestarterConfig.fromConfig(hocon);
+      }
+      catch (ConfigException e)
+      {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+
+      final Set<Path> parsed = new LinkedHashSet<>();
+      parsed.add(file);
+      addFiles(hocon.root(), parsed);
+
+      final ImmutableMap<Path, HashCode> after = hashes(parsed);
+      if (after.equals(before))
+      {
+        this.entries.put(file, new Entry(after, config));
+        return config;
+      }
+
+      files = parsed;
+    }
+
+    // The files changed while they were being parsed, so the configuration is not kept.
+
+    this.entries.remove(file);
+    return config;
+  }
+
+  /**
+   * Parses a configuration file and the files it includes.
+   * @param file The configuration file.
+   * @return The configuration.
+   * @throws ConfigException If the configuration cannot be parsed.
+   */
+  protected Config parse(final Path file) throws ConfigException
+  {
+    return ConfigFactory.parseFile(file.toFile(), ConfigParseOptions.defaults().setAllowMissing(false));
+  }
+
+  /**
+   * Gets the files that made up a configuration when it was last loaded.
+   * @param dotConf The configuration file.
+   * @return The configuration file and the files it includes; absent if it has not been loaded.
+   */
+  public synchronized Optional<Set<Path>> getFiles(final Path dotConf)
+  {
+    Preconditions.checkNotNull(dotConf, "dotConf cannot be null");
+
+    return Optional.ofNullable(this.entries.get(dotConf.toAbsolutePath().normalize()))
+        .map(entry -> entry.hashes.keySet());
+  }
+
+  /**
+   * Adds the files that the values of a configuration came from.
+   * @param value The configuration value.
+   * @param files The files found so far.
+   */
+  private static void addFiles(final ConfigValue value, final Set<Path> files)
+  {
+    if (value.origin().filename() != null)
+    {
+      files.add(Paths.get(value.origin().filename()).toAbsolutePath().normalize());
+    }
+
+    if (value instanceof ConfigObject)
+    {
+      ((ConfigObject) value).values().forEach(child -> addFiles(child, files));
+    }
+    else if (value instanceof ConfigList)
+    {
+      ((ConfigList) value).forEach(child -> addFiles(child, files));
+    }
+  }
+
+  /**
+   * Hashes the content of files.
+   * @param files The files.
+   * @return The hash of each file.
+   * @throws IOException If a file cannot be read.
+   */
+  private static ImmutableMap<Path, HashCode> hashes(final Set<Path> files) throws IOException
+  {
+    final ImmutableMap.Builder<Path, HashCode> hashes = ImmutableMap.builder();
+    for (final Path file : files)
+    {
+      hashes.put(file, hash(file));
+    }
+
+    return hashes.build();
+  }
+
+  /**
+   * Hashes the content of a file.
+   * @param file The file.
+   * @return The hash; a fixed marker if the file no longer exists.
+   * @throws IOException If the file cannot be read.
+   */
+  private static HashCode hash(final Path file) throws IOException
+  {
+    return Files.exists(file)
+        ? Hashing.sha256().hashBytes(Files.readAllBytes(file))
+        : HashCode.fromBytes(new byte[] { 0 });
+  }
+
+  /**
+   * A cached configuration.
+   */
+  private static class Entry
+  {
+    /** The content hash of each file making up the configuration. */
+    private final ImmutableMap<Path, HashCode> hashes;
+
+    /** The configuration. */
+    private final FirestarterConfig config;
+
+    /**
+     * Constructor.
+     * @param hashes The content hash of each file making up the configuration.
+     * @param config The configuration.
+     */
+    public Entry(final ImmutableMap<Path, HashCode> hashes, final FirestarterConfig config)
+    {
+      this.hashes = hashes;
+      this.config = config;
+    }
+
+    /**
+     * Determines whether every file still has the content it had when the configuration was loaded.
+     * @return True if the configuration is current.
+     * @throws IOException If a file cannot be read.
+     */
+    public boolean isCurrent() throws IOException
+    {
+      for (final Map.Entry<Path, HashCode> entry : this.hashes.entrySet())
+      {
+        if (!hash(entry.getKey()).equals(entry.getValue()))
+        {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The differences between two versions of a configuration, by VM name: the VMs added, removed, and
+ * changed, along with the settings that changed for each.  A change to the settings shared by every VM
+ * (the target JDK, the node settings, class data sharing, or jar staging) changes every VM.
+ */
+public class ConfigDiff
+{
+  /** The VMs only in the new configuration, in dependency order. */
+  private final ImmutableList<String> added;
+
+  /** The VMs only in the old configuration. */
+  private final ImmutableList<String> removed;
+
+  /** The settings that differ, keyed by the VMs in both configurations they differ for, in dependency order. */
+  private final ImmutableMap<String, ImmutableList<String>> changed;
+
+  /**
+   * Constructor.
+   * @param added The VMs only in the new configuration.
+   * @param removed The VMs only in the old configuration.
+   * @param changed The settings that differ, keyed by the VMs in both configurations they differ for.
+   */
+  public ConfigDiff(final ImmutableList<String> added,
+                    final ImmutableList<String> removed,
+                    final ImmutableMap<String, ImmutableList<String>> changed)
+  {
+    this.added = Preconditions.checkNotNull(added, "added cannot be null");
+    this.removed = Preconditions.checkNotNull(removed, "removed cannot be null");
+    this.changed = Preconditions.checkNotNull(changed, "changed cannot be null");
+  }
+
+  /**
+   * Compares two versions of a configuration.
+   * @param before The old configuration.
+   * @param after The new configuration.
+   * @return The differences.
+   */
+  public static ConfigDiff between(final FirestarterConfig before, final FirestarterConfig after)
+  {
+    Preconditions.checkNotNull(before, "before cannot be null");
+    Preconditions.checkNotNull(after, "after cannot be null");
+
+    final List<String> shared = new ArrayList<>();
+    compare(shared, "jdk", before.getJdk(), after.getJdk());
+    compare(shared, "node", before.getNode(), after.getNode());
+    compare(shared, "cds", before.isClassDataSharing(), after.isClassDataSharing());
+    compare(shared, "staging", before.getStaging(), after.getStaging());
+
+    final Map<String, VmConfig> old = before.getJvms().stream()
+        .collect(Collectors.toMap(VmConfig::getName, Function.identity()));
+    final Map<String, VmConfig> current = after.getJvms().stream()
+        .collect(Collectors.toMap(VmConfig::getName, Function.identity()));
+
+    final ImmutableList.Builder<String> added = ImmutableList.builder();
+    final ImmutableMap.Builder<String, ImmutableList<String>> changed = ImmutableMap.builder();
+
+    for (final VmConfig vm : StartupScheduler.order(after.getJvms()))
+    {
+      if (!old.containsKey(vm.getName()))
+      {
+        added.add(vm.getName());
+        continue;
+      }
+
+      final List<String> settings = new ArrayList<>(shared);
+      settings.addAll(changes(old.get(vm.getName()), vm));
+      if (!settings.isEmpty())
+      {
+        changed.put(vm.getName(), ImmutableList.copyOf(settings));
+      }
+    }
+
+    return new ConfigDiff(
+        added.build(),
+        before.getJvms().stream()
+            .map(VmConfig::getName)
+            .filter(name -> !current.containsKey(name))
+            .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf)),
+        changed.build());
+  }
+
+  /**
+   * Finds the settings that differ between two versions of a VM's configuration.
+   * @param before The old VM configuration.
+   * @param after The new VM configuration.
+   * @return The names of the settings that differ, as given in the configuration file.
+   */
+  public static ImmutableList<String> changes(final VmConfig before, final VmConfig after)
+  {
+    Preconditions.checkNotNull(before, "before cannot be null");
+    Preconditions.checkNotNull(after, "after cannot be null");
+
+    final List<String> settings = new ArrayList<>();
+    compare(settings, "heap", before.getHeapPercent().isPresent() ? before.getHeapPercent() : before.getHeap(),
+            after.getHeapPercent().isPresent() ? after.getHeapPercent() : after.getHeap());
+    compare(settings, "jar", before.getJar(), after.getJar());
+    compare(settings, "args", before.getArguments(), after.getArguments());
+    compare(settings, "properties", before.getProperties(), after.getProperties());
+    compare(settings, "dependsOn", before.getDependsOn(), after.getDependsOn());
+    compare(settings, "ready", before.getReadiness(), after.getReadiness());
+    compare(settings, "gc", before.getGc(), after.getGc());
+    compare(settings, "cpus", before.getCpus(), after.getCpus());
+    compare(settings, "numaNode", before.getNumaNode(), after.getNumaNode());
+    compare(settings, "standby", before.getStandby(), after.getStandby());
+    compare(settings, "diagnostics", before.getDiagnostics(), after.getDiagnostics());
+
+    return ImmutableList.copyOf(settings);
+  }
+
+  /**
+   * Adds a setting's name to a list if its old and new values differ.
+   * @param settings The list of differing settings.
+   * @param name The setting name.
+   * @param before The old value.
+   * @param after The new value.
+   */
+  private static void compare(final List<String> settings, final String name, final Object before, final Object after)
+  {
+    if (!before.equals(after))
+    {
+      settings.add(name);
+    }
+  }
+
+  /**
+   * Determines whether the configurations are the same.
+   * @return True if no VM was added, removed or changed.
+   */
+  public boolean isEmpty()
+  {
+    return this.added.isEmpty() && this.removed.isEmpty() && this.changed.isEmpty();
+  }
+
+  /**
+   * Gets the VMs only in the new configuration.
+   * @return The VM names, in dependency order.
+   */
+  public ImmutableList<String> getAdded()
+  {
+    return this.added;
+  }
+
+  /**
+   * Gets the VMs only in the old configuration.
+   * @return The VM names.
+   */
+  public ImmutableList<String> getRemoved()
+  {
+    return this.removed;
+  }
+
+  /**
+   * Gets the VMs in both configurations whose settings differ.
+   * @return The VM names, in dependency order.
+   */
+  public ImmutableList<String> getChanged()
+  {
+    return this.changed.keySet().asList();
+  }
+
+  /**
+   * Gets the settings that differ for a changed VM.
+   * @param name The VM name.
+   * @return The names of the settings that differ; empty if the VM did not change.
+   */
+  public ImmutableList<String> getChanges(final String name)
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+
+    return this.changed.containsKey(name) ? this.changed.get(name) : ImmutableList.of();
+  }
+
+  /**
+   * Gets a summary of the differences.
+   * @return The summary.
+   */
+  @Override
+  public String toString()
+  {
+    return String.format("added %s, removed %s, changed %s", this.added, this.removed,
+                         this.changed.entrySet().stream()
+                             .map(entry -> entry.getKey() + " " + entry.getValue())
+                             .collect(Collectors.toList()));
+  }
+}
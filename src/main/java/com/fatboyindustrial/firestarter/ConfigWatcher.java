@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a configuration file and watches it, and every file it includes, for changes. <p>
+ *
+ * The directories holding the files are watched rather than the files themselves, so that files
+ * replaced by rename (as many editors save them) are noticed.  A burst of events is treated as a
+ * single change once the files have been quiet for a moment.
+ */
+public class ConfigWatcher implements AutoCloseable
+{
+  /** The time the files must be quiet before a change is reported. */
+  private static final long QUIET_MILLIS = 250;
+
+  /** The configuration file. */
+  private final Path dotConf;
+
+  /** Holds the configuration until its content changes. */
+  private final ConfigCache cache = new ConfigCache();
+
+  /** The watch service. */
+  private final WatchService watchService;
+
+  /** The watched directories, keyed by their watch keys. */
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+
+  /** The files making up the configuration, as of the last load. */
+  private Set<Path> files;
+
+  /**
+   * Constructor.
+   * @param dotConf The configuration file.
+   * @throws IOException If the watch service cannot be created.
+   */
+  public ConfigWatcher(final Path dotConf) throws IOException
+  {
+    Preconditions.checkNotNull(dotConf, "dotConf cannot be null");
+
+    this.dotConf = dotConf.toAbsolutePath().normalize();
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.files = ImmutableSet.of(this.dotConf);
+
+    watch(this.dotConf);
+  }
+
+  /**
+   * Loads the configuration (from the cache, if none of its files has changed in content), and starts
+   * watching any files it now includes.
+   * @return The configuration.
+   * @throws IOException If a file cannot be read, or a newly included file's directory cannot be watched.
+   * @throws IllegalArgumentException If the configuration cannot be read or is invalid.
+   */
+  public FirestarterConfig load() throws IOException, IllegalArgumentException
+  {
+    final FirestarterConfig config = this.cache.load(this.dotConf);
+    final Set<Path> included = this.cache.getFiles(this.dotConf).get();
+
+    for (final Path file : included)
+    {
+      watch(file);
+    }
+    this.files = ImmutableSet.copyOf(included);
+
+    return config;
+  }
+
+  /**
+   * Waits for any of the configuration's files to change.
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return True if a file changed; false if the timeout expired first.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public boolean awaitChange(final long timeout, final TimeUnit unit) throws InterruptedException
+  {
+    Preconditions.checkNotNull(unit, "unit cannot be null");
+
+    boolean changed = false;
+    WatchKey key = this.watchService.poll(timeout, unit);
+
+    while (key != null)
+    {
+      final Path dir = this.directories.get(key);
+      for (final WatchEvent<?> event : key.pollEvents())
+      {
+        if (dir != null && event.context() instanceof Path && this.files.contains(dir.resolve((Path) event.context())))
+        {
+          changed = true;
+        }
+      }
+      key.reset();
+
+      key = changed ? this.watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS) : null;
+    }
+
+    return changed;
+  }
+
+  /**
+   * Gets the files making up the configuration.
+   * @return The files, as of the last load.
+   */
+  public Set<Path> getFiles()
+  {
+    return this.files;
+  }
+
+  /**
+   * Stops watching.
+   * @throws IOException If the watch service cannot be closed.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    this.watchService.close();
+  }
+
+  /**
+   * Watches the directory holding a file, if it is not already watched.
+   * @param file The file.
+   * @throws IOException If the directory cannot be watched.
+   */
+  private void watch(final Path file) throws IOException
+  {
+    final Path dir = file.getParent();
+    if (!this.directories.containsValue(dir))
+    {
+      this.directories.put(dir.register(this.watchService,
+                                        StandardWatchEventKinds.ENTRY_CREATE,
+                                        StandardWatchEventKinds.ENTRY_MODIFY,
+                                        StandardWatchEventKinds.ENTRY_DELETE), dir);
+    }
+  }
+}
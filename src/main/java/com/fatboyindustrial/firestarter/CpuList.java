@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Conversion to and from the Linux processor list format, as used by {@code taskset -c}, {@code numactl}
+ * and {@code /sys/devices/system} (for example, "0-3,8").
+ */
+public class CpuList
+{
+  /**
+   * Private constructor - static methods only.
+   */
+  private CpuList()
+  {
+    ;
+  }
+
+  /**
+   * Parses a processor list.
+   * @param list The list (for example, "0-3,8"); may be empty.
+   * @return The processor numbers, in ascending order.
+   * @throws IllegalArgumentException If the list is malformed.
+   */
+  public static ImmutableList<Integer> parse(final String list) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(list, "list cannot be null");
+
+    final List<Integer> cpus = new ArrayList<>();
+
+    try
+    {
+      for (final String part : list.trim().split(","))
+      {
+        if (part.trim().isEmpty())
+        {
+          continue;
+        }
+
+        final String[] range = part.trim().split("-");
+        Preconditions.checkArgument(range.length <= 2, "malformed processor list: " + list);
+
+        final int first = Integer.parseInt(range[0].trim());
+        final int last = range.length == 2 ? Integer.parseInt(range[1].trim()) : first;
+        Preconditions.checkArgument(first >= 0 && last >= first, "malformed processor list: " + list);
+
+        for (int cpu = first; cpu <= last; cpu++)
+        {
+          cpus.add(cpu);
+        }
+      }
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IllegalArgumentException("malformed processor list: " + list, e);
+    }
+
+    return ImmutableList.copyOf(cpus.stream().sorted().distinct().collect(Collectors.toList()));
+  }
+
+  /**
+   * Formats a processor list, collapsing consecutive processors into ranges.
+   * @param cpus The processor numbers.
+   * @return The list (for example, "0-3,8"); empty if there are no processors.
+   */
+  public static String format(final List<Integer> cpus)
+  {
+    Preconditions.checkNotNull(cpus, "cpus cannot be null");
+
+    final StringBuilder list = new StringBuilder();
+    final List<Integer> sorted = cpus.stream().sorted().distinct().collect(Collectors.toList());
+
+    for (int i = 0; i < sorted.size(); i++)
+    {
+      final int start = sorted.get(i);
+      while (i + 1 < sorted.size() && sorted.get(i + 1) == sorted.get(i) + 1)
+      {
+        i++;
+      }
+
+      list.append(list.length() == 0 ? "" : ",").append(start);
+      if (sorted.get(i) != start)
+      {
+        list.append('-').append(sorted.get(i));
+      }
+    }
+
+    return list.toString();
+  }
+}
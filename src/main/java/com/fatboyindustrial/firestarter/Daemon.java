@@ -0,0 +1,295 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.typesafe.config.ConfigException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A resident Firestarter that answers requests from {@code fs.sh}, so that repeated commands do not
+ * each pay for starting a VM, and find the jar index and parsed configurations already in memory. <p>
+ *
+ * The daemon listens on an ephemeral loopback port and handles one request at a time.  It writes the
+ * port and a random token, separated by a space, to a file that only its user can read; a client reads
+ * the file, and every request must carry the token.  A request is lines of UTF-8 text: the token, the
+ * command, and each of the command's arguments, ended by an empty line.  The response is a line,
+ * {@code OK} or {@code ERROR} followed by a description, then the command's output until the
+ * connection closes.  The daemon carries out {@code STOP} itself; it hands every other command to its
+ * {@link Handler}.
+ */
+public class Daemon implements AutoCloseable
+{
+  /** The name of the file, kept in the search root, that holds the daemon's port and token. */
+  public static final String PORT_FILENAME = ".firestarter.daemon";
+
+  /** The command that prints a configuration's VM commands; its arguments are the format and the file. */
+  public static final String GENERATE = "GENERATE";
+
+  /** The command that starts a configuration's VMs; its argument is the configuration file. */
+  public static final String LAUNCH = "LAUNCH";
+
+  /** The command that reports on the VMs the daemon has started. */
+  public static final String STATUS = "STATUS";
+
+  /** The command that stops the daemon. */
+  public static final String STOP = "STOP";
+
+  /** The start of a successful response. */
+  public static final String OK = "OK";
+
+  /** The start of a failed response. */
+  public static final String ERROR = "ERROR";
+
+  /** The number of random bytes in a token. */
+  private static final int TOKEN_BYTES = 16;
+
+  /** The time allowed for a client to send its request. */
+  private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * Carries out the commands sent to the daemon.
+   */
+  @FunctionalInterface
+  public interface Handler
+  {
+    /**
+     * Carries out a command.
+     * @param command The command.
+     * @param args The command's arguments.
+     * @param out Receives the command's output.
+     * @throws IllegalArgumentException If the command or its arguments are invalid.
+     * @throws IOException If the command fails.
+     * @throws InterruptedException If interrupted while carrying out the command.
+     */
+    void handle(String command, List<String> args, PrintStream out)
+        throws IllegalArgumentException, IOException, InterruptedException;
+  }
+
+  /** The file holding the daemon's port and token. */
+  private final Path portFile;
+
+  /** Carries out each command received. */
+  private final Handler handler;
+
+  /** The token every request must carry. */
+  private final String token;
+
+  /** Accepts and handles the requests. */
+  private final ExecutorService acceptor = Executors.newSingleThreadExecutor();
+
+  /** The listening socket, once started. */
+  private ServerSocket server;
+
+  /**
+   * Constructor.
+   * @param portFile The file in which to publish the daemon's port and token.
+   * @param handler Carries out each command received.
+   */
+  public Daemon(final Path portFile, final Handler handler)
+  {
+    Preconditions.checkNotNull(portFile, "portFile cannot be null");
+    Preconditions.checkNotNull(handler, "handler cannot be null");
+
+    final byte[] token = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(token);
+
+    this.portFile = portFile;
+    this.handler = handler;
+    this.token = BaseEncoding.base16().lowerCase().encode(token);
+  }
+
+  /**
+   * Starts listening for requests, and publishes the port and token.
+   * @return The address listened on.
+   * @throws IOException If the port cannot be bound, or its file cannot be written.
+   */
+  public synchronized InetSocketAddress start() throws IOException
+  {
+    Preconditions.checkState(this.server == null, "already started");
+
+    this.server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+    this.acceptor.submit(this::serve);
+
+    // Written to a file only the owner can read, then moved into place, so that no client reads it
+    // half-written and no other user learns the token.
+
+    final Path temp = Files.createTempFile(this.portFile.toAbsolutePath().getParent(), PORT_FILENAME, ".tmp",
+                                           PosixFilePermissions.asFileAttribute(
+                                               PosixFilePermissions.fromString("rw-------")));
+    Files.write(temp, (this.server.getLocalPort() + " " + this.token + "\n").getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, this.portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    return (InetSocketAddress) this.server.getLocalSocketAddress();
+  }
+
+  /**
+   * Waits until the daemon is stopped.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public void awaitTermination() throws InterruptedException
+  {
+    this.acceptor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops listening and removes the port file.  A request being handled is allowed to finish.
+   */
+  @Override
+  public synchronized void close()
+  {
+    this.acceptor.shutdown();
+
+    if (this.server != null && !this.server.isClosed())
+    {
+      try
+      {
+        this.server.close();
+        Files.deleteIfExists(this.portFile);
+      }
+      catch (IOException ignored)
+      {
+        ;
+      }
+    }
+  }
+
+  /**
+   * Handles requests one at a time until the daemon is closed.
+   */
+  private void serve()
+  {
+    while (!this.server.isClosed())
+    {
+      try (final Socket socket = this.server.accept())
+      {
+        handle(socket);
+      }
+      catch (IOException | RuntimeException e)
+      {
+        if (!this.server.isClosed())
+        {
+          System.err.println("daemon request failed: " + e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Handles a single request.
+   * @param socket The client's connection.
+   * @throws IOException If the connection fails.
+   */
+  private void handle(final Socket socket) throws IOException
+  {
+    socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+
+    final BufferedReader in =
+        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    final String token = in.readLine();
+    final String command = in.readLine();
+    final List<String> args = new ArrayList<>();
+    for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine())
+    {
+      args.add(line);
+    }
+
+    // The output is gathered before the response line is sent, so that a failure part way through is
+    // reported as an error rather than as truncated output.
+
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    String response;
+    try (final PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8.name()))
+    {
+      Preconditions.checkArgument(token != null && authorised(token), "the daemon token is not valid");
+      Preconditions.checkArgument(command != null, "the request is incomplete");
+
+      if (!STOP.equals(command))
+      {
+        this.handler.handle(command, ImmutableList.copyOf(args), out);
+      }
+      response = OK;
+    }
+    catch (IllegalArgumentException | ConfigException | IOException e)
+    {
+      buffer.reset();
+      response = ERROR + " " + e.getMessage();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      buffer.reset();
+      response = ERROR + " interrupted";
+    }
+    catch (RuntimeException e)
+    {
+      buffer.reset();
+      response = ERROR + " " + e;
+    }
+
+    final OutputStream out = socket.getOutputStream();
+    out.write((response.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8));
+    buffer.writeTo(out);
+    out.flush();
+
+    if (STOP.equals(command) && response.equals(OK))
+    {
+      close();
+    }
+  }
+
+  /**
+   * Determines whether a request's token matches the daemon's, in constant time.
+   * @param given The token given.
+   * @return True if the token given matches the daemon's.
+   */
+  private boolean authorised(final String given)
+  {
+    return MessageDigest.isEqual(this.token.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -25,11 +25,17 @@ package com.fatboyindustrial.firestarter;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A depth-first strategy for locating jar files.
@@ -39,6 +45,9 @@ public class DepthFirstJarLocator implements JarLocator
   /** The starting point for all searches. */
   private final Path searchRoot;
 
+  /** The number of directories read. */
+  private final AtomicLong scanned = new AtomicLong();
+
   /**
    * Constructor.
    * @param searchRoot The starting point for all searches.
@@ -61,15 +70,43 @@ public class DepthFirstJarLocator implements JarLocator
     return locate(this.searchRoot, filename);
   }
 
+  /**
+   * Locates the jars of the specified filenames in a single search, which ends as soon as every
+   * filename has been found.
+   * @param filenames The filenames.
+   * @return The paths to the jar files that were found, keyed by filename.
+   */
+  @Override
+  public ImmutableMap<String, Path> locateAll(final Set<String> filenames)
+  {
+    Preconditions.checkNotNull(filenames, "filenames cannot be null");
+
+    final Map<String, Path> found = new HashMap<>();
+    locateAll(this.searchRoot, new HashSet<>(filenames), found);
+
+    return ImmutableMap.copyOf(found);
+  }
+
+  /**
+   * Gets the number of directories this locator has read so far.
+   * @return The number of directories read.
+   */
+  @Override
+  public long getDirectoriesScanned()
+  {
+    return this.scanned.get();
+  }
+
   /**
    * Locates the jar of the specified filename.
    * @param search The directory to search.
    * @param filename The filename.
    * @return The path to the jar file, or absent.
    */
-  private static Optional<Path> locate(final Path search, final String filename)
+  private Optional<Path> locate(final Path search, final String filename)
   {
     final File root = search.toFile();
+    this.scanned.incrementAndGet();
 
     // Find the files in this directory ...
 
@@ -104,4 +141,42 @@ public class DepthFirstJarLocator implements JarLocator
 
     return Optional.empty();
   }
+
+  /**
+   * Locates the jars of the specified filenames.
+   * @param search The directory to search.
+   * @param remaining The filenames not yet found; found filenames are removed.
+   * @param found The paths to the jar files found so far, keyed by filename.
+   */
+  private void locateAll(final Path search, final Set<String> remaining, final Map<String, Path> found)
+  {
+    final File root = search.toFile();
+    this.scanned.incrementAndGet();
+
+    // Find the files in this directory, claiming any that are still being searched for ...
+
+    final List<File> files = ImmutableList.copyOf(root.listFiles(File::isFile));
+
+    for (final File file : files)
+    {
+      if (remaining.remove(file.getName()))
+      {
+        found.put(file.getName(), file.getAbsoluteFile().toPath());
+      }
+    }
+
+    // ... and search this directory's directories until there is nothing left to find.
+
+    final List<File> dirs = ImmutableList.copyOf(root.listFiles(File::isDirectory));
+
+    for (final File dir : dirs)
+    {
+      if (remaining.isEmpty())
+      {
+        return;
+      }
+
+      locateAll(dir.getAbsoluteFile().toPath(), remaining, found);
+    }
+  }
 }
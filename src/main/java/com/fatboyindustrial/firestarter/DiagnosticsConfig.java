@@ -0,0 +1,423 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueType;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A VM's diagnostics profile: a continuous flight recording bounded by size and age, rotating GC logs,
+ * and heap dumps kept in the VM's own directory with only the most recent retained.  Each part is off
+ * unless configured, and is given either as {@code true} (for its defaults) or as an object:
+ * <pre>
+ *   diagnostics {
+ *     jfr { maxsize: 250M, maxage: 1d, settings: default }
+ *     gcLog { files: 5, size: 20M }
+ *     heapDumps { keep: 2 }
+ *   }
+ * </pre>
+ * A warm standby runs alongside the VM, so it writes a GC log and exit recording of its own, which it
+ * keeps once promoted.  The recorder's repository and the heap dumps are shared, as the VM names the
+ * files in them uniquely.
+ */
+public class DiagnosticsConfig
+{
+  /** The default limit on the recording data kept on disk, in bytes. */
+  public static final long DEFAULT_JFR_MAX_SIZE_BYTES = 250L * 1024 * 1024;
+
+  /** The default limit on the age of the recording data kept on disk, in milliseconds. */
+  public static final long DEFAULT_JFR_MAX_AGE_MILLIS = 24L * 60 * 60 * 1000;
+
+  /** The default recording settings. */
+  public static final String DEFAULT_JFR_SETTINGS = "default";
+
+  /** The default number of GC log files kept. */
+  public static final int DEFAULT_GC_LOG_FILES = 5;
+
+  /** The default size at which a GC log file is rotated, in bytes. */
+  public static final long DEFAULT_GC_LOG_FILE_SIZE_BYTES = 20L * 1024 * 1024;
+
+  /** The default number of heap dumps kept. */
+  public static final int DEFAULT_HEAP_DUMPS_KEPT = 2;
+
+  /** The profile used when none is configured: no diagnostics. */
+  public static final DiagnosticsConfig NONE = new DiagnosticsConfig(
+      false, DEFAULT_JFR_MAX_SIZE_BYTES, DEFAULT_JFR_MAX_AGE_MILLIS, DEFAULT_JFR_SETTINGS,
+      false, DEFAULT_GC_LOG_FILES, DEFAULT_GC_LOG_FILE_SIZE_BYTES,
+      false, DEFAULT_HEAP_DUMPS_KEPT);
+
+  /** The subdirectory holding the flight recorder's repository. */
+  public static final String JFR_DIRNAME = "jfr";
+
+  /** The subdirectory holding the heap dumps. */
+  public static final String HEAP_DUMP_DIRNAME = "heapdumps";
+
+  /** The flight recording dumped when the VM exits. */
+  public static final String JFR_FILENAME = "exit.jfr";
+
+  /** The GC log file. */
+  public static final String GC_LOG_FILENAME = "gc.log";
+
+  /** The flight recording dumped when a warm standby exits. */
+  public static final String STANDBY_JFR_FILENAME = "exit-standby.jfr";
+
+  /** The GC log file of a warm standby. */
+  public static final String STANDBY_GC_LOG_FILENAME = "gc-standby.log";
+
+  /** The suffix of a heap dump file. */
+  private static final String HEAP_DUMP_SUFFIX = ".hprof";
+
+  /** The first JDK whose open source build includes the flight recorder. */
+  private static final int JFR_MIN_JDK = 11;
+
+  /** The first JDK with unified logging. */
+  private static final int UNIFIED_LOGGING_MIN_JDK = 9;
+
+  /** The smallest GC log file JDK 8 rotates, in bytes. */
+  private static final long MIN_GC_LOG_FILE_SIZE_BYTES = 8 * 1024;
+
+  /** True to keep a continuous flight recording. */
+  private final boolean jfr;
+
+  /** The most recording data kept on disk, in bytes. */
+  private final long jfrMaxSizeBytes;
+
+  /** The oldest recording data kept on disk, in milliseconds. */
+  private final long jfrMaxAgeMillis;
+
+  /** The recording settings: {@code default}, {@code profile}, or the path of a settings file. */
+  private final String jfrSettings;
+
+  /** True to write rotating GC logs. */
+  private final boolean gcLog;
+
+  /** The number of GC log files kept. */
+  private final int gcLogFiles;
+
+  /** The size at which a GC log file is rotated, in bytes. */
+  private final long gcLogFileSizeBytes;
+
+  /** True to write heap dumps to the VM's own directory. */
+  private final boolean heapDumps;
+
+  /** The number of heap dumps kept. */
+  private final int heapDumpsKept;
+
+  /**
+   * Constructor.
+   * @param jfr True to keep a continuous flight recording.
+   * @param jfrMaxSizeBytes The most recording data kept on disk, in bytes.
+   * @param jfrMaxAgeMillis The oldest recording data kept on disk, in milliseconds.
+   * @param jfrSettings The recording settings: {@code default}, {@code profile}, or a settings file.
+   * @param gcLog True to write rotating GC logs.
+   * @param gcLogFiles The number of GC log files kept.
+   * @param gcLogFileSizeBytes The size at which a GC log file is rotated, in bytes.
+   * @param heapDumps True to write heap dumps to the VM's own directory.
+   * @param heapDumpsKept The number of heap dumps kept.
+   */
+  public DiagnosticsConfig(final boolean jfr,
+                           final long jfrMaxSizeBytes,
+                           final long jfrMaxAgeMillis,
+                           final String jfrSettings,
+                           final boolean gcLog,
+                           final int gcLogFiles,
+                           final long gcLogFileSizeBytes,
+                           final boolean heapDumps,
+                           final int heapDumpsKept)
+  {
+    Preconditions.checkNotNull(jfrSettings, "jfrSettings cannot be null");
+
+    Preconditions.checkArgument(jfrMaxSizeBytes > 0, "DiagnosticsConfig.jfr.maxsize must be > 0");
+    Preconditions.checkArgument(jfrMaxAgeMillis > 0, "DiagnosticsConfig.jfr.maxage must be > 0");
+    Preconditions.checkArgument(!jfrSettings.isEmpty() && jfrSettings.indexOf(',') == -1,
+                                "DiagnosticsConfig.jfr.settings must be a name or file but was: " + jfrSettings);
+    Preconditions.checkArgument(gcLogFiles > 0, "DiagnosticsConfig.gcLog.files must be > 0 but was: " + gcLogFiles);
+    Preconditions.checkArgument(gcLogFileSizeBytes >= MIN_GC_LOG_FILE_SIZE_BYTES,
+                                "DiagnosticsConfig.gcLog.size must be >= 8K but was: " + gcLogFileSizeBytes);
+    Preconditions.checkArgument(heapDumpsKept > 0,
+                                "DiagnosticsConfig.heapDumps.keep must be > 0 but was: " + heapDumpsKept);
+
+    this.jfr = jfr;
+    this.jfrMaxSizeBytes = jfrMaxSizeBytes;
+    this.jfrMaxAgeMillis = jfrMaxAgeMillis;
+    this.jfrSettings = jfrSettings;
+    this.gcLog = gcLog;
+    this.gcLogFiles = gcLogFiles;
+    this.gcLogFileSizeBytes = gcLogFileSizeBytes;
+    this.heapDumps = heapDumps;
+    this.heapDumpsKept = heapDumpsKept;
+  }
+
+  /**
+   * Creates a diagnostics config from the given HOCON value, an object holding any of {@code jfr},
+   * {@code gcLog} and {@code heapDumps}.
+   * @param vmConfig The VM configuration holding the {@code diagnostics} value.
+   * @return The diagnostics config.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static DiagnosticsConfig fromConfig(final Config vmConfig) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(vmConfig, "vmConfig cannot be null");
+
+    final Config diagnostics = vmConfig.getConfig("diagnostics");
+    final Config jfr = part(diagnostics, "jfr");
+    final Config gcLog = part(diagnostics, "gcLog");
+    final Config heapDumps = part(diagnostics, "heapDumps");
+
+    return new DiagnosticsConfig(
+        isEnabled(diagnostics, "jfr"),
+        jfr.hasPath("maxsize") ? jfr.getBytes("maxsize") : DEFAULT_JFR_MAX_SIZE_BYTES,
+        jfr.hasPath("maxage") ? jfr.getDuration("maxage", TimeUnit.MILLISECONDS) : DEFAULT_JFR_MAX_AGE_MILLIS,
+        jfr.hasPath("settings") ? jfr.getString("settings").trim() : DEFAULT_JFR_SETTINGS,
+        isEnabled(diagnostics, "gcLog"),
+        gcLog.hasPath("files") ? gcLog.getInt("files") : DEFAULT_GC_LOG_FILES,
+        gcLog.hasPath("size") ? gcLog.getBytes("size") : DEFAULT_GC_LOG_FILE_SIZE_BYTES,
+        isEnabled(diagnostics, "heapDumps"),
+        heapDumps.hasPath("keep") ? heapDumps.getInt("keep") : DEFAULT_HEAP_DUMPS_KEPT);
+  }
+
+  /**
+   * Determines whether a part of the profile is enabled: it is present, and either {@code true} or an
+   * object (which may itself set {@code enabled: false}).
+   * @param diagnostics The diagnostics configuration.
+   * @param name The part's name.
+   * @return True if the part is enabled.
+   */
+  private static boolean isEnabled(final Config diagnostics, final String name)
+  {
+    if (!diagnostics.hasPath(name))
+    {
+      return false;
+    }
+
+    return diagnostics.getValue(name).valueType() == ConfigValueType.BOOLEAN
+        ? diagnostics.getBoolean(name)
+        : !diagnostics.getConfig(name).hasPath("enabled") || diagnostics.getConfig(name).getBoolean("enabled");
+  }
+
+  /**
+   * Gets the settings of a part of the profile.
+   * @param diagnostics The diagnostics configuration.
+   * @param name The part's name.
+   * @return The part's settings; empty if it is given as a boolean, or not at all.
+   */
+  private static Config part(final Config diagnostics, final String name)
+  {
+    return diagnostics.hasPath(name) && diagnostics.getValue(name).valueType() == ConfigValueType.OBJECT
+        ? diagnostics.getConfig(name)
+        : ConfigFactory.empty();
+  }
+
+  /**
+   * Determines whether any part of the profile is enabled.
+   * @return True if the VM has diagnostics.
+   */
+  public boolean isEnabled()
+  {
+    return this.jfr || this.gcLog || this.heapDumps;
+  }
+
+  /**
+   * Determines whether heap dumps are written to the VM's own directory.
+   * @return True if they are.
+   */
+  public boolean isHeapDumps()
+  {
+    return this.heapDumps;
+  }
+
+  /**
+   * Gets the JVM flags for the flight recording and GC logs.  Heap dumps are left to the caller, which
+   * points {@code -XX:HeapDumpPath} at {@link #getHeapDumpDir}.
+   * @param dir The VM's diagnostics directory.
+   * @param jdk The feature release of the target JDK.
+   * @return The flags.
+   * @throws IllegalArgumentException If the flight recorder is not available in the target JDK.
+   */
+  public ImmutableList<String> flags(final Path dir, final int jdk) throws IllegalArgumentException
+  {
+    return flags(dir, jdk, false);
+  }
+
+  /**
+   * Gets the JVM flags for the flight recording and GC logs of the VM or its warm standby.  Heap dumps
+   * are left to the caller, which points {@code -XX:HeapDumpPath} at {@link #getHeapDumpDir}.
+   * @param dir The VM's diagnostics directory.
+   * @param jdk The feature release of the target JDK.
+   * @param standby True for the flags of the VM's warm standby.
+   * @return The flags.
+   * @throws IllegalArgumentException If the flight recorder is not available in the target JDK.
+   */
+  public ImmutableList<String> flags(final Path dir, final int jdk, final boolean standby)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(dir, "dir cannot be null");
+    Preconditions.checkArgument(!this.jfr || jdk >= JFR_MIN_JDK,
+                                "DiagnosticsConfig.jfr requires JDK " + JFR_MIN_JDK + "+ but the target is " + jdk);
+
+    final List<String> flags = new ArrayList<>();
+    final Path gcLog = dir.resolve(standby ? STANDBY_GC_LOG_FILENAME : GC_LOG_FILENAME);
+
+    if (this.jfr)
+    {
+      flags.add("-XX:FlightRecorderOptions=repository=" + dir.resolve(JFR_DIRNAME));
+      flags.add(String.format(
+          "-XX:StartFlightRecording=name=continuous,settings=%s,disk=true,maxsize=%d,maxage=%ds,dumponexit=true," +
+          "filename=%s",
+          this.jfrSettings, this.jfrMaxSizeBytes, TimeUnit.MILLISECONDS.toSeconds(this.jfrMaxAgeMillis),
+          dir.resolve(standby ? STANDBY_JFR_FILENAME : JFR_FILENAME)));
+    }
+
+    if (this.gcLog && jdk >= UNIFIED_LOGGING_MIN_JDK)
+    {
+      flags.add(String.format("-Xlog:gc*:file=%s:time,uptime,level,tags:filecount=%d,filesize=%d",
+                              gcLog, this.gcLogFiles, this.gcLogFileSizeBytes));
+    }
+    else if (this.gcLog)
+    {
+      flags.add("-Xloggc:" + gcLog);
+      flags.add("-XX:+PrintGCDetails");
+      flags.add("-XX:+PrintGCDateStamps");
+      flags.add("-XX:+UseGCLogFileRotation");
+      flags.add(String.format("-XX:NumberOfGCLogFiles=%d", this.gcLogFiles));
+      flags.add(String.format("-XX:GCLogFileSize=%dK", this.gcLogFileSizeBytes / 1024));
+    }
+
+    return ImmutableList.copyOf(flags);
+  }
+
+  /**
+   * Gets the directory the VM's heap dumps are written to.
+   * @param dir The VM's diagnostics directory.
+   * @return The heap dump directory.
+   */
+  public Path getHeapDumpDir(final Path dir)
+  {
+    Preconditions.checkNotNull(dir, "dir cannot be null");
+
+    return dir.resolve(HEAP_DUMP_DIRNAME);
+  }
+
+  /**
+   * Prepares the VM's diagnostics directory before it starts, creating the directories the VM writes
+   * to (it will not create them itself) and deleting all but the newest of its heap dumps.
+   * @param dir The VM's diagnostics directory.
+   * @throws IOException If the directories cannot be created, or a heap dump cannot be deleted.
+   */
+  public void prepare(final Path dir) throws IOException
+  {
+    Preconditions.checkNotNull(dir, "dir cannot be null");
+
+    Files.createDirectories(dir);
+
+    if (this.jfr)
+    {
+      Files.createDirectories(dir.resolve(JFR_DIRNAME));
+    }
+
+    if (this.heapDumps)
+    {
+      final Path dumps = Files.createDirectories(getHeapDumpDir(dir));
+      final List<Path> files = new ArrayList<>();
+
+      try (final DirectoryStream<Path> entries = Files.newDirectoryStream(dumps, "*" + HEAP_DUMP_SUFFIX))
+      {
+        entries.forEach(files::add);
+      }
+
+      files.sort(Comparator.comparing(DiagnosticsConfig::modified).reversed());
+
+      for (final Path stale : files.subList(Math.min(this.heapDumpsKept, files.size()), files.size()))
+      {
+        Files.deleteIfExists(stale);
+      }
+    }
+  }
+
+  /**
+   * Gets a file's modification time.
+   * @param file The file.
+   * @return The modification time in milliseconds, or zero if it cannot be read.
+   */
+  private static long modified(final Path file)
+  {
+    try
+    {
+      return Files.getLastModifiedTime(file).toMillis();
+    }
+    catch (IOException e)
+    {
+      return 0;
+    }
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal DiagnosticsConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof DiagnosticsConfig))
+    {
+      return false;
+    }
+
+    final DiagnosticsConfig other = (DiagnosticsConfig) obj;
+    return this.jfr == other.jfr
+        && this.jfrMaxSizeBytes == other.jfrMaxSizeBytes
+        && this.jfrMaxAgeMillis == other.jfrMaxAgeMillis
+        && this.jfrSettings.equals(other.jfrSettings)
+        && this.gcLog == other.gcLog
+        && this.gcLogFiles == other.gcLogFiles
+        && this.gcLogFileSizeBytes == other.gcLogFileSizeBytes
+        && this.heapDumps == other.heapDumps
+        && this.heapDumpsKept == other.heapDumpsKept;
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.jfr, this.jfrMaxSizeBytes, this.jfrMaxAgeMillis, this.jfrSettings, this.gcLog,
+                        this.gcLogFiles, this.gcLogFileSizeBytes, this.heapDumps, this.heapDumpsKept);
+  }
+}
@@ -24,56 +24,209 @@
 package com.fatboyindustrial.firestarter;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigParseOptions;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
  * Main application class. <p>
  *
- * Java command lines are output to standard out.
+ * Java command lines are output to standard out, or with {@code --launch}, the VMs are started directly.
+ * With {@code --supervise}, Firestarter stays resident and restarts any VM that exits.  With
+ * {@code --cluster}, the VMs are instead spread across the hosts of a cluster, each running Firestarter
+ * with {@code --agent}.
  */
 public class Firestarter
 {
   /** The environment variable name that points to the root search directory. */
   private static final String FS_ROOT = "FS_ROOT";
 
+  /** The environment variable that names the firestarter jar, for a native build. */
+  private static final String FS_JAR = "FS_JAR";
+
+  /** The environment variable holding the token a cluster agent requires. */
+  private static final String CLUSTER_TOKEN = "FS_CLUSTER_TOKEN";
+
+  /** The name of the supervisor's status file, kept in the log directory. */
+  private static final String STATUS_FILENAME = "firestarter.status";
+
+  /** The format of a JVM property in an argument vector. */
+  private static final String PROPERTY_FORMAT = "-D%s=%s";
+
+  /** The interval between checks that a watching supervisor is still open. */
+  private static final long CONFIG_POLL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+  /** The directory beneath the root that holds the class data archives. */
+  private static final String CDS_DIRNAME = "cds";
+
+  /** The directory beneath the root that holds each VM's diagnostics directory. */
+  private static final String DIAGNOSTICS_DIRNAME = "diagnostics";
+
+  /** Verifies the located jars, keeping its results in {@code $FS_ROOT} across runs. */
+  private static final JarVerifier VERIFIER = new JarVerifier(
+      getEnvironmentVariable(FS_ROOT).map(root -> Paths.get(root, JarVerifier.CACHE_FILENAME)),
+      Runtime.getRuntime().availableProcessors());
+
   /**
    * Main method.
-   * @param args Command line arguments: JSON file.
+   * @param args Command line arguments: options, followed by the configuration file.
    */
   public static void main(final String[] args)
   {
-    if (args.length != 1)
+    final CommandLineOptions options;
+    try
+    {
+      options = CommandLineOptions.parse(args);
+    }
+    catch (IllegalArgumentException e)
     {
+      System.err.println(e.getMessage());
       usage();
       System.exit(1);
+      return;
     }
 
-    final String dotConf = args[0];
+    final StartupMetrics metrics = new StartupMetrics();
 
-    try (final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(dotConf), Charsets.UTF_8)))
+    try
     {
-      final FirestarterConfig cfg = FirestarterConfig.fromConfig(ConfigFactory.parseReader(br));
-      final JarLocator locator = new DepthFirstJarLocator(
-          getEnvironmentVariable(FS_ROOT)
-              .map(Paths::get)
-              .orElseThrow(() -> new IOException(FS_ROOT + " is not set")));
+      if (options.getAgent().isPresent())
+      {
+        agent(options, options.getAgent().get());
+        return;
+      }
 
-      for (final VmConfig vm : cfg.getJvms())
+      if (options.isDaemon())
       {
-        System.out.println(process(locator, cfg.getName(), vm));
+        daemon(options);
+        return;
+      }
+
+      final String dotConf = options.getConfig().get();
+      if (!new File(dotConf).isFile())
+      {
+        throw new FileNotFoundException(dotConf);
+      }
+
+      // Parsed from the file itself, so that relative includes resolve against its directory.
+      final Stopwatch parse = Stopwatch.createStarted();
+      final Config hocon =
+          ConfigFactory.parseFile(new File(dotConf), ConfigParseOptions.defaults().setAllowMissing(false));
+      final FirestarterConfig cfg = FirestarterConfig.fromConfig(hocon);
+      metrics.recordPhase(StartupMetrics.PARSE, parse.elapsed(TimeUnit.NANOSECONDS));
+
+      if (options.isCluster())
+      {
+        coordinate(hocon, cfg);
+        return;
+      }
+
+      final Path root = getRoot();
+      prepareDiagnostics(cfg);
+      final JarLocator locator = new PersistentJarLocator(root);
+
+      final Path logDir = options.getLogDir().orElse(root.resolve("logs"));
+
+      if (options.isSupervise())
+      {
+        final Launcher launcher = new Launcher(logDir);
+        final Supervisor supervisor = new Supervisor(
+            launcher, RestartPolicy.defaults(), options.getParallelism(), logDir.resolve(STATUS_FILENAME));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(supervisor::close));
+
+        try (final TelemetryCollector telemetry = new TelemetryCollector(supervisor::processes))
+        {
+          if (options.getTelemetryPort().isPresent())
+          {
+            final InetSocketAddress address = telemetry.serve(options.getTelemetryPort().get());
+            telemetry.start();
+            System.err.println(String.format("serving telemetry on http://%s:%d%s",
+                                             address.getHostString(), address.getPort(), TelemetryCollector.PATH));
+          }
+
+          if (options.isWatch())
+          {
+            try (final ConfigWatcher watcher = new ConfigWatcher(Paths.get(dotConf)))
+            {
+              final FirestarterConfig watched = watcher.load();
+              prepareDiagnostics(watched);
+              final LocatedJars prepared = prepareJars(locator, watched, metrics);
+              start(supervisor, watched, specs(prepared, watched, metrics), metrics, options.getMetrics());
+              pruneStaged(watched, prepared);
+              rollOutChanges(supervisor, locator, watcher, options.getBatchSize());
+            }
+          }
+          else
+          {
+            final LocatedJars prepared = prepareJars(locator, cfg, metrics);
+            start(supervisor, cfg, specs(prepared, cfg, metrics), metrics, options.getMetrics());
+            pruneStaged(cfg, prepared);
+            supervisor.awaitTermination();
+          }
+        }
+      }
+      else if (options.isLaunch())
+      {
+        final Launcher launcher = new Launcher(logDir);
+        final StartupScheduler scheduler = new StartupScheduler(launcher, options.getParallelism(), metrics);
+        final LocatedJars prepared = prepareJars(locator, cfg, metrics);
+        final List<LaunchSpec> specs = specs(prepared, cfg, metrics);
+        final Stopwatch start = Stopwatch.createStarted();
+
+        try
+        {
+          for (final Map.Entry<String, Process> entry : scheduler.start(cfg, specs).entrySet())
+          {
+            System.out.println("Launched " + entry.getKey() + "; logging to " + launcher.getLogFile(entry.getKey()));
+          }
+          pruneStaged(cfg, prepared);
+        }
+        finally
+        {
+          metrics.recordPhase(StartupMetrics.START, start.elapsed(TimeUnit.NANOSECONDS));
+          writeMetrics(metrics, cfg, options.getMetrics());
+        }
+      }
+      else
+      {
+        // Written as UTF-8 whatever the locale, so that a consumer decodes every argument as it was given.
+
+        final PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8.name());
+        final LocatedJars prepared = prepareJars(locator, cfg, metrics);
+        for (final String command : process(prepared, cfg, metrics, options.getFormat()))
+        {
+          out.print(command);
+        }
+        out.flush();
+        pruneStaged(cfg, prepared);
+        writeMetrics(metrics, cfg, options.getMetrics());
       }
     }
     catch (FileNotFoundException e)
@@ -86,50 +239,651 @@ public class Firestarter
       System.err.println("i/o exception: " + e);
       System.exit(1);
     }
+    catch (IllegalArgumentException | ConfigException e)
+    {
+      System.err.println("invalid configuration: " + e.getMessage());
+      System.exit(1);
+    }
+    catch (InterruptedException e)
+    {
+      System.err.println("interrupted");
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs as a cluster agent, supervising whichever VMs it is sent until it is stopped.  Each
+   * configuration received is rolled out as a watched configuration's changes are.
+   * @param options The command line options.
+   * @param address The address to listen on.
+   * @throws IOException If the agent cannot be started.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  private static void agent(final CommandLineOptions options, final InetSocketAddress address)
+      throws IOException, InterruptedException
+  {
+    final Path root = getRoot();
+    final Path logDir = options.getLogDir().orElse(root.resolve("logs"));
+    final Launcher launcher = new Launcher(logDir);
+    final Supervisor supervisor = new Supervisor(
+        launcher, RestartPolicy.defaults(), options.getParallelism(), logDir.resolve(STATUS_FILENAME));
+    final AtomicBoolean started = new AtomicBoolean();
+
+    Runtime.getRuntime().addShutdownHook(new Thread(supervisor::close));
+
+    // A fresh locator for each configuration, so that jars deployed since the last one are found.
+
+    final ClusterAgent.Applier applier = cfg -> {
+      prepareDiagnostics(cfg);
+      final LocatedJars prepared = prepareJars(new PersistentJarLocator(root), cfg, new StartupMetrics());
+      final List<LaunchSpec> specs = specs(prepared, cfg);
+
+      if (started.compareAndSet(false, true))
+      {
+        supervisor.start(cfg, specs);
+        pruneStaged(cfg, prepared);
+        return "started " + cfg.getJvms().stream().map(VmConfig::getName).collect(Collectors.toList());
+      }
+
+      final String diff = supervisor.reconfigure(cfg, specs, options.getBatchSize()).toString();
+      pruneStaged(cfg, prepared);
+      return diff;
+    };
+
+    try (final ClusterAgent agent = new ClusterAgent(address, getEnvironmentVariable(CLUSTER_TOKEN), applier))
+    {
+      final InetSocketAddress bound = agent.start();
+      System.err.println(String.format("cluster agent listening on %s:%d", bound.getHostString(), bound.getPort()));
+      supervisor.awaitTermination();
+    }
+  }
+
+  /**
+   * Runs as a resident daemon until it is stopped, keeping the jar index and each parsed configuration
+   * in memory between requests.  Each request revalidates the index, so jars deployed since the last
+   * are found, and reloads a configuration only if one of its files has changed.  The VMs the daemon
+   * launches are its children, so it reports on them until it is stopped, and it will not launch a
+   * configuration again while any VM it launched from it is still running.
+   * @param options The command line options.
+   * @throws IOException If the daemon cannot be started.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  private static void daemon(final CommandLineOptions options) throws IOException, InterruptedException
+  {
+    final Path root = getRoot();
+    final Launcher launcher = new Launcher(options.getLogDir().orElse(root.resolve("logs")));
+    final PersistentJarLocator locator = new PersistentJarLocator(root);
+    final ConfigCache configs = new ConfigCache();
+    final Map<String, Process> launched = new TreeMap<>();
+
+    final Daemon.Handler handler = (command, args, out) -> {
+      if (command.equals(Daemon.STATUS))
+      {
+        launched.forEach((name, process) -> out.println(
+            name + ": " + (process.isAlive() ? "running" : "exited " + process.exitValue())));
+        return;
+      }
+
+      Preconditions.checkArgument(command.equals(Daemon.GENERATE) ? args.size() == 2
+                                      : command.equals(Daemon.LAUNCH) && args.size() == 1,
+                                  "unknown command: " + command + " " + args);
+
+      final FirestarterConfig cfg = configs.load(Paths.get(args.get(args.size() - 1)));
+      if (command.equals(Daemon.LAUNCH))
+      {
+        checkNotRunning(launched, cfg);
+      }
+
+      final StartupMetrics metrics = new StartupMetrics();
+      prepareDiagnostics(cfg);
+      locator.revalidate();
+      final LocatedJars prepared = prepareJars(locator, cfg, metrics);
+
+      if (command.equals(Daemon.GENERATE))
+      {
+        process(prepared, cfg, metrics, CommandFormat.fromName(args.get(0))).forEach(out::print);
+      }
+      else
+      {
+        final StartupScheduler scheduler = new StartupScheduler(launcher, options.getParallelism(), metrics);
+        for (final Map.Entry<String, Process> entry : scheduler.start(cfg, specs(prepared, cfg, metrics)).entrySet())
+        {
+          launched.put(entry.getKey(), entry.getValue());
+          out.println("Launched " + entry.getKey() + "; logging to " + launcher.getLogFile(entry.getKey()));
+        }
+      }
+
+      pruneStaged(cfg, prepared);
+    };
+
+    try (final Daemon daemon = new Daemon(root.resolve(Daemon.PORT_FILENAME), handler))
+    {
+      Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+
+      final InetSocketAddress bound = daemon.start();
+      System.err.println(String.format("daemon listening on %s:%d", bound.getHostString(), bound.getPort()));
+      daemon.awaitTermination();
+    }
+  }
+
+  /**
+   * Refuses to launch a configuration while any of its VMs that the daemon launched before is still
+   * running, as a second copy would contend for the first one's ports and files, and replace the
+   * daemon's record of it.
+   * @param launched The processes the daemon has launched, by VM name.
+   * @param cfg The configuration to launch.
+   * @throws IllegalArgumentException If any of the configuration's VMs is still running.
+   */
+  @VisibleForTesting
+  protected static void checkNotRunning(final Map<String, Process> launched, final FirestarterConfig cfg)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(launched, "launched cannot be null");
+    Preconditions.checkNotNull(cfg, "cfg cannot be null");
+
+    final List<String> running = cfg.getJvms().stream()
+        .map(VmConfig::getName)
+        .filter(name -> launched.containsKey(name) && launched.get(name).isAlive())
+        .collect(Collectors.toList());
+
+    Preconditions.checkArgument(running.isEmpty(), "already running: " + running);
+  }
+
+  /**
+   * Spreads a configuration's VMs across the hosts of its cluster, and has each host's agent apply its
+   * share.  Every host is sent the configuration, so that a host left with no VMs stops its own.
+   * @param hocon The configuration.
+   * @param cfg The parsed configuration.
+   * @throws IOException If any host fails to apply its share.
+   */
+  private static void coordinate(final Config hocon, final FirestarterConfig cfg) throws IOException
+  {
+    final ClusterConfig cluster = ClusterConfig.fromConfig(hocon);
+    final ImmutableMap<String, ImmutableList<String>> placement = ClusterPlanner.place(cfg, cluster);
+
+    placement.forEach((host, vms) -> System.out.println(host + ": " + Joiner.on(", ").join(vms)));
+
+    final ImmutableMap<String, String> responses =
+        ClusterClient.apply(cluster, placement, ClusterClient.render(hocon));
+    responses.forEach((host, response) -> System.out.println(host + ": " + response));
+
+    final List<String> failed = responses.entrySet().stream()
+        .filter(entry -> !entry.getValue().startsWith(ClusterAgent.OK))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+
+    if (!failed.isEmpty())
+    {
+      throw new IOException("the configuration was not applied on " + failed);
+    }
+  }
+
+  /**
+   * Starts supervising a configuration's VMs, writing the metrics of their first start once every VM
+   * has started (or failed to).
+   * @param supervisor The supervisor.
+   * @param cfg The configuration.
+   * @param specs The launch specifications for the configuration's VMs.
+   * @param metrics The metrics gathered so far.
+   * @param file The file to write the metrics to, if any.
+   */
+  private static void start(final Supervisor supervisor,
+                            final FirestarterConfig cfg,
+                            final List<LaunchSpec> specs,
+                            final StartupMetrics metrics,
+                            final Optional<Path> file)
+  {
+    final Stopwatch start = Stopwatch.createStarted();
+    supervisor.start(cfg, specs, metrics);
+    metrics.recordPhase(StartupMetrics.START, start.elapsed(TimeUnit.NANOSECONDS));
+
+    writeMetrics(metrics, cfg, file);
+  }
+
+  /**
+   * Writes the metrics of a run, if asked to.  A file that cannot be written is reported, but does not
+   * fail the run.
+   * @param metrics The metrics.
+   * @param cfg The configuration.
+   * @param file The file to write the metrics to, if any.
+   */
+  private static void writeMetrics(final StartupMetrics metrics, final FirestarterConfig cfg, final Optional<Path> file)
+  {
+    if (file.isPresent())
+    {
+      try
+      {
+        metrics.write(cfg.getName(), file.get());
+      }
+      catch (IOException e)
+      {
+        System.err.println("metrics not written: " + e);
+      }
+    }
+  }
+
+  /**
+   * Rolls out each change to a watched configuration until the supervisor is closed.  A configuration
+   * that cannot be read or rolled out is reported, and the VMs are left as they are.
+   * @param supervisor The supervisor.
+   * @param locator The jar locator.
+   * @param watcher The configuration watcher.
+   * @param batchSize The number of VMs restarted at once.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  private static void rollOutChanges(final Supervisor supervisor,
+                                     final JarLocator locator,
+                                     final ConfigWatcher watcher,
+                                     final int batchSize) throws InterruptedException
+  {
+    while (!supervisor.awaitTermination(0, TimeUnit.MILLISECONDS))
+    {
+      if (!watcher.awaitChange(CONFIG_POLL_MILLIS, TimeUnit.MILLISECONDS))
+      {
+        continue;
+      }
+
+      try
+      {
+        final FirestarterConfig cfg = watcher.load();
+        prepareDiagnostics(cfg);
+        final LocatedJars prepared = prepareJars(locator, cfg, new StartupMetrics());
+        supervisor.reconfigure(cfg, specs(prepared, cfg), batchSize);
+        pruneStaged(cfg, prepared);
+      }
+      catch (IOException | IllegalArgumentException e)
+      {
+        System.err.println("configuration not rolled out: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Process every VM in a configuration, locating all of their jars in a single search.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @return The command lines, ordered so that each VM follows the VMs it depends on.
+   * @throws FileNotFoundException If a jar file cannot be found.
+   */
+  @VisibleForTesting
+  protected static ImmutableList<String> process(final JarLocator locator,
+                                                 final FirestarterConfig cfg) throws FileNotFoundException
+  {
+    return commands(locator, cfg, new StartupMetrics()).stream()
+        .map(entry -> CommandFormat.shellCommand(entry.getKey(), entry.getValue()))
+        .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+  }
+
+  /**
+   * Process every VM in a configuration, locating all of their jars in a single search.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @param metrics Records the time spent locating jars and assembling the commands.
+   * @param format The format of each VM's command.
+   * @return The formatted commands, each with its terminator, ordered so that each VM follows the VMs
+   *         it depends on.
+   * @throws FileNotFoundException If a jar file cannot be found.
+   */
+  protected static ImmutableList<String> process(final JarLocator locator,
+                                                 final FirestarterConfig cfg,
+                                                 final StartupMetrics metrics,
+                                                 final CommandFormat format) throws FileNotFoundException
+  {
+    return commands(locator, cfg, metrics).stream()
+        .map(entry -> format.format(entry.getKey(), entry.getValue()))
+        .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+  }
+
+  /**
+   * Assembles the command of every VM in a configuration, locating all of their jars in a single
+   * search.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @param metrics Records the time spent locating jars and assembling the commands.
+   * @return Each VM with its command, ordered so that each VM follows the VMs it depends on.
+   * @throws FileNotFoundException If a jar file cannot be found.
+   */
+  private static ImmutableList<Map.Entry<VmConfig, List<String>>> commands(final JarLocator locator,
+                                                                         final FirestarterConfig cfg,
+                                                                         final StartupMetrics metrics)
+      throws FileNotFoundException
+  {
+    final JarLocator located = locateAll(locator, cfg, metrics);
+    final Stopwatch planning = Stopwatch.createStarted();
+    final Map<String, VmPlan> plans = NodePlanner.plan(cfg, HostResources.detect());
+    final Optional<ClassDataArchives> archives = archives(cfg);
+    final ImmutableList.Builder<Map.Entry<VmConfig, List<String>>> commands = ImmutableList.builder();
+
+    for (final VmConfig vm : StartupScheduler.order(cfg.getJvms()))
+    {
+      commands.add(Maps.immutableEntry(vm, command(located, cfg, vm, plans.get(vm.getName()), archives, false)));
+    }
+
+    metrics.recordPhase(StartupMetrics.PLAN, planning.elapsed(TimeUnit.NANOSECONDS));
+
+    return commands.build();
   }
 
   /**
    * Process a single VM.
    * @param locator The jar locator.
-   * @param configName The overarching configuration name.
+   * @param cfg The overarching configuration.
    * @param vm The VM details.
    * @return The command line.
    * @throws FileNotFoundException If the jar file cannot be found.
    */
   @VisibleForTesting
   protected static String process(final JarLocator locator,
-                                  @SuppressWarnings("UnusedParameters") final String configName,
+                                  final FirestarterConfig cfg,
                                   final VmConfig vm) throws FileNotFoundException
   {
+    Preconditions.checkArgument(cfg.getJvms().contains(vm), vm.getName() + " is not part of " + cfg.getName());
+
+    return CommandFormat.shellCommand(vm, command(
+        locator, cfg, vm, NodePlanner.plan(cfg, HostResources.detect()).get(vm.getName()), archives(cfg), false));
+  }
+
+  /**
+   * Creates the launch specifications for every VM in a configuration, locating all of their jars in
+   * a single search.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @return The launch specifications, in VM order.
+   * @throws FileNotFoundException If a jar file cannot be found.
+   */
+  @VisibleForTesting
+  protected static ImmutableList<LaunchSpec> specs(final JarLocator locator,
+                                                   final FirestarterConfig cfg) throws FileNotFoundException
+  {
+    return specs(locator, cfg, new StartupMetrics());
+  }
+
+  /**
+   * Creates the launch specifications for every VM in a configuration, locating all of their jars in
+   * a single search.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @param metrics Records the time spent locating jars and assembling the commands.
+   * @return The launch specifications, in VM order.
+   * @throws FileNotFoundException If a jar file cannot be found.
+   */
+  protected static ImmutableList<LaunchSpec> specs(final JarLocator locator,
+                                                   final FirestarterConfig cfg,
+                                                   final StartupMetrics metrics) throws FileNotFoundException
+  {
+    final JarLocator located = locateAll(locator, cfg, metrics);
+    final Stopwatch planning = Stopwatch.createStarted();
+    final Map<String, VmPlan> plans = NodePlanner.plan(cfg, HostResources.detect());
+    final Optional<ClassDataArchives> archives = archives(cfg);
+    final ImmutableList.Builder<LaunchSpec> specs = ImmutableList.builder();
+
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      final VmPlan plan = plans.get(vm.getName());
+      specs.add(new LaunchSpec(
+          vm.getName(),
+          command(located, cfg, vm, plan, archives, false),
+          vm.getStandby().isPresent()
+              ? Optional.of(command(located, cfg, vm, plan, Optional.empty(), true))
+              : Optional.empty(),
+          vm.getDiagnostics(),
+          Optional.of(diagnosticsDir(vm))));
+    }
+
+    metrics.recordPhase(StartupMetrics.PLAN, planning.elapsed(TimeUnit.NANOSECONDS));
+
+    return specs.build();
+  }
+
+  /**
+   * Locates the jars of every VM in a configuration, verifies that they are intact, reading them
+   * concurrently, and stages them as configured.  This runs before any VM is started, so a corrupt jar
+   * fails the run up front.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @param metrics Records the time spent locating, verifying and staging jars.
+   * @return A locator that resolves the staged jars without searching again.
+   * @throws IOException If a jar cannot be read, is not intact, or cannot be staged.
+   */
+  private static LocatedJars prepareJars(final JarLocator locator,
+                                         final FirestarterConfig cfg,
+                                         final StartupMetrics metrics) throws IOException
+  {
+    final LocatedJars located = locateAll(locator, cfg, metrics);
+    final Stopwatch verifying = Stopwatch.createStarted();
+
+    final Map<Path, String> hashes = VERIFIER.verifyAll(located.jars.values());
+    metrics.recordPhase(StartupMetrics.VERIFY, verifying.elapsed(TimeUnit.NANOSECONDS));
+
+    final Stopwatch staging = Stopwatch.createStarted();
+    final LocatedJars staged = new LocatedJars(cfg.getStaging().stage(cfg.getName(), located.jars, hashes, VERIFIER));
+    metrics.recordPhase(StartupMetrics.STAGE, staging.elapsed(TimeUnit.NANOSECONDS));
+
+    return staged;
+  }
+
+  /**
+   * Removes the staged jars that a configuration's VMs no longer start from, once they have moved to
+   * the ones just staged.  Jars that cannot be removed are reported, but do not fail the run.
+   * @param cfg The configuration.
+   * @param prepared The jars the configuration's VMs start from.
+   */
+  private static void pruneStaged(final FirestarterConfig cfg, final LocatedJars prepared)
+  {
+    try
+    {
+      cfg.getStaging().prune(cfg.getName(), prepared.jars.values());
+    }
+    catch (IOException e)
+    {
+      System.err.println("staged jars not pruned: " + e);
+    }
+  }
+
+  /**
+   * Locates the jars of every VM in a configuration in a single search.  Every VM waits on the whole
+   * search, so each is recorded with the search's latency.  Jars that have already been located are
+   * not searched for (or recorded) again.
+   * @param locator The jar locator.
+   * @param cfg The configuration.
+   * @param metrics Records the search's latency and the directories it read.
+   * @return A locator that answers from the search results.
+   */
+  private static LocatedJars locateAll(final JarLocator locator,
+                                       final FirestarterConfig cfg,
+                                       final StartupMetrics metrics)
+  {
+    if (locator instanceof LocatedJars)
+    {
+      return (LocatedJars) locator;
+    }
+
+    final long scanned = locator.getDirectoriesScanned();
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final Map<String, Path> jars = locator.locateAll(
+        cfg.getJvms().stream()
+            .map(VmConfig::getJar)
+            .collect(Collectors.toSet()));
+    final long nanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+    metrics.recordPhase(StartupMetrics.LOCATE, nanos);
+    metrics.addDirectoriesScanned(locator.getDirectoriesScanned() - scanned);
+    cfg.getJvms().forEach(vm -> metrics.recordVm(vm.getName(), StartupMetrics.LOCATE, nanos));
+
+    return new LocatedJars(jars);
+  }
+
+  /**
+   * Gets the class data archives of a configuration, which are kept in {@code $FS_ROOT/cds}.
+   * @param cfg The configuration.
+   * @return The archives, or absent if class data is not shared (or {@code FS_ROOT} is not set).
+   */
+  private static Optional<ClassDataArchives> archives(final FirestarterConfig cfg)
+  {
+    return cfg.isClassDataSharing()
+        ? getEnvironmentVariable(FS_ROOT).map(root -> new ClassDataArchives(Paths.get(root, CDS_DIRNAME), VERIFIER))
+        : Optional.empty();
+  }
+
+  /**
+   * Gets a VM's diagnostics directory, {@code $FS_ROOT/diagnostics/<name>}.
+   * @param vm The VM.
+   * @return The directory; relative to the working directory if {@code FS_ROOT} is not set.
+   */
+  private static Path diagnosticsDir(final VmConfig vm)
+  {
+    return getEnvironmentVariable(FS_ROOT)
+        .map(root -> Paths.get(root, DIAGNOSTICS_DIRNAME, vm.getName()))
+        .orElseGet(() -> Paths.get(DIAGNOSTICS_DIRNAME, vm.getName()).toAbsolutePath());
+  }
+
+  /**
+   * Prepares the diagnostics directory of each VM in a configuration that has a diagnostics profile,
+   * deleting any heap dumps beyond those it keeps.
+   * @param cfg The configuration.
+   * @throws IOException If a directory cannot be prepared.
+   */
+  private static void prepareDiagnostics(final FirestarterConfig cfg) throws IOException
+  {
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      if (vm.getDiagnostics().isEnabled())
+      {
+        vm.getDiagnostics().prepare(diagnosticsDir(vm));
+      }
+    }
+  }
+
+  /**
+   * Gets the jar (or class directory) that Firestarter itself was loaded from.  A native build has no
+   * jar of its own, so it uses the one that {@code FS_JAR} names, as warm standbys run the bootstrap on
+   * a VM.
+   * @return The path.
+   */
+  private static Path getOwnJar()
+  {
+    final CodeSource source = StandbyBootstrap.class.getProtectionDomain().getCodeSource();
+    if (source == null)
+    {
+      return getEnvironmentVariable(FS_JAR)
+          .map(Paths::get)
+          .orElseThrow(() -> new IllegalStateException("a native build needs " + FS_JAR + " for warm standbys"));
+    }
+
+    try
+    {
+      return Paths.get(source.getLocation().toURI());
+    }
+    catch (URISyntaxException e)
+    {
+      throw new IllegalStateException("cannot locate the firestarter jar", e);
+    }
+  }
+
+  /**
+   * Assembles the command for a single VM.
+   * @param locator The jar locator.
+   * @param cfg The overarching configuration.
+   * @param vm The VM details.
+   * @param plan The VM's resource plan.
+   * @param archives The class data archives, if class data is shared.
+   * @param standby True for the command that starts the VM's warm standby.
+   * @return The command, as an argument vector.
+   * @throws FileNotFoundException If the jar file cannot be found.
+   */
+  private static List<String> command(final JarLocator locator,
+                                      final FirestarterConfig cfg,
+                                      final VmConfig vm,
+                                      final VmPlan plan,
+                                      final Optional<ClassDataArchives> archives,
+                                      final boolean standby) throws FileNotFoundException
+  {
+    final Path jar = locator.locate(vm.getJar()).orElseThrow(() -> new FileNotFoundException(vm.getJar()));
     final List<String> cmd = new ArrayList<>();
 
+    if (plan.getNumaNode().isPresent())
+    {
+      cmd.add("numactl");
+      cmd.add(String.format("--membind=%d", plan.getNumaNode().get()));
+      cmd.add(plan.getCpus().isEmpty()
+                  ? String.format("--cpunodebind=%d", plan.getNumaNode().get())
+                  : String.format("--physcpubind=%s", plan.getCpuList()));
+    }
+    else if (!plan.getCpus().isEmpty())
+    {
+      cmd.add("taskset");
+      cmd.add("-c");
+      cmd.add(plan.getCpuList());
+    }
+
     cmd.add("java");
     cmd.add("-server");
-    cmd.add("-XX:+UseConcMarkSweepGC");
+    cmd.addAll(vm.getGc().flags(cfg.getTargetJdk()));
+
+    if (plan.isSpanningNodes() && vm.getGc().isNumaAware(cfg.getTargetJdk()))
+    {
+      cmd.add("-XX:+UseNUMA");
+    }
+
+    archives.ifPresent(cds -> cmd.addAll(cds.flags(jar, cfg.getTargetJdk())));
+    cmd.addAll(vm.getDiagnostics().flags(diagnosticsDir(vm), cfg.getTargetJdk(), standby));
     cmd.add("-XX:+HeapDumpOnOutOfMemoryError");
 
-    final Optional<String> fsRoot = getEnvironmentVariable(FS_ROOT);
-    fsRoot.ifPresent(root -> cmd.add(String.format("-XX:HeapDumpPath=%s", root)));
+    if (vm.getDiagnostics().isHeapDumps())
+    {
+      cmd.add(String.format("-XX:HeapDumpPath=%s", vm.getDiagnostics().getHeapDumpDir(diagnosticsDir(vm))));
+    }
+    else
+    {
+      final Optional<String> fsRoot = getEnvironmentVariable(FS_ROOT);
+      fsRoot.ifPresent(root -> cmd.add(String.format("-XX:HeapDumpPath=%s", root)));
+    }
+
+    cmd.add(String.format("-Xms%dM", plan.getHeap()));
+    cmd.add(String.format("-Xmx%dM", plan.getHeap()));
 
-    cmd.add(String.format("-Xms%dM", vm.getHeap()));
-    cmd.add(String.format("-Xmx%dM", vm.getHeap()));
+    if (!plan.getCpus().isEmpty())
+    {
+      cmd.add(String.format("-XX:ActiveProcessorCount=%d", plan.getCpus().size()));
+    }
 
     cmd.add(String.format("-Dfirestarter.vmname=%s", vm.getName()));
 
     cmd.addAll(
         vm.getProperties().entrySet().stream()
-            .map(entry -> String.format("\"-D%s=%s\"", entry.getKey(), entry.getValue()))
+            .map(entry -> String.format(PROPERTY_FORMAT, entry.getKey(), entry.getValue()))
             .collect(Collectors.toList()));
 
-    cmd.add("-jar");
-    cmd.add(
-        locator.locate(vm.getJar())
-            .map(Path::toString)
-            .orElseThrow(() -> new FileNotFoundException(vm.getJar())));
+    if (standby)
+    {
+      vm.getStandby().get().getWarmup().ifPresent(
+          warmup -> cmd.add(String.format(PROPERTY_FORMAT, StandbyBootstrap.WARMUP_PROPERTY, warmup)));
+      cmd.add("-cp");
+      cmd.add(getOwnJar().toString());
+      cmd.add(StandbyBootstrap.class.getName());
+      cmd.add(jar.toString());
+    }
+    else
+    {
+      cmd.add("-jar");
+      cmd.add(jar.toString());
+    }
 
     cmd.addAll(vm.getArguments());
 
-    return cmd.stream().collect(Collectors.joining(" "));
+    return cmd;
+  }
+
+  /**
+   * Gets the jar search root directory.
+   * @return The root directory.
+   * @throws IOException If {@code FS_ROOT} is not set.
+   */
+  private static Path getRoot() throws IOException
+  {
+    return getEnvironmentVariable(FS_ROOT)
+        .map(Paths::get)
+        .orElseThrow(() -> new IOException(FS_ROOT + " is not set"));
   }
 
   /**
@@ -147,7 +901,53 @@ public class Firestarter
    */
   private static void usage()
   {
-    System.err.println("fs.sh <config>");
+    System.err.println("fs.sh [options] <config>");
+    System.err.println("fs.sh --agent [<host>:]<port> [options]");
+    System.err.println("fs.sh --daemon [options] | --status | --stop");
+    System.err.println("  --launch             start the VMs directly rather than printing their command lines");
+    System.err.println("  --supervise          start the VMs and keep them running, restarting any that exit");
+    System.err.println("  --parallelism <n>    the maximum number of VMs started at once (default: cpu count)");
+    System.err.println("  --watch              supervise, and roll out changes to the config and its includes");
+    System.err.println("  --batch-size <n>     the VMs restarted at once when a watched config changes");
+    System.err.println("  --logs <dir>         the per-VM log file directory (default: $" + FS_ROOT + "/logs)");
+    System.err.println("  --metrics <file>     write startup timings (JSON for *.json, else Prometheus text)");
+    System.err.println("  --telemetry <port>   supervise, serving each VM's resource use on a loopback port");
+    System.err.println("  --cluster            spread the VMs across the cluster's hosts, via their agents");
+    System.err.println("  --agent <address>    run the VMs a --cluster run sends (default host: loopback)");
+    System.err.println("  --format <format>    print the commands as shell lines (default), nul fields or json");
+    System.err.println("  --daemon             stay resident, answering later fs.sh commands without a new VM");
     System.err.println("Environment variable '" + FS_ROOT + "' must be set to the jar search root directory.");
+    System.err.println("An agent beyond loopback requires the token in '" + CLUSTER_TOKEN + "'.");
+  }
+
+  /**
+   * The jars found by a single search, resolved without searching again.
+   */
+  private static class LocatedJars implements JarLocator
+  {
+    /** The jar paths, keyed by filename. */
+    private final ImmutableMap<String, Path> jars;
+
+    /**
+     * Constructor.
+     * @param jars The jar paths, keyed by filename.
+     */
+    public LocatedJars(final Map<String, Path> jars)
+    {
+      this.jars = ImmutableMap.copyOf(jars);
+    }
+
+    /**
+     * Locates the jar of the specified filename.
+     * @param filename The filename.
+     * @return The path to the jar file, or absent if the search did not find it.
+     */
+    @Override
+    public Optional<Path> locate(final String filename)
+    {
+      Preconditions.checkNotNull(filename, "filename cannot be null");
+
+      return Optional.ofNullable(this.jars.get(filename));
+    }
   }
 }
@@ -26,9 +26,16 @@ package com.fatboyindustrial.firestarter;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigValue;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -42,20 +49,62 @@ public class FirestarterConfig
   /** VM details. */
   private final ImmutableList<VmConfig> jvms;
 
+  /** The feature release of the JDK that runs the VMs, if not the one running Firestarter. */
+  private final Optional<Integer> jdk;
+
+  /** The node budgeting settings. */
+  private final NodeConfig node;
+
+  /** True to have the VMs share class data through per-jar archives. */
+  private final boolean classDataSharing;
+
+  /** The way the jars are staged before the VMs start. */
+  private final StagingConfig staging;
+
+  /**
+   * Constructor.
+   * @param name The configuration name.
+   * @param jvms The JVM configuration details.
+   * @throws IllegalArgumentException If the VM dependencies are unknown or cyclic.
+   */
+  public FirestarterConfig(final String name, final List<VmConfig> jvms) throws IllegalArgumentException
+  {
+    this(name, jvms, Optional.empty(), NodeConfig.DEFAULT, false, StagingConfig.NONE);
+  }
+
   /**
    * Constructor.
    * @param name The configuration name.
    * @param jvms The JVM configuration details.
+   * @param jdk The feature release of the JDK that runs the VMs, if not the one running Firestarter.
+   * @param node The node budgeting settings.
+   * @param classDataSharing True to have the VMs share class data through per-jar archives.
+   * @param staging The way the jars are staged before the VMs start.
+   * @throws IllegalArgumentException If the VM dependencies are unknown or cyclic.
    */
-  public FirestarterConfig(final String name, final List<VmConfig> jvms)
+  public FirestarterConfig(final String name,
+                           final List<VmConfig> jvms,
+                           final Optional<Integer> jdk,
+                           final NodeConfig node,
+                           final boolean classDataSharing,
+                           final StagingConfig staging) throws IllegalArgumentException
   {
     Preconditions.checkNotNull(name, "name cannot be null");
     Preconditions.checkNotNull(jvms, "jvms cannot be null");
+    Preconditions.checkNotNull(jdk, "jdk cannot be null");
+    Preconditions.checkNotNull(node, "node cannot be null");
+    Preconditions.checkNotNull(staging, "staging cannot be null");
 
     Preconditions.checkArgument(name.indexOf(' ') == -1, "FirestarterConfig.name cannot contain spaces");
 
     this.name = name;
     this.jvms = ImmutableList.copyOf(jvms);
+    this.jdk = jdk;
+    this.node = node;
+    this.classDataSharing = classDataSharing;
+    this.staging = staging;
+
+    StartupScheduler.layers(this.jvms);                  // validates the dependencies between VMs
   }
 
   /**
@@ -69,19 +118,31 @@ public class FirestarterConfig
     Preconditions.checkNotNull(hocon, "hocon cannot be null");
 
     final Config resolved = hocon.resolve();
-    final Config jvms = resolved.getConfig("jvms");
 
-    final List<String> vmKeys = jvms.entrySet().stream()
-        .map(Map.Entry::getKey)
-        .map(str -> str.substring(0, str.indexOf('.')))
-        .distinct()
-        .collect(Collectors.toList());
+    // Each VM is a direct child of the jvms object, so one pass over its entries finds them all.  They
+    // are taken in name order, as HOCON objects are unordered.  A top level diagnostics profile applies
+    // to every VM, merged beneath any profile the VM gives itself.
+
+    final Config defaults = resolved.hasPath("diagnostics")
+        ? ConfigFactory.empty().withValue("diagnostics", resolved.getValue("diagnostics"))
+        : ConfigFactory.empty();
+
+    final List<VmConfig> jvms = new ArrayList<>();
+    for (final Map.Entry<String, ConfigValue> entry : new TreeMap<>(resolved.getObject("jvms")).entrySet())
+    {
+      Preconditions.checkArgument(entry.getValue() instanceof ConfigObject,
+                                  "jvms." + entry.getKey() + " must be an object");
+      final Config vmConfig = ((ConfigObject) entry.getValue()).toConfig().withFallback(defaults);
+      jvms.add(VmConfig.fromConfig(entry.getKey(), vmConfig));
+    }
 
     return new FirestarterConfig(
         resolved.getString("name"),
-        vmKeys.stream()
-            .map(key -> VmConfig.fromConfig(key, jvms.getConfig(key)))
-            .collect(Collectors.toList()));
+        jvms,
+        resolved.hasPath("jdk") ? Optional.of(resolved.getInt("jdk")) : Optional.empty(),
+        resolved.hasPath("node") ? NodeConfig.fromConfig(resolved.getConfig("node")) : NodeConfig.DEFAULT,
+        resolved.hasPath("cds") && resolved.getBoolean("cds"),
+        resolved.hasPath("staging") ? StagingConfig.fromConfig(resolved) : StagingConfig.NONE);
   }
 
   /**
@@ -101,4 +162,69 @@ public class FirestarterConfig
   {
     return this.jvms;
   }
+
+  /**
+   * Gets the configuration restricted to some of its VMs, such as the share placed on one host of a
+   * cluster.
+   * @param names The names of the VMs to keep.
+   * @return The restricted configuration, with the VMs in their original order.
+   * @throws IllegalArgumentException If a kept VM depends on one that is not kept.
+   */
+  public FirestarterConfig select(final Collection<String> names) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(names, "names cannot be null");
+
+    return new FirestarterConfig(
+        this.name,
+        this.jvms.stream().filter(vm -> names.contains(vm.getName())).collect(Collectors.toList()),
+        this.jdk,
+        this.node,
+        this.classDataSharing,
+        this.staging);
+  }
+
+  /**
+   * Gets the feature release of the JDK that runs the VMs.
+   * @return The configured release, or absent to use the JDK running Firestarter.
+   */
+  public Optional<Integer> getJdk()
+  {
+    return this.jdk;
+  }
+
+  /**
+   * Gets the feature release of the JDK that runs the VMs, defaulting to the JDK running Firestarter.
+   * @return The target release.
+   */
+  public int getTargetJdk()
+  {
+    return this.jdk.orElseGet(JavaVersion::current);
+  }
+
+  /**
+   * Gets the node budgeting settings.
+   * @return The node settings.
+   */
+  public NodeConfig getNode()
+  {
+    return this.node;
+  }
+
+  /**
+   * Determines whether the VMs share class data through per-jar archives.
+   * @return True for class data sharing.
+   */
+  public boolean isClassDataSharing()
+  {
+    return this.classDataSharing;
+  }
+
+  /**
+   * Gets the way the jars are staged before the VMs start.
+   * @return The staging settings.
+   */
+  public StagingConfig getStaging()
+  {
+    return this.staging;
+  }
 }
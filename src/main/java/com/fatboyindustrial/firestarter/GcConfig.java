@@ -0,0 +1,330 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A VM's garbage collector profile.  Each collector carries sensible defaults, and the flags emitted
+ * depend on the target JDK so that a profile never produces an option the VM would reject.
+ */
+public class GcConfig
+{
+  /** The profile used when none is configured. */
+  public static final GcConfig DEFAULT =
+      new GcConfig(Collector.DEFAULT, Optional.empty(), Optional.empty(), ImmutableList.of());
+
+  /** The default pause time goal for collectors that accept one, in milliseconds. */
+  public static final long DEFAULT_PAUSE_TARGET_MILLIS = 200;
+
+  /** One megabyte. */
+  @SuppressWarnings("MagicNumber")
+  private static final long MEGABYTES = 1024 * 1024;
+
+  /**
+   * The garbage collectors.
+   */
+  public enum Collector
+  {
+    /** The JVM's own choice; CMS on JDK 8 (as Firestarter has always used), and the JVM default after. */
+    DEFAULT,
+
+    /** The garbage-first collector. */
+    G1,
+
+    /** The Z collector (JDK 11+). */
+    ZGC,
+
+    /** The Shenandoah collector (JDK 12+). */
+    SHENANDOAH,
+
+    /** The throughput collector. */
+    PARALLEL,
+
+    /** The concurrent mark sweep collector (removed in JDK 14). */
+    CMS,
+
+    /** No collector selection; only the given flags. */
+    CUSTOM
+  }
+
+  /** The collector. */
+  private final Collector collector;
+
+  /** The pause time goal, in milliseconds. */
+  private final Optional<Long> pauseTargetMillis;
+
+  /** The G1 region size, in MB. */
+  private final Optional<Integer> regionSize;
+
+  /** Additional flags, emitted verbatim. */
+  private final ImmutableList<String> flags;
+
+  /**
+   * Constructor.
+   * @param collector The collector.
+   * @param pauseTargetMillis The pause time goal, in milliseconds; absent for the collector's default.
+   * @param regionSize The G1 region size, in MB; absent to let G1 choose.
+   * @param flags Additional flags, emitted verbatim.
+   */
+  public GcConfig(final Collector collector,
+                  final Optional<Long> pauseTargetMillis,
+                  final Optional<Integer> regionSize,
+                  final List<String> flags)
+  {
+    Preconditions.checkNotNull(collector, "collector cannot be null");
+    Preconditions.checkNotNull(pauseTargetMillis, "pauseTargetMillis cannot be null");
+    Preconditions.checkNotNull(regionSize, "regionSize cannot be null");
+    Preconditions.checkNotNull(flags, "flags cannot be null");
+
+    Preconditions.checkArgument(pauseTargetMillis.orElse(1L) > 0, "GcConfig.pauseTarget must be > 0");
+    Preconditions.checkArgument(!regionSize.isPresent() || collector == Collector.G1,
+                                "GcConfig.regionSize only applies to G1");
+    Preconditions.checkArgument(regionSize.map(size -> size > 0 && Integer.bitCount(size) == 1).orElse(true),
+                                "GcConfig.regionSize must be a power of two but was: " + regionSize.orElse(0));
+
+    this.collector = collector;
+    this.pauseTargetMillis = pauseTargetMillis;
+    this.regionSize = regionSize;
+    this.flags = ImmutableList.copyOf(flags);
+  }
+
+  /**
+   * Creates a GC config from the given HOCON value, which is either a collector name or an object
+   * holding {@code collector}, and optionally {@code pauseTarget}, {@code regionSize} and {@code flags}.
+   * @param vmConfig The VM configuration holding the {@code gc} value.
+   * @return The GC config.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static GcConfig fromConfig(final Config vmConfig) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(vmConfig, "vmConfig cannot be null");
+
+    if (vmConfig.getValue("gc").valueType() == ConfigValueType.STRING)
+    {
+      return new GcConfig(collector(vmConfig.getString("gc")), Optional.empty(), Optional.empty(), ImmutableList.of());
+    }
+
+    final Config gc = vmConfig.getConfig("gc");
+
+    return new GcConfig(
+        collector(gc.getString("collector")),
+        gc.hasPath("pauseTarget")
+            ? Optional.of(gc.getDuration("pauseTarget", TimeUnit.MILLISECONDS))
+            : Optional.empty(),
+        gc.hasPath("regionSize") ? Optional.of((int) (gc.getBytes("regionSize") / MEGABYTES)) : Optional.empty(),
+        gc.hasPath("flags") ? gc.getStringList("flags") : ImmutableList.of());
+  }
+
+  /**
+   * Parses a collector name.
+   * @param name The name (case insensitive).
+   * @return The collector.
+   * @throws IllegalArgumentException If the name is not a known collector.
+   */
+  private static Collector collector(final String name) throws IllegalArgumentException
+  {
+    return Collector.valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Gets the JVM flags for this profile.
+   * @param jdk The feature release of the target JDK.
+   * @return The flags.
+   * @throws IllegalArgumentException If the collector is not available in the target JDK.
+   */
+  public ImmutableList<String> flags(final int jdk) throws IllegalArgumentException
+  {
+    final List<String> cmd = new ArrayList<>();
+
+    switch (this.collector)
+    {
+      case DEFAULT:
+        if (jdk < 9)
+        {
+          cmd.add("-XX:+UseConcMarkSweepGC");
+        }
+        break;
+
+      case G1:
+        cmd.add("-XX:+UseG1GC");
+        cmd.add(String.format("-XX:MaxGCPauseMillis=%d", this.pauseTargetMillis.orElse(DEFAULT_PAUSE_TARGET_MILLIS)));
+        this.regionSize.ifPresent(size -> cmd.add(String.format("-XX:G1HeapRegionSize=%dM", size)));
+        break;
+
+      case ZGC:
+        requires(jdk, 11);
+        if (jdk < 15)
+        {
+          cmd.add("-XX:+UnlockExperimentalVMOptions");
+        }
+        cmd.add("-XX:+UseZGC");
+        if (jdk >= 21 && jdk < 23)
+        {
+          cmd.add("-XX:+ZGenerational");
+        }
+        break;
+
+      case SHENANDOAH:
+        requires(jdk, 12);
+        if (jdk < 15)
+        {
+          cmd.add("-XX:+UnlockExperimentalVMOptions");
+        }
+        cmd.add("-XX:+UseShenandoahGC");
+        break;
+
+      case PARALLEL:
+        cmd.add("-XX:+UseParallelGC");
+        this.pauseTargetMillis.ifPresent(target -> cmd.add(String.format("-XX:MaxGCPauseMillis=%d", target)));
+        break;
+
+      case CMS:
+        Preconditions.checkArgument(jdk < 14, "the CMS collector was removed in JDK 14; target is JDK " + jdk);
+        cmd.add("-XX:+UseConcMarkSweepGC");
+        break;
+
+      case CUSTOM:
+        break;
+
+      default:
+        throw new IllegalStateException("unhandled collector: " + this.collector);
+    }
+
+    cmd.addAll(this.flags);
+
+    return ImmutableList.copyOf(cmd);
+  }
+
+  /**
+   * Determines whether the collector can use a NUMA-aware heap ({@code -XX:+UseNUMA}) on the given
+   * JDK.  Custom profiles are left to their own flags.
+   * @param jdk The feature release of the target JDK.
+   * @return True if the collector is NUMA-aware.
+   */
+  public boolean isNumaAware(final int jdk)
+  {
+    switch (this.collector)
+    {
+      case DEFAULT:
+      case G1:
+        return jdk >= 14;       // G1 (the default since JDK 9) became NUMA-aware in JDK 14
+
+      case ZGC:
+      case PARALLEL:
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Checks that the target JDK is recent enough for the collector.
+   * @param jdk The feature release of the target JDK.
+   * @param minimum The first feature release with the collector.
+   * @throws IllegalArgumentException If the target JDK is too old.
+   */
+  private void requires(final int jdk, final int minimum) throws IllegalArgumentException
+  {
+    Preconditions.checkArgument(
+        jdk >= minimum, "the " + this.collector + " collector requires JDK " + minimum + "+; target is JDK " + jdk);
+  }
+
+  /**
+   * Gets the collector.
+   * @return The collector.
+   */
+  public Collector getCollector()
+  {
+    return this.collector;
+  }
+
+  /**
+   * Gets the pause time goal.
+   * @return The pause time goal in milliseconds, or absent for the collector's default.
+   */
+  public Optional<Long> getPauseTargetMillis()
+  {
+    return this.pauseTargetMillis;
+  }
+
+  /**
+   * Gets the G1 region size.
+   * @return The region size in MB, or absent to let G1 choose.
+   */
+  public Optional<Integer> getRegionSize()
+  {
+    return this.regionSize;
+  }
+
+  /**
+   * Gets the additional flags.
+   * @return The flags.
+   */
+  public ImmutableList<String> getFlags()
+  {
+    return this.flags;
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal GcConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof GcConfig))
+    {
+      return false;
+    }
+
+    final GcConfig other = (GcConfig) obj;
+    return this.collector == other.collector
+        && this.pauseTargetMillis.equals(other.pauseTargetMillis)
+        && this.regionSize.equals(other.regionSize)
+        && this.flags.equals(other.flags);
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.collector, this.pauseTargetMillis, this.regionSize, this.flags);
+  }
+}
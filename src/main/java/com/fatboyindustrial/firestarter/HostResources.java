@@ -0,0 +1,283 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The memory and processors available to the VMs on this node.
+ */
+public class HostResources
+{
+  /** cgroup v1 reports an unlimited memory limit as a value near this. */
+  private static final long CGROUP_V1_UNLIMITED = Long.MAX_VALUE / 2;
+
+  /** One kilobyte. */
+  @SuppressWarnings("MagicNumber")
+  private static final long KILOBYTES = 1024;
+
+  /** The usable memory, in bytes. */
+  private final long memoryBytes;
+
+  /** The usable processors. */
+  private final int cpus;
+
+  /** The processors this process may run on. */
+  private final ImmutableList<Integer> allowedCpus;
+
+  /** The NUMA topology. */
+  private final NumaTopology topology;
+
+  /**
+   * Constructor, for a node without NUMA information.
+   * @param memoryBytes The usable memory, in bytes.
+   * @param cpus The usable processors.
+   */
+  public HostResources(final long memoryBytes, final int cpus)
+  {
+    this(memoryBytes, cpus, NumaTopology.NONE);
+  }
+
+  /**
+   * Constructor, for a node whose processors are numbered from zero and may all be used.
+   * @param memoryBytes The usable memory, in bytes.
+   * @param cpus The usable processors.
+   * @param topology The NUMA topology.
+   */
+  public HostResources(final long memoryBytes, final int cpus, final NumaTopology topology)
+  {
+    this(memoryBytes, cpus, numbered(cpus), topology);
+  }
+
+  /**
+   * Constructor.
+   * @param memoryBytes The usable memory, in bytes.
+   * @param cpus The usable processors.
+   * @param allowedCpus The processors this process may run on.
+   * @param topology The NUMA topology.
+   */
+  public HostResources(final long memoryBytes,
+                       final int cpus,
+                       final List<Integer> allowedCpus,
+                       final NumaTopology topology)
+  {
+    Preconditions.checkNotNull(allowedCpus, "allowedCpus cannot be null");
+    Preconditions.checkNotNull(topology, "topology cannot be null");
+
+    Preconditions.checkArgument(memoryBytes > 0, "memoryBytes must be > 0 but was: " + memoryBytes);
+    Preconditions.checkArgument(cpus > 0, "cpus must be > 0 but was: " + cpus);
+    Preconditions.checkArgument(!allowedCpus.isEmpty(), "allowedCpus cannot be empty");
+
+    this.memoryBytes = memoryBytes;
+    this.cpus = cpus;
+    this.allowedCpus = ImmutableList.copyOf(allowedCpus);
+    this.topology = topology;
+  }
+
+  /**
+   * Detects the resources of this node: the lesser of physical memory and any cgroup memory limit, the
+   * processors available to this process (which the JVM already limits by cgroup quota and affinity),
+   * and which processors those are.
+   * @return The resources.
+   */
+  public static HostResources detect()
+  {
+    return detect(Paths.get("/"), Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Detects the resources of this node, reading {@code /proc} and {@code /sys} beneath the given root.
+   * @param root The file system root.
+   * @param cpus The usable processors.
+   * @return The resources.
+   */
+  public static HostResources detect(final Path root, final int cpus)
+  {
+    Preconditions.checkNotNull(root, "root cannot be null");
+
+    long memory = physicalMemory(root);
+
+    for (final Path limit : new Path[] {
+        root.resolve("sys/fs/cgroup/memory.max"),                          // cgroup v2
+        root.resolve("sys/fs/cgroup/memory/memory.limit_in_bytes") })      // cgroup v1
+    {
+      final Optional<Long> bytes = readLong(limit);
+      if (bytes.isPresent() && bytes.get() > 0 && bytes.get() < CGROUP_V1_UNLIMITED)
+      {
+        memory = Math.min(memory, bytes.get());
+      }
+    }
+
+    return new HostResources(memory, cpus, allowedCpus(root, cpus), NumaTopology.detect(root));
+  }
+
+  /**
+   * Reads the processors this process may run on: its affinity from {@code /proc/self/status}, which
+   * the kernel already narrows to its cpuset, or failing that the cgroup v2 effective cpuset.
+   * @param root The file system root.
+   * @param cpus The usable processors, numbered from zero if neither source is available.
+   * @return The processor numbers, in ascending order.
+   */
+  private static ImmutableList<Integer> allowedCpus(final Path root, final int cpus)
+  {
+    try
+    {
+      for (final String line : Files.readAllLines(root.resolve("proc/self/status"), Charsets.US_ASCII))
+      {
+        if (line.startsWith("Cpus_allowed_list:"))
+        {
+          final ImmutableList<Integer> allowed = CpuList.parse(line.substring(line.indexOf(':') + 1).trim());
+          if (!allowed.isEmpty())
+          {
+            return allowed;
+          }
+        }
+      }
+    }
+    catch (IOException | IllegalArgumentException e)
+    {
+      // fall through to the cgroup
+    }
+
+    try
+    {
+      final ImmutableList<Integer> allowed = CpuList.parse(new String(
+          Files.readAllBytes(root.resolve("sys/fs/cgroup/cpuset.cpus.effective")), Charsets.US_ASCII).trim());
+      if (!allowed.isEmpty())
+      {
+        return allowed;
+      }
+    }
+    catch (IOException | IllegalArgumentException e)
+    {
+      // fall through to the processor count
+    }
+
+    return numbered(cpus);
+  }
+
+  /**
+   * Lists processors numbered from zero.
+   * @param cpus The processor count.
+   * @return The processor numbers {@code 0} to {@code cpus - 1}.
+   */
+  private static ImmutableList<Integer> numbered(final int cpus)
+  {
+    return IntStream.range(0, cpus).boxed()
+        .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+  }
+
+  /**
+   * Reads the physical memory size, from {@code /proc/meminfo} where available.
+   * @param root The file system root.
+   * @return The physical memory, in bytes.
+   */
+  @SuppressWarnings("deprecation")
+  private static long physicalMemory(final Path root)
+  {
+    try
+    {
+      final List<String> lines = Files.readAllLines(root.resolve("proc/meminfo"), Charsets.US_ASCII);
+      for (final String line : lines)
+      {
+        if (line.startsWith("MemTotal:"))
+        {
+          return Long.parseLong(line.replaceAll("[^0-9]", "")) * KILOBYTES;
+        }
+      }
+    }
+    catch (IOException | NumberFormatException e)
+    {
+      // fall through to the platform's own view
+    }
+
+    return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+        .getTotalPhysicalMemorySize();
+  }
+
+  /**
+   * Reads a file holding a single integer.
+   * @param file The file.
+   * @return The value, or absent if the file is missing or does not hold an integer (such as "max").
+   */
+  private static Optional<Long> readLong(final Path file)
+  {
+    try
+    {
+      return Optional.of(Long.parseLong(new String(Files.readAllBytes(file), Charsets.US_ASCII).trim()));
+    }
+    catch (IOException | NumberFormatException e)
+    {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Gets the usable memory.
+   * @return The memory, in bytes.
+   */
+  public long getMemoryBytes()
+  {
+    return this.memoryBytes;
+  }
+
+  /**
+   * Gets the usable processors.
+   * @return The processor count.
+   */
+  public int getCpus()
+  {
+    return this.cpus;
+  }
+
+  /**
+   * Gets the processors this process may run on, which need not be numbered from zero.
+   * @return The processor numbers, in ascending order.
+   */
+  public ImmutableList<Integer> getAllowedCpus()
+  {
+    return this.allowedCpus;
+  }
+
+  /**
+   * Gets the NUMA topology.
+   * @return The topology; {@link NumaTopology#NONE} if it is not known.
+   */
+  public NumaTopology getTopology()
+  {
+    return this.topology;
+  }
+}
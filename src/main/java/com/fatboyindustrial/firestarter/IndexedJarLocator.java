@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A jar locator that walks the search root once, building a filename to path index that is then used
+ * to satisfy every lookup. <p>
+ *
+ * The index resolves duplicate filenames in the same way as the {@link DepthFirstJarLocator}: the
+ * file in the directory that the depth-first search would have visited first wins.
+ */
+public class IndexedJarLocator implements JarLocator
+{
+  /** The starting point for all searches. */
+  private final Path searchRoot;
+
+  /** The filename index, built on first use. */
+  private ImmutableMap<String, Path> index;
+
+  /** The number of directories read. */
+  private final AtomicLong scanned = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param searchRoot The starting point for all searches.
+   */
+  public IndexedJarLocator(final Path searchRoot)
+  {
+    this.searchRoot = Preconditions.checkNotNull(searchRoot, "searchRoot cannot be null");
+  }
+
+  /**
+   * Locates the jar of the specified filename.
+   * @param filename The filename.
+   * @return The path to the jar file, or absent.
+   */
+  @Override
+  public Optional<Path> locate(final String filename)
+  {
+    Preconditions.checkNotNull(filename, "filename cannot be null");
+
+    return Optional.ofNullable(getIndex().get(filename));
+  }
+
+  /**
+   * Gets the number of directories this locator has read so far.
+   * @return The number of directories read.
+   */
+  @Override
+  public long getDirectoriesScanned()
+  {
+    return this.scanned.get();
+  }
+
+  /**
+   * Gets the filename index, walking the search root if it has not yet been built.
+   * @return The filename index.
+   */
+  private synchronized ImmutableMap<String, Path> getIndex()
+  {
+    if (this.index == null)
+    {
+      this.index = buildIndex(this.searchRoot.toAbsolutePath());
+    }
+
+    return this.index;
+  }
+
+  /**
+   * Walks the given directory tree and builds the filename index. <p>
+   *
+   * The walk interleaves files and directories in directory listing order, whereas the depth-first
+   * search examines all of a directory's files before descending.  To reproduce its result each
+   * directory is numbered in pre-order (which is the order the depth-first search enters them) and a
+   * filename already indexed is only replaced by one from a directory with a lower number.
+   * @param root The directory to walk.
+   * @return The filename index.
+   */
+  private ImmutableMap<String, Path> buildIndex(final Path root)
+  {
+    final Map<String, Path> paths = new HashMap<>();
+    final Map<String, Integer> ordinals = new HashMap<>();
+    final Deque<Integer> current = new ArrayDeque<>();
+
+    try
+    {
+      final EnumSet<FileVisitOption> options = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+      Files.walkFileTree(root, options, Integer.MAX_VALUE, new SimpleFileVisitor<Path>()
+      {
+        /** The number of directories entered so far. */
+        private int entered;
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+        {
+          current.push(this.entered++);
+          IndexedJarLocator.this.scanned.incrementAndGet();
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+        {
+          if (attrs.isRegularFile())
+          {
+            final String filename = file.getFileName().toString();
+            final Integer ordinal = current.peek();
+            final Integer existing = ordinals.get(filename);
+
+            if (existing == null || existing > ordinal)
+            {
+              paths.put(filename, file);
+              ordinals.put(filename, ordinal);
+            }
+          }
+
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e)
+        {
+          // Unreadable entries and symbolic link cycles are skipped rather than aborting the walk.
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(final Path dir, final IOException e)
+        {
+          current.pop();
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    catch (IOException e)
+    {
+      // The visitor never aborts, so this can only arise from the root itself; treat it as empty.
+      return ImmutableMap.of();
+    }
+
+    return ImmutableMap.copyOf(paths);
+  }
+}
@@ -1,7 +1,10 @@
 package com.fatboyindustrial.firestarter;
 
+import com.google.common.collect.ImmutableMap;
+
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * A strategy for locating jar files.
@@ -14,4 +17,31 @@ public interface JarLocator
    * @return The path to the jar file, or absent.
    */
   public Optional<Path> locate(String filename);
+
+  /**
+   * Locates the jars of the specified filenames.  The default implementation locates each in turn;
+   * strategies that can resolve several filenames in a single search should override it.
+   * @param filenames The filenames.
+   * @return The paths to the jar files that were found, keyed by filename.
+   */
+  public default ImmutableMap<String, Path> locateAll(final Set<String> filenames)
+  {
+    final ImmutableMap.Builder<String, Path> paths = ImmutableMap.builder();
+
+    for (final String filename : filenames)
+    {
+      locate(filename).ifPresent(path -> paths.put(filename, path));
+    }
+
+    return paths.build();
+  }
+
+  /**
+   * Gets the number of directories this locator has read so far.
+   * @return The number of directories read, or zero if the locator does not count them.
+   */
+  public default long getDirectoriesScanned()
+  {
+    return 0;
+  }
 }
@@ -0,0 +1,722 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Verifies that jars are intact before any VM is started from them, so that a corrupt or half-copied
+ * jar fails the run up front rather than failing a VM at startup. <p>
+ *
+ * A jar is intact if its end of central directory record is where the zip format puts it, the central
+ * directory and first local header it points to are present, and the data of every entry matches the
+ * CRC-32 that the central directory records for it; a truncated copy fails the first checks, and one
+ * damaged within fails the last.  Encrypted entries, entries neither stored nor deflated, and entries
+ * of zip64 archives are not checked against their CRC-32.  Each jar is read through a memory mapping,
+ * and its SHA-256 hash is taken as well, to name its contents.  Results are cached by path, size and
+ * modification time, so an unchanged jar is read only once; with a cache file, the cache is kept
+ * across runs, and if that file cannot be read or written the verifier carries on without it.
+ */
+public class JarVerifier
+{
+  /** The name of the cache file kept in the search root. */
+  public static final String CACHE_FILENAME = ".firestarter.sums";
+
+  /** Cache file magic number ("FSVS"). */
+  private static final int MAGIC = 0x46535653;
+
+  /** Cache file format version. */
+  private static final int VERSION = 1;
+
+  /** The signature of a local file header. */
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+  /** The signature of a central directory header. */
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+  /** The size of a local file header, without its name and extra field. */
+  private static final int LOCAL_HEADER_LENGTH = 30;
+
+  /** The size of a central directory header, without its name, extra field and comment. */
+  private static final int CENTRAL_HEADER_LENGTH = 46;
+
+  /** The general purpose flag of an encrypted entry. */
+  private static final int ENCRYPTED_FLAG = 0x1;
+
+  /** The compression method of a stored entry. */
+  private static final int STORED = 0;
+
+  /** The compression method of a deflated entry. */
+  private static final int DEFLATED = 8;
+
+  /** The signature of the end of central directory record. */
+  private static final int END_SIGNATURE = 0x06054b50;
+
+  /** The size of the end of central directory record, without its comment. */
+  private static final int END_LENGTH = 22;
+
+  /** The longest comment the end of central directory record can carry. */
+  private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+  /** The value of a 32 bit field that has overflowed into the zip64 records. */
+  private static final long ZIP64_MARKER = 0xffffffffL;
+
+  /** The most bytes mapped at once while hashing. */
+  private static final long MAPPING_BYTES = 64L * 1024 * 1024;
+
+  /** The most bytes of an entry checked at once. */
+  private static final int CHUNK_BYTES = 64 * 1024;
+
+  /** The cache file, if the cache is kept across runs. */
+  private final Optional<Path> cacheFile;
+
+  /** The maximum number of jars read concurrently. */
+  private final int parallelism;
+
+  /** The verified jars, keyed by absolute path; loaded from the cache file on first use. */
+  private Map<Path, Verified> verified;
+
+  /** True if the cache holds results that the cache file does not. */
+  private boolean dirty;
+
+  /** The number of jars read; those whose cached result was still current are not counted. */
+  private final AtomicLong read = new AtomicLong();
+
+  /**
+   * Constructor for a verifier that keeps its cache only in memory.  The parallelism defaults to the
+   * number of available processors.
+   */
+  public JarVerifier()
+  {
+    this(Optional.empty(), Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   * @param cacheFile The cache file, if the cache is kept across runs.
+   * @param parallelism The maximum number of jars read concurrently.
+   */
+  public JarVerifier(final Optional<Path> cacheFile, final int parallelism)
+  {
+    Preconditions.checkNotNull(cacheFile, "cacheFile cannot be null");
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0 but was: " + parallelism);
+
+    this.cacheFile = cacheFile.map(Path::toAbsolutePath);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Verifies a jar, reading it only if it has changed since it was last verified.
+   * @param jar The jar file.
+   * @return The jar's SHA-256 hash, in hex.
+   * @throws ZipException If the jar is not intact.
+   * @throws IOException If the jar cannot be read.
+   */
+  public String verify(final Path jar) throws IOException
+  {
+    Preconditions.checkNotNull(jar, "jar cannot be null");
+
+    final Path path = jar.toAbsolutePath();
+    final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+    final long size = attrs.size();
+    final long modified = attrs.lastModifiedTime().toMillis();
+
+    final Verified cached = getVerified().get(path);
+    if (cached != null && cached.size == size && cached.modified == modified)
+    {
+      return cached.hash;
+    }
+
+    final String hash = read(path, size);
+    this.read.incrementAndGet();
+
+    synchronized (this)
+    {
+      this.verified.put(path, new Verified(size, modified, hash));
+      this.dirty = true;
+    }
+
+    return hash;
+  }
+
+  /**
+   * Verifies several jars concurrently, stopping at the first that is not intact.  The cache file, if
+   * any, is then brought up to date.
+   * @param jars The jar files.
+   * @return The jars' SHA-256 hashes in hex, keyed by jar file.
+   * @throws ZipException If a jar is not intact.
+   * @throws IOException If a jar cannot be read.
+   */
+  public ImmutableMap<Path, String> verifyAll(final Collection<Path> jars) throws IOException
+  {
+    Preconditions.checkNotNull(jars, "jars cannot be null");
+
+    final Set<Path> distinct = new LinkedHashSet<>(jars);
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(this.parallelism, Math.max(1, distinct.size())));
+
+    try
+    {
+      final CompletionService<Map.Entry<Path, String>> completion = new ExecutorCompletionService<>(executor);
+      for (final Path jar : distinct)
+      {
+        completion.submit(() -> Maps.immutableEntry(jar, verify(jar)));
+      }
+
+      final ImmutableMap.Builder<Path, String> hashes = ImmutableMap.builder();
+      for (int i = 0; i < distinct.size(); i++)
+      {
+        try
+        {
+          final Map.Entry<Path, String> entry = completion.take().get();
+          hashes.put(entry.getKey(), entry.getValue());
+        }
+        catch (ExecutionException e)
+        {
+          if (e.getCause() instanceof IOException)
+          {
+            throw (IOException) e.getCause();
+          }
+          throw new IOException("cannot verify jar", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          throw new IOException("interrupted while verifying jars", e);
+        }
+      }
+
+      return hashes.build();
+    }
+    finally
+    {
+      executor.shutdownNow();
+      save();
+    }
+  }
+
+  /**
+   * Gets the number of jars this verifier has read so far.  Jars whose cached result was still current
+   * are not read, and are not counted.
+   * @return The number of jars read.
+   */
+  public long getJarsRead()
+  {
+    return this.read.get();
+  }
+
+  /**
+   * Checks that a jar is intact and hashes it.
+   * @param jar The jar file.
+   * @param size The jar's size, in bytes.
+   * @return The jar's SHA-256 hash, in hex.
+   * @throws ZipException If the jar is not intact.
+   * @throws IOException If the jar cannot be read.
+   */
+  private static String read(final Path jar, final long size) throws IOException
+  {
+    try (final FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ))
+    {
+      checkStructure(jar, channel, size);
+
+      final MessageDigest digest = sha256();
+      for (long position = 0; position < size; position += MAPPING_BYTES)
+      {
+        digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_BYTES, size - position)));
+      }
+
+      return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+  }
+
+  /**
+   * Checks that a jar ends with an end of central directory record, and that the central directory and
+   * first local header it points to are present.  Data prepended to the archive (such as a launch
+   * script) is allowed for, as the zip format does.
+   * @param jar The jar file.
+   * @param channel The open jar file.
+   * @param size The jar's size, in bytes.
+   * @throws ZipException If the jar is not intact.
+   * @throws IOException If the jar cannot be read.
+   */
+  private static void checkStructure(final Path jar, final FileChannel channel, final long size) throws IOException
+  {
+    if (size < END_LENGTH)
+    {
+      throw new ZipException("jar is truncated: " + jar);
+    }
+
+    final long tailStart = Math.max(0, size - END_LENGTH - MAX_COMMENT_LENGTH);
+    final MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, tailStart, size - tailStart);
+    tail.order(ByteOrder.LITTLE_ENDIAN);
+
+    // The record is the last one whose comment runs exactly to the end of the file.
+
+    int end = -1;
+    for (int pos = tail.limit() - END_LENGTH; pos >= 0 && end == -1; pos--)
+    {
+      if (tail.getInt(pos) == END_SIGNATURE && pos + END_LENGTH + (tail.getShort(pos + 20) & 0xffff) == tail.limit())
+      {
+        end = pos;
+      }
+    }
+
+    if (end == -1)
+    {
+      throw new ZipException("jar has no end of central directory record: " + jar);
+    }
+
+    final int entries = tail.getShort(end + 10) & 0xffff;
+    final long directorySize = tail.getInt(end + 12) & 0xffffffffL;
+    final long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+
+    if (directorySize == ZIP64_MARKER || directoryOffset == ZIP64_MARKER || entries == 0)
+    {
+      return;                                             // zip64 sizes live elsewhere; an empty jar has no entries
+    }
+
+    final long endPosition = tailStart + end;
+    final long prefix = endPosition - directorySize - directoryOffset;
+
+    if (prefix < 0
+        || intAt(channel, prefix + directoryOffset) != CENTRAL_HEADER_SIGNATURE
+        || intAt(channel, prefix) != LOCAL_HEADER_SIGNATURE)
+    {
+      throw new ZipException("jar central directory is incomplete: " + jar);
+    }
+
+    checkEntries(jar, channel, prefix, prefix + directoryOffset, directorySize);
+  }
+
+  /**
+   * Checks the data of every entry against the CRC-32 that the central directory records for it.
+   * @param jar The jar file.
+   * @param channel The open jar file.
+   * @param prefix The length of any data prepended to the archive.
+   * @param directoryPosition The position of the central directory.
+   * @param directorySize The size of the central directory, in bytes.
+   * @throws ZipException If an entry is missing, truncated or corrupt.
+   * @throws IOException If the jar cannot be read.
+   */
+  private static void checkEntries(final Path jar,
+                                   final FileChannel channel,
+                                   final long prefix,
+                                   final long directoryPosition,
+                                   final long directorySize) throws IOException
+  {
+    final MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryPosition, directorySize);
+    directory.order(ByteOrder.LITTLE_ENDIAN);
+
+    final Mapping data = new Mapping(channel, directoryPosition);
+    final Inflater inflater = new Inflater(true);
+
+    try
+    {
+      int pos = 0;
+      while (pos + CENTRAL_HEADER_LENGTH <= directory.limit())
+      {
+        if (directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE)
+        {
+          throw new ZipException("jar central directory is corrupt: " + jar);
+        }
+
+        final int flags = directory.getShort(pos + 8) & 0xffff;
+        final int method = directory.getShort(pos + 10) & 0xffff;
+        final long crc = directory.getInt(pos + 16) & 0xffffffffL;
+        final long compressed = directory.getInt(pos + 20) & 0xffffffffL;
+        final long uncompressed = directory.getInt(pos + 24) & 0xffffffffL;
+        final int nameLength = directory.getShort(pos + 28) & 0xffff;
+        final int extraLength = directory.getShort(pos + 30) & 0xffff;
+        final int commentLength = directory.getShort(pos + 32) & 0xffff;
+        final long localOffset = directory.getInt(pos + 42) & 0xffffffffL;
+
+        final byte[] name = new byte[Math.min(nameLength, directory.limit() - pos - CENTRAL_HEADER_LENGTH)];
+        ((ByteBuffer) directory.duplicate().position(pos + CENTRAL_HEADER_LENGTH)).get(name);
+        final String entry = jar + "!/" + new String(name, StandardCharsets.UTF_8);
+
+        pos += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+
+        if ((flags & ENCRYPTED_FLAG) != 0
+            || (method != STORED && method != DEFLATED)
+            || compressed == ZIP64_MARKER || uncompressed == ZIP64_MARKER || localOffset == ZIP64_MARKER)
+        {
+          continue;
+        }
+
+        final long local = prefix + localOffset;
+        if (local + LOCAL_HEADER_LENGTH > directoryPosition)
+        {
+          throw new ZipException("jar entry is missing: " + entry);
+        }
+
+        final ByteBuffer header = data.get(local, LOCAL_HEADER_LENGTH);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+        {
+          throw new ZipException("jar entry is missing: " + entry);
+        }
+
+        final long start =
+            local + LOCAL_HEADER_LENGTH + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+        if (start + compressed > directoryPosition)
+        {
+          throw new ZipException("jar entry is truncated: " + entry);
+        }
+
+        if (!matches(data, start, compressed, method == DEFLATED ? inflater : null, crc, uncompressed))
+        {
+          throw new ZipException("jar entry is corrupt: " + entry);
+        }
+      }
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Determines whether an entry's uncompressed data has the CRC-32 and length recorded for it.
+   * @param data The mapping of the jar's entries.
+   * @param start The position of the entry's data.
+   * @param compressed The size of the entry's data, in bytes.
+   * @param inflater The inflater, if the entry is deflated.
+   * @param expectedCrc The CRC-32 recorded for the entry.
+   * @param expectedLength The uncompressed size recorded for the entry, in bytes.
+   * @return True if the data matches; false if it does not, or cannot be inflated.
+   * @throws IOException If the jar cannot be read.
+   */
+  private static boolean matches(final Mapping data,
+                                 final long start,
+                                 final long compressed,
+                                 final Inflater inflater,
+                                 final long expectedCrc,
+                                 final long expectedLength) throws IOException
+  {
+    final CRC32 crc = new CRC32();
+    final byte[] input = new byte[CHUNK_BYTES];
+    final byte[] output = new byte[CHUNK_BYTES];
+    long length = 0;
+
+    if (inflater != null)
+    {
+      inflater.reset();
+    }
+
+    try
+    {
+      for (long done = 0; done < compressed; done += CHUNK_BYTES)
+      {
+        final int chunk = (int) Math.min(CHUNK_BYTES, compressed - done);
+        final ByteBuffer buffer = data.get(start + done, chunk);
+
+        if (inflater == null)
+        {
+          crc.update(buffer);
+          length += chunk;
+          continue;
+        }
+
+        buffer.get(input, 0, chunk);
+        inflater.setInput(input, 0, chunk);
+        for (int n = inflater.inflate(output); n > 0; n = inflater.inflate(output))
+        {
+          crc.update(output, 0, n);
+          length += n;
+        }
+      }
+
+      if (inflater != null && !inflater.finished())
+      {
+        inflater.setInput(new byte[1]);                   // the dummy byte a raw inflater may need to finish
+        for (int n = inflater.inflate(output); n > 0; n = inflater.inflate(output))
+        {
+          crc.update(output, 0, n);
+          length += n;
+        }
+      }
+    }
+    catch (DataFormatException e)
+    {
+      return false;
+    }
+
+    return (inflater == null || inflater.finished()) && crc.getValue() == expectedCrc && length == expectedLength;
+  }
+
+  /**
+   * Reads a little-endian int.
+   * @param channel The open file.
+   * @param position The position of the int.
+   * @return The int.
+   * @throws IOException If the file cannot be read.
+   */
+  private static int intAt(final FileChannel channel, final long position) throws IOException
+  {
+    final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0)
+    {
+      ;
+    }
+
+    return buffer.hasRemaining() ? 0 : buffer.getInt(0);
+  }
+
+  /**
+   * Creates a SHA-256 digest.
+   * @return The digest.
+   */
+  private static MessageDigest sha256()
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Gets the verified jars, loading them from the cache file if they have not yet been loaded.
+   * @return The verified jars, keyed by absolute path.
+   */
+  private synchronized Map<Path, Verified> getVerified()
+  {
+    if (this.verified == null)
+    {
+      this.verified = new ConcurrentHashMap<>(load());
+    }
+
+    return this.verified;
+  }
+
+  /**
+   * Loads the cached results.  A missing or unreadable cache file yields an empty cache.
+   * @return The cached results, keyed by absolute path.
+   */
+  private Map<Path, Verified> load()
+  {
+    final Map<Path, Verified> results = new ConcurrentHashMap<>();
+
+    if (!this.cacheFile.isPresent() || !Files.isRegularFile(this.cacheFile.get()))
+    {
+      return results;
+    }
+
+    try (final DataInputStream in =
+             new DataInputStream(new BufferedInputStream(Files.newInputStream(this.cacheFile.get()))))
+    {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+      {
+        return new ConcurrentHashMap<>();
+      }
+
+      final int count = in.readInt();
+      for (int i = 0; i < count; i++)
+      {
+        final Path path = Paths.get(in.readUTF());
+        results.put(path, new Verified(in.readLong(), in.readLong(), in.readUTF()));
+      }
+    }
+    catch (IOException e)
+    {
+      return new ConcurrentHashMap<>();
+    }
+
+    return results;
+  }
+
+  /**
+   * Persists the cached results if they have changed, replacing the cache file atomically.  Failures
+   * are ignored: the cache is only an optimisation.
+   */
+  private synchronized void save()
+  {
+    if (!this.cacheFile.isPresent() || !this.dirty)
+    {
+      return;
+    }
+
+    final Path file = this.cacheFile.get();
+    Path temp = null;
+
+    try
+    {
+      temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+      try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+      {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(this.verified.size());
+
+        for (final Map.Entry<Path, Verified> entry : this.verified.entrySet())
+        {
+          out.writeUTF(entry.getKey().toString());
+          out.writeLong(entry.getValue().size);
+          out.writeLong(entry.getValue().modified);
+          out.writeUTF(entry.getValue().hash);
+        }
+      }
+
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      this.dirty = false;
+    }
+    catch (IOException e)
+    {
+      try
+      {
+        if (temp != null)
+        {
+          Files.deleteIfExists(temp);
+        }
+      }
+      catch (IOException ignored)
+      {
+        ;
+      }
+    }
+  }
+
+  /**
+   * A window onto part of a file, mapped afresh whenever a read falls outside it.
+   */
+  private static class Mapping
+  {
+    /** The open file. */
+    private final FileChannel channel;
+
+    /** The position beyond which nothing is read. */
+    private final long limit;
+
+    /** The mapped window, if any. */
+    private MappedByteBuffer window;
+
+    /** The position of the start of the window. */
+    private long windowStart;
+
+    /**
+     * Constructor.
+     * @param channel The open file.
+     * @param limit The position beyond which nothing is read.
+     */
+    public Mapping(final FileChannel channel, final long limit)
+    {
+      this.channel = channel;
+      this.limit = limit;
+    }
+
+    /**
+     * Gets part of the file.
+     * @param position The position of the part.
+     * @param length The length of the part, at most {@link #CHUNK_BYTES}.
+     * @return The part, in little-endian order.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public ByteBuffer get(final long position, final int length) throws IOException
+    {
+      if (this.window == null
+          || position < this.windowStart
+          || position + length > this.windowStart + this.window.limit())
+      {
+        this.windowStart = position;
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                       Math.max(length, Math.min(MAPPING_BYTES, this.limit - position)));
+      }
+
+      final ByteBuffer part = this.window.duplicate();
+      part.position((int) (position - this.windowStart));
+      part.limit(part.position() + length);
+
+      return part.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  /**
+   * The result of verifying a jar as it was at a point in time.
+   */
+  private static class Verified
+  {
+    /** The jar's size, in bytes. */
+    private final long size;
+
+    /** The jar's modification time, in milliseconds. */
+    private final long modified;
+
+    /** The jar's SHA-256 hash, in hex. */
+    private final String hash;
+
+    /**
+     * Constructor.
+     * @param size The jar's size, in bytes.
+     * @param modified The jar's modification time, in milliseconds.
+     * @param hash The jar's SHA-256 hash, in hex.
+     */
+    public Verified(final long size, final long modified, final String hash)
+    {
+      this.size = size;
+      this.modified = modified;
+      this.hash = hash;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Java feature release numbers.
+ */
+public class JavaVersion
+{
+  /**
+   * Private constructor - static methods only.
+   */
+  private JavaVersion()
+  {
+    ;
+  }
+
+  /**
+   * Gets the feature release of the running JVM.  Firestarter runs on the same {@code java} that it
+   * launches, so this is also the default target for the VMs it starts.
+   * @return The feature release (for example, 8 or 17).
+   */
+  public static int current()
+  {
+    return parse(System.getProperty("java.specification.version"));
+  }
+
+  /**
+   * Parses a Java version string, in either the legacy ({@code 1.8.0_40}) or the modern
+   * ({@code 17.0.2}) form.
+   * @param version The version string.
+   * @return The feature release.
+   * @throws IllegalArgumentException If the version string cannot be parsed.
+   */
+  public static int parse(final String version) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(version, "version cannot be null");
+
+    final String[] parts = version.trim().split("[._+-]");
+    try
+    {
+      final int first = Integer.parseInt(parts[0]);
+      return (first == 1 && parts.length > 1) ? Integer.parseInt(parts[1]) : first;
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IllegalArgumentException("cannot parse java version: " + version, e);
+    }
+  }
+}
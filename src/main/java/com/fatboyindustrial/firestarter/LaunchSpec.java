@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Everything needed to start a single VM: its name and the command to execute, as an argument vector,
+ * the command that starts its warm standby, if it has one, and its diagnostics profile, which is
+ * prepared before every start so that a VM restarted again and again does not pile up heap dumps.
+ */
+public class LaunchSpec
+{
+  /** The VM name. */
+  private final String name;
+
+  /** The command, as an argument vector. */
+  private final ImmutableList<String> command;
+
+  /** The command that starts the VM's warm standby, as an argument vector. */
+  private final Optional<ImmutableList<String>> standbyCommand;
+
+  /** The VM's diagnostics profile. */
+  private final DiagnosticsConfig diagnostics;
+
+  /** The VM's diagnostics directory. */
+  private final Optional<Path> diagnosticsDir;
+
+  /**
+   * Constructor, for a VM without a warm standby.
+   * @param name The VM name.
+   * @param command The command, as an argument vector.
+   */
+  public LaunchSpec(final String name, final List<String> command)
+  {
+    this(name, command, Optional.empty());
+  }
+
+  /**
+   * Constructor.
+   * @param name The VM name.
+   * @param command The command, as an argument vector.
+   * @param standbyCommand The command that starts the VM's warm standby, if it has one.
+   */
+  public LaunchSpec(final String name,
+                    final List<String> command,
+                    final Optional<? extends List<String>> standbyCommand)
+  {
+    this(name, command, standbyCommand, DiagnosticsConfig.NONE, Optional.empty());
+  }
+
+  /**
+   * Constructor.
+   * @param name The VM name.
+   * @param command The command, as an argument vector.
+   * @param standbyCommand The command that starts the VM's warm standby, if it has one.
+   * @param diagnostics The VM's diagnostics profile.
+   * @param diagnosticsDir The VM's diagnostics directory, which is required if the profile is enabled.
+   */
+  public LaunchSpec(final String name,
+                    final List<String> command,
+                    final Optional<? extends List<String>> standbyCommand,
+                    final DiagnosticsConfig diagnostics,
+                    final Optional<Path> diagnosticsDir)
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(command, "command cannot be null");
+    Preconditions.checkNotNull(standbyCommand, "standbyCommand cannot be null");
+    Preconditions.checkNotNull(diagnostics, "diagnostics cannot be null");
+    Preconditions.checkNotNull(diagnosticsDir, "diagnosticsDir cannot be null");
+
+    Preconditions.checkArgument(!command.isEmpty(), "LaunchSpec.command cannot be empty");
+    Preconditions.checkArgument(standbyCommand.map(cmd -> !cmd.isEmpty()).orElse(true),
+                                "LaunchSpec.standbyCommand cannot be empty");
+    Preconditions.checkArgument(!diagnostics.isEnabled() || diagnosticsDir.isPresent(),
+                                "LaunchSpec.diagnosticsDir is required for a diagnostics profile");
+
+    this.name = name;
+    this.command = ImmutableList.copyOf(command);
+    this.standbyCommand = standbyCommand.map(ImmutableList::copyOf);
+    this.diagnostics = diagnostics;
+    this.diagnosticsDir = diagnosticsDir;
+  }
+
+  /**
+   * Gets the VM name.
+   * @return The VM name.
+   */
+  public String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * Gets the command.
+   * @return The command, as an argument vector.
+   */
+  public ImmutableList<String> getCommand()
+  {
+    return this.command;
+  }
+
+  /**
+   * Gets the command that starts the VM's warm standby.
+   * @return The command, as an argument vector, or absent if the VM has no standby.
+   */
+  public Optional<ImmutableList<String>> getStandbyCommand()
+  {
+    return this.standbyCommand;
+  }
+
+  /**
+   * Prepares the VM's diagnostics directory before it starts, deleting all but the newest of its heap
+   * dumps.  A VM without a diagnostics profile needs nothing.
+   * @throws IOException If the directory cannot be prepared.
+   */
+  public void prepare() throws IOException
+  {
+    if (this.diagnostics.isEnabled())
+    {
+      this.diagnostics.prepare(this.diagnosticsDir.get());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Starts VMs directly as child processes, with each VM's standard output and error appended to its
+ * own log file.
+ */
+public class Launcher
+{
+  /** The directory holding the per-VM log files. */
+  private final Path logDir;
+
+  /**
+   * Constructor.
+   * @param logDir The directory holding the per-VM log files.
+   */
+  public Launcher(final Path logDir)
+  {
+    this.logDir = Preconditions.checkNotNull(logDir, "logDir cannot be null");
+  }
+
+  /**
+   * Gets the log file for the named VM.
+   * @param name The VM name.
+   * @return The log file.
+   */
+  public Path getLogFile(final String name)
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+
+    return this.logDir.resolve(name + ".log");
+  }
+
+  /**
+   * Starts a single VM, first preparing its diagnostics directory.
+   * @param spec The launch specification.
+   * @return The VM process.
+   * @throws IOException If the process cannot be started.
+   */
+  public Process launch(final LaunchSpec spec) throws IOException
+  {
+    Preconditions.checkNotNull(spec, "spec cannot be null");
+
+    Files.createDirectories(this.logDir);
+    spec.prepare();
+
+    final Process process = new ProcessBuilder(spec.getCommand())
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.appendTo(getLogFile(spec.getName()).toFile()))
+        .start();
+
+    process.getOutputStream().close();
+
+    return process;
+  }
+
+  /**
+   * Starts the warm standby of a single VM, first preparing its diagnostics directory, as the standby
+   * may be promoted in place of a VM that has just written a heap dump.  Its standard input is left
+   * open: writing {@link StandbyBootstrap#PROMOTE} promotes it, and closing it has the standby exit.
+   * @param spec The launch specification, which must have a standby command.
+   * @return The standby process.
+   * @throws IOException If the process cannot be started.
+   */
+  public Process launchStandby(final LaunchSpec spec) throws IOException
+  {
+    Preconditions.checkNotNull(spec, "spec cannot be null");
+    Preconditions.checkArgument(spec.getStandbyCommand().isPresent(), spec.getName() + " has no standby");
+
+    Files.createDirectories(this.logDir);
+    spec.prepare();
+
+    return new ProcessBuilder(spec.getStandbyCommand().get())
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.appendTo(getLogFile(spec.getName()).toFile()))
+        .start();
+  }
+
+  /**
+   * Promotes a warm standby started by {@link #launchStandby}, so that it runs its application.
+   * @param standby The standby process.
+   * @throws IOException If the standby cannot be told.
+   */
+  public static void promote(final Process standby) throws IOException
+  {
+    Preconditions.checkNotNull(standby, "standby cannot be null");
+
+    try (final Writer out = new OutputStreamWriter(standby.getOutputStream(), StandardCharsets.US_ASCII))
+    {
+      out.write(StandbyBootstrap.PROMOTE + "\n");
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.typesafe.config.Config;
+
+import java.util.Objects;
+
+/**
+ * Node-level budgeting settings: how much memory to hold back, how much off-heap memory each VM is
+ * expected to use, whether processors are divided between the VMs, and whether VMs are spread across
+ * the node's NUMA nodes.
+ */
+public class NodeConfig
+{
+  /** One megabyte. */
+  @SuppressWarnings("MagicNumber")
+  private static final long MEGABYTES = 1024 * 1024;
+
+  /** The settings used when none are configured. */
+  public static final NodeConfig DEFAULT = new NodeConfig(512 * MEGABYTES, 128 * MEGABYTES, 0.1, false, false, false);
+
+  /** The memory held back for the operating system and other processes, in bytes. */
+  private final long reserveBytes;
+
+  /** The estimated fixed off-heap memory of each VM (metaspace, code cache, stacks), in bytes. */
+  private final long overheadBytes;
+
+  /** The estimated off-heap memory of each VM that grows with its heap, as a fraction of the heap. */
+  private final double overheadRatio;
+
+  /** True to divide the processors between the VMs. */
+  private final boolean assignCpus;
+
+  /** True to allow the VMs to need more memory than the node has. */
+  private final boolean allowOvercommit;
+
+  /** True to bind each VM without an explicit NUMA node to one, spreading the VMs evenly. */
+  private final boolean autoPlacement;
+
+  /**
+   * Constructor.
+   * @param reserveBytes The memory held back for the operating system and other processes, in bytes.
+   * @param overheadBytes The estimated fixed off-heap memory of each VM, in bytes.
+   * @param overheadRatio The estimated off-heap memory of each VM, as a fraction of its heap.
+   * @param assignCpus True to divide the processors between the VMs.
+   * @param allowOvercommit True to allow the VMs to need more memory than the node has.
+   * @param autoPlacement True to bind each VM without an explicit NUMA node to one, spreading the VMs evenly.
+   */
+  public NodeConfig(final long reserveBytes,
+                    final long overheadBytes,
+                    final double overheadRatio,
+                    final boolean assignCpus,
+                    final boolean allowOvercommit,
+                    final boolean autoPlacement)
+  {
+    Preconditions.checkArgument(reserveBytes >= 0, "NodeConfig.reserve must be >= 0 but was: " + reserveBytes);
+    Preconditions.checkArgument(overheadBytes >= 0, "NodeConfig.overhead must be >= 0 but was: " + overheadBytes);
+    Preconditions.checkArgument(overheadRatio >= 0, "NodeConfig.overheadRatio must be >= 0 but was: " + overheadRatio);
+
+    this.reserveBytes = reserveBytes;
+    this.overheadBytes = overheadBytes;
+    this.overheadRatio = overheadRatio;
+    this.assignCpus = assignCpus;
+    this.allowOvercommit = allowOvercommit;
+    this.autoPlacement = autoPlacement;
+  }
+
+  /**
+   * Creates a node config from the given HOCON configuration; missing keys take their default values.
+   * Placement is given as {@code placement: auto} or {@code placement: none}.
+   * @param nodeConfig The configuration.
+   * @return The node config.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static NodeConfig fromConfig(final Config nodeConfig) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(nodeConfig, "nodeConfig cannot be null");
+
+    final String placement = nodeConfig.hasPath("placement") ? nodeConfig.getString("placement").trim() : "none";
+    Preconditions.checkArgument(placement.equals("auto") || placement.equals("none"),
+                                "NodeConfig.placement must be auto or none but was: " + placement);
+
+    return new NodeConfig(
+        nodeConfig.hasPath("reserve") ? nodeConfig.getBytes("reserve") : DEFAULT.reserveBytes,
+        nodeConfig.hasPath("overhead") ? nodeConfig.getBytes("overhead") : DEFAULT.overheadBytes,
+        nodeConfig.hasPath("overheadRatio") ? nodeConfig.getDouble("overheadRatio") : DEFAULT.overheadRatio,
+        nodeConfig.hasPath("assignCpus") ? nodeConfig.getBoolean("assignCpus") : DEFAULT.assignCpus,
+        nodeConfig.hasPath("allowOvercommit") ? nodeConfig.getBoolean("allowOvercommit") : DEFAULT.allowOvercommit,
+        placement.equals("auto"));
+  }
+
+  /**
+   * Gets the memory held back for the operating system and other processes.
+   * @return The reserve, in bytes.
+   */
+  public long getReserveBytes()
+  {
+    return this.reserveBytes;
+  }
+
+  /**
+   * Gets the estimated fixed off-heap memory of each VM.
+   * @return The overhead, in bytes.
+   */
+  public long getOverheadBytes()
+  {
+    return this.overheadBytes;
+  }
+
+  /**
+   * Gets the estimated off-heap memory of each VM that grows with its heap.
+   * @return The overhead, as a fraction of the heap.
+   */
+  public double getOverheadRatio()
+  {
+    return this.overheadRatio;
+  }
+
+  /**
+   * Determines whether the processors are divided between the VMs.
+   * @return True to assign processors.
+   */
+  public boolean isAssignCpus()
+  {
+    return this.assignCpus;
+  }
+
+  /**
+   * Determines whether the VMs may need more memory than the node has.
+   * @return True to allow overcommit.
+   */
+  public boolean isAllowOvercommit()
+  {
+    return this.allowOvercommit;
+  }
+
+  /**
+   * Determines whether VMs without an explicit NUMA node are bound to one automatically.
+   * @return True for automatic placement.
+   */
+  public boolean isAutoPlacement()
+  {
+    return this.autoPlacement;
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal NodeConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof NodeConfig))
+    {
+      return false;
+    }
+
+    final NodeConfig other = (NodeConfig) obj;
+    return this.reserveBytes == other.reserveBytes
+        && this.overheadBytes == other.overheadBytes
+        && Double.compare(this.overheadRatio, other.overheadRatio) == 0
+        && this.assignCpus == other.assignCpus
+        && this.allowOvercommit == other.allowOvercommit
+        && this.autoPlacement == other.autoPlacement;
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.reserveBytes, this.overheadBytes, this.overheadRatio, this.assignCpus,
+                        this.allowOvercommit, this.autoPlacement);
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Fits a configuration's VMs to the resources of a node. <p>
+ *
+ * Percentage heaps are resolved against the node's memory (less the reserve), and the total heap plus
+ * the estimated off-heap overhead of every VM (twice over for a VM with a warm standby, whose spare is
+ * as large) is checked against it, so an overcommitted node is refused before anything starts. <p>
+ *
+ * VMs may name their own NUMA node and processors.  With automatic placement on a NUMA machine, every
+ * other VM is bound to a NUMA node, largest heap first onto the node with the least heap so far, so that
+ * memory and processors are spread evenly.  When processors are assigned, each VM without its own is
+ * given a contiguous share of its node's processors (or the machine's, if it is not bound) in
+ * proportion to its heap (at least one), which is both its affinity and its active processor count.
+ * Only processors that this process may itself run on are shared out.
+ */
+public class NodePlanner
+{
+  /** One megabyte. */
+  @SuppressWarnings("MagicNumber")
+  private static final long MEGABYTES = 1024 * 1024;
+
+  /**
+   * Private constructor - static methods only.
+   */
+  private NodePlanner()
+  {
+    ;
+  }
+
+  /**
+   * Plans the resources of every VM in a configuration.
+   * @param cfg The configuration.
+   * @param host The node's resources.
+   * @return The plans keyed by VM name, in configuration order.
+   * @throws IllegalArgumentException If the VMs do not fit on the node.
+   */
+  public static ImmutableMap<String, VmPlan> plan(final FirestarterConfig cfg, final HostResources host)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(cfg, "cfg cannot be null");
+    Preconditions.checkNotNull(host, "host cannot be null");
+
+    final NodeConfig node = cfg.getNode();
+    final long budget = host.getMemoryBytes() - node.getReserveBytes();
+
+    Preconditions.checkArgument(budget > 0, String.format(
+        "node memory (%d MB) does not exceed the reserve (%d MB)",
+        host.getMemoryBytes() / MEGABYTES, node.getReserveBytes() / MEGABYTES));
+
+    // Resolve the heaps, and check that they (and their overheads) fit ...
+
+    final Map<String, Integer> heaps = new LinkedHashMap<>();
+    long required = 0;
+
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      final int heap = vm.getHeapPercent()
+          .map(percent -> (int) (budget * percent / 100 / MEGABYTES))
+          .orElse(vm.getHeap());
+
+      Preconditions.checkArgument(heap >= VmConfig.MIN_VM_SIZE, String.format(
+          "%s heap of %s%% is %d MB, below the minimum of %d MB",
+          vm.getName(), vm.getHeapPercent().orElse(0.0), heap, VmConfig.MIN_VM_SIZE));
+
+      heaps.put(vm.getName(), heap);
+
+      final long footprint =
+          heap * MEGABYTES + node.getOverheadBytes() + (long) (heap * MEGABYTES * node.getOverheadRatio());
+      required += vm.getStandby().isPresent() ? 2 * footprint : footprint;
+    }
+
+    Preconditions.checkArgument(node.isAllowOvercommit() || required <= budget, String.format(
+        "VMs need an estimated %d MB (heap plus off-heap overhead, and again for each warm standby) " +
+        "but the node has %d MB available (%d MB less a %d MB reserve)",
+        required / MEGABYTES, budget / MEGABYTES, host.getMemoryBytes() / MEGABYTES,
+        node.getReserveBytes() / MEGABYTES));
+
+    // ... then place the VMs on NUMA nodes ...
+
+    final Map<String, Optional<Integer>> placement = place(cfg, heaps, host.getTopology());
+
+    // ... and then share out the processors of each node (or of the machine, for unbound VMs).
+
+    final Map<Optional<Integer>, Long> poolHeaps = new HashMap<>();
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      if (vm.getCpus().isEmpty())
+      {
+        poolHeaps.merge(placement.get(vm.getName()), (long) heaps.get(vm.getName()), Long::sum);
+      }
+    }
+
+    final Map<Optional<Integer>, Integer> next = new HashMap<>();
+    final ImmutableMap.Builder<String, VmPlan> plans = ImmutableMap.builder();
+
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      final String name = vm.getName();
+      final Optional<Integer> numaNode = placement.get(name);
+      final List<Integer> cpus = new ArrayList<>(vm.getCpus());
+
+      if (cpus.isEmpty() && node.isAssignCpus())
+      {
+        final List<Integer> pool = numaNode
+            .map(host.getTopology().getNodes()::get)
+            .<List<Integer>>map(nodeCpus -> nodeCpus.stream()
+                .filter(host.getAllowedCpus()::contains)
+                .collect(Collectors.toList()))
+            .orElse(host.getAllowedCpus());
+
+        final double fraction = (double) heaps.get(name) / poolHeaps.get(numaNode);
+        final int share = (int) Math.max(1, Math.round(pool.size() * fraction));
+        final int first = next.getOrDefault(numaNode, 0);
+        for (int i = 0; i < Math.min(share, pool.size()); i++)
+        {
+          cpus.add(pool.get((first + i) % pool.size()));
+        }
+        next.put(numaNode, first + share);
+      }
+
+      final boolean spanning = !numaNode.isPresent() && host.getTopology().isNuma() &&
+          (cpus.isEmpty() || host.getTopology().getNodes().values().stream()
+              .filter(nodeCpus -> nodeCpus.stream().anyMatch(cpus::contains))
+              .count() > 1);
+
+      plans.put(name, new VmPlan(heaps.get(name), ImmutableList.copyOf(cpus), numaNode, spanning));
+    }
+
+    return plans.build();
+  }
+
+  /**
+   * Chooses the NUMA node of every VM.
+   * @param cfg The configuration.
+   * @param heaps The resolved heap of each VM, in MB.
+   * @param topology The node's NUMA topology.
+   * @return The NUMA node of each VM, or absent if it is not bound.
+   * @throws IllegalArgumentException If a VM names a NUMA node that the machine does not have.
+   */
+  private static Map<String, Optional<Integer>> place(final FirestarterConfig cfg,
+                                                     final Map<String, Integer> heaps,
+                                                     final NumaTopology topology)
+      throws IllegalArgumentException
+  {
+    final Map<String, Optional<Integer>> placement = new HashMap<>();
+    final Map<Integer, Long> nodeHeaps = new TreeMap<>();
+    topology.getNodes().keySet().forEach(numaNode -> nodeHeaps.put(numaNode, 0L));
+
+    for (final VmConfig vm : cfg.getJvms())
+    {
+      vm.getNumaNode().ifPresent(numaNode -> {
+        Preconditions.checkArgument(topology.getNodes().isEmpty() || topology.getNodes().containsKey(numaNode),
+                                    String.format("%s is bound to NUMA node %d but the machine only has nodes %s",
+                                                  vm.getName(), numaNode, topology.getNodes().keySet()));
+        nodeHeaps.merge(numaNode, (long) heaps.get(vm.getName()), Long::sum);
+      });
+
+      placement.put(vm.getName(), vm.getNumaNode());
+    }
+
+    if (cfg.getNode().isAutoPlacement() && topology.isNuma())
+    {
+      final List<VmConfig> unplaced = cfg.getJvms().stream()
+          .filter(vm -> !vm.getNumaNode().isPresent() && vm.getCpus().isEmpty())
+          .sorted(Comparator.comparing((VmConfig vm) -> heaps.get(vm.getName())).reversed()
+                      .thenComparing(VmConfig::getName))
+          .collect(Collectors.toList());
+
+      for (final VmConfig vm : unplaced)
+      {
+        final int numaNode = nodeHeaps.entrySet().stream()
+            .min(Map.Entry.comparingByValue())
+            .get()
+            .getKey();
+
+        nodeHeaps.merge(numaNode, (long) heaps.get(vm.getName()), Long::sum);
+        placement.put(vm.getName(), Optional.of(numaNode));
+      }
+    }
+
+    return placement;
+  }
+}
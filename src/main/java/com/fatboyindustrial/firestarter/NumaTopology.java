@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The NUMA nodes of a machine and the processors that belong to each.
+ */
+public class NumaTopology
+{
+  /** The topology of a machine without NUMA information. */
+  public static final NumaTopology NONE = new NumaTopology(ImmutableSortedMap.of());
+
+  /** The processors of each node, keyed by node number. */
+  private final ImmutableSortedMap<Integer, ImmutableList<Integer>> nodes;
+
+  /**
+   * Constructor.
+   * @param nodes The processors of each node, keyed by node number.
+   */
+  public NumaTopology(final Map<Integer, ? extends List<Integer>> nodes)
+  {
+    Preconditions.checkNotNull(nodes, "nodes cannot be null");
+
+    final Map<Integer, ImmutableList<Integer>> copy = new TreeMap<>();
+    nodes.forEach((node, cpus) -> copy.put(node, ImmutableList.copyOf(cpus)));
+
+    this.nodes = ImmutableSortedMap.copyOf(copy);
+  }
+
+  /**
+   * Detects the topology of this machine from {@code /sys/devices/system/node}.
+   * @return The topology, or {@link #NONE} if it is not available.
+   */
+  public static NumaTopology detect()
+  {
+    return detect(Paths.get("/"));
+  }
+
+  /**
+   * Detects the topology from {@code sys/devices/system/node} beneath the given root.  Nodes without
+   * processors (memory-only nodes) are ignored.
+   * @param root The file system root.
+   * @return The topology, or {@link #NONE} if it is not available.
+   */
+  public static NumaTopology detect(final Path root)
+  {
+    Preconditions.checkNotNull(root, "root cannot be null");
+
+    final Map<Integer, ImmutableList<Integer>> nodes = new TreeMap<>();
+
+    try (final DirectoryStream<Path> dirs =
+             Files.newDirectoryStream(root.resolve("sys/devices/system/node"), "node[0-9]*"))
+    {
+      for (final Path dir : dirs)
+      {
+        final ImmutableList<Integer> cpus =
+            CpuList.parse(new String(Files.readAllBytes(dir.resolve("cpulist")), Charsets.US_ASCII));
+
+        if (!cpus.isEmpty())
+        {
+          nodes.put(Integer.parseInt(dir.getFileName().toString().substring("node".length())), cpus);
+        }
+      }
+    }
+    catch (IOException | IllegalArgumentException e)
+    {
+      return NONE;
+    }
+
+    return new NumaTopology(nodes);
+  }
+
+  /**
+   * Determines whether the machine has more than one NUMA node.
+   * @return True if the machine is NUMA.
+   */
+  public boolean isNuma()
+  {
+    return this.nodes.size() > 1;
+  }
+
+  /**
+   * Gets the processors of each node.
+   * @return The processors, keyed by node number.
+   */
+  public ImmutableSortedMap<Integer, ImmutableList<Integer>> getNodes()
+  {
+    return this.nodes;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A depth-first strategy for locating jar files that searches sibling directories in parallel. <p>
+ *
+ * Directory reads on network and spinning-disk storage are dominated by latency, so overlapping them
+ * pays off even though the search itself is cheap.  Results are joined in directory order, so the
+ * match returned is always the one the {@link DepthFirstJarLocator} would have found.
+ */
+public class ParallelJarLocator implements JarLocator
+{
+  /** The starting point for all searches. */
+  private final Path searchRoot;
+
+  /** The pool that runs the directory searches. */
+  private final ForkJoinPool pool;
+
+  /** The number of directories read. */
+  private final AtomicLong scanned = new AtomicLong();
+
+  /**
+   * Constructor.  The parallelism defaults to the number of available processors.
+   * @param searchRoot The starting point for all searches.
+   */
+  public ParallelJarLocator(final Path searchRoot)
+  {
+    this(searchRoot, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   * @param searchRoot The starting point for all searches.
+   * @param parallelism The maximum number of directories read concurrently.
+   */
+  public ParallelJarLocator(final Path searchRoot, final int parallelism)
+  {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0 but was: " + parallelism);
+
+    this.searchRoot = Preconditions.checkNotNull(searchRoot, "searchRoot cannot be null").toAbsolutePath();
+    this.pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Locates the jar of the specified filename.
+   * @param filename The filename.
+   * @return The path to the jar file, or absent.
+   */
+  @Override
+  public Optional<Path> locate(final String filename)
+  {
+    Preconditions.checkNotNull(filename, "filename cannot be null");
+
+    return this.pool.invoke(new Search(this.searchRoot, filename, this.scanned));
+  }
+
+  /**
+   * Gets the number of directories this locator has read so far.
+   * @return The number of directories read.
+   */
+  @Override
+  public long getDirectoriesScanned()
+  {
+    return this.scanned.get();
+  }
+
+  /**
+   * Searches a single directory, forking a search for each of its subdirectories.
+   */
+  private static class Search extends RecursiveTask<Optional<Path>>
+  {
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** The directory to search. */
+    private final Path dir;
+
+    /** The filename. */
+    private final String filename;
+
+    /** Counts the directories read. */
+    private final AtomicLong scanned;
+
+    /**
+     * Constructor.
+     * @param dir The directory to search.
+     * @param filename The filename.
+     * @param scanned Counts the directories read.
+     */
+    public Search(final Path dir, final String filename, final AtomicLong scanned)
+    {
+      this.dir = dir;
+      this.filename = filename;
+      this.scanned = scanned;
+    }
+
+    /**
+     * Searches the directory's files, and then its subdirectories.
+     * @return The path to the jar file, or absent.
+     */
+    @Override
+    protected Optional<Path> compute()
+    {
+      final List<Path> dirs = new ArrayList<>();
+      this.scanned.incrementAndGet();
+
+      // Examine this directory's entries in a single pass ...
+
+      try (final DirectoryStream<Path> entries = Files.newDirectoryStream(this.dir))
+      {
+        for (final Path entry : entries)
+        {
+          if (Files.isDirectory(entry))
+          {
+            dirs.add(entry);
+          }
+          else if (entry.getFileName().toString().equals(this.filename) && Files.isRegularFile(entry))
+          {
+            return Optional.of(entry);
+          }
+        }
+      }
+      catch (IOException e)
+      {
+        return Optional.empty();
+      }
+
+      // ... search the subdirectories concurrently ...
+
+      final List<Search> searches = new ArrayList<>(dirs.size());
+      for (final Path sub : dirs)
+      {
+        searches.add(new Search(sub, this.filename, this.scanned));
+      }
+
+      for (int i = searches.size() - 1; i >= 0; i--)
+      {
+        searches.get(i).fork();
+      }
+
+      // ... and take the first match in directory order, abandoning any searches not yet started.
+
+      for (int i = 0; i < searches.size(); i++)
+      {
+        final Optional<Path> result = searches.get(i).join();
+        if (result.isPresent())
+        {
+          for (int j = i + 1; j < searches.size(); j++)
+          {
+            searches.get(j).cancel(false);
+          }
+          return result;
+        }
+      }
+
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Reads the performance counters that a HotSpot JVM publishes in its {@code hsperfdata} file: the
+ * same counters that {@code jstat} reports, read without starting another VM.  Only the long-valued
+ * counters are read. <p>
+ *
+ * A VM started with {@code -XX:-UsePerfData} (or {@code -XX:+PerfDisableSharedMem}) publishes no file.
+ */
+public class PerfData
+{
+  /** The magic number at the start of every file, always stored big-endian. */
+  private static final int MAGIC = 0xcafec0c0;
+
+  /** The data type of a long-valued counter. */
+  private static final byte TYPE_LONG = 'J';
+
+  /** The directory HotSpot keeps its files in on Linux, whatever {@code java.io.tmpdir} is set to. */
+  private static final Path TEMP_DIR = Paths.get("/tmp");
+
+  /**
+   * Private constructor: static methods only.
+   */
+  private PerfData()
+  {
+    ;
+  }
+
+  /**
+   * Gets the file in which a VM publishes its counters, assuming it runs as the same user as this one.
+   * @param pid The VM's process id.
+   * @return The file.
+   */
+  public static Path file(final long pid)
+  {
+    return TEMP_DIR.resolve("hsperfdata_" + System.getProperty("user.name")).resolve(Long.toString(pid));
+  }
+
+  /**
+   * Reads the long-valued counters from a file.
+   * @param file The file.
+   * @return The counters keyed by name, or absent if the file is missing or not a counter file.
+   */
+  public static Optional<ImmutableMap<String, Long>> read(final Path file)
+  {
+    Preconditions.checkNotNull(file, "file cannot be null");
+
+    try
+    {
+      return parse(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+    catch (IOException e)
+    {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Parses the long-valued counters.  The prologue gives the byte order and locates the entries; each
+   * entry gives its own length and the offsets of its name and value.
+   * @param buffer The file contents.
+   * @return The counters keyed by name, or absent if the contents are not a counter file.
+   */
+  static Optional<ImmutableMap<String, Long>> parse(final ByteBuffer buffer)
+  {
+    try
+    {
+      if (buffer.order(ByteOrder.BIG_ENDIAN).getInt(0) != MAGIC)
+      {
+        return Optional.empty();
+      }
+
+      buffer.order(buffer.get(4) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+      final int entryOffset = buffer.getInt(24);
+      final int entries = buffer.getInt(28);
+      final ImmutableMap.Builder<String, Long> counters = ImmutableMap.builder();
+
+      int start = entryOffset;
+      for (int i = 0; i < entries; i++)
+      {
+        final int length = buffer.getInt(start);
+        final int nameOffset = buffer.getInt(start + 4);
+        final int vectorLength = buffer.getInt(start + 8);
+        final byte type = buffer.get(start + 12);
+        final int dataOffset = buffer.getInt(start + 16);
+
+        if (length <= 0)
+        {
+          return Optional.empty();
+        }
+
+        if (type == TYPE_LONG && vectorLength == 0)
+        {
+          counters.put(name(buffer, start + nameOffset), buffer.getLong(start + dataOffset));
+        }
+
+        start += length;
+      }
+
+      return Optional.of(counters.build());
+    }
+    catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e)
+    {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Reads a null-terminated counter name.
+   * @param buffer The file contents.
+   * @param offset The offset of the name.
+   * @return The name.
+   */
+  private static String name(final ByteBuffer buffer, final int offset)
+  {
+    int end = offset;
+    while (buffer.get(end) != 0)
+    {
+      end++;
+    }
+
+    final byte[] bytes = new byte[end - offset];
+    for (int i = 0; i < bytes.length; i++)
+    {
+      bytes[i] = buffer.get(offset + i);
+    }
+
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}
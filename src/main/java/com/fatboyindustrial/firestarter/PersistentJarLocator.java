@@ -0,0 +1,557 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A jar locator that persists its directory listings to an index file under the search root so that
+ * later runs only need to re-list the directories whose modification time has changed. <p>
+ *
+ * Unchanged directories cost a single {@code stat} rather than a directory read, so a restart of an
+ * unchanged deployment avoids walking the tree entirely.  A listing is only trusted if the directory's
+ * modification time was clearly older than the listing when it was taken: a jar added within the same
+ * timestamp tick as the listing (common with the coarse timestamps of network file systems) would
+ * otherwise leave the time unchanged and never be seen.  Lookups are resolved in the same order as
+ * the {@link DepthFirstJarLocator}.  If the index cannot be read it is rebuilt from scratch, and if it
+ * cannot be written (for example, a read-only search root) the locator carries on without it.
+ */
+public class PersistentJarLocator implements JarLocator
+{
+  /** The name of the index file kept in the search root. */
+  public static final String INDEX_FILENAME = ".firestarter.idx";
+
+  /** Index file magic number ("FSIX"). */
+  private static final int MAGIC = 0x46534958;
+
+  /** Index file format version. */
+  private static final int VERSION = 2;
+
+  /**
+   * How much older than a listing the directory's modification time must be for the listing to be
+   * trusted: the coarsest timestamp granularity expected, with an allowance for clock skew.
+   */
+  private static final long RACY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+  /** The starting point for all searches. */
+  private final Path searchRoot;
+
+  /** The index file. */
+  private final Path indexFile;
+
+  /** The filename index, built on first use. */
+  private ImmutableMap<String, Path> index;
+
+  /** The directory listings the index was last built from, keyed by relative path. */
+  private Map<String, Listing> listings;
+
+  /** The number of directories re-listed; those whose stored listing was still current are not counted. */
+  private final AtomicLong scanned = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param searchRoot The starting point for all searches.
+   */
+  public PersistentJarLocator(final Path searchRoot)
+  {
+    this(searchRoot, Preconditions.checkNotNull(searchRoot, "searchRoot cannot be null").resolve(INDEX_FILENAME));
+  }
+
+  /**
+   * Constructor.
+   * @param searchRoot The starting point for all searches.
+   * @param indexFile The index file.
+   */
+  public PersistentJarLocator(final Path searchRoot, final Path indexFile)
+  {
+    this.searchRoot = Preconditions.checkNotNull(searchRoot, "searchRoot cannot be null").toAbsolutePath();
+    this.indexFile = Preconditions.checkNotNull(indexFile, "indexFile cannot be null").toAbsolutePath();
+  }
+
+  /**
+   * Locates the jar of the specified filename.
+   * @param filename The filename.
+   * @return The path to the jar file, or absent.
+   */
+  @Override
+  public Optional<Path> locate(final String filename)
+  {
+    Preconditions.checkNotNull(filename, "filename cannot be null");
+
+    return Optional.ofNullable(getIndex().get(filename));
+  }
+
+  /**
+   * Gets the number of directories this locator has read so far.  Directories whose stored listing
+   * was still current cost only a {@code stat}, and are not counted.
+   * @return The number of directories read.
+   */
+  @Override
+  public long getDirectoriesScanned()
+  {
+    return this.scanned.get();
+  }
+
+  /**
+   * Discards the filename index, so that the next lookup revalidates the listings it was built from
+   * and finds any jar deployed since.  As on a restart, only directories that have changed are read
+   * again, but the listings are taken from memory rather than the index file.
+   */
+  public synchronized void revalidate()
+  {
+    this.index = null;
+  }
+
+  /**
+   * Gets the filename index, revalidating the known listings if it has not yet been built.
+   * @return The filename index.
+   */
+  private synchronized ImmutableMap<String, Path> getIndex()
+  {
+    if (this.index == null)
+    {
+      final Map<String, Listing> stored = (this.listings != null) ? this.listings : load();
+      final Map<String, Listing> current = new LinkedHashMap<>();
+
+      refresh("", stored, current, new HashSet<>());
+
+      if (!current.equals(stored))
+      {
+        save(current);
+      }
+
+      this.listings = current;
+      this.index = buildIndex(current);
+    }
+
+    return this.index;
+  }
+
+  /**
+   * Revalidates a directory (and recursively, its subdirectories), re-listing it unless its
+   * modification time is that of a stored listing taken clearly after it.
+   * @param relative The directory path relative to the search root.
+   * @param stored The stored listings, keyed by relative path.
+   * @param current The current listings, keyed by relative path, in depth-first order.
+   * @param ancestors The file keys of the directories above this one (for symbolic link cycle detection).
+   */
+  private void refresh(final String relative,
+                       final Map<String, Listing> stored,
+                       final Map<String, Listing> current,
+                       final Set<Object> ancestors)
+  {
+    final Path dir = this.searchRoot.resolve(relative);
+    final BasicFileAttributes attrs;
+
+    try
+    {
+      attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+    }
+    catch (IOException e)
+    {
+      return;
+    }
+
+    final Object key = attrs.fileKey();
+    if (!attrs.isDirectory() || (key != null && !ancestors.add(key)))
+    {
+      return;
+    }
+
+    final long modified = attrs.lastModifiedTime().toMillis();
+    final Listing cached = stored.get(relative);
+    final Listing listing = (cached != null && cached.modified == modified && cached.isSettled())
+                            ? cached
+                            : list(dir, modified);
+
+    if (listing != null)
+    {
+      current.put(relative, listing);
+
+      for (final String sub : listing.dirs)
+      {
+        refresh(relative.isEmpty() ? sub : relative + '/' + sub, stored, current, ancestors);
+      }
+    }
+
+    if (key != null)
+    {
+      ancestors.remove(key);
+    }
+  }
+
+  /**
+   * Lists a single directory, splitting its entries into files and subdirectories.
+   * @param dir The directory.
+   * @param modified The directory's modification time.
+   * @return The listing, or {@code null} if the directory cannot be read.
+   */
+  private Listing list(final Path dir, final long modified)
+  {
+    final long listed = System.currentTimeMillis();
+    final List<String> files = new ArrayList<>();
+    final List<String> dirs = new ArrayList<>();
+    this.scanned.incrementAndGet();
+
+    try (final DirectoryStream<Path> entries = Files.newDirectoryStream(dir))
+    {
+      for (final Path entry : entries)
+      {
+        if (isIndexFile(entry))
+        {
+          continue;
+        }
+
+        if (Files.isRegularFile(entry))
+        {
+          files.add(entry.getFileName().toString());
+        }
+        else if (Files.isDirectory(entry))
+        {
+          dirs.add(entry.getFileName().toString());
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+
+    return new Listing(modified, listed, files, dirs);
+  }
+
+  /**
+   * Determines whether the given path is the index file (or its temporary replacement).
+   * @param path The path.
+   * @return True if the path belongs to the index.
+   */
+  private boolean isIndexFile(final Path path)
+  {
+    return path.getParent().equals(this.indexFile.getParent())
+        && path.getFileName().toString().startsWith(this.indexFile.getFileName().toString());
+  }
+
+  /**
+   * Builds the filename index from directory listings held in depth-first order.
+   * @param listings The listings, keyed by relative path.
+   * @return The filename index.
+   */
+  private ImmutableMap<String, Path> buildIndex(final Map<String, Listing> listings)
+  {
+    final Map<String, Path> paths = new HashMap<>();
+
+    for (final Map.Entry<String, Listing> entry : listings.entrySet())
+    {
+      final Path dir = this.searchRoot.resolve(entry.getKey());
+
+      for (final String file : entry.getValue().files)
+      {
+        paths.putIfAbsent(file, dir.resolve(file));
+      }
+    }
+
+    return ImmutableMap.copyOf(paths);
+  }
+
+  /**
+   * Loads the persisted listings.
+   * @return The listings keyed by relative path; empty if the index is missing, stale or unreadable.
+   */
+  private Map<String, Listing> load()
+  {
+    final Map<String, Listing> listings = new LinkedHashMap<>();
+
+    if (!Files.isRegularFile(this.indexFile))
+    {
+      return listings;
+    }
+
+    try (final DataInputStream in =
+             new DataInputStream(new BufferedInputStream(Files.newInputStream(this.indexFile))))
+    {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(this.searchRoot.toString()))
+      {
+        return new LinkedHashMap<>();
+      }
+
+      final int count = in.readInt();
+      for (int i = 0; i < count; i++)
+      {
+        final String relative = in.readUTF();
+        final long modified = in.readLong();
+        final long listed = in.readLong();
+        final List<String> files = readStrings(in);
+        final List<String> dirs = readStrings(in);
+
+        listings.put(relative, new Listing(modified, listed, files, dirs));
+      }
+    }
+    catch (IOException e)
+    {
+      return new LinkedHashMap<>();
+    }
+
+    return listings;
+  }
+
+  /**
+   * Persists the listings, replacing the index file atomically.  Failures are ignored: the index is
+   * only an optimisation.
+   * @param listings The listings keyed by relative path; the listing of the index file's directory is
+   *                 updated with the modification time that writing the index gave it.
+   */
+  private void save(final Map<String, Listing> listings)
+  {
+    final Optional<String> indexDir = relative(this.indexFile.getParent());
+    Path temp = null;
+
+    try
+    {
+      temp = Files.createTempFile(this.indexFile.getParent(), this.indexFile.getFileName().toString(), ".tmp");
+
+      try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+      {
+        final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        long offset = -1;
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(this.searchRoot.toString());
+        out.writeInt(listings.size());
+
+        for (final Map.Entry<String, Listing> entry : listings.entrySet())
+        {
+          out.writeUTF(entry.getKey());
+          if (indexDir.map(entry.getKey()::equals).orElse(false))
+          {
+            offset = out.size();
+          }
+          out.writeLong(entry.getValue().modified);
+          out.writeLong(entry.getValue().listed);
+          writeStrings(out, entry.getValue().files);
+          writeStrings(out, entry.getValue().dirs);
+        }
+
+        out.flush();
+        Files.move(temp, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (offset >= 0)
+        {
+          settle(channel, offset, indexDir.get(), listings);
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      try
+      {
+        if (temp != null)
+        {
+          Files.deleteIfExists(temp);
+        }
+      }
+      catch (IOException ignored)
+      {
+        ;
+      }
+    }
+  }
+
+  /**
+   * Records the modification time that writing the index gave its own directory, so that the next
+   * run does not take the write for a change and list the directory (and rewrite the index) again.
+   * The directory is listed once more first, and the time is recorded only if its entries are as
+   * written, so that a jar deployed alongside the write is not hidden behind the new time.  The time
+   * is written through the channel the index was written with, so that it never lands in an index
+   * that a concurrent run has put in place since.
+   * @param channel The channel the index was written with.
+   * @param offset The position of the directory's modification time (and the time it was listed) in the
+   *               index.
+   * @param relative The directory's path relative to the search root.
+   * @param listings The listings written.
+   * @throws IOException If the time cannot be written.
+   */
+  private void settle(final FileChannel channel,
+                      final long offset,
+                      final String relative,
+                      final Map<String, Listing> listings) throws IOException
+  {
+    final Path dir = this.indexFile.getParent();
+    final Listing written = listings.get(relative);
+    final Listing relisted = list(dir, Files.getLastModifiedTime(dir).toMillis());
+
+    if (relisted != null && relisted.files.equals(written.files) && relisted.dirs.equals(written.dirs))
+    {
+      final ByteBuffer times = ByteBuffer.allocate(2 * Long.BYTES).putLong(relisted.modified).putLong(relisted.listed);
+      channel.write((ByteBuffer) times.flip(), offset);
+      listings.put(relative, relisted);
+    }
+  }
+
+  /**
+   * Gets the path of a directory relative to the search root, as the listings are keyed.
+   * @param dir The directory.
+   * @return The relative path, or absent if the directory is outside the search root.
+   */
+  private Optional<String> relative(final Path dir)
+  {
+    return dir.startsWith(this.searchRoot)
+        ? Optional.of(this.searchRoot.relativize(dir).toString())
+        : Optional.empty();
+  }
+
+  /**
+   * Reads a length-prefixed list of strings.
+   * @param in The input stream.
+   * @return The strings.
+   * @throws IOException If an I/O error occurs.
+   */
+  private static List<String> readStrings(final DataInputStream in) throws IOException
+  {
+    final int count = in.readInt();
+    final List<String> strings = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++)
+    {
+      strings.add(in.readUTF());
+    }
+
+    return strings;
+  }
+
+  /**
+   * Writes a length-prefixed list of strings.
+   * @param out The output stream.
+   * @param strings The strings.
+   * @throws IOException If an I/O error occurs.
+   */
+  private static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException
+  {
+    out.writeInt(strings.size());
+
+    for (final String str : strings)
+    {
+      out.writeUTF(str);
+    }
+  }
+
+  /**
+   * The contents of a single directory at a point in time.
+   */
+  private static class Listing
+  {
+    /** The directory's modification time, in milliseconds. */
+    private final long modified;
+
+    /** The time the listing was taken, in milliseconds since the epoch. */
+    private final long listed;
+
+    /** The names of the regular files, in listing order. */
+    private final ImmutableList<String> files;
+
+    /** The names of the subdirectories, in listing order. */
+    private final ImmutableList<String> dirs;
+
+    /**
+     * Constructor.
+     * @param modified The directory's modification time, in milliseconds.
+     * @param listed The time the listing was taken, in milliseconds since the epoch.
+     * @param files The names of the regular files, in listing order.
+     * @param dirs The names of the subdirectories, in listing order.
+     */
+    public Listing(final long modified, final long listed, final List<String> files, final List<String> dirs)
+    {
+      this.modified = modified;
+      this.listed = listed;
+      this.files = ImmutableList.copyOf(files);
+      this.dirs = ImmutableList.copyOf(dirs);
+    }
+
+    /**
+     * Determines whether the directory was modified clearly before the listing was taken, so that any
+     * later change to it must have given it a new modification time.
+     * @return True if the listing can be trusted while the modification time is unchanged.
+     */
+    public boolean isSettled()
+    {
+      return this.modified < this.listed - RACY_MILLIS;
+    }
+
+    /**
+     * Listings are equal if they were taken at the same modification time and hold the same entries,
+     * whenever they were taken.
+     * @param obj The object to compare to.
+     * @return True if the listings are equal.
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+      if (!(obj instanceof Listing))
+      {
+        return false;
+      }
+
+      final Listing other = (Listing) obj;
+      return this.modified == other.modified && this.files.equals(other.files) && this.dirs.equals(other.dirs);
+    }
+
+    /**
+     * Gets the hash code.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode()
+    {
+      return 31 * (31 * Long.hashCode(this.modified) + this.files.hashCode()) + this.dirs.hashCode();
+    }
+  }
+}
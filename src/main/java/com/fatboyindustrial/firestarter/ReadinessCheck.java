@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a freshly started VM to become ready, as described by its {@link ReadinessConfig}.
+ */
+public class ReadinessCheck
+{
+  /** The interval between readiness polls. */
+  private static final long POLL_MILLIS = 250;
+
+  /** The time allowed for a single TCP connection attempt. */
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+  /** The readiness configuration. */
+  private final ReadinessConfig config;
+
+  /** The VM's log file. */
+  private final Path logFile;
+
+  /** The offset into the log file from which to search. */
+  private long logOffset;
+
+  /**
+   * Constructor.  Call this before starting the VM so that only log output from the new VM is examined.
+   * @param config The readiness configuration.
+   * @param logFile The VM's log file.
+   */
+  public ReadinessCheck(final ReadinessConfig config, final Path logFile)
+  {
+    this.config = Preconditions.checkNotNull(config, "config cannot be null");
+    this.logFile = Preconditions.checkNotNull(logFile, "logFile cannot be null");
+
+    try
+    {
+      this.logOffset = Files.exists(logFile) ? Files.size(logFile) : 0;
+    }
+    catch (IOException e)
+    {
+      this.logOffset = 0;
+    }
+  }
+
+  /**
+   * Waits for the VM to become ready.
+   * @param process The VM process.
+   * @return True if the VM became ready; false if it exited or the timeout expired first.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public boolean await(final Process process) throws InterruptedException
+  {
+    Preconditions.checkNotNull(process, "process cannot be null");
+
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.config.getTimeoutMillis());
+
+    boolean portReady = !this.config.getPort().isPresent();
+    boolean logReady = !this.config.getLogPattern().isPresent();
+
+    while (System.nanoTime() < deadline)
+    {
+      portReady = portReady || isListening(this.config.getPort().get());
+      logReady = logReady || hasLogged();
+
+      if (portReady && logReady)
+      {
+        return true;
+      }
+
+      if (process.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS))
+      {
+        return false;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Determines whether a local TCP port is accepting connections.
+   * @param port The port.
+   * @return True if a connection could be made.
+   */
+  private static boolean isListening(final int port)
+  {
+    try (final Socket socket = new Socket())
+    {
+      socket.connect(new InetSocketAddress("localhost", port), CONNECT_TIMEOUT_MILLIS);
+      return true;
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Determines whether a line matching the log pattern has been written since the last call.  Only
+   * complete lines are examined; a partial last line is left for the next call.
+   * @return True if a matching line was found.
+   */
+  private boolean hasLogged()
+  {
+    if (!Files.exists(this.logFile))
+    {
+      return false;
+    }
+
+    try (final RandomAccessFile file = new RandomAccessFile(this.logFile.toFile(), "r"))
+    {
+      final long length = file.length();
+      if (length <= this.logOffset)
+      {
+        return false;
+      }
+
+      final byte[] bytes = new byte[(int) Math.min(length - this.logOffset, Integer.MAX_VALUE)];
+      file.seek(this.logOffset);
+      file.readFully(bytes);
+
+      int start = 0;
+      for (int i = 0; i < bytes.length; i++)
+      {
+        if (bytes[i] == '\n')
+        {
+          final String line = new String(bytes, start, i - start, Charsets.UTF_8);
+          start = i + 1;
+
+          if (this.config.getLogPattern().get().matcher(line).find())
+          {
+            this.logOffset += start;
+            return true;
+          }
+        }
+      }
+
+      this.logOffset += start;
+      return false;
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+}
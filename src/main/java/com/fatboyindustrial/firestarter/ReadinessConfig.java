@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.typesafe.config.Config;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Describes how to tell that a VM has finished starting: it accepts connections on a TCP port, and/or
+ * it has written a matching line to its log.
+ */
+public class ReadinessConfig
+{
+  /** The default time to wait for a VM to become ready. */
+  public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+  /** The local TCP port the VM listens on once ready. */
+  private final Optional<Integer> port;
+
+  /** The pattern matching the log line written once ready. */
+  private final Optional<Pattern> logPattern;
+
+  /** The time to wait for the VM to become ready, in milliseconds. */
+  private final long timeoutMillis;
+
+  /**
+   * Constructor.
+   * @param port The local TCP port the VM listens on once ready.
+   * @param logPattern The pattern matching the log line written once ready.
+   * @param timeoutMillis The time to wait for the VM to become ready, in milliseconds.
+   */
+  public ReadinessConfig(final Optional<Integer> port, final Optional<Pattern> logPattern, final long timeoutMillis)
+  {
+    Preconditions.checkNotNull(port, "port cannot be null");
+    Preconditions.checkNotNull(logPattern, "logPattern cannot be null");
+
+    Preconditions.checkArgument(port.isPresent() || logPattern.isPresent(), "ReadinessConfig requires a port or log");
+    Preconditions.checkArgument(!port.isPresent() || (port.get() > 0 && port.get() < 65536),
+                                "ReadinessConfig.port must be a valid port but was: " + port.orElse(0));
+    Preconditions.checkArgument(timeoutMillis > 0, "ReadinessConfig.timeout must be > 0 but was: " + timeoutMillis);
+
+    this.port = port;
+    this.logPattern = logPattern;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Creates a readiness config from the given HOCON configuration.
+   * @param readyConfig The configuration.
+   * @return The readiness config.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static ReadinessConfig fromConfig(final Config readyConfig) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(readyConfig, "readyConfig cannot be null");
+
+    return new ReadinessConfig(
+        readyConfig.hasPath("port") ? Optional.of(readyConfig.getInt("port")) : Optional.empty(),
+        readyConfig.hasPath("log") ? Optional.of(Pattern.compile(readyConfig.getString("log"))) : Optional.empty(),
+        readyConfig.hasPath("timeout")
+            ? readyConfig.getDuration("timeout", TimeUnit.MILLISECONDS)
+            : DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Gets the local TCP port the VM listens on once ready.
+   * @return The port, if any.
+   */
+  public Optional<Integer> getPort()
+  {
+    return this.port;
+  }
+
+  /**
+   * Gets the pattern matching the log line written once ready.
+   * @return The pattern, if any.
+   */
+  public Optional<Pattern> getLogPattern()
+  {
+    return this.logPattern;
+  }
+
+  /**
+   * Gets the time to wait for the VM to become ready.
+   * @return The timeout, in milliseconds.
+   */
+  public long getTimeoutMillis()
+  {
+    return this.timeoutMillis;
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal ReadinessConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof ReadinessConfig))
+    {
+      return false;
+    }
+
+    final ReadinessConfig other = (ReadinessConfig) obj;
+    return this.port.equals(other.port)
+        && this.logPattern.map(Pattern::pattern).equals(other.logPattern.map(Pattern::pattern))
+        && this.timeoutMillis == other.timeoutMillis;
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.port, this.logPattern.map(Pattern::pattern), this.timeoutMillis);
+  }
+}
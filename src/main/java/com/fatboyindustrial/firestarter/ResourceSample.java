@@ -0,0 +1,279 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * A single sample of a VM process's resource usage.  The process figures come from {@code /proc}; the
+ * heap and GC figures come from the VM's {@link PerfData} counters, and are absent if it publishes none.
+ */
+public class ResourceSample
+{
+  /** The kernel's clock ticks per second, as reported in {@code /proc/<pid>/stat} (USER_HZ). */
+  private static final long TICKS_PER_SECOND = 100;
+
+  /** The number of bytes in a kilobyte. */
+  private static final long KILOBYTES = 1024;
+
+  /** The index of {@code utime} among the {@code stat} fields that follow the command name. */
+  private static final int UTIME_FIELD = 11;
+
+  /** The index of {@code stime} among the {@code stat} fields that follow the command name. */
+  private static final int STIME_FIELD = 12;
+
+  /** The index of {@code num_threads} among the {@code stat} fields that follow the command name. */
+  private static final int THREADS_FIELD = 17;
+
+  /** Matches the counters of the time spent in each collector. */
+  private static final Pattern GC_TIME = Pattern.compile("sun\\.gc\\.collector\\.\\d+\\.time");
+
+  /** Matches the counters of the invocations of each collector. */
+  private static final Pattern GC_INVOCATIONS = Pattern.compile("sun\\.gc\\.collector\\.\\d+\\.invocations");
+
+  /** Matches the counters of the space used in each heap generation. */
+  private static final Pattern HEAP_USED = Pattern.compile("sun\\.gc\\.generation\\.\\d+\\.space\\.\\d+\\.used");
+
+  /** The counter of the high resolution timer's ticks per second. */
+  private static final String TIMER_FREQUENCY = "sun.os.hrt.frequency";
+
+  /** The time the sample was taken, in milliseconds since the epoch. */
+  private final long timestamp;
+
+  /** The process id. */
+  private final long pid;
+
+  /** The resident set size, in bytes. */
+  private final long rssBytes;
+
+  /** The user and system CPU time consumed, in milliseconds. */
+  private final long cpuMillis;
+
+  /** The number of threads. */
+  private final int threads;
+
+  /** The heap in use, in bytes, if known. */
+  private final Optional<Long> heapUsedBytes;
+
+  /** The number of garbage collections, if known. */
+  private final Optional<Long> gcCount;
+
+  /** The time spent in garbage collection, in milliseconds, if known. */
+  private final Optional<Long> gcMillis;
+
+  /**
+   * Constructor.
+   * @param timestamp The time the sample was taken, in milliseconds since the epoch.
+   * @param pid The process id.
+   * @param rssBytes The resident set size, in bytes.
+   * @param cpuMillis The user and system CPU time consumed, in milliseconds.
+   * @param threads The number of threads.
+   * @param heapUsedBytes The heap in use, in bytes, if known.
+   * @param gcCount The number of garbage collections, if known.
+   * @param gcMillis The time spent in garbage collection, in milliseconds, if known.
+   */
+  public ResourceSample(final long timestamp,
+                        final long pid,
+                        final long rssBytes,
+                        final long cpuMillis,
+                        final int threads,
+                        final Optional<Long> heapUsedBytes,
+                        final Optional<Long> gcCount,
+                        final Optional<Long> gcMillis)
+  {
+    this.timestamp = timestamp;
+    this.pid = pid;
+    this.rssBytes = rssBytes;
+    this.cpuMillis = cpuMillis;
+    this.threads = threads;
+    this.heapUsedBytes = Preconditions.checkNotNull(heapUsedBytes, "heapUsedBytes cannot be null");
+    this.gcCount = Preconditions.checkNotNull(gcCount, "gcCount cannot be null");
+    this.gcMillis = Preconditions.checkNotNull(gcMillis, "gcMillis cannot be null");
+  }
+
+  /**
+   * Samples a process.
+   * @param pid The process id.
+   * @param proc The {@code /proc} directory.
+   * @param perfData The VM's counter file.
+   * @return The sample, or absent if the process has gone.
+   */
+  public static Optional<ResourceSample> take(final long pid, final Path proc, final Path perfData)
+  {
+    Preconditions.checkNotNull(proc, "proc cannot be null");
+    Preconditions.checkNotNull(perfData, "perfData cannot be null");
+
+    final Path dir = proc.resolve(Long.toString(pid));
+    final long rssBytes;
+    final String[] stat;
+
+    try
+    {
+      rssBytes = rss(dir);
+
+      // The command name is in parentheses and may itself contain spaces or parentheses.
+      final String line = new String(Files.readAllBytes(dir.resolve("stat")), Charsets.US_ASCII);
+      stat = line.substring(line.lastIndexOf(')') + 2).trim().split(" ");
+    }
+    catch (IOException | StringIndexOutOfBoundsException e)
+    {
+      return Optional.empty();
+    }
+
+    try
+    {
+      final long ticks = Long.parseLong(stat[UTIME_FIELD]) + Long.parseLong(stat[STIME_FIELD]);
+      final Map<String, Long> counters = PerfData.read(perfData).orElse(ImmutableMap.of());
+      final Optional<Long> frequency = Optional.ofNullable(counters.get(TIMER_FREQUENCY));
+
+      return Optional.of(new ResourceSample(
+          System.currentTimeMillis(),
+          pid,
+          rssBytes,
+          ticks * 1000 / TICKS_PER_SECOND,
+          Integer.parseInt(stat[THREADS_FIELD]),
+          sum(counters, HEAP_USED),
+          sum(counters, GC_INVOCATIONS),
+          frequency.flatMap(hz -> sum(counters, GC_TIME).map(time -> time * 1000 / hz))));
+    }
+    catch (ArrayIndexOutOfBoundsException | NumberFormatException e)
+    {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Reads a process's resident set size from its {@code status} file.
+   * @param dir The process's {@code /proc} directory.
+   * @return The resident set size, in bytes.
+   * @throws IOException If the file cannot be read.
+   */
+  private static long rss(final Path dir) throws IOException
+  {
+    for (final String line : Files.readAllLines(dir.resolve("status"), Charsets.US_ASCII))
+    {
+      if (line.startsWith("VmRSS:"))
+      {
+        return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) * KILOBYTES;
+      }
+    }
+
+    return 0;                                    // a zombie has no memory
+  }
+
+  /**
+   * Sums the counters whose names match a pattern.
+   * @param counters The counters.
+   * @param names Matches the names of the counters to sum.
+   * @return The sum, or absent if no counter matches.
+   */
+  private static Optional<Long> sum(final Map<String, Long> counters, final Pattern names)
+  {
+    return counters.entrySet().stream()
+        .filter(entry -> names.matcher(entry.getKey()).matches())
+        .map(Map.Entry::getValue)
+        .reduce(Long::sum);
+  }
+
+  /**
+   * Gets the time the sample was taken.
+   * @return The time, in milliseconds since the epoch.
+   */
+  public long getTimestamp()
+  {
+    return this.timestamp;
+  }
+
+  /**
+   * Gets the process id.
+   * @return The process id.
+   */
+  public long getPid()
+  {
+    return this.pid;
+  }
+
+  /**
+   * Gets the resident set size.
+   * @return The resident set size, in bytes.
+   */
+  public long getRssBytes()
+  {
+    return this.rssBytes;
+  }
+
+  /**
+   * Gets the user and system CPU time consumed.
+   * @return The CPU time, in milliseconds.
+   */
+  public long getCpuMillis()
+  {
+    return this.cpuMillis;
+  }
+
+  /**
+   * Gets the number of threads.
+   * @return The number of threads.
+   */
+  public int getThreads()
+  {
+    return this.threads;
+  }
+
+  /**
+   * Gets the heap in use.
+   * @return The heap in use, in bytes, if known.
+   */
+  public Optional<Long> getHeapUsedBytes()
+  {
+    return this.heapUsedBytes;
+  }
+
+  /**
+   * Gets the number of garbage collections.
+   * @return The number of collections, if known.
+   */
+  public Optional<Long> getGcCount()
+  {
+    return this.gcCount;
+  }
+
+  /**
+   * Gets the time spent in garbage collection.
+   * @return The time, in milliseconds, if known.
+   */
+  public Optional<Long> getGcMillis()
+  {
+    return this.gcMillis;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a supervised VM that has exited should be restarted. <p>
+ *
+ * Consecutive failures back off exponentially, from the initial delay up to the maximum.  A VM that
+ * ran for at least the stable period before exiting is considered to have recovered, and its next
+ * restart is immediate.  A VM that exits too many times within the crash loop window is considered to
+ * be crash looping, and is held for the crash loop delay before another attempt.
+ */
+public class RestartPolicy
+{
+  /** The delay before the first restart of a failing VM, in milliseconds. */
+  private final long initialBackoffMillis;
+
+  /** The maximum delay between restarts of a failing VM, in milliseconds. */
+  private final long maxBackoffMillis;
+
+  /** The uptime after which a VM is considered stable, in milliseconds. */
+  private final long stableMillis;
+
+  /** The number of exits within the window that indicates a crash loop. */
+  private final int crashLoopExits;
+
+  /** The crash loop detection window, in milliseconds. */
+  private final long crashLoopWindowMillis;
+
+  /** The delay before restarting a crash looping VM, in milliseconds. */
+  private final long crashLoopDelayMillis;
+
+  /**
+   * Constructor.
+   * @param initialBackoffMillis The delay before the first restart of a failing VM, in milliseconds.
+   * @param maxBackoffMillis The maximum delay between restarts of a failing VM, in milliseconds.
+   * @param stableMillis The uptime after which a VM is considered stable, in milliseconds.
+   * @param crashLoopExits The number of exits within the window that indicates a crash loop.
+   * @param crashLoopWindowMillis The crash loop detection window, in milliseconds.
+   * @param crashLoopDelayMillis The delay before restarting a crash looping VM, in milliseconds.
+   */
+  public RestartPolicy(final long initialBackoffMillis,
+                       final long maxBackoffMillis,
+                       final long stableMillis,
+                       final int crashLoopExits,
+                       final long crashLoopWindowMillis,
+                       final long crashLoopDelayMillis)
+  {
+    Preconditions.checkArgument(initialBackoffMillis > 0, "initialBackoffMillis must be > 0");
+    Preconditions.checkArgument(maxBackoffMillis >= initialBackoffMillis, "maxBackoffMillis must be >= initial");
+    Preconditions.checkArgument(stableMillis > 0, "stableMillis must be > 0");
+    Preconditions.checkArgument(crashLoopExits > 1, "crashLoopExits must be > 1");
+    Preconditions.checkArgument(crashLoopWindowMillis > 0, "crashLoopWindowMillis must be > 0");
+    Preconditions.checkArgument(crashLoopDelayMillis > 0, "crashLoopDelayMillis must be > 0");
+
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.stableMillis = stableMillis;
+    this.crashLoopExits = crashLoopExits;
+    this.crashLoopWindowMillis = crashLoopWindowMillis;
+    this.crashLoopDelayMillis = crashLoopDelayMillis;
+  }
+
+  /**
+   * Creates the default policy: back off from 1 second to 1 minute, consider a VM stable after
+   * 1 minute, and hold a VM that exits 5 times in 5 minutes for 10 minutes.
+   * @return The default policy.
+   */
+  public static RestartPolicy defaults()
+  {
+    return new RestartPolicy(
+        TimeUnit.SECONDS.toMillis(1),
+        TimeUnit.MINUTES.toMillis(1),
+        TimeUnit.MINUTES.toMillis(1),
+        5,
+        TimeUnit.MINUTES.toMillis(5),
+        TimeUnit.MINUTES.toMillis(10));
+  }
+
+  /**
+   * Determines whether a VM ran for long enough to be considered stable.
+   * @param uptimeMillis How long the VM ran for, in milliseconds.
+   * @return True if the VM was stable.
+   */
+  public boolean isStable(final long uptimeMillis)
+  {
+    return uptimeMillis >= this.stableMillis;
+  }
+
+  /**
+   * Gets the backoff delay after a number of consecutive failures.
+   * @param failures The number of consecutive failures (at least one).
+   * @return The delay, in milliseconds.
+   */
+  public long backoff(final int failures)
+  {
+    Preconditions.checkArgument(failures > 0, "failures must be > 0 but was: " + failures);
+
+    long delay = this.initialBackoffMillis;
+    for (int i = 1; i < failures && delay < this.maxBackoffMillis; i++)
+    {
+      delay *= 2;
+    }
+
+    return Math.min(delay, this.maxBackoffMillis);
+  }
+
+  /**
+   * Determines whether a VM is crash looping.
+   * @param exitTimes The times at which the VM has exited, in milliseconds, oldest first.
+   * @param now The current time, in milliseconds.
+   * @return True if the VM has exited too often within the crash loop window.
+   */
+  public boolean isCrashLoop(final List<Long> exitTimes, final long now)
+  {
+    Preconditions.checkNotNull(exitTimes, "exitTimes cannot be null");
+
+    return exitTimes.stream().filter(time -> now - time < this.crashLoopWindowMillis).count() >= this.crashLoopExits;
+  }
+
+  /**
+   * Gets the crash loop detection window.
+   * @return The window, in milliseconds.
+   */
+  public long getCrashLoopWindowMillis()
+  {
+    return this.crashLoopWindowMillis;
+  }
+
+  /**
+   * Gets the delay before restarting a crash looping VM.
+   * @return The delay, in milliseconds.
+   */
+  public long getCrashLoopDelayMillis()
+  {
+    return this.crashLoopDelayMillis;
+  }
+}
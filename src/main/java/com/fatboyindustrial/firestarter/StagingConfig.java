@@ -0,0 +1,565 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueType;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * How the located jars are staged before the VMs start, so that VMs starting together from slow or
+ * network storage do not each read their jar cold:
+ * <pre>
+ *   staging { mode: copy, dir: /dev/shm/firestarter }
+ * </pre>
+ * With {@code copy}, each distinct jar is copied once into the staging directory (ideally a tmpfs) and
+ * the VMs are started from the copy; {@code link} hard-links it there instead where the directory is
+ * on the same file system, and copies it where it is not.  A link saves the copy but is not a
+ * snapshot: it shares the located jar's inode, so a redeploy that renames a new jar into place leaves
+ * the staged one as it was, but one that rewrites the jar in place changes the staged one too, and its
+ * content then no longer matches the hash it is filed under.  {@code prefault} leaves the jar where it
+ * is but reads it through a memory mapping so that it is in the page cache. <p>
+ *
+ * Staged copies are named by content hash ({@code <dir>/<hash>/<jar name>}), so a jar shared by several
+ * VMs, or several configurations, is staged once, and a changed jar is staged afresh.  The staging
+ * directory must belong to the user that stages the jars, and is kept private to it, so that no other
+ * user decides what the VMs run; a copy already staged is checked against the located jar's hash
+ * before it is reused, and replaced if it does not match. <p>
+ *
+ * Each configuration records the copies it has staged ({@code <dir>/<name hash>.staged}).  Once its VMs
+ * have moved to the copies just staged, {@link #prune} cuts the record down to those, and removes the
+ * copies that no configuration's record names, so that redeploys do not fill the staging directory.
+ */
+public class StagingConfig
+{
+  /**
+   * The way the jars are staged.
+   */
+  public enum Mode
+  {
+    /** The VMs start from the located jars. */
+    NONE,
+
+    /** Each jar is copied into the staging directory. */
+    COPY,
+
+    /** Each jar is hard-linked into the staging directory, or copied if it cannot be. */
+    LINK,
+
+    /** Each jar is read into the page cache where it is. */
+    PREFAULT
+  }
+
+  /** The staging directory used when none is given. */
+  public static final String DEFAULT_DIR = "/dev/shm/firestarter";
+
+  /** The settings used when none are configured: no staging. */
+  public static final StagingConfig NONE = new StagingConfig(Mode.NONE, Paths.get(DEFAULT_DIR));
+
+  /** The number of hash characters in a staged jar's directory name. */
+  private static final int HASH_LENGTH = 16;
+
+  /** The extension of the files recording the copies each configuration has staged. */
+  private static final String RECORD_EXTENSION = ".staged";
+
+  /** The permissions of the staging directory: private to its owner. */
+  private static final Set<PosixFilePermission> PRIVATE = PosixFilePermissions.fromString("rwx------");
+
+  /** The most bytes mapped at once while prefaulting. */
+  private static final long MAPPING_BYTES = 64L * 1024 * 1024;
+
+  /** The way the jars are staged. */
+  private final Mode mode;
+
+  /** The staging directory. */
+  private final Path dir;
+
+  /**
+   * Constructor.
+   * @param mode The way the jars are staged.
+   * @param dir The staging directory; it is created when needed.
+   */
+  public StagingConfig(final Mode mode, final Path dir)
+  {
+    Preconditions.checkNotNull(mode, "mode cannot be null");
+    Preconditions.checkNotNull(dir, "dir cannot be null");
+
+    this.mode = mode;
+    this.dir = dir;
+  }
+
+  /**
+   * Creates a staging config from the given HOCON configuration, either {@code staging: <mode>} or an
+   * object with a {@code mode} and optionally a {@code dir}.
+   * @param hocon The configuration holding the {@code staging} value.
+   * @return The staging config.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static StagingConfig fromConfig(final Config hocon) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(hocon, "hocon cannot be null");
+
+    if (hocon.getValue("staging").valueType() == ConfigValueType.STRING)
+    {
+      return new StagingConfig(mode(hocon.getString("staging")), Paths.get(DEFAULT_DIR));
+    }
+
+    final Config staging = hocon.getConfig("staging");
+
+    return new StagingConfig(
+        mode(staging.getString("mode")),
+        Paths.get(staging.hasPath("dir") ? staging.getString("dir") : DEFAULT_DIR));
+  }
+
+  /**
+   * Parses a mode name.
+   * @param name The name (case insensitive).
+   * @return The mode.
+   * @throws IllegalArgumentException If the name is not a known mode.
+   */
+  private static Mode mode(final String name) throws IllegalArgumentException
+  {
+    return Mode.valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Stages the located jars, recording them as staged by a configuration.
+   * @param name The configuration name.
+   * @param jars The located jars, keyed by file name.
+   * @param hashes The SHA-256 hash of each located jar, in hex.
+   * @param verifier The verifier that hashes the staged copies.
+   * @return The jars the VMs start from, keyed by file name.
+   * @throws IOException If a jar cannot be staged, or the staging directory belongs to another user.
+   */
+  public ImmutableMap<String, Path> stage(final String name,
+                                          final Map<String, Path> jars,
+                                          final Map<Path, String> hashes,
+                                          final JarVerifier verifier) throws IOException
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(jars, "jars cannot be null");
+    Preconditions.checkNotNull(hashes, "hashes cannot be null");
+    Preconditions.checkNotNull(verifier, "verifier cannot be null");
+
+    if (isCopied())
+    {
+      createDir();
+
+      final Set<String> recorded = new TreeSet<>(readRecord(name));
+      for (final Path jar : jars.values())
+      {
+        Preconditions.checkArgument(hashes.containsKey(jar), "no hash for " + jar);
+        recorded.add(hashDir(hashes.get(jar)));
+      }
+      writeRecord(name, recorded);
+    }
+
+    final Map<Path, Path> staged = new HashMap<>();
+    final ImmutableMap.Builder<String, Path> result = ImmutableMap.builder();
+
+    for (final Map.Entry<String, Path> entry : jars.entrySet())
+    {
+      Path jar = staged.get(entry.getValue());
+      if (jar == null)
+      {
+        jar = stage(entry.getValue(), hashes.get(entry.getValue()), verifier);
+        staged.put(entry.getValue(), jar);
+      }
+
+      result.put(entry.getKey(), jar);
+    }
+
+    return result.build();
+  }
+
+  /**
+   * Removes the staged copies that a configuration's VMs no longer start from: its record is cut down
+   * to the given copies, and every copy that no configuration's record names is removed.  Only call
+   * this once the VMs have moved to the given copies, as a VM restarted from a removed copy fails to
+   * start.
+   * @param name The configuration name.
+   * @param inUse The staged jars the configuration's VMs start from.
+   * @throws IOException If the staging directory cannot be read, or a copy cannot be removed.
+   */
+  public void prune(final String name, final Collection<Path> inUse) throws IOException
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(inUse, "inUse cannot be null");
+
+    if (!isCopied() || !Files.isDirectory(this.dir))
+    {
+      return;
+    }
+
+    final Set<String> kept = new TreeSet<>();
+    for (final Path jar : inUse)
+    {
+      if (jar.startsWith(this.dir) && this.dir.relativize(jar).getNameCount() == 2)
+      {
+        kept.add(this.dir.relativize(jar).getName(0).toString());
+      }
+    }
+    writeRecord(name, kept);
+
+    try (final DirectoryStream<Path> records = Files.newDirectoryStream(this.dir, "*" + RECORD_EXTENSION))
+    {
+      for (final Path record : records)
+      {
+        kept.addAll(Files.readAllLines(record, StandardCharsets.UTF_8));
+      }
+    }
+
+    final Pattern hashDir = Pattern.compile("[0-9a-f]{" + HASH_LENGTH + "}");
+    try (final DirectoryStream<Path> dirs = Files.newDirectoryStream(
+        this.dir, path -> hashDir.matcher(path.getFileName().toString()).matches() && Files.isDirectory(path)))
+    {
+      for (final Path stale : dirs)
+      {
+        if (!kept.contains(stale.getFileName().toString()))
+        {
+          delete(stale);
+        }
+      }
+    }
+  }
+
+  /**
+   * Stages a single jar.
+   * @param jar The located jar.
+   * @param hash The jar's SHA-256 hash, in hex.
+   * @param verifier The verifier that hashes the staged copy.
+   * @return The jar the VMs start from.
+   * @throws IOException If the jar cannot be staged.
+   */
+  private Path stage(final Path jar, final String hash, final JarVerifier verifier) throws IOException
+  {
+    switch (this.mode)
+    {
+      case PREFAULT:
+        prefault(jar);
+        return jar;
+
+      case COPY:
+      case LINK:
+        final Path target = this.dir.resolve(hashDir(hash)).resolve(jar.getFileName());
+        if (!isStaged(target, hash, verifier))
+        {
+          Files.createDirectories(target.getParent());
+          if (this.mode == Mode.LINK)
+          {
+            Files.deleteIfExists(target);
+          }
+          if (this.mode == Mode.COPY || !link(jar, target))
+          {
+            copy(jar, target);
+          }
+
+          if (!isStaged(target, hash, verifier))
+          {
+            throw new IOException(jar + " changed while it was being staged");
+          }
+        }
+        return target;
+
+      default:
+        return jar;
+    }
+  }
+
+  /**
+   * Determines whether a staged jar is an intact copy of the located jar, by its content hash.  The
+   * verifier only reads the staged jar again if its size or modification time has changed since it
+   * last hashed it.
+   * @param target The staged jar.
+   * @param hash The located jar's SHA-256 hash, in hex.
+   * @param verifier The verifier that hashes the staged jar.
+   * @return True if the staged jar can be started from.
+   */
+  private static boolean isStaged(final Path target, final String hash, final JarVerifier verifier)
+  {
+    try
+    {
+      return Files.isRegularFile(target) && verifier.verify(target).equals(hash);
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Creates the staging directory, private to the current user, and checks that neither it nor (if it
+   * is a symbolic link) the directory it links to belongs to anyone else.
+   * @throws IOException If the directory cannot be created, or belongs to another user.
+   */
+  private void createDir() throws IOException
+  {
+    if (!Files.isDirectory(this.dir))
+    {
+      Files.createDirectories(this.dir.toAbsolutePath().getParent());
+      try
+      {
+        Files.createDirectory(this.dir, PosixFilePermissions.asFileAttribute(PRIVATE));
+      }
+      catch (FileAlreadyExistsException e)
+      {
+        ;
+      }
+    }
+
+    final UserPrincipal user = this.dir.getFileSystem().getUserPrincipalLookupService()
+        .lookupPrincipalByName(System.getProperty("user.name"));
+
+    for (final UserPrincipal owner : new UserPrincipal[] {
+        Files.getOwner(this.dir, LinkOption.NOFOLLOW_LINKS), Files.getOwner(this.dir) })
+    {
+      if (!owner.equals(user))
+      {
+        throw new IOException(String.format("staging directory %s belongs to %s, not %s", this.dir, owner, user));
+      }
+    }
+
+    Files.setPosixFilePermissions(this.dir, PRIVATE);
+  }
+
+  /**
+   * Reads the copies a configuration has recorded as staged.
+   * @param name The configuration name.
+   * @return The names of the copies' hash directories; empty if there is no record.
+   * @throws IOException If the record cannot be read.
+   */
+  private List<String> readRecord(final String name) throws IOException
+  {
+    final Path record = record(name);
+    return Files.isRegularFile(record) ? Files.readAllLines(record, StandardCharsets.UTF_8) : ImmutableList.of();
+  }
+
+  /**
+   * Replaces the copies a configuration has recorded as staged.  The record is written under a
+   * temporary name and then moved into place, so that a concurrent prune never reads a partial one.
+   * @param name The configuration name.
+   * @param hashDirs The names of the copies' hash directories.
+   * @throws IOException If the record cannot be written.
+   */
+  private void writeRecord(final String name, final Set<String> hashDirs) throws IOException
+  {
+    final Path record = record(name);
+    final Path temp = Files.createTempFile(this.dir, record.getFileName().toString(), ".tmp");
+
+    try
+    {
+      Files.write(temp, hashDirs, StandardCharsets.UTF_8);
+      Files.move(temp, record, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally
+    {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Gets the file recording the copies a configuration has staged, named by the hash of the
+   * configuration name so that any name is a safe file name.
+   * @param name The configuration name.
+   * @return The record file.
+   */
+  private Path record(final String name)
+  {
+    return this.dir.resolve(hashDir(Hashing.sha256().hashString(name, StandardCharsets.UTF_8).toString())
+                            + RECORD_EXTENSION);
+  }
+
+  /**
+   * Gets the name of the directory that the copies of a jar are staged in.
+   * @param hash The jar's SHA-256 hash, in hex.
+   * @return The directory name.
+   */
+  private static String hashDir(final String hash)
+  {
+    return hash.substring(0, HASH_LENGTH);
+  }
+
+  /**
+   * Determines whether the jars are staged into the staging directory.
+   * @return True if they are copied or linked there.
+   */
+  private boolean isCopied()
+  {
+    return this.mode == Mode.COPY || this.mode == Mode.LINK;
+  }
+
+  /**
+   * Removes a staged jar's hash directory and everything in it.
+   * @param hashDir The directory.
+   * @throws IOException If it cannot be removed.
+   */
+  private static void delete(final Path hashDir) throws IOException
+  {
+    try (final DirectoryStream<Path> entries = Files.newDirectoryStream(hashDir))
+    {
+      for (final Path entry : entries)
+      {
+        Files.deleteIfExists(entry);
+      }
+    }
+
+    Files.deleteIfExists(hashDir);
+  }
+
+  /**
+   * Hard-links a jar into the staging directory.
+   * @param jar The located jar.
+   * @param target The staged jar.
+   * @return True if the jar is now linked (or another process linked or copied it first); false if it
+   *         cannot be linked, such as when it is on another file system.
+   */
+  private static boolean link(final Path jar, final Path target)
+  {
+    try
+    {
+      Files.createLink(target, jar);
+      return true;
+    }
+    catch (FileAlreadyExistsException e)
+    {
+      return true;
+    }
+    catch (IOException | UnsupportedOperationException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Copies a jar into the staging directory, read-only.  The copy is made under a temporary name and
+   * then moved into place, so a VM never starts from a partial copy.
+   * @param jar The located jar.
+   * @param target The staged jar.
+   * @throws IOException If the jar cannot be copied.
+   */
+  private static void copy(final Path jar, final Path target) throws IOException
+  {
+    final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+    try
+    {
+      Files.copy(jar, temp, StandardCopyOption.REPLACE_EXISTING);
+      temp.toFile().setReadOnly();
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally
+    {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Reads a jar into the page cache through a memory mapping.
+   * @param jar The jar.
+   * @throws IOException If the jar cannot be read.
+   */
+  private static void prefault(final Path jar) throws IOException
+  {
+    try (final FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ))
+    {
+      final long size = channel.size();
+      for (long position = 0; position < size; position += MAPPING_BYTES)
+      {
+        channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPING_BYTES, size - position)).load();
+      }
+    }
+  }
+
+  /**
+   * Gets the way the jars are staged.
+   * @return The mode.
+   */
+  public Mode getMode()
+  {
+    return this.mode;
+  }
+
+  /**
+   * Gets the staging directory.
+   * @return The directory.
+   */
+  public Path getDir()
+  {
+    return this.dir;
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal StagingConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof StagingConfig))
+    {
+      return false;
+    }
+
+    final StagingConfig other = (StagingConfig) obj;
+    return this.mode == other.mode && this.dir.equals(other.dir);
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.mode, this.dir);
+  }
+}
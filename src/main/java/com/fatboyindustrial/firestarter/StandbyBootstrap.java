@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * The main class of a warm standby VM. <p>
+ *
+ * Usage: {@code java -cp <firestarter jar> [-Dfirestarter.warmup=<class>] StandbyBootstrap <jar> [args]}. <p>
+ *
+ * Loads (without initialising) every class in the application jar, runs the warmup class's
+ * {@code main} method if one is given, and then waits for {@link #PROMOTE} on standard input before
+ * running the jar's {@code Main-Class} as {@code java -jar} would.  If standard input is closed first,
+ * the standby exits.  Only JDK classes are used, so that the application sees none of Firestarter's.
+ */
+public class StandbyBootstrap
+{
+  /** The line that promotes the standby. */
+  public static final String PROMOTE = "promote";
+
+  /** The system property naming the warmup class. */
+  public static final String WARMUP_PROPERTY = "firestarter.warmup";
+
+  /**
+   * Private constructor - static methods only.
+   */
+  private StandbyBootstrap()
+  {
+    ;
+  }
+
+  /**
+   * Main method.
+   * @param args The application jar, followed by the application's arguments.
+   * @throws Exception If the application cannot be run, or throws.
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if (args.length < 1)
+    {
+      System.err.println("usage: StandbyBootstrap JAR [ARGS...]");
+      System.exit(1);
+      return;
+    }
+
+    final File jar = new File(args[0]);
+    final String[] appArgs = Arrays.copyOfRange(args, 1, args.length);
+    final List<String> classNames = new ArrayList<>();
+    final String mainClass;
+
+    try (final JarFile jarFile = new JarFile(jar))
+    {
+      final Manifest manifest = jarFile.getManifest();
+      mainClass = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+
+      for (final Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); )
+      {
+        final String name = entries.nextElement().getName();
+        if (name.endsWith(".class") && !name.contains("-") && !name.startsWith("META-INF/"))
+        {
+          classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        }
+      }
+    }
+
+    if (mainClass == null)
+    {
+      System.err.println("no Main-Class in " + jar);
+      System.exit(1);
+      return;
+    }
+
+    // The application gets its own loader, beneath the system loader's parent, just as if it had
+    // been started with -jar.
+
+    final ClassLoader loader =
+        new URLClassLoader(new URL[] { jar.toURI().toURL() }, ClassLoader.getSystemClassLoader().getParent());
+    Thread.currentThread().setContextClassLoader(loader);
+    System.setProperty("java.class.path", jar.getPath());
+
+    int loaded = 0;
+    for (final String className : classNames)
+    {
+      try
+      {
+        Class.forName(className, false, loader);
+        loaded++;
+      }
+      catch (ClassNotFoundException | LinkageError e)
+      {
+        // Not loadable on its own (for example, it needs an optional dependency); skip it.
+      }
+    }
+
+    final String warmup = System.getProperty(WARMUP_PROPERTY);
+    if (warmup != null)
+    {
+      invokeMain(loader, warmup, appArgs);
+    }
+
+    System.out.println(String.format("firestarter: standby ready (%d classes loaded)", loaded));
+    System.out.flush();
+
+    if (!awaitPromotion())
+    {
+      return;
+    }
+
+    System.out.println("firestarter: promoted");
+    invokeMain(loader, mainClass, appArgs);
+  }
+
+  /**
+   * Waits for the promotion line on standard input.
+   * @return True if promoted; false if standard input was closed first.
+   * @throws IOException If standard input cannot be read.
+   */
+  private static boolean awaitPromotion() throws IOException
+  {
+    final BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+
+    for (String line = in.readLine(); line != null; line = in.readLine())
+    {
+      if (line.trim().equals(PROMOTE))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Invokes a class's {@code main} method.
+   * @param loader The class loader.
+   * @param className The class name.
+   * @param args The arguments.
+   * @throws Exception If the class cannot be loaded, or its {@code main} method throws.
+   */
+  private static void invokeMain(final ClassLoader loader,
+                                 final String className,
+                                 final String[] args) throws Exception
+  {
+    final Method main = Class.forName(className, true, loader).getMethod("main", String[].class);
+
+    try
+    {
+      main.invoke(null, (Object) args);
+    }
+    catch (InvocationTargetException e)
+    {
+      if (e.getCause() instanceof Exception)
+      {
+        throw (Exception) e.getCause();
+      }
+      if (e.getCause() instanceof Error)
+      {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
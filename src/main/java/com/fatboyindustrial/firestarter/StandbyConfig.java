@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueType;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Describes a VM's warm standby: a spare VM, kept started with its classes loaded and its warmup
+ * already run, that the supervisor promotes when the active VM exits.
+ */
+public class StandbyConfig
+{
+  /** The class whose {@code main} method warms the spare up before it waits to be promoted. */
+  private final Optional<String> warmup;
+
+  /**
+   * Constructor.
+   * @param warmup The class whose {@code main} method warms the spare up, if any.
+   */
+  public StandbyConfig(final Optional<String> warmup)
+  {
+    Preconditions.checkNotNull(warmup, "warmup cannot be null");
+
+    Preconditions.checkArgument(warmup.map(cls -> !cls.isEmpty() && cls.indexOf(' ') == -1).orElse(true),
+                                "StandbyConfig.warmup must be a class name but was: " + warmup.orElse(""));
+
+    this.warmup = warmup;
+  }
+
+  /**
+   * Creates a standby config from the given HOCON value, which is either a boolean or an object
+   * optionally holding {@code warmup}.
+   * @param vmConfig The VM configuration holding the {@code standby} value.
+   * @return The standby config, or absent if the VM has no standby.
+   * @throws IllegalArgumentException If the configuration is invalid.
+   */
+  public static Optional<StandbyConfig> fromConfig(final Config vmConfig) throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(vmConfig, "vmConfig cannot be null");
+
+    if (vmConfig.getValue("standby").valueType() == ConfigValueType.BOOLEAN)
+    {
+      return vmConfig.getBoolean("standby")
+          ? Optional.of(new StandbyConfig(Optional.empty()))
+          : Optional.empty();
+    }
+
+    final Config standby = vmConfig.getConfig("standby");
+
+    return Optional.of(new StandbyConfig(
+        standby.hasPath("warmup") ? Optional.of(standby.getString("warmup").trim()) : Optional.empty()));
+  }
+
+  /**
+   * Gets the class that warms the spare up.
+   * @return The class name, or absent if the spare only loads its classes.
+   */
+  public Optional<String> getWarmup()
+  {
+    return this.warmup;
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal StandbyConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof StandbyConfig))
+    {
+      return false;
+    }
+
+    final StandbyConfig other = (StandbyConfig) obj;
+    return this.warmup.equals(other.warmup);
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.warmup);
+  }
+}
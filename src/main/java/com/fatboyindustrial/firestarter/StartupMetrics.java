@@ -0,0 +1,283 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and counters gathered while starting a configuration's VMs, written to a file once the run
+ * has started them. <p>
+ *
+ * Phases ({@code parse}, {@code locate}, {@code verify}, {@code stage}, {@code plan}, {@code start} and
+ * {@code total}) are timed for the run as a whole; each VM records how long it waited for its jar to be
+ * located, how long its process took to spawn, and how long it took from spawning to passing its
+ * readiness check. <p>
+ *
+ * A file whose name ends in {@code .json} is written as JSON; any other is written in the Prometheus
+ * text format, which suits the node exporter's textfile collector.  All times are in seconds.
+ */
+public class StartupMetrics
+{
+  /** The time spent parsing the configuration. */
+  public static final String PARSE = "parse";
+
+  /** The time spent locating jars. */
+  public static final String LOCATE = "locate";
+
+  /** The time spent verifying jars. */
+  public static final String VERIFY = "verify";
+
+  /** The time spent staging jars. */
+  public static final String STAGE = "stage";
+
+  /** The time spent planning resources and assembling command lines. */
+  public static final String PLAN = "plan";
+
+  /** The time spent starting the VMs, including their readiness checks. */
+  public static final String START = "start";
+
+  /** The time spent spawning a VM's process. */
+  public static final String SPAWN = "spawn";
+
+  /** The time from a VM's spawn to its readiness check passing. */
+  public static final String READY = "ready";
+
+  /** The time from the start of the run until its metrics are written. */
+  public static final String TOTAL = "total";
+
+  /** The run's phase timings in nanoseconds, in the order recorded. */
+  private final Map<String, Long> phases = new LinkedHashMap<>();
+
+  /** Each VM's timings in nanoseconds, keyed by VM name. */
+  private final Map<String, Map<String, Long>> vms = new TreeMap<>();
+
+  /** The number of directories read while locating jars. */
+  private long directoriesScanned;
+
+  /** Times the run as a whole. */
+  private final Stopwatch total = Stopwatch.createStarted();
+
+  /**
+   * Records the time taken by a phase of the run.  A phase recorded more than once accumulates.
+   * @param phase The phase.
+   * @param nanos The time taken, in nanoseconds.
+   */
+  public synchronized void recordPhase(final String phase, final long nanos)
+  {
+    Preconditions.checkNotNull(phase, "phase cannot be null");
+
+    this.phases.merge(phase, nanos, Long::sum);
+  }
+
+  /**
+   * Records a timing for a single VM.
+   * @param vm The VM name.
+   * @param metric The metric, such as {@link #SPAWN}.
+   * @param nanos The time taken, in nanoseconds.
+   */
+  public synchronized void recordVm(final String vm, final String metric, final long nanos)
+  {
+    Preconditions.checkNotNull(vm, "vm cannot be null");
+    Preconditions.checkNotNull(metric, "metric cannot be null");
+
+    this.vms.computeIfAbsent(vm, name -> new LinkedHashMap<>()).put(metric, nanos);
+  }
+
+  /**
+   * Adds to the number of directories read while locating jars.
+   * @param count The number of directories.
+   */
+  public synchronized void addDirectoriesScanned(final long count)
+  {
+    this.directoriesScanned += count;
+  }
+
+  /**
+   * Gets the run's phase timings.
+   * @return The timings in nanoseconds, keyed by phase.
+   */
+  public synchronized ImmutableMap<String, Long> getPhases()
+  {
+    return ImmutableMap.copyOf(this.phases);
+  }
+
+  /**
+   * Gets a single VM's timings.
+   * @param vm The VM name.
+   * @return The timings in nanoseconds, keyed by metric.
+   */
+  public synchronized ImmutableMap<String, Long> getVm(final String vm)
+  {
+    Preconditions.checkNotNull(vm, "vm cannot be null");
+
+    return ImmutableMap.copyOf(this.vms.getOrDefault(vm, ImmutableMap.of()));
+  }
+
+  /**
+   * Gets the number of directories read while locating jars.
+   * @return The number of directories.
+   */
+  public synchronized long getDirectoriesScanned()
+  {
+    return this.directoriesScanned;
+  }
+
+  /**
+   * Records the {@link #TOTAL} time and writes the metrics, replacing the file atomically so that a
+   * collector never reads it half written.
+   * @param name The configuration name.
+   * @param file The file; JSON if its name ends in {@code .json}, otherwise Prometheus text.
+   * @throws IOException If the file cannot be written.
+   */
+  public synchronized void write(final String name, final Path file) throws IOException
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(file, "file cannot be null");
+
+    this.phases.put(TOTAL, this.total.elapsed(TimeUnit.NANOSECONDS));
+
+    final String text = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")
+        ? toJson(name)
+        : toPrometheus(name);
+
+    final Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+
+    final Path temp = dir.resolve(file.getFileName() + ".tmp");
+    Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Formats the metrics as JSON.
+   * @param name The configuration name.
+   * @return The JSON text.
+   */
+  private String toJson(final String name)
+  {
+    final StringBuilder json = new StringBuilder("{\n");
+
+    json.append(String.format("  \"config\": %s,\n", quote(name)));
+    json.append(String.format("  \"directoriesScanned\": %d,\n", this.directoriesScanned));
+    json.append("  \"phases\": ").append(toJson(this.phases)).append(",\n");
+    json.append("  \"vms\": {");
+
+    String separator = "\n";
+    for (final Map.Entry<String, Map<String, Long>> vm : this.vms.entrySet())
+    {
+      json.append(separator).append("    ").append(quote(vm.getKey())).append(": ").append(toJson(vm.getValue()));
+      separator = ",\n";
+    }
+
+    return json.append(this.vms.isEmpty() ? "}\n" : "\n  }\n").append("}\n").toString();
+  }
+
+  /**
+   * Formats timings as a JSON object of seconds.
+   * @param timings The timings in nanoseconds.
+   * @return The JSON text.
+   */
+  private static String toJson(final Map<String, Long> timings)
+  {
+    final StringBuilder json = new StringBuilder("{");
+
+    String separator = " ";
+    for (final Map.Entry<String, Long> timing : timings.entrySet())
+    {
+      json.append(separator).append(quote(timing.getKey())).append(": ").append(seconds(timing.getValue()));
+      separator = ", ";
+    }
+
+    return json.append(" }").toString();
+  }
+
+  /**
+   * Formats the metrics in the Prometheus text format.
+   * @param name The configuration name.
+   * @return The Prometheus text.
+   */
+  private String toPrometheus(final String name)
+  {
+    final String config = "config=" + quote(name);
+    final StringBuilder text = new StringBuilder();
+
+    text.append("# HELP firestarter_phase_seconds Time spent in each phase of the run.\n");
+    text.append("# TYPE firestarter_phase_seconds gauge\n");
+    for (final Map.Entry<String, Long> phase : this.phases.entrySet())
+    {
+      text.append(String.format("firestarter_phase_seconds{%s,phase=%s} %s\n",
+                                config, quote(phase.getKey()), seconds(phase.getValue())));
+    }
+
+    text.append("# HELP firestarter_directories_scanned Directories read while locating jars.\n");
+    text.append("# TYPE firestarter_directories_scanned gauge\n");
+    text.append(String.format("firestarter_directories_scanned{%s} %d\n", config, this.directoriesScanned));
+
+    text.append("# HELP firestarter_vm_seconds Time each VM spent locating its jar, spawning and becoming ready.\n");
+    text.append("# TYPE firestarter_vm_seconds gauge\n");
+    for (final Map.Entry<String, Map<String, Long>> vm : this.vms.entrySet())
+    {
+      for (final Map.Entry<String, Long> metric : vm.getValue().entrySet())
+      {
+        text.append(String.format("firestarter_vm_seconds{%s,vm=%s,metric=%s} %s\n",
+                                  config, quote(vm.getKey()), quote(metric.getKey()), seconds(metric.getValue())));
+      }
+    }
+
+    return text.toString();
+  }
+
+  /**
+   * Converts nanoseconds to seconds.
+   * @param nanos The time in nanoseconds.
+   * @return The time in seconds, as text.
+   */
+  private static String seconds(final long nanos)
+  {
+    return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+  }
+
+  /**
+   * Quotes a string, escaping the characters that both JSON strings and Prometheus label values escape.
+   * @param value The string.
+   * @return The quoted string.
+   */
+  static String quote(final String value)
+  {
+    return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+  }
+}
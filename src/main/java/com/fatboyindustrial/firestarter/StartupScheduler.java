@@ -0,0 +1,294 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Starts the VMs of a configuration in dependency order. <p>
+ *
+ * The {@code dependsOn} relationships form a directed acyclic graph.  Every VM whose upstream VMs are
+ * all ready is started straight away, so each independent layer starts in parallel, and a dependent VM
+ * starts only once each of its upstream VMs has passed its readiness check.
+ */
+public class StartupScheduler
+{
+  /** The launcher used to start each VM. */
+  private final Launcher launcher;
+
+  /** The maximum number of VMs started concurrently. */
+  private final int parallelism;
+
+  /** Records how long each VM takes to spawn and become ready. */
+  private final StartupMetrics metrics;
+
+  /**
+   * Constructor.
+   * @param launcher The launcher used to start each VM.
+   * @param parallelism The maximum number of VMs started concurrently.
+   */
+  public StartupScheduler(final Launcher launcher, final int parallelism)
+  {
+    this(launcher, parallelism, new StartupMetrics());
+  }
+
+  /**
+   * Constructor.
+   * @param launcher The launcher used to start each VM.
+   * @param parallelism The maximum number of VMs started concurrently.
+   * @param metrics Records how long each VM takes to spawn and become ready.
+   */
+  public StartupScheduler(final Launcher launcher, final int parallelism, final StartupMetrics metrics)
+  {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0 but was: " + parallelism);
+
+    this.launcher = Preconditions.checkNotNull(launcher, "launcher cannot be null");
+    this.parallelism = parallelism;
+    this.metrics = Preconditions.checkNotNull(metrics, "metrics cannot be null");
+  }
+
+  /**
+   * Groups VMs into layers: the first layer depends on nothing, and each later layer depends only on
+   * the layers before it.  Within a layer, VMs keep their configuration order.
+   * @param jvms The VMs.
+   * @return The layers.
+   * @throws IllegalArgumentException If a VM depends on an unknown VM, or the dependencies form a cycle.
+   */
+  public static ImmutableList<ImmutableList<VmConfig>> layers(final List<VmConfig> jvms)
+      throws IllegalArgumentException
+  {
+    Preconditions.checkNotNull(jvms, "jvms cannot be null");
+
+    final Set<String> names = jvms.stream().map(VmConfig::getName).collect(Collectors.toSet());
+    for (final VmConfig vm : jvms)
+    {
+      for (final String upstream : vm.getDependsOn())
+      {
+        Preconditions.checkArgument(names.contains(upstream), vm.getName() + " depends on unknown VM: " + upstream);
+      }
+    }
+
+    final ImmutableList.Builder<ImmutableList<VmConfig>> layers = ImmutableList.builder();
+    final Set<String> placed = new HashSet<>();
+    List<VmConfig> remaining = jvms;
+
+    while (!remaining.isEmpty())
+    {
+      final ImmutableList<VmConfig> layer = remaining.stream()
+          .filter(vm -> placed.containsAll(vm.getDependsOn()))
+          .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+
+      Preconditions.checkArgument(!layer.isEmpty(), "dependency cycle between VMs: " +
+          remaining.stream().map(VmConfig::getName).collect(Collectors.joining(", ")));
+
+      layer.forEach(vm -> placed.add(vm.getName()));
+      layers.add(layer);
+
+      remaining = remaining.stream()
+          .filter(vm -> !placed.contains(vm.getName()))
+          .collect(Collectors.toList());
+    }
+
+    return layers.build();
+  }
+
+  /**
+   * Orders VMs so that every VM follows the VMs it depends on.
+   * @param jvms The VMs.
+   * @return The VMs, layer by layer.
+   * @throws IllegalArgumentException If a VM depends on an unknown VM, or the dependencies form a cycle.
+   */
+  public static ImmutableList<VmConfig> order(final List<VmConfig> jvms) throws IllegalArgumentException
+  {
+    final ImmutableList.Builder<VmConfig> ordered = ImmutableList.builder();
+    layers(jvms).forEach(ordered::addAll);
+
+    return ordered.build();
+  }
+
+  /**
+   * Starts every VM in a configuration, in dependency order, and waits until each has started and
+   * passed its readiness check.  A VM whose upstream VM fails to start or become ready is not started.
+   * @param cfg The configuration.
+   * @param specs The launch specifications for the configuration's VMs.
+   * @return The VM processes keyed by VM name, in start order.
+   * @throws IOException If any VM fails to start or become ready; the others are left running.
+   */
+  public ImmutableMap<String, Process> start(final FirestarterConfig cfg, final List<LaunchSpec> specs)
+      throws IOException
+  {
+    return start(cfg, specs, (name, process) -> { });
+  }
+
+  /**
+   * Starts every VM in a configuration, in dependency order, and waits until each has started and
+   * passed its readiness check.  A VM whose upstream VM fails to start or become ready is not started.
+   * @param cfg The configuration.
+   * @param specs The launch specifications for the configuration's VMs.
+   * @param listener Told of each VM's process as soon as it has been started, before its readiness check.
+   * @return The VM processes keyed by VM name, in start order.
+   * @throws IOException If any VM fails to start or become ready; the others are left running.
+   */
+  public ImmutableMap<String, Process> start(final FirestarterConfig cfg,
+                                             final List<LaunchSpec> specs,
+                                             final BiConsumer<String, Process> listener) throws IOException
+  {
+    Preconditions.checkNotNull(cfg, "cfg cannot be null");
+    Preconditions.checkNotNull(specs, "specs cannot be null");
+    Preconditions.checkNotNull(listener, "listener cannot be null");
+
+    final Map<String, LaunchSpec> specsByName =
+        specs.stream().collect(Collectors.toMap(LaunchSpec::getName, Function.identity()));
+    final Map<String, CompletableFuture<Process>> ready = new LinkedHashMap<>();
+    final Semaphore permits = new Semaphore(this.parallelism);
+    final ExecutorService executor = Executors.newCachedThreadPool();
+
+    try
+    {
+      for (final VmConfig vm : order(cfg.getJvms()))
+      {
+        final LaunchSpec spec = Preconditions.checkNotNull(specsByName.get(vm.getName()),
+                                                           "no launch specification for " + vm.getName());
+        final CompletableFuture<?>[] upstream = vm.getDependsOn().stream()
+            .map(ready::get)
+            .toArray(CompletableFuture<?>[]::new);
+
+        ready.put(vm.getName(), CompletableFuture.allOf(upstream)
+            .thenApplyAsync(ignored -> startAndAwait(vm, spec, permits, listener), executor));
+      }
+
+      final ImmutableMap.Builder<String, Process> processes = ImmutableMap.builder();
+      final List<Throwable> failures = new ArrayList<>();
+
+      for (final Map.Entry<String, CompletableFuture<Process>> entry : ready.entrySet())
+      {
+        try
+        {
+          processes.put(entry.getKey(), entry.getValue().join());
+        }
+        catch (CompletionException e)
+        {
+          final Throwable cause =
+              e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+          failures.add(new IOException(entry.getKey() + " not started: " + cause.getMessage(), cause));
+        }
+      }
+
+      if (!failures.isEmpty())
+      {
+        final IOException e = new IOException(
+            failures.size() + " VM(s) failed to start; " +
+            failures.stream().map(Throwable::getMessage).collect(Collectors.joining("; ")),
+            failures.get(0));
+        failures.stream().skip(1).forEach(e::addSuppressed);
+        throw e;
+      }
+
+      return processes.build();
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Starts a single VM and waits for it to become ready.
+   * @param vm The VM details.
+   * @param spec The launch specification.
+   * @param permits Limits the number of VMs being started at once.
+   * @param listener Told of the VM's process as soon as it has been started.
+   * @return The VM process.
+   * @throws UncheckedIOException If the VM cannot be started, or does not become ready.
+   */
+  private Process startAndAwait(final VmConfig vm,
+                                final LaunchSpec spec,
+                                final Semaphore permits,
+                                final BiConsumer<String, Process> listener) throws UncheckedIOException
+  {
+    try
+    {
+      final ReadinessCheck check = vm.getReadiness()
+          .map(readiness -> new ReadinessCheck(readiness, this.launcher.getLogFile(vm.getName())))
+          .orElse(null);
+
+      final Process process;
+      final Stopwatch sinceSpawn;
+
+      permits.acquire();
+      try
+      {
+        final Stopwatch spawning = Stopwatch.createStarted();
+        process = this.launcher.launch(spec);
+        sinceSpawn = Stopwatch.createStarted();
+        this.metrics.recordVm(vm.getName(), StartupMetrics.SPAWN, spawning.elapsed(TimeUnit.NANOSECONDS));
+      }
+      finally
+      {
+        permits.release();
+      }
+
+      listener.accept(vm.getName(), process);
+
+      if (check != null && !check.await(process))
+      {
+        throw new IOException(vm.getName() + " did not become ready");
+      }
+
+      this.metrics.recordVm(vm.getName(), StartupMetrics.READY, sinceSpawn.elapsed(TimeUnit.NANOSECONDS));
+
+      return process;
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new IOException("interrupted while starting " + vm.getName(), e));
+    }
+  }
+}
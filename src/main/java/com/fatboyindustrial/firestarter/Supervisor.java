@@ -0,0 +1,975 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the processes of a configuration's VMs, restarting any that exit according to a
+ * {@link RestartPolicy}, and periodically writing each VM's {@link VmStatus} to a status file. <p>
+ *
+ * A VM with a warm standby has a spare kept started alongside it.  When the VM exits, the spare is
+ * promoted in its place (rather than a new VM being started after a backoff), and a new spare is
+ * started once the restart policy's backoff has passed.  When the VM is restarted by a rollout, a
+ * standby is started from its new specification while the old process stops, and promoted in its
+ * place. <p>
+ *
+ * When the configuration changes, {@link #reconfigure} rolls the change out: removed VMs are stopped,
+ * then changed VMs are restarted a batch at a time, each batch waiting for the previous one to pass
+ * its readiness checks, and finally added VMs are started the same way.  A VM whose settings did not
+ * change is still restarted if its launch command did, as when adding or removing a VM re-divides the
+ * node's processors; the rest are left running.
+ */
+public class Supervisor implements AutoCloseable
+{
+  /** The time allowed for a VM to exit after being asked to stop, before it is killed. */
+  private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  /** The interval between status file updates. */
+  private static final long STATUS_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  /** The change reported for a VM restarted only because a failed rollout left it out of step. */
+  private static final String UNSETTLED = "unsettled";
+
+  /** The change reported for a VM restarted only because its launch command changed. */
+  private static final String COMMAND = "command";
+
+  /** The launcher used to start each VM. */
+  private final Launcher launcher;
+
+  /** Decides when exited VMs are restarted. */
+  private final RestartPolicy policy;
+
+  /** The maximum number of VMs started concurrently. */
+  private final int parallelism;
+
+  /** The file to which the status of every VM is written. */
+  private final Path statusFile;
+
+  /** The supervised VMs, keyed by name. */
+  private final Map<String, Child> children = new LinkedHashMap<>();
+
+  /** Runs delayed restarts and status updates. */
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+  /** Waits on each running process. */
+  private final ExecutorService monitors = Executors.newCachedThreadPool();
+
+  /** Released once the supervisor has been closed. */
+  private final CountDownLatch closed = new CountDownLatch(1);
+
+  /** The configuration being supervised. */
+  private volatile FirestarterConfig config;
+
+  /** The VMs that a failed rollout stopped or restarted, and so left out of step with the configuration. */
+  private final Set<String> unsettled = new HashSet<>();
+
+  /**
+   * Constructor.
+   * @param launcher The launcher used to start each VM.
+   * @param policy Decides when exited VMs are restarted.
+   * @param parallelism The maximum number of VMs started concurrently.
+   * @param statusFile The file to which the status of every VM is written.
+   */
+  public Supervisor(final Launcher launcher, final RestartPolicy policy, final int parallelism, final Path statusFile)
+  {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0 but was: " + parallelism);
+
+    this.launcher = Preconditions.checkNotNull(launcher, "launcher cannot be null");
+    this.policy = Preconditions.checkNotNull(policy, "policy cannot be null");
+    this.parallelism = parallelism;
+    this.statusFile = Preconditions.checkNotNull(statusFile, "statusFile cannot be null");
+  }
+
+  /**
+   * Starts every VM in a configuration in dependency order and begins supervising them.  A VM that
+   * fails to start is retried according to the restart policy.
+   * @param cfg The configuration.
+   * @param specs The launch specifications for the configuration's VMs.
+   */
+  public void start(final FirestarterConfig cfg, final List<LaunchSpec> specs)
+  {
+    start(cfg, specs, new StartupMetrics());
+  }
+
+  /**
+   * Starts every VM in a configuration in dependency order and begins supervising them.  A VM that
+   * fails to start is retried according to the restart policy.
+   * @param cfg The configuration.
+   * @param specs The launch specifications for the configuration's VMs.
+   * @param metrics Records how long each VM takes to spawn and become ready on its first start.
+   */
+  public void start(final FirestarterConfig cfg, final List<LaunchSpec> specs, final StartupMetrics metrics)
+  {
+    Preconditions.checkNotNull(cfg, "cfg cannot be null");
+    Preconditions.checkNotNull(specs, "specs cannot be null");
+    Preconditions.checkNotNull(metrics, "metrics cannot be null");
+
+    this.config = cfg;
+
+    synchronized (this.children)
+    {
+      for (final LaunchSpec spec : specs)
+      {
+        this.children.put(spec.getName(), new Child(spec));
+      }
+    }
+
+    try
+    {
+      new StartupScheduler(this.launcher, this.parallelism, metrics)
+          .start(cfg, specs, (name, process) -> child(name).adopt(process));
+    }
+    catch (IOException e)
+    {
+      log(e.getMessage());
+    }
+
+    // Anything the scheduler did not start is handed to the restart policy.
+
+    for (final Child child : children())
+    {
+      child.startIfNeverStarted();
+    }
+
+    this.timer.scheduleWithFixedDelay(this::writeStatus, 0, STATUS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Rolls out a new version of the configuration.  Removed VMs are stopped; changed VMs are restarted
+   * in dependency order, {@code batchSize} at a time, each batch starting only once the previous one
+   * has passed its readiness checks; and added VMs are then started in the same way.  If a VM fails
+   * to start or become ready, the rollout stops, leaving the remaining VMs as they were; it is
+   * retried in full the next time the configuration is rolled out, which also removes or restarts
+   * any VM the failed rollout left out of step with the new configuration.
+   * @param cfg The new configuration.
+   * @param specs The launch specifications for the new configuration's VMs.
+   * @param batchSize The number of VMs restarted at once.
+   * @return The differences that were rolled out.
+   * @throws IOException If a VM fails to start or become ready.
+   * @throws InterruptedException If interrupted while waiting for a batch.
+   */
+  public synchronized ConfigDiff reconfigure(final FirestarterConfig cfg,
+                                             final List<LaunchSpec> specs,
+                                             final int batchSize) throws IOException, InterruptedException
+  {
+    Preconditions.checkNotNull(cfg, "cfg cannot be null");
+    Preconditions.checkNotNull(specs, "specs cannot be null");
+    Preconditions.checkArgument(batchSize > 0, "batchSize must be > 0 but was: " + batchSize);
+    Preconditions.checkState(this.config != null, "the supervisor has not been started");
+
+    final Map<String, LaunchSpec> specsByName = specs.stream()
+        .collect(Collectors.toMap(LaunchSpec::getName, Function.identity()));
+
+    final ConfigDiff diff = rerendered(settle(ConfigDiff.between(this.config, cfg), cfg), cfg, specsByName);
+    if (diff.isEmpty())
+    {
+      this.config = cfg;
+      return diff;
+    }
+
+    log("configuration changed: " + diff);
+
+    final Map<String, VmConfig> vms = cfg.getJvms().stream()
+        .collect(Collectors.toMap(VmConfig::getName, Function.identity()));
+
+    this.unsettled.addAll(diff.getRemoved());
+
+    final List<Process> stopping = new ArrayList<>();
+    for (final String name : diff.getRemoved())
+    {
+      final Child child;
+      synchronized (this.children)
+      {
+        child = this.children.remove(name);
+      }
+      if (child != null)
+      {
+        stopping.addAll(child.stop());
+      }
+    }
+    awaitExit(stopping);
+
+    final List<String> rollout = new ArrayList<>(diff.getChanged());
+    rollout.addAll(diff.getAdded());
+
+    for (int first = 0; first < rollout.size(); first += batchSize)
+    {
+      final List<String> batch = rollout.subList(first, Math.min(first + batchSize, rollout.size()));
+      log("restarting " + batch);
+
+      final Map<String, Process> processes = new LinkedHashMap<>();
+      final Map<String, Optional<ReadinessCheck>> checks = new LinkedHashMap<>();
+      this.unsettled.addAll(batch);
+
+      for (final String name : batch)
+      {
+        final Child child;
+        synchronized (this.children)
+        {
+          child = this.children.computeIfAbsent(name, absent -> new Child(specsByName.get(name)));
+        }
+
+        checks.put(name, vms.get(name).getReadiness()
+            .map(readiness -> new ReadinessCheck(readiness, this.launcher.getLogFile(name))));
+        processes.put(name, child.replace(specsByName.get(name)));
+      }
+
+      for (final String name : batch)
+      {
+        if (checks.get(name).isPresent() && !checks.get(name).get().await(processes.get(name)))
+        {
+          throw new IOException(String.format(
+              "%s did not become ready; rollout stopped with %s not restarted",
+              name, rollout.subList(Math.min(first + batchSize, rollout.size()), rollout.size())));
+        }
+      }
+    }
+
+    this.config = cfg;
+    this.unsettled.clear();
+    return diff;
+  }
+
+  /**
+   * Adds to the differences from the supervised configuration the VMs that a failed rollout left out
+   * of step with it: those no longer in the new configuration are removed (if they are still running),
+   * and the rest are restarted from it.
+   * @param diff The differences between the supervised configuration and the new one.
+   * @param cfg The new configuration.
+   * @return The differences to roll out.
+   */
+  private ConfigDiff settle(final ConfigDiff diff, final FirestarterConfig cfg)
+  {
+    if (this.unsettled.isEmpty())
+    {
+      return diff;
+    }
+
+    final Set<String> names = cfg.getJvms().stream().map(VmConfig::getName).collect(Collectors.toSet());
+    final List<String> removed = new ArrayList<>(diff.getRemoved());
+
+    final List<String> supervised;
+    synchronized (this.children)
+    {
+      supervised = new ArrayList<>(this.children.keySet());
+    }
+
+    for (final String name : supervised)
+    {
+      if (this.unsettled.contains(name) && !names.contains(name) && !removed.contains(name))
+      {
+        removed.add(name);
+      }
+    }
+
+    final ImmutableMap.Builder<String, ImmutableList<String>> changed = ImmutableMap.builder();
+    for (final VmConfig vm : StartupScheduler.order(cfg.getJvms()))
+    {
+      if (diff.getChanged().contains(vm.getName()))
+      {
+        changed.put(vm.getName(), diff.getChanges(vm.getName()));
+      }
+      else if (this.unsettled.contains(vm.getName()) && !diff.getAdded().contains(vm.getName()))
+      {
+        changed.put(vm.getName(), ImmutableList.of(UNSETTLED));
+      }
+    }
+
+    return new ConfigDiff(diff.getAdded(), ImmutableList.copyOf(removed), changed.build());
+  }
+
+  /**
+   * Adds to the differences the VMs whose settings did not change but whose launch command did: the
+   * command of a VM also depends on the others, since the node's processors are divided between them.
+   * @param diff The differences to roll out.
+   * @param cfg The new configuration.
+   * @param specs The launch specifications for the new configuration's VMs, keyed by name.
+   * @return The differences to roll out.
+   */
+  private ConfigDiff rerendered(final ConfigDiff diff, final FirestarterConfig cfg, final Map<String, LaunchSpec> specs)
+  {
+    final ImmutableMap.Builder<String, ImmutableList<String>> changed = ImmutableMap.builder();
+    for (final VmConfig vm : StartupScheduler.order(cfg.getJvms()))
+    {
+      final String name = vm.getName();
+      final Child child = child(name);
+
+      if (diff.getChanged().contains(name))
+      {
+        changed.put(name, diff.getChanges(name));
+      }
+      else if (child != null && specs.containsKey(name) && !diff.getAdded().contains(name)
+          && !child.isLaunchedFrom(specs.get(name)))
+      {
+        changed.put(name, ImmutableList.of(COMMAND));
+      }
+    }
+
+    return new ConfigDiff(diff.getAdded(), diff.getRemoved(), changed.build());
+  }
+
+  /**
+   * Gets the status of every supervised VM.
+   * @return The statuses, in configuration order.
+   */
+  public ImmutableList<VmStatus> status()
+  {
+    return children().stream()
+        .map(Child::status)
+        .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+  }
+
+  /**
+   * Gets the process of every running VM.
+   * @return The processes keyed by VM name, in configuration order.
+   */
+  public ImmutableMap<String, Process> processes()
+  {
+    final Map<String, Child> snapshot;
+    synchronized (this.children)
+    {
+      snapshot = new LinkedHashMap<>(this.children);
+    }
+
+    final ImmutableMap.Builder<String, Process> processes = ImmutableMap.builder();
+    snapshot.forEach((name, child) -> child.running().ifPresent(process -> processes.put(name, process)));
+
+    return processes.build();
+  }
+
+  /**
+   * Blocks until the supervisor has been closed.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public void awaitTermination() throws InterruptedException
+  {
+    this.closed.await();
+  }
+
+  /**
+   * Blocks until the supervisor has been closed, or the timeout expires.
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return True if the supervisor has been closed.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException
+  {
+    return this.closed.await(timeout, unit);
+  }
+
+  /**
+   * Stops every supervised VM, asking each to exit and killing any that have not done so within the
+   * stop timeout.
+   */
+  @Override
+  public void close()
+  {
+    if (this.closed.getCount() == 0)
+    {
+      return;
+    }
+
+    this.timer.shutdownNow();
+
+    final List<Process> stopping = new ArrayList<>();
+    for (final Child child : children())
+    {
+      stopping.addAll(child.stop());
+    }
+    awaitExit(stopping);
+
+    this.monitors.shutdownNow();
+    writeStatus();
+    this.closed.countDown();
+  }
+
+  /**
+   * Waits for processes that have been asked to exit, killing any that have not done so within the
+   * stop timeout.
+   * @param stopping The processes.
+   */
+  private static void awaitExit(final List<Process> stopping)
+  {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT_MILLIS);
+    for (final Process process : stopping)
+    {
+      try
+      {
+        if (!process.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+        {
+          process.destroyForcibly();
+        }
+      }
+      catch (InterruptedException e)
+      {
+        process.destroyForcibly();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Gets the named child.
+   * @param name The VM name.
+   * @return The child.
+   */
+  private Child child(final String name)
+  {
+    synchronized (this.children)
+    {
+      return this.children.get(name);
+    }
+  }
+
+  /**
+   * Gets every child.
+   * @return The children, in configuration order.
+   */
+  private List<Child> children()
+  {
+    synchronized (this.children)
+    {
+      return new ArrayList<>(this.children.values());
+    }
+  }
+
+  /**
+   * Writes the status of every VM to the status file, replacing it atomically.
+   */
+  private void writeStatus()
+  {
+    final Path temp = this.statusFile.resolveSibling(this.statusFile.getFileName() + ".tmp");
+    final List<String> lines = status().stream().map(VmStatus::toString).collect(Collectors.toList());
+
+    try
+    {
+      Files.createDirectories(this.statusFile.toAbsolutePath().getParent());
+      Files.write(temp, lines, Charsets.UTF_8);
+      Files.move(temp, this.statusFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e)
+    {
+      log("cannot write status file: " + e);
+    }
+  }
+
+  /**
+   * Logs a supervisor event to standard error.
+   * @param message The message.
+   */
+  private static void log(final String message)
+  {
+    System.err.println(String.format("%tFT%<tT firestarter: %s", System.currentTimeMillis(), message));
+  }
+
+  /**
+   * Gets the current time from a monotonic clock.
+   * @return The time, in milliseconds.
+   */
+  private static long now()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  /**
+   * A single supervised VM.
+   */
+  private class Child
+  {
+    /** The launch specification. */
+    private LaunchSpec spec;
+
+    /** The times at which the VM has exited recently, oldest first. */
+    private final Deque<Long> exits = new ArrayDeque<>();
+
+    /** The running process, if any. */
+    private Process process;
+
+    /** The warm standby process, if any. */
+    private Process spare;
+
+    /** The number of consecutive standby failures. */
+    private int spareFailures;
+
+    /** The time the running process started. */
+    private long startedAt;
+
+    /** The state. */
+    private VmStatus.State state = VmStatus.State.BACKOFF;
+
+    /** True once a process has been started. */
+    private boolean everStarted;
+
+    /** The number of times the VM has been restarted. */
+    private int restarts;
+
+    /** The number of consecutive failures. */
+    private int failures;
+
+    /** The exit code of the last process. */
+    private Optional<Integer> lastExitCode = Optional.empty();
+
+    /**
+     * Constructor.
+     * @param spec The launch specification.
+     */
+    public Child(final LaunchSpec spec)
+    {
+      this.spec = spec;
+    }
+
+    /**
+     * Determines whether the VM is launched from the same commands as a launch specification.
+     * @param other The launch specification.
+     * @return True if its command and standby command are those the VM is launched from.
+     */
+    public synchronized boolean isLaunchedFrom(final LaunchSpec other)
+    {
+      return this.spec.getCommand().equals(other.getCommand())
+          && this.spec.getStandbyCommand().equals(other.getStandbyCommand());
+    }
+
+    /**
+     * Takes ownership of a newly started process.
+     * @param started The process.
+     */
+    public synchronized void adopt(final Process started)
+    {
+      this.process = started;
+      this.startedAt = now();
+      this.state = VmStatus.State.RUNNING;
+      this.everStarted = true;
+
+      monitors.submit(() -> watch(started));
+
+      if (this.spec.getStandbyCommand().isPresent())
+      {
+        scheduleSpare(this.failures == 0 ? 0 : policy.backoff(this.failures));
+      }
+    }
+
+    /**
+     * Schedules the first start of a VM that the startup scheduler did not start.
+     */
+    public synchronized void startIfNeverStarted()
+    {
+      if (!this.everStarted && this.state != VmStatus.State.STOPPED)
+      {
+        failed(Optional.empty(), 0);
+      }
+    }
+
+    /**
+     * Waits for a process to exit, and then handles its exit.
+     * @param watched The process.
+     */
+    private void watch(final Process watched)
+    {
+      try
+      {
+        final int code = watched.waitFor();
+        exited(watched, code);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Handles the exit of a process.
+     * @param exited The process.
+     * @param code The exit code.
+     */
+    private synchronized void exited(final Process exited, final int code)
+    {
+      if (exited != this.process || this.state == VmStatus.State.STOPPED)
+      {
+        return;
+      }
+
+      this.process = null;
+
+      if (this.spare != null && this.spare.isAlive())
+      {
+        promote(code, now() - this.startedAt);
+      }
+      else
+      {
+        failed(Optional.of(code), now() - this.startedAt);
+      }
+    }
+
+    /**
+     * Promotes the warm standby in place of the exited process.
+     * @param code The exit code of the exited process.
+     * @param uptime How long the exited process ran for, in milliseconds.
+     */
+    private synchronized void promote(final int code, final long uptime)
+    {
+      final Process promoted = this.spare;
+      this.spare = null;
+
+      try
+      {
+        Launcher.promote(promoted);
+      }
+      catch (IOException e)
+      {
+        log(this.spec.getName() + " standby could not be promoted: " + e.getMessage());
+        promoted.destroyForcibly();
+        failed(Optional.of(code), uptime);
+        return;
+      }
+
+      this.lastExitCode = Optional.of(code);
+      this.failures = policy.isStable(uptime) ? 1 : this.failures + 1;
+      this.spareFailures = 0;
+      this.restarts++;
+
+      log(String.format("%s exited (exit code %d); promoted its standby", this.spec.getName(), code));
+      adopt(promoted);
+    }
+
+    /**
+     * Schedules the start of a warm standby.
+     * @param delay The delay, in milliseconds.
+     */
+    private void scheduleSpare(final long delay)
+    {
+      try
+      {
+        timer.schedule(this::startSpare, delay, TimeUnit.MILLISECONDS);
+      }
+      catch (RuntimeException e)
+      {
+        // The supervisor is shutting down.
+      }
+    }
+
+    /**
+     * Starts a warm standby, unless one is already running.
+     */
+    private synchronized void startSpare()
+    {
+      if (this.state == VmStatus.State.STOPPED || this.spare != null)
+      {
+        return;
+      }
+
+      try
+      {
+        final Process started = launcher.launchStandby(this.spec);
+        this.spare = started;
+        monitors.submit(() -> watchSpare(started));
+      }
+      catch (IOException e)
+      {
+        spareExited(Optional.empty());
+      }
+    }
+
+    /**
+     * Waits for a warm standby to exit, and then handles its exit.
+     * @param watched The standby process.
+     */
+    private void watchSpare(final Process watched)
+    {
+      try
+      {
+        final int code = watched.waitFor();
+        synchronized (this)
+        {
+          if (watched == this.spare)
+          {
+            this.spare = null;
+            spareExited(Optional.of(code));
+          }
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Handles the failure of a warm standby, scheduling a new one.
+     * @param code The exit code, or absent if the standby could not be started.
+     */
+    private synchronized void spareExited(final Optional<Integer> code)
+    {
+      if (this.state == VmStatus.State.STOPPED)
+      {
+        return;
+      }
+
+      this.spareFailures++;
+      final long delay = policy.backoff(this.spareFailures);
+
+      log(String.format("%s standby %s (exit code %s); restarting it in %d ms",
+                        this.spec.getName(),
+                        code.isPresent() ? "exited" : "could not be started",
+                        code.map(String::valueOf).orElse("-"),
+                        delay));
+
+      scheduleSpare(delay);
+    }
+
+    /**
+     * Records a failure and schedules a restart.
+     * @param code The exit code, or absent if the VM could not be started.
+     * @param uptime How long the VM ran for, in milliseconds.
+     */
+    private synchronized void failed(final Optional<Integer> code, final long uptime)
+    {
+      final long time = now();
+
+      this.lastExitCode = code.isPresent() ? code : this.lastExitCode;
+      this.failures = policy.isStable(uptime) ? 1 : this.failures + 1;
+      this.exits.addLast(time);
+      while (time - this.exits.peekFirst() >= policy.getCrashLoopWindowMillis())
+      {
+        this.exits.removeFirst();
+      }
+
+      final long delay;
+      if (policy.isCrashLoop(ImmutableList.copyOf(this.exits), time))
+      {
+        this.state = VmStatus.State.CRASH_LOOP;
+        this.exits.clear();
+        delay = policy.getCrashLoopDelayMillis();
+      }
+      else
+      {
+        this.state = VmStatus.State.BACKOFF;
+        delay = policy.backoff(this.failures);
+      }
+
+      log(String.format("%s %s (exit code %s); %s; restarting in %d ms",
+                        this.spec.getName(),
+                        code.isPresent() ? "exited" : "could not be started",
+                        code.map(String::valueOf).orElse("-"),
+                        this.state == VmStatus.State.CRASH_LOOP ? "crash loop detected" : "backing off",
+                        delay));
+
+      try
+      {
+        timer.schedule(this::restart, delay, TimeUnit.MILLISECONDS);
+      }
+      catch (RuntimeException e)
+      {
+        // The supervisor is shutting down.
+      }
+    }
+
+    /**
+     * Restarts the VM.
+     */
+    private synchronized void restart()
+    {
+      if (this.state == VmStatus.State.STOPPED || this.process != null)
+      {
+        return;
+      }
+
+      try
+      {
+        final Process restarted = launcher.launch(this.spec);
+        if (this.everStarted)
+        {
+          this.restarts++;
+        }
+        adopt(restarted);
+      }
+      catch (IOException e)
+      {
+        log(this.spec.getName() + " could not be started: " + e.getMessage());
+        failed(Optional.empty(), 0);
+      }
+    }
+
+    /**
+     * Replaces the VM with one started from a new launch specification.  The running process is asked
+     * to exit; meanwhile a VM with a warm standby has a standby started from the new specification (or
+     * keeps its spare, if the standby command has not changed), which is promoted in its place once the
+     * old process has gone.  Otherwise, or if that standby cannot be started or promoted, the new
+     * process is started cold.
+     * @param replacement The new launch specification.
+     * @return The new process.
+     * @throws IOException If the new process cannot be started; it is retried by the restart policy.
+     */
+    public Process replace(final LaunchSpec replacement) throws IOException
+    {
+      final List<Process> stopping = new ArrayList<>();
+      Process standby = null;
+
+      synchronized (this)
+      {
+        if (this.spare != null && this.spare.isAlive() && replacement.getStandbyCommand().isPresent()
+            && replacement.getStandbyCommand().equals(this.spec.getStandbyCommand()))
+        {
+          standby = this.spare;
+        }
+        else
+        {
+          Optional.ofNullable(this.spare).ifPresent(stopping::add);
+        }
+
+        this.spec = replacement;
+        Optional.ofNullable(this.process).ifPresent(stopping::add);
+        stopping.forEach(Process::destroy);
+        this.process = null;
+        this.spare = null;
+
+        if (standby == null && replacement.getStandbyCommand().isPresent() && this.state != VmStatus.State.STOPPED)
+        {
+          try
+          {
+            standby = launcher.launchStandby(replacement);
+          }
+          catch (IOException e)
+          {
+            log(this.spec.getName() + " standby could not be started; starting cold: " + e.getMessage());
+          }
+        }
+      }
+
+      awaitExit(stopping);
+
+      synchronized (this)
+      {
+        if (this.state == VmStatus.State.STOPPED)
+        {
+          Optional.ofNullable(standby).ifPresent(Process::destroyForcibly);
+          throw new IOException(this.spec.getName() + " has been stopped");
+        }
+
+        if (standby != null)
+        {
+          try
+          {
+            Launcher.promote(standby);
+            if (this.everStarted)
+            {
+              this.restarts++;
+            }
+            this.failures = 0;
+            log(this.spec.getName() + " replaced by promoting its standby");
+            adopt(standby);
+            return standby;
+          }
+          catch (IOException e)
+          {
+            log(this.spec.getName() + " standby could not be promoted; starting cold: " + e.getMessage());
+            standby.destroyForcibly();
+          }
+        }
+
+        try
+        {
+          final Process replaced = launcher.launch(this.spec);
+          if (this.everStarted)
+          {
+            this.restarts++;
+          }
+          this.failures = 0;
+          adopt(replaced);
+          return replaced;
+        }
+        catch (IOException e)
+        {
+          failed(Optional.empty(), 0);
+          throw new IOException(this.spec.getName() + " could not be started: " + e.getMessage(), e);
+        }
+      }
+    }
+
+    /**
+     * Stops supervising the VM, asking its process and standby (if any) to exit.
+     * @return The processes being stopped.
+     */
+    public synchronized List<Process> stop()
+    {
+      this.state = VmStatus.State.STOPPED;
+
+      final List<Process> stopping = new ArrayList<>();
+      Optional.ofNullable(this.process).ifPresent(stopping::add);
+      Optional.ofNullable(this.spare).ifPresent(stopping::add);
+      stopping.forEach(Process::destroy);
+      this.process = null;
+      this.spare = null;
+
+      return stopping;
+    }
+
+    /**
+     * Gets a snapshot of the VM's status.
+     * @return The status.
+     */
+    public synchronized VmStatus status()
+    {
+      return new VmStatus(this.spec.getName(),
+                          this.state,
+                          this.process != null ? now() - this.startedAt : 0,
+                          this.restarts,
+                          this.lastExitCode);
+    }
+
+    /**
+     * Gets the running process.
+     * @return The process, or absent if the VM is not running.
+     */
+    public synchronized Optional<Process> running()
+    {
+      return this.state == VmStatus.State.RUNNING ? Optional.ofNullable(this.process) : Optional.empty();
+    }
+  }
+}
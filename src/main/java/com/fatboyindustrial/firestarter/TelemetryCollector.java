@@ -0,0 +1,342 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically samples the resource usage of every running VM, keeping the most recent samples of
+ * each in a ring buffer, and serves them as JSON from a local HTTP endpoint. <p>
+ *
+ * {@code GET /telemetry} returns every VM's samples, oldest first, together with a summary over the
+ * buffered window: the peak resident set size and heap use (for sizing each VM's {@code heap}), and
+ * the share of wall time spent on CPU and in garbage collection.  The endpoint only listens on the
+ * loopback interface.
+ */
+public class TelemetryCollector implements AutoCloseable
+{
+  /** The interval between samples used if none is given. */
+  public static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  /** The number of samples kept per VM if no capacity is given: an hour at the default interval. */
+  public static final int DEFAULT_CAPACITY = 720;
+
+  /** The path the samples are served from. */
+  public static final String PATH = "/telemetry";
+
+  /** The process file system. */
+  private static final Path PROC = Paths.get("/proc");
+
+  /** Gets the running VM processes, keyed by VM name. */
+  private final Supplier<? extends Map<String, Process>> processes;
+
+  /** The number of samples kept per VM. */
+  private final int capacity;
+
+  /** The interval between samples, in milliseconds. */
+  private final long intervalMillis;
+
+  /** The samples of each VM, oldest first, keyed by VM name. */
+  private final Map<String, Deque<ResourceSample>> samples = new TreeMap<>();
+
+  /** Takes the samples. */
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+  /** The HTTP server, once serving. */
+  private HttpServer server;
+
+  /**
+   * Constructor.  Samples are taken every {@link #DEFAULT_INTERVAL_MILLIS}, keeping
+   * {@link #DEFAULT_CAPACITY} per VM.
+   * @param processes Gets the running VM processes, keyed by VM name.
+   */
+  public TelemetryCollector(final Supplier<? extends Map<String, Process>> processes)
+  {
+    this(processes, DEFAULT_CAPACITY, DEFAULT_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Constructor.
+   * @param processes Gets the running VM processes, keyed by VM name.
+   * @param capacity The number of samples kept per VM.
+   * @param intervalMillis The interval between samples, in milliseconds.
+   */
+  public TelemetryCollector(final Supplier<? extends Map<String, Process>> processes,
+                            final int capacity,
+                            final long intervalMillis)
+  {
+    Preconditions.checkArgument(capacity > 0, "capacity must be > 0 but was: " + capacity);
+    Preconditions.checkArgument(intervalMillis > 0, "intervalMillis must be > 0 but was: " + intervalMillis);
+
+    this.processes = Preconditions.checkNotNull(processes, "processes cannot be null");
+    this.capacity = capacity;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Starts sampling.
+   */
+  public void start()
+  {
+    this.timer.scheduleWithFixedDelay(this::sample, 0, this.intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Serves the samples over HTTP on the loopback interface.
+   * @param port The port, or zero for any free port.
+   * @return The address being served.
+   * @throws IOException If the port cannot be bound.
+   */
+  public synchronized InetSocketAddress serve(final int port) throws IOException
+  {
+    Preconditions.checkState(this.server == null, "already serving");
+
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    this.server.createContext(PATH, this::respond);
+    this.server.start();
+
+    return this.server.getAddress();
+  }
+
+  /**
+   * Samples every running VM once.
+   */
+  public void sample()
+  {
+    for (final Map.Entry<String, Process> entry : this.processes.get().entrySet())
+    {
+      pid(entry.getValue())
+          .flatMap(pid -> ResourceSample.take(pid, PROC, PerfData.file(pid)))
+          .ifPresent(sample -> add(entry.getKey(), sample));
+    }
+  }
+
+  /**
+   * Adds a sample to a VM's ring buffer, dropping its oldest sample if the buffer is full.
+   * @param name The VM name.
+   * @param sample The sample.
+   */
+  public void add(final String name, final ResourceSample sample)
+  {
+    Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(sample, "sample cannot be null");
+
+    synchronized (this.samples)
+    {
+      final Deque<ResourceSample> buffer = this.samples.computeIfAbsent(name, key -> new ArrayDeque<>());
+      if (buffer.size() == this.capacity)
+      {
+        buffer.removeFirst();
+      }
+      buffer.addLast(sample);
+    }
+  }
+
+  /**
+   * Gets the buffered samples.
+   * @return Each VM's samples, oldest first, keyed by VM name.
+   */
+  public ImmutableMap<String, ImmutableList<ResourceSample>> getSamples()
+  {
+    synchronized (this.samples)
+    {
+      final ImmutableMap.Builder<String, ImmutableList<ResourceSample>> copy = ImmutableMap.builder();
+      this.samples.forEach((name, buffer) -> copy.put(name, ImmutableList.copyOf(buffer)));
+
+      return copy.build();
+    }
+  }
+
+  /**
+   * Formats the buffered samples as JSON.
+   * @return The JSON text.
+   */
+  public String toJson()
+  {
+    final StringBuilder json = new StringBuilder("{");
+
+    String separator = "\n";
+    for (final Map.Entry<String, ImmutableList<ResourceSample>> entry : getSamples().entrySet())
+    {
+      json.append(separator).append("  ").append(StartupMetrics.quote(entry.getKey())).append(": {\n");
+      json.append("    \"summary\": ").append(summary(entry.getValue())).append(",\n");
+      json.append("    \"samples\": [\n      ");
+      json.append(entry.getValue().stream().map(TelemetryCollector::toJson).collect(Collectors.joining(",\n      ")));
+      json.append("\n    ]\n  }");
+      separator = ",\n";
+    }
+
+    return json.append("\n}\n").toString();
+  }
+
+  /**
+   * Stops sampling and serving.
+   */
+  @Override
+  public synchronized void close()
+  {
+    this.timer.shutdownNow();
+
+    if (this.server != null)
+    {
+      this.server.stop(0);
+    }
+  }
+
+  /**
+   * Responds to a request for the samples.
+   * @param exchange The HTTP exchange.
+   * @throws IOException If the response cannot be sent.
+   */
+  private void respond(final HttpExchange exchange) throws IOException
+  {
+    try
+    {
+      if (!exchange.getRequestMethod().equals("GET"))
+      {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      final byte[] body = toJson().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+
+      try (final OutputStream out = exchange.getResponseBody())
+      {
+        out.write(body);
+      }
+    }
+    finally
+    {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Summarises a VM's samples.  Rates are taken over consecutive samples of the same process, so a
+   * restart within the window does not distort them.
+   * @param samples The samples, oldest first.
+   * @return The summary, as JSON.
+   */
+  private static String summary(final List<ResourceSample> samples)
+  {
+    long wall = 0;
+    long cpu = 0;
+    long gc = 0;
+
+    for (int i = 1; i < samples.size(); i++)
+    {
+      final ResourceSample before = samples.get(i - 1);
+      final ResourceSample after = samples.get(i);
+
+      if (before.getPid() == after.getPid())
+      {
+        wall += after.getTimestamp() - before.getTimestamp();
+        cpu += after.getCpuMillis() - before.getCpuMillis();
+        gc += after.getGcMillis().orElse(0L) - before.getGcMillis().orElse(0L);
+      }
+    }
+
+    return String.format(
+        "{ \"peakRssBytes\": %d, \"peakHeapUsedBytes\": %s, \"cpuPercent\": %s, \"gcPercent\": %s }",
+        samples.stream().mapToLong(ResourceSample::getRssBytes).max().orElse(0),
+        samples.stream().map(ResourceSample::getHeapUsedBytes)
+            .filter(Optional::isPresent).mapToLong(Optional::get).max().orElse(0),
+        wall == 0 ? "null" : String.format(Locale.ROOT, "%.1f", 100.0 * cpu / wall),
+        wall == 0 ? "null" : String.format(Locale.ROOT, "%.1f", 100.0 * gc / wall));
+  }
+
+  /**
+   * Formats a sample as JSON.
+   * @param sample The sample.
+   * @return The JSON text.
+   */
+  private static String toJson(final ResourceSample sample)
+  {
+    return String.format(
+        "{ \"timestamp\": %d, \"pid\": %d, \"rssBytes\": %d, \"cpuMillis\": %d, \"threads\": %d, " +
+        "\"heapUsedBytes\": %s, \"gcCount\": %s, \"gcMillis\": %s }",
+        sample.getTimestamp(), sample.getPid(), sample.getRssBytes(), sample.getCpuMillis(), sample.getThreads(),
+        sample.getHeapUsedBytes().map(String::valueOf).orElse("null"),
+        sample.getGcCount().map(String::valueOf).orElse("null"),
+        sample.getGcMillis().map(String::valueOf).orElse("null"));
+  }
+
+  /**
+   * Gets the id of a process.  {@code Process.pid()} only exists from Java 9, so it is called
+   * reflectively, falling back to the {@code pid} field of Java 8's process implementation.
+   * @param process The process.
+   * @return The process id, or absent if it cannot be determined.
+   */
+  static Optional<Long> pid(final Process process)
+  {
+    try
+    {
+      return Optional.of((Long) Process.class.getMethod("pid").invoke(process));
+    }
+    catch (NoSuchMethodException e)
+    {
+      try
+      {
+        final Field pid = process.getClass().getDeclaredField("pid");
+        pid.setAccessible(true);
+        return Optional.of(((Number) pid.get(process)).longValue());
+      }
+      catch (ReflectiveOperationException | RuntimeException inner)
+      {
+        return Optional.empty();
+      }
+    }
+    catch (ReflectiveOperationException | RuntimeException e)
+    {
+      return Optional.empty();
+    }
+  }
+}
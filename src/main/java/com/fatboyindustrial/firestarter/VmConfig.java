@@ -32,6 +32,8 @@ import com.typesafe.config.Config;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Configuration information for a single JVM.
@@ -48,9 +50,12 @@ public class VmConfig
   /** The VM name. */
   private final String name;
 
-  /** The heap size in MB. */
+  /** The heap size in MB; zero if given as a percentage. */
   private final int heap;
 
+  /** The heap size as a percentage of the node's memory, if given that way. */
+  private final Optional<Double> heapPercent;
+
   /** The jar file. */
   private final String jar;
 
@@ -60,6 +65,27 @@ public class VmConfig
   /** JVM properties. */
   private final ImmutableSortedMap<String, String> properties;
 
+  /** The names of the VMs that must be ready before this one starts. */
+  private final ImmutableList<String> dependsOn;
+
+  /** How to tell that this VM is ready. */
+  private final Optional<ReadinessConfig> readiness;
+
+  /** The garbage collector profile. */
+  private final GcConfig gc;
+
+  /** The processors the VM is pinned to; empty to leave it to the node planner. */
+  private final ImmutableList<Integer> cpus;
+
+  /** The NUMA node the VM is bound to, or absent to leave it to the node planner. */
+  private final Optional<Integer> numaNode;
+
+  /** The warm standby kept for this VM when supervised. */
+  private final Optional<StandbyConfig> standby;
+
+  /** The diagnostics profile. */
+  private final DiagnosticsConfig diagnostics;
+
   /**
    * Constructor.
    * @param name The VM name.
@@ -73,21 +99,82 @@ public class VmConfig
                   final String jar,
                   final List<String> arguments,
                   final Map<String, String> properties)
+  {
+    this(name, heap, Optional.empty(), jar, arguments, properties,
+         ImmutableList.of(), Optional.empty(), GcConfig.DEFAULT, ImmutableList.of(), Optional.empty(),
+         Optional.empty(), DiagnosticsConfig.NONE);
+  }
+
+  /**
+   * Constructor.
+   * @param name The VM name.
+   * @param heap The heap size in MB; ignored if given as a percentage.
+   * @param heapPercent The heap size as a percentage of the node's memory, if given that way.
+   * @param jar The jar file.
+   * @param arguments Command line arguments.
+   * @param properties JVM properties.
+   * @param dependsOn The names of the VMs that must be ready before this one starts.
+   * @param readiness How to tell that this VM is ready.
+   * @param gc The garbage collector profile.
+   * @param cpus The processors the VM is pinned to; empty to leave it to the node planner.
+   * @param numaNode The NUMA node the VM is bound to, or absent to leave it to the node planner.
+   * @param standby The warm standby kept for this VM when supervised, if any.
+   * @param diagnostics The diagnostics profile.
+   */
+  public VmConfig(final String name,
+                  final int heap,
+                  final Optional<Double> heapPercent,
+                  final String jar,
+                  final List<String> arguments,
+                  final Map<String, String> properties,
+                  final List<String> dependsOn,
+                  final Optional<ReadinessConfig> readiness,
+                  final GcConfig gc,
+                  final List<Integer> cpus,
+                  final Optional<Integer> numaNode,
+                  final Optional<StandbyConfig> standby,
+                  final DiagnosticsConfig diagnostics)
   {
     Preconditions.checkNotNull(name, "name cannot be null");
+    Preconditions.checkNotNull(heapPercent, "heapPercent cannot be null");
     Preconditions.checkNotNull(jar, "jar cannot be null");
     Preconditions.checkNotNull(arguments, "arguments cannot be null");
     Preconditions.checkNotNull(properties, "properties cannot be null");
+    Preconditions.checkNotNull(dependsOn, "dependsOn cannot be null");
+    Preconditions.checkNotNull(readiness, "readiness cannot be null");
+    Preconditions.checkNotNull(gc, "gc cannot be null");
+    Preconditions.checkNotNull(cpus, "cpus cannot be null");
+    Preconditions.checkNotNull(numaNode, "numaNode cannot be null");
+    Preconditions.checkNotNull(standby, "standby cannot be null");
+    Preconditions.checkNotNull(diagnostics, "diagnostics cannot be null");
 
-    Preconditions.checkArgument(name.indexOf(' ') == - 1, "VmConfig.name cannot contain spaces");
-    Preconditions.checkArgument(heap >= MIN_VM_SIZE, "VmConfig.heap must be >= " + MIN_VM_SIZE + " but was: " + heap);
-    Preconditions.checkArgument(jar.indexOf(' ') == - 1, "VmConfig.jar cannot contain spaces");
+    Preconditions.checkArgument(isPathSegment(name), "VmConfig.name must be a single path segment but was: " + name);
+    Preconditions.checkArgument(arguments.stream().noneMatch(VmConfig::hasNul), "VmConfig.args cannot contain a NUL");
+    Preconditions.checkArgument(properties.entrySet().stream()
+                                    .noneMatch(entry -> hasNul(entry.getKey()) || hasNul(entry.getValue())),
+                                "VmConfig.properties cannot contain a NUL");
+    Preconditions.checkArgument(heapPercent.isPresent() || heap >= MIN_VM_SIZE,
+                                "VmConfig.heap must be >= " + MIN_VM_SIZE + " but was: " + heap);
+    Preconditions.checkArgument(heapPercent.map(percent -> percent > 0 && percent <= 100).orElse(true),
+                                "VmConfig.heap percentage must be in (0, 100] but was: " + heapPercent.orElse(0.0));
+    Preconditions.checkArgument(!dependsOn.contains(name), "VmConfig.dependsOn cannot contain itself: " + name);
+    Preconditions.checkArgument(cpus.stream().allMatch(cpu -> cpu >= 0), "VmConfig.cpus cannot be negative");
+    Preconditions.checkArgument(numaNode.map(node -> node >= 0).orElse(true),
+                                "VmConfig.numaNode must be >= 0 but was: " + numaNode.orElse(0));
 
     this.name = name;
-    this.heap = heap;
+    this.heap = heapPercent.isPresent() ? 0 : heap;
+    this.heapPercent = heapPercent;
     this.jar = jar;
     this.arguments = ImmutableList.copyOf(arguments);
     this.properties = ImmutableSortedMap.copyOf(properties);
+    this.dependsOn = ImmutableList.copyOf(dependsOn);
+    this.readiness = readiness;
+    this.gc = gc;
+    this.cpus = ImmutableList.copyOf(cpus);
+    this.numaNode = numaNode;
+    this.standby = standby;
+    this.diagnostics = diagnostics;
   }
 
   /**
@@ -102,14 +189,54 @@ public class VmConfig
     Preconditions.checkNotNull(name, "name cannot be null");
     Preconditions.checkNotNull(vmConfig, "vmConfig cannot be null");
 
+    final String heap = vmConfig.getString("heap").trim();
+    final Optional<Double> heapPercent = heap.endsWith("%")
+        ? Optional.of(Double.parseDouble(heap.substring(0, heap.length() - 1).trim()))
+        : Optional.empty();
+
     return new VmConfig(
         name,
-        (int) (vmConfig.getBytes("heap") / MEGABYTES),
+        heapPercent.isPresent() ? 0 : (int) (vmConfig.getBytes("heap") / MEGABYTES),
+        heapPercent,
         vmConfig.getString("jar"),
         vmConfig.getStringList("args"),
         vmConfig.hasPath("properties")
             ? Maps.transformValues(vmConfig.getObject("properties").unwrapped(), String::valueOf)
-            : ImmutableMap.of());
+            : ImmutableMap.of(),
+        vmConfig.hasPath("dependsOn") ? vmConfig.getStringList("dependsOn") : ImmutableList.of(),
+        vmConfig.hasPath("ready")
+            ? Optional.of(ReadinessConfig.fromConfig(vmConfig.getConfig("ready")))
+            : Optional.empty(),
+        vmConfig.hasPath("gc") ? GcConfig.fromConfig(vmConfig) : GcConfig.DEFAULT,
+        vmConfig.hasPath("cpus") ? CpuList.parse(vmConfig.getString("cpus")) : ImmutableList.of(),
+        vmConfig.hasPath("numaNode") ? Optional.of(vmConfig.getInt("numaNode")) : Optional.empty(),
+        vmConfig.hasPath("standby") ? StandbyConfig.fromConfig(vmConfig) : Optional.empty(),
+        vmConfig.hasPath("diagnostics") ? DiagnosticsConfig.fromConfig(vmConfig) : DiagnosticsConfig.NONE);
+  }
+
+  /**
+   * Determines if a VM name can be used as one segment of a file path, as the diagnostics and log files are kept
+   * under a directory named for the VM.  Spaces are allowed; separators, NULs and the relative segments are not.
+   * @param name The VM name.
+   * @return True if the name is a single, safe path segment.
+   */
+  private static boolean isPathSegment(final String name)
+  {
+    return !name.isEmpty()
+        && !name.equals(".")
+        && !name.equals("..")
+        && name.indexOf('/') < 0
+        && !hasNul(name);
+  }
+
+  /**
+   * Determines if a string holds a NUL, which cannot be passed to a process in its arguments.
+   * @param value The string.
+   * @return True if it holds a NUL.
+   */
+  private static boolean hasNul(final String value)
+  {
+    return value.indexOf('\0') >= 0;
   }
 
   /**
@@ -123,13 +250,22 @@ public class VmConfig
 
   /**
    * Gets the heap size.
-   * @return The heap in MB.
+   * @return The heap in MB; zero if given as a percentage (see {@link NodePlanner}).
    */
   public int getHeap()
   {
     return this.heap;
   }
 
+  /**
+   * Gets the heap size as a percentage of the node's memory.
+   * @return The percentage, or absent if the heap is given in MB.
+   */
+  public Optional<Double> getHeapPercent()
+  {
+    return this.heapPercent;
+  }
+
   /**
    * Gets the jar file name.
    * @return The jar file name.
@@ -156,4 +292,108 @@ public class VmConfig
   {
     return this.properties;
   }
+
+  /**
+   * Gets the names of the VMs that must be ready before this one starts.
+   * @return The upstream VM names.
+   */
+  public ImmutableList<String> getDependsOn()
+  {
+    return this.dependsOn;
+  }
+
+  /**
+   * Gets how to tell that this VM is ready.
+   * @return The readiness configuration, or absent if the VM is ready as soon as it is started.
+   */
+  public Optional<ReadinessConfig> getReadiness()
+  {
+    return this.readiness;
+  }
+
+  /**
+   * Gets the garbage collector profile.
+   * @return The garbage collector profile.
+   */
+  public GcConfig getGc()
+  {
+    return this.gc;
+  }
+
+  /**
+   * Gets the processors the VM is pinned to.
+   * @return The processor numbers; empty to leave it to the node planner.
+   */
+  public ImmutableList<Integer> getCpus()
+  {
+    return this.cpus;
+  }
+
+  /**
+   * Gets the NUMA node the VM is bound to.
+   * @return The node number, or absent to leave it to the node planner.
+   */
+  public Optional<Integer> getNumaNode()
+  {
+    return this.numaNode;
+  }
+
+  /**
+   * Gets the warm standby kept for this VM when supervised.
+   * @return The standby configuration, or absent if the VM has no standby.
+   */
+  public Optional<StandbyConfig> getStandby()
+  {
+    return this.standby;
+  }
+
+  /**
+   * Gets the diagnostics profile.
+   * @return The diagnostics profile.
+   */
+  public DiagnosticsConfig getDiagnostics()
+  {
+    return this.diagnostics;
+  }
+
+  /**
+   * Determines whether this configuration equals another object.
+   * @param obj The other object.
+   * @return True if the other object is an equal VmConfig.
+   */
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof VmConfig))
+    {
+      return false;
+    }
+
+    final VmConfig other = (VmConfig) obj;
+    return this.name.equals(other.name)
+        && this.heap == other.heap
+        && this.heapPercent.equals(other.heapPercent)
+        && this.jar.equals(other.jar)
+        && this.arguments.equals(other.arguments)
+        && this.properties.equals(other.properties)
+        && this.dependsOn.equals(other.dependsOn)
+        && this.readiness.equals(other.readiness)
+        && this.gc.equals(other.gc)
+        && this.cpus.equals(other.cpus)
+        && this.numaNode.equals(other.numaNode)
+        && this.standby.equals(other.standby)
+        && this.diagnostics.equals(other.diagnostics);
+  }
+
+  /**
+   * Gets the hash code.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash(this.name, this.heap, this.heapPercent, this.jar, this.arguments, this.properties,
+                        this.dependsOn, this.readiness, this.gc, this.cpus, this.numaNode, this.standby,
+                        this.diagnostics);
+  }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The resources the node planner has given a single VM.
+ */
+public class VmPlan
+{
+  /** The heap size in MB. */
+  private final int heap;
+
+  /** The processors the VM is pinned to; empty if it is not pinned. */
+  private final ImmutableList<Integer> cpus;
+
+  /** The NUMA node the VM is bound to, or absent if it is not bound. */
+  private final Optional<Integer> numaNode;
+
+  /** True if the VM can run on more than one NUMA node. */
+  private final boolean spanningNodes;
+
+  /**
+   * Constructor, for a VM that is not bound to a NUMA node.
+   * @param heap The heap size in MB.
+   * @param cpus The processors the VM is pinned to; empty if it is not pinned.
+   */
+  public VmPlan(final int heap, final List<Integer> cpus)
+  {
+    this(heap, cpus, Optional.empty(), false);
+  }
+
+  /**
+   * Constructor.
+   * @param heap The heap size in MB.
+   * @param cpus The processors the VM is pinned to; empty if it is not pinned.
+   * @param numaNode The NUMA node the VM is bound to, or absent if it is not bound.
+   * @param spanningNodes True if the VM can run on more than one NUMA node.
+   */
+  public VmPlan(final int heap,
+                final List<Integer> cpus,
+                final Optional<Integer> numaNode,
+                final boolean spanningNodes)
+  {
+    Preconditions.checkNotNull(cpus, "cpus cannot be null");
+    Preconditions.checkNotNull(numaNode, "numaNode cannot be null");
+
+    Preconditions.checkArgument(heap >= VmConfig.MIN_VM_SIZE,
+                                "VmPlan.heap must be >= " + VmConfig.MIN_VM_SIZE + " but was: " + heap);
+
+    this.heap = heap;
+    this.cpus = ImmutableList.copyOf(cpus);
+    this.numaNode = numaNode;
+    this.spanningNodes = spanningNodes;
+  }
+
+  /**
+   * Gets the heap size.
+   * @return The heap in MB.
+   */
+  public int getHeap()
+  {
+    return this.heap;
+  }
+
+  /**
+   * Gets the processors the VM is pinned to.
+   * @return The processor numbers; empty if the VM is not pinned.
+   */
+  public ImmutableList<Integer> getCpus()
+  {
+    return this.cpus;
+  }
+
+  /**
+   * Gets the processors the VM is pinned to, in the list format of {@code taskset -c} (for
+   * example, "0-3,8").
+   * @return The processor list; empty if the VM is not pinned.
+   */
+  public String getCpuList()
+  {
+    return CpuList.format(this.cpus);
+  }
+
+  /**
+   * Gets the NUMA node the VM is bound to.
+   * @return The node number, or absent if the VM is not bound.
+   */
+  public Optional<Integer> getNumaNode()
+  {
+    return this.numaNode;
+  }
+
+  /**
+   * Determines whether the VM can run on more than one NUMA node, and so benefits from a NUMA-aware heap.
+   * @return True if the VM spans NUMA nodes.
+   */
+  public boolean isSpanningNodes()
+  {
+    return this.spanningNodes;
+  }
+}
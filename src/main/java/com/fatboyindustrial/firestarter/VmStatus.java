@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Optional;
+
+/**
+ * A point-in-time snapshot of a supervised VM.
+ */
+public class VmStatus
+{
+  /**
+   * The state of a supervised VM.
+   */
+  public enum State
+  {
+    /** The VM is running. */
+    RUNNING,
+
+    /** The VM has exited and is waiting to be restarted. */
+    BACKOFF,
+
+    /** The VM has exited too often and is being held before another restart. */
+    CRASH_LOOP,
+
+    /** The VM has been stopped and will not be restarted. */
+    STOPPED
+  }
+
+  /** The VM name. */
+  private final String name;
+
+  /** The VM state. */
+  private final State state;
+
+  /** How long the current process has been running, in milliseconds; zero if not running. */
+  private final long uptimeMillis;
+
+  /** The number of times the VM has been restarted. */
+  private final int restarts;
+
+  /** The exit code of the last process, if one has exited. */
+  private final Optional<Integer> lastExitCode;
+
+  /**
+   * Constructor.
+   * @param name The VM name.
+   * @param state The VM state.
+   * @param uptimeMillis How long the current process has been running, in milliseconds.
+   * @param restarts The number of times the VM has been restarted.
+   * @param lastExitCode The exit code of the last process, if one has exited.
+   */
+  public VmStatus(final String name,
+                  final State state,
+                  final long uptimeMillis,
+                  final int restarts,
+                  final Optional<Integer> lastExitCode)
+  {
+    this.name = Preconditions.checkNotNull(name, "name cannot be null");
+    this.state = Preconditions.checkNotNull(state, "state cannot be null");
+    this.uptimeMillis = uptimeMillis;
+    this.restarts = restarts;
+    this.lastExitCode = Preconditions.checkNotNull(lastExitCode, "lastExitCode cannot be null");
+  }
+
+  /**
+   * Gets the VM name.
+   * @return The VM name.
+   */
+  public String getName()
+  {
+    return this.name;
+  }
+
+  /**
+   * Gets the VM state.
+   * @return The state.
+   */
+  public State getState()
+  {
+    return this.state;
+  }
+
+  /**
+   * Gets how long the current process has been running.
+   * @return The uptime in milliseconds; zero if not running.
+   */
+  public long getUptimeMillis()
+  {
+    return this.uptimeMillis;
+  }
+
+  /**
+   * Gets the number of times the VM has been restarted.
+   * @return The restart count.
+   */
+  public int getRestarts()
+  {
+    return this.restarts;
+  }
+
+  /**
+   * Gets the exit code of the last process.
+   * @return The exit code, if a process has exited.
+   */
+  public Optional<Integer> getLastExitCode()
+  {
+    return this.lastExitCode;
+  }
+
+  /**
+   * Formats the status as a single line.
+   * @return The formatted status.
+   */
+  @Override
+  public String toString()
+  {
+    return String.format("%-24s %-10s uptime=%ds restarts=%d last-exit=%s",
+                         this.name, this.state, this.uptimeMillis / 1000, this.restarts,
+                         this.lastExitCode.map(String::valueOf).orElse("-"));
+  }
+}
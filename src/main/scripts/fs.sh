@@ -1,4 +1,4 @@
-#!/bin/sh
+#!/bin/bash
 
 # Firestarter
 #
@@ -24,29 +24,79 @@
 # THE SOFTWARE.
 
 #
-# Sets the internal field separator to a newline.
+# Sends a request to the resident daemon (see --daemon), if one is running for $FS_ROOT, writing its
+# output to standard output.  Returns 2 if there is no daemon to ask, and 1 if the request failed.
 #
-setToNewline() {
-  IFS=$'\n'
+daemon() {
+  local PORT TOKEN STATUS
+  [ -n "$FS_ROOT" ] && [ -r "$FS_ROOT/.firestarter.daemon" ] || return 2
+  read -r PORT TOKEN < "$FS_ROOT/.firestarter.daemon"
+  { exec 3<>/dev/tcp/127.0.0.1/$PORT; } 2>/dev/null || return 2
+
+  printf '%s\n' "$TOKEN" "$@" '' >&3
+  IFS= read -r STATUS <&3
+  if [ "$STATUS" != "OK" ]; then
+    echo "${STATUS:-ERROR no response from the daemon}" >&2
+    exec 3<&-
+    return 1
+  fi
+  cat <&3
+  exec 3<&-
 }
 
 #
-# Restores the internal field separator to its default value.
+# Makes a path absolute, as the daemon does not share this shell's working directory.
 #
-setToNormal() {
-  unset IFS
+absolute() {
+  echo "$( cd "$( dirname "$1" )" && pwd )/$( basename "$1" )"
 }
 
 FS_HOME="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 
 FS_JAR=`find $FS_HOME -name firestarter-\*.jar -print | sort | tail -1`
-if [ -z "$FS_JAR" ]; then
+export FS_JAR                                    # a native build runs warm standbys from the jar
+
+if [ -x "$FS_HOME/firestarter" ]; then           # prefer a native build, which starts in milliseconds
+  FIRESTARTER=("$FS_HOME/firestarter")
+elif [ -n "$FS_JAR" ]; then
+  FIRESTARTER=(java -Xms64M -Xmx64M -jar "$FS_JAR")
+else
   echo "Could not find firestarter JAR"
   exit 1
 fi
 
+if [ $# -lt 1 ]; then
+  echo "Usage: $0 [options] config"
+  exit 1
+fi
+
+case "$1" in
+  --status|--stop)                               # ask the daemon
+    daemon `echo ${1#--} | tr a-z A-Z`
+    RC=$?
+    if [ $RC -eq 2 ]; then
+      echo "No daemon is running for FS_ROOT=$FS_ROOT"
+      exit 1
+    fi
+    exit $RC
+    ;;
+  --launch)                                      # the daemon launches the VMs, if one is running
+    if [ $# -eq 2 ]; then
+      daemon LAUNCH "`absolute "$2"`"
+      RC=$?
+      if [ $RC -ne 2 ]; then
+        exit $RC
+      fi
+    fi
+    exec "${FIRESTARTER[@]}" "$@"
+    ;;
+  --*)                                           # options: firestarter manages the VMs itself
+    exec "${FIRESTARTER[@]}" "$@"
+    ;;
+esac
+
 if [ $# -ne 1 ]; then
-  echo "Usage: $0 config"
+  echo "Usage: $0 [options] config"
   exit 1
 fi
 CONF=$1
@@ -54,8 +104,19 @@ SESSION=`basename $CONF .conf`
 
 set -f                                           # globbing off
 
-DIRECTIVES="`java -Xms64M -Xmx64M -jar $FS_JAR $CONF`"
-if [ $? -ne 0 ]; then
+# Each VM's command arrives as NUL-terminated fields -- its name, its argument count, then each
+# argument -- so that no argument is split or expanded on its way to the VM.
+
+DIRECTIVES=`mktemp`
+trap 'rm -f "$DIRECTIVES"' EXIT
+
+daemon GENERATE nul "`absolute "$CONF"`" > "$DIRECTIVES"
+RC=$?
+if [ $RC -eq 2 ]; then                           # no daemon: run firestarter directly
+  "${FIRESTARTER[@]}" --format nul "$CONF" > "$DIRECTIVES"
+  RC=$?
+fi
+if [ $RC -ne 0 ]; then
   exit 1
 fi
 
@@ -66,13 +127,14 @@ if (( $? == 1 )); then
   tmux set -t $SESSION set-remain-on-exit on     # don't remove exited processes
 fi
 
-setToNewline                                     # for directive processing, split by newine
-for DIRECTIVE in $DIRECTIVES; do
-  setToNormal                                    # return to default field separation
-
-  echo "Directive: $DIRECTIVE"
-  tmux new-window -aP -t $SESSION "$DIRECTIVE"   # execute directive in a new tmux window
+while IFS= read -r -d '' NAME; do
+  IFS= read -r -d '' COUNT
+  ARGV=()
+  for (( I = 0; I < COUNT; I++ )); do
+    IFS= read -r -d '' ARG
+    ARGV+=("$ARG")
+  done
 
-  setToNewline                                   # (prepare for next directive)
-done
-setToNormal                                      # (clean up)
+  echo "Directive: ${ARGV[*]}"
+  tmux new-window -aP -t $SESSION -n "$NAME" -- "${ARGV[@]}"   # exec the VM directly, without a shell
+done < "$DIRECTIVES"
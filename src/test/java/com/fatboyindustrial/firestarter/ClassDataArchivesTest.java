@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ClassDataArchives}.
+ */
+public class ClassDataArchivesTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The jar file. */
+  private Path jar;
+
+  /** The archive directory. */
+  private Path dir;
+
+  /**
+   * Creates the jar file.
+   * @throws IOException If the jar cannot be written.
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    this.jar = this.folder.getRoot().toPath().resolve("app.jar");
+    this.dir = this.folder.getRoot().toPath().resolve("cds");
+    writeJar(this.jar, "version 1");
+  }
+
+  /**
+   * Tests that the first VM dumps the archive, that no second VM is asked to dump it at the same time,
+   * and that later VMs use it.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testDumpThenShare() throws IOException
+  {
+    final ClassDataArchives archives = new ClassDataArchives(this.dir);
+    final Path archive = archives.getArchive(this.jar, 17);
+
+    assertThat(archives.flags(this.jar, 17), is(ImmutableList.of("-XX:ArchiveClassesAtExit=" + archive)));
+    assertThat(archives.flags(this.jar, 17), is(ImmutableList.<String>of()));
+
+    Files.write(archive, new byte[] { 1 });
+
+    assertThat(new ClassDataArchives(this.dir).flags(this.jar, 17),
+               is(ImmutableList.of("-XX:SharedArchiveFile=" + archive)));
+  }
+
+  /**
+   * Tests that a changed jar gets a new archive and that the old one is removed.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testInvalidatedByChange() throws IOException
+  {
+    final Path original = new ClassDataArchives(this.dir).getArchive(this.jar, 17);
+    Files.createDirectories(this.dir);
+    Files.write(original, new byte[] { 1 });
+
+    writeJar(this.jar, "version 2");
+
+    final ClassDataArchives archives = new ClassDataArchives(this.dir);
+    final Path updated = archives.getArchive(this.jar, 17);
+
+    assertThat(updated.equals(original), is(false));
+    assertThat(archives.flags(this.jar, 17), is(ImmutableList.of("-XX:ArchiveClassesAtExit=" + updated)));
+    assertThat(Files.exists(original), is(false));
+  }
+
+  /**
+   * Tests the flags for JDKs without dynamic archives and with automatic archives.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testJdkVersions() throws IOException
+  {
+    final ClassDataArchives archives = new ClassDataArchives(this.dir);
+
+    assertThat(archives.flags(this.jar, 11), is(ImmutableList.<String>of()));
+    assertThat(archives.flags(this.jar, 21), is(ImmutableList.of(
+        "-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archives.getArchive(this.jar, 21))));
+  }
+
+  /**
+   * Writes a jar holding a single entry.
+   * @param jar The jar file.
+   * @param content The entry's content.
+   * @throws IOException If the jar cannot be written.
+   */
+  private static void writeJar(final Path jar, final String content) throws IOException
+  {
+    try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+    {
+      out.putNextEntry(new ZipEntry("version.txt"));
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    }
+  }
+}
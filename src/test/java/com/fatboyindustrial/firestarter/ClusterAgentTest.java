@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ClusterAgent} and {@link ClusterClient}, with several agents on the loopback
+ * interface.
+ */
+public class ClusterAgentTest
+{
+  /** The configuration sent to the agents. */
+  private static final Config HOCON = ConfigFactory.parseString(
+      "name: test\n" +
+      "cluster.hosts { alpha { memory: 4G, cpus: 4 }, beta { memory: 4G, cpus: 4 } }\n" +
+      "jvms {\n" +
+      "  a { heap: 1G, jar: a.jar, args: [] }\n" +
+      "  b { heap: 1G, jar: b.jar, args: [], dependsOn: [a] }\n" +
+      "  c { heap: 1G, jar: c.jar, args: [] }\n" +
+      "}");
+
+  /** The agents started by the test. */
+  private final List<ClusterAgent> agents = new ArrayList<>();
+
+  /**
+   * Stops the agents.
+   */
+  @After
+  public void tearDown()
+  {
+    this.agents.forEach(ClusterAgent::close);
+  }
+
+  /**
+   * Tests that each agent is sent, and applies, its own share of the configuration.
+   * @throws IOException If an agent cannot be started.
+   */
+  @Test
+  public void testApply() throws IOException
+  {
+    final List<List<String>> alpha = new CopyOnWriteArrayList<>();
+    final List<List<String>> beta = new CopyOnWriteArrayList<>();
+    final ClusterConfig cluster =
+        cluster(Optional.empty(), agent(Optional.empty(), alpha), agent(Optional.empty(), beta));
+
+    final Map<String, ImmutableList<String>> placement =
+        ClusterPlanner.place(FirestarterConfig.fromConfig(HOCON), cluster);
+    final ImmutableMap<String, String> responses =
+        ClusterClient.apply(cluster, placement, ClusterClient.render(HOCON));
+
+    assertThat(responses, is(ImmutableMap.of("alpha", "OK applied", "beta", "OK applied")));
+    assertThat(alpha, is(ImmutableList.of(ImmutableList.of("a", "b"))));
+    assertThat(beta, is(ImmutableList.of(ImmutableList.of("c"))));
+  }
+
+  /**
+   * Tests that an agent with a token refuses a request without it.
+   * @throws IOException If an agent cannot be started.
+   */
+  @Test
+  public void testToken() throws IOException
+  {
+    final List<List<String>> applied = new CopyOnWriteArrayList<>();
+    final InetSocketAddress agent = agent(Optional.of("secret"), applied);
+
+    final String refused = ClusterClient.apply(
+        cluster(Optional.of("guess"), agent), ImmutableMap.of("alpha", ImmutableList.of("c")),
+        ClusterClient.render(HOCON)).get("alpha");
+    assertThat(refused.startsWith(ClusterAgent.ERROR), is(true));
+    assertThat(applied.isEmpty(), is(true));
+
+    final String accepted = ClusterClient.apply(
+        cluster(Optional.of("secret"), agent), ImmutableMap.of("alpha", ImmutableList.of("c")),
+        ClusterClient.render(HOCON)).get("alpha");
+    assertThat(accepted, is("OK applied"));
+    assertThat(applied, is(ImmutableList.of(ImmutableList.of("c"))));
+  }
+
+  /**
+   * Tests that a VM the configuration does not have is reported, as is an agent that cannot be reached.
+   * @throws IOException If an agent cannot be started.
+   */
+  @Test
+  public void testErrors() throws IOException
+  {
+    final InetSocketAddress unreachable;
+    try (final ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+    {
+      unreachable = (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    final ImmutableMap<String, String> responses = ClusterClient.apply(
+        cluster(Optional.empty(), agent(Optional.empty(), new ArrayList<>()), unreachable),
+        ImmutableMap.of("alpha", ImmutableList.of("z")),
+        ClusterClient.render(HOCON));
+
+    assertThat(responses.get("alpha"), is("ERROR the configuration has no VMs named [z]"));
+    assertThat(responses.get("beta").startsWith(ClusterAgent.ERROR), is(true));
+  }
+
+  /**
+   * Tests that an applier failing unexpectedly is answered with an error, and that the agent goes on
+   * handling requests.
+   * @throws IOException If an agent cannot be started.
+   */
+  @Test
+  public void testApplierFails() throws IOException
+  {
+    final ClusterAgent agent = new ClusterAgent(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Optional.empty(), cfg -> {
+          throw new IllegalStateException("broken");
+        });
+    this.agents.add(agent);
+    final ClusterConfig cluster = cluster(Optional.empty(), agent.start());
+
+    for (int i = 0; i < 2; i++)
+    {
+      assertThat(ClusterClient.apply(cluster, ImmutableMap.of("alpha", ImmutableList.of("c")),
+                                     ClusterClient.render(HOCON)).get("alpha"),
+                 is("ERROR java.lang.IllegalStateException: broken"));
+    }
+  }
+
+  /**
+   * Starts an agent on the loopback interface that records the VMs of each configuration it applies.
+   * @param token The token the agent requires, if any.
+   * @param applied The VM names of each configuration applied.
+   * @return The agent's address.
+   * @throws IOException If the agent cannot be started.
+   */
+  private InetSocketAddress agent(final Optional<String> token, final List<List<String>> applied) throws IOException
+  {
+    final ClusterAgent agent = new ClusterAgent(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), token, cfg -> {
+          applied.add(cfg.getJvms().stream().map(VmConfig::getName).collect(Collectors.toList()));
+          return "applied";
+        });
+    this.agents.add(agent);
+
+    return agent.start();
+  }
+
+  /**
+   * Creates a cluster of the given agents, named alpha, beta and so on.
+   * @param token The cluster token, if any.
+   * @param agents The agents' addresses.
+   * @return The cluster.
+   */
+  private static ClusterConfig cluster(final Optional<String> token, final InetSocketAddress... agents)
+  {
+    final List<ClusterHost> hosts = new ArrayList<>();
+    for (int i = 0; i < agents.length; i++)
+    {
+      hosts.add(new ClusterHost(ImmutableList.of("alpha", "beta").get(i), agents[i], 4L * 1024 * 1024 * 1024, 4));
+    }
+
+    return new ClusterConfig(hosts, token, TimeUnit.SECONDS.toMillis(10));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ClusterPlanner}.
+ */
+public class ClusterPlannerTest
+{
+  /**
+   * Tests that the cluster section is read, with the agent port defaulted.
+   */
+  @Test
+  public void testClusterConfig()
+  {
+    final ClusterConfig cluster = ClusterConfig.fromConfig(config(
+        "token: secret\n" +
+        "hosts { alpha { address: \"10.0.0.1:7500\", memory: 8G, cpus: 4 }, beta { memory: 4G, cpus: 2 } }"));
+
+    assertThat(cluster.getToken(), is(Optional.of("secret")));
+    assertThat(cluster.getHosts().size(), is(2));
+    assertThat(cluster.getHosts().get(0).getAddress().getHostString(), is("10.0.0.1"));
+    assertThat(cluster.getHosts().get(0).getAddress().getPort(), is(7500));
+    assertThat(cluster.getHosts().get(1).getAddress().getHostString(), is("beta"));
+    assertThat(cluster.getHosts().get(1).getAddress().getPort(), is(ClusterHost.DEFAULT_PORT));
+    assertThat(cluster.getHosts().get(1).getMemoryBytes(), is(4L * 1024 * 1024 * 1024));
+  }
+
+  /**
+   * Tests that the largest VMs are placed first, each on the host it leaves least loaded.
+   */
+  @Test
+  public void testBalanced()
+  {
+    final Config hocon = config(
+        "hosts { alpha { memory: 8G, cpus: 4 }, beta { memory: 4G, cpus: 2 } }",
+        "c { heap: 1G, jar: c.jar, args: [] }",
+        "a { heap: 2G, jar: a.jar, args: [] }",
+        "d { heap: 1G, jar: d.jar, args: [] }",
+        "b { heap: 2G, jar: b.jar, args: [] }");
+
+    assertThat(ClusterPlanner.place(FirestarterConfig.fromConfig(hocon), ClusterConfig.fromConfig(hocon)),
+               is(ImmutableMap.of("alpha", ImmutableList.of("a", "b"), "beta", ImmutableList.of("c", "d"))));
+  }
+
+  /**
+   * Tests that VMs that depend on one another are placed together.
+   */
+  @Test
+  public void testDependenciesTogether()
+  {
+    final Config hocon = config(
+        "hosts { alpha { memory: 4G, cpus: 4 }, beta { memory: 4G, cpus: 4 } }",
+        "a { heap: 1G, jar: a.jar, args: [] }",
+        "b { heap: 1G, jar: b.jar, args: [], dependsOn: [a] }",
+        "c { heap: 1G, jar: c.jar, args: [] }");
+
+    assertThat(ClusterPlanner.place(FirestarterConfig.fromConfig(hocon), ClusterConfig.fromConfig(hocon)),
+               is(ImmutableMap.of("alpha", ImmutableList.of("a", "b"), "beta", ImmutableList.of("c"))));
+  }
+
+  /**
+   * Tests that a host is not given more VMs than it has processors.
+   */
+  @Test
+  public void testCpuLimit()
+  {
+    final Config hocon = config(
+        "hosts { alpha { memory: 8G, cpus: 1 }, beta { memory: 2G, cpus: 4 } }",
+        "a { heap: 512M, jar: a.jar, args: [] }",
+        "b { heap: 512M, jar: b.jar, args: [] }");
+
+    assertThat(ClusterPlanner.place(FirestarterConfig.fromConfig(hocon), ClusterConfig.fromConfig(hocon)),
+               is(ImmutableMap.of("alpha", ImmutableList.of("a"), "beta", ImmutableList.of("b"))));
+  }
+
+  /**
+   * Tests that a VM too large for every host is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoFit()
+  {
+    final Config hocon = config(
+        "hosts { alpha { memory: 4G, cpus: 4 }, beta { memory: 4G, cpus: 4 } }",
+        "a { heap: 4G, jar: a.jar, args: [] }");
+
+    ClusterPlanner.place(FirestarterConfig.fromConfig(hocon), ClusterConfig.fromConfig(hocon));
+  }
+
+  /**
+   * Creates a configuration.
+   * @param cluster The contents of the cluster section.
+   * @param jvms The VM definitions.
+   * @return The configuration.
+   */
+  private static Config config(final String cluster, final String... jvms)
+  {
+    return ConfigFactory.parseString(
+        "name: test\ncluster {\n" + cluster + "\n}\njvms {\n" + String.join("\n", jvms) + "\n}");
+  }
+}
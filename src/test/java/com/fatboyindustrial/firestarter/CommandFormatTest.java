@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link CommandFormat}.
+ */
+public class CommandFormatTest
+{
+  /** A VM whose name, jar, property and argument all need quoting. */
+  private static final VmConfig VM = new VmConfig(
+      "order book", VmConfig.MIN_VM_SIZE, Optional.empty(), "order book.jar", ImmutableList.of("it's $HOME"),
+      ImmutableMap.of("motd", "say \"hi\" to $USER"), ImmutableList.of(), Optional.empty(), GcConfig.DEFAULT,
+      ImmutableList.of(), Optional.empty(), Optional.empty(), DiagnosticsConfig.NONE);
+
+  /** The VM's command. */
+  private static final List<String> COMMAND = ImmutableList.of(
+      "java", "-Dfirestarter.vmname=order book", "-Dmotd=say \"hi\" to $USER", "-jar", "/opt/order book.jar",
+      "it's $HOME");
+
+  /**
+   * Tests that the shell format quotes each argument so that a shell reads it back unchanged.
+   */
+  @Test
+  public void testShell()
+  {
+    assertThat(CommandFormat.SHELL.format(VM, COMMAND), is(
+        "java '-Dfirestarter.vmname=order book' \"-Dmotd=say \\\"hi\\\" to \\$USER\" -jar '/opt/order book.jar' " +
+        "'it'\\''s $HOME'\n"));
+  }
+
+  /**
+   * Tests that the nul format gives the name, the argument count and each argument, each ending in NUL.
+   */
+  @Test
+  public void testNul()
+  {
+    assertThat(CommandFormat.NUL.format(VM, ImmutableList.of("java", "", "a\nb")),
+               is("order book\u00003\u0000java\u0000\u0000a\nb\u0000"));
+  }
+
+  /**
+   * Tests that the nul format refuses an argument holding a NUL, which would otherwise split it in two.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNulInArgument()
+  {
+    CommandFormat.NUL.format(VM, ImmutableList.of("java", "a\0b"));
+  }
+
+  /**
+   * Tests that the json format escapes quotes, backslashes and control characters.
+   */
+  @Test
+  public void testJson()
+  {
+    assertThat(CommandFormat.JSON.format(VM, ImmutableList.of("java", "say \"hi\"", "C:\\x", "a\tb")),
+               is("{\"name\":\"order book\",\"command\":[\"java\",\"say \\\"hi\\\"\",\"C:\\\\x\",\"a\\u0009b\"]}\n"));
+  }
+
+  /**
+   * Tests that format names are read case insensitively.
+   */
+  @Test
+  public void testFromName()
+  {
+    assertThat(CommandFormat.fromName(" Json "), is(CommandFormat.JSON));
+  }
+}
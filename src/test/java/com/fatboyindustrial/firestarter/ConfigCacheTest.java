@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.typesafe.config.Config;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ConfigCache}.
+ */
+public class ConfigCacheTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that an unchanged configuration comes from the cache, even if its files were touched, and
+   * that a change to an included file is loaded.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testLoad() throws IOException
+  {
+    final Path root = this.folder.getRoot().toPath();
+    final Path dotConf = write(root.resolve("main.conf"), "name: test\ninclude \"vms.conf\"\n");
+    final Path included = write(root.resolve("vms.conf"), "jvms { a { heap: 64M, jar: a.jar, args: [] } }\n");
+
+    final ConfigCache cache = new ConfigCache();
+    final FirestarterConfig first = cache.load(dotConf);
+
+    write(dotConf, "name: test\ninclude \"vms.conf\"\n");
+    assertThat(cache.load(dotConf), is(sameInstance(first)));
+    assertThat(cache.getFiles(dotConf).get().contains(included.toAbsolutePath().normalize()), is(true));
+
+    write(included, "jvms { a { heap: 128M, jar: a.jar, args: [] } }\n");
+    final FirestarterConfig second = cache.load(dotConf);
+
+    assertThat(second, is(not(sameInstance(first))));
+    assertThat(second.getJvms().get(0).getHeap(), is(128));
+  }
+
+  /**
+   * Tests that a configuration file edited while it is being parsed is not cached with the hash of its
+   * new content, which would keep the configuration parsed from the old content for good.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testEditedWhileParsing() throws IOException
+  {
+    final Path dotConf = write(this.folder.getRoot().toPath().resolve("main.conf"),
+                               "name: test\njvms { a { heap: 64M, jar: a.jar, args: [] } }\n");
+
+    final ConfigCache cache = new ConfigCache()
+    {
+      /** True once the file has been edited. */
+      private boolean edited;
+
+      @Override
+      protected Config parse(final Path file)
+      {
+        final Config hocon = super.parse(file);
+        if (!this.edited)
+        {
+          this.edited = true;
+          try
+          {
+            write(dotConf, "name: test\njvms { a { heap: 128M, jar: a.jar, args: [] } }\n");
+          }
+          catch (IOException e)
+          {
+            throw new IllegalStateException(e);
+          }
+        }
+
+        return hocon;
+      }
+    };
+
+    cache.load(dotConf);
+
+    assertThat(cache.load(dotConf).getJvms().get(0).getHeap(), is(128));
+  }
+
+  /**
+   * Tests that an invalid configuration is reported as such.
+   * @throws IOException If the test fails.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalid() throws IOException
+  {
+    new ConfigCache().load(write(this.folder.getRoot().toPath().resolve("bad.conf"), "name: test\n"));
+  }
+
+  /**
+   * Writes a file.
+   * @param file The file.
+   * @param content The content.
+   * @return The file.
+   * @throws IOException If the file cannot be written.
+   */
+  private static Path write(final Path file, final String content) throws IOException
+  {
+    return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ConfigDiff}.
+ */
+public class ConfigDiffTest
+{
+  /**
+   * Tests that added, removed and changed VMs are found, and that changed VMs are in dependency order.
+   */
+  @Test
+  public void testBetween()
+  {
+    final FirestarterConfig before = config(
+        "",
+        "a { heap: 64M, jar: a.jar, args: [] }",
+        "b { heap: 64M, jar: b.jar, args: [], dependsOn: [c] }",
+        "c { heap: 64M, jar: c.jar, args: [] }",
+        "d { heap: 64M, jar: d.jar, args: [] }");
+
+    final FirestarterConfig after = config(
+        "",
+        "a { heap: 64M, jar: a.jar, args: [] }",
+        "b { heap: 64M, jar: b.jar, args: [ --verbose ], dependsOn: [c] }",
+        "c { heap: 128M, jar: c.jar, args: [] }",
+        "e { heap: 64M, jar: e.jar, args: [] }");
+
+    final ConfigDiff diff = ConfigDiff.between(before, after);
+
+    assertThat(diff.getAdded(), is(ImmutableList.of("e")));
+    assertThat(diff.getRemoved(), is(ImmutableList.of("d")));
+    assertThat(diff.getChanged(), is(ImmutableList.of("c", "b")));
+    assertThat(diff.getChanges("b"), is(ImmutableList.of("args")));
+    assertThat(diff.getChanges("c"), is(ImmutableList.of("heap")));
+    assertThat(diff.getChanges("a"), is(ImmutableList.<String>of()));
+    assertThat(diff.isEmpty(), is(false));
+  }
+
+  /**
+   * Tests that identical configurations have no differences.
+   */
+  @Test
+  public void testUnchanged()
+  {
+    final String vm = "a { heap: 64M, jar: a.jar, args: [], properties { x: 1 }, ready { port: 8080 } }";
+
+    assertThat(ConfigDiff.between(config("", vm), config("", vm)).isEmpty(), is(true));
+  }
+
+  /**
+   * Tests that a change to the shared settings changes every VM.
+   */
+  @Test
+  public void testSharedChange()
+  {
+    final String vm = "a { heap: 64M, jar: a.jar, args: [] }";
+
+    assertThat(ConfigDiff.between(config("jdk: 11", vm), config("jdk: 17", vm)).getChanged(),
+               is(ImmutableList.of("a")));
+    assertThat(ConfigDiff.between(config("", vm), config("staging: copy", vm)).getChanges("a"),
+               is(ImmutableList.of("staging")));
+  }
+
+  /**
+   * Creates a configuration.
+   * @param settings The top-level settings.
+   * @param jvms The VM blocks.
+   * @return The configuration.
+   */
+  private static FirestarterConfig config(final String settings, final String... jvms)
+  {
+    return FirestarterConfig.fromConfig(ConfigFactory.parseString(
+        "name: test\n" + settings + "\njvms {\n" + String.join("\n", jvms) + "\n}"));
+  }
+}
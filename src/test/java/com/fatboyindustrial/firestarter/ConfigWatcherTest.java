@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ConfigWatcher}.
+ */
+public class ConfigWatcherTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that the configuration and its includes are loaded, and that a change to an included file
+   * is noticed.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testWatchesIncludes() throws Exception
+  {
+    final Path root = this.folder.getRoot().toPath();
+    final Path dotConf = write(root.resolve("main.conf"), "name: test\ninclude \"vms/a.conf\"\n");
+    final Path included = write(Files.createDirectories(root.resolve("vms")).resolve("a.conf"),
+                                "jvms { a { heap: 64M, jar: a.jar, args: [] } }\n");
+
+    try (final ConfigWatcher watcher = new ConfigWatcher(dotConf))
+    {
+      assertThat(watcher.load().getJvms().get(0).getHeap(), is(64));
+      assertThat(watcher.getFiles().contains(included.toAbsolutePath().normalize()), is(true));
+      assertThat(watcher.awaitChange(100, TimeUnit.MILLISECONDS), is(false));
+
+      write(included, "jvms { a { heap: 128M, jar: a.jar, args: [] } }\n");
+
+      assertThat(watcher.awaitChange(10, TimeUnit.SECONDS), is(true));
+      assertThat(watcher.load().getJvms().get(0).getHeap(), is(128));
+    }
+  }
+
+  /**
+   * Tests that an unrelated file in a watched directory is ignored.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testIgnoresOtherFiles() throws Exception
+  {
+    final Path root = this.folder.getRoot().toPath();
+    final Path dotConf =
+        write(root.resolve("main.conf"), "name: test\njvms { a { heap: 64M, jar: a.jar, args: [] } }\n");
+
+    try (final ConfigWatcher watcher = new ConfigWatcher(dotConf))
+    {
+      watcher.load();
+      write(root.resolve("other.txt"), "unrelated");
+
+      assertThat(watcher.awaitChange(500, TimeUnit.MILLISECONDS), is(false));
+    }
+  }
+
+  /**
+   * Writes a file.
+   * @param file The file.
+   * @param content The content.
+   * @return The file.
+   * @throws IOException If the file cannot be written.
+   */
+  private static Path write(final Path file, final String content) throws IOException
+  {
+    return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link Daemon}, over the loopback interface.
+ */
+public class DaemonTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The daemon's port file. */
+  private Path portFile;
+
+  /** The daemon under test. */
+  private Daemon daemon;
+
+  /**
+   * Stops the daemon.
+   */
+  @After
+  public void tearDown()
+  {
+    if (this.daemon != null)
+    {
+      this.daemon.close();
+    }
+  }
+
+  /**
+   * Tests that a command and its arguments reach the handler, and that its output is returned after
+   * the response line.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testRequest() throws IOException
+  {
+    start();
+
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(this.portFile)), is("rw-------"));
+    assertThat(request(token(), Daemon.GENERATE, "nul", "/etc/app.conf"),
+               is("OK\nGENERATE [nul, /etc/app.conf]\n"));
+  }
+
+  /**
+   * Tests that a request without the token is refused without reaching the handler, that a failed
+   * command's partial output is discarded, and that a handler failing unexpectedly does not stop the
+   * daemon.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testErrors() throws IOException
+  {
+    start();
+
+    assertThat(request("guess", Daemon.STATUS), is("ERROR the daemon token is not valid\n"));
+    assertThat(request(token(), "BOOM"), is("ERROR no such command\n"));
+    assertThat(request(token(), "CRASH"), is("ERROR java.lang.IllegalStateException: broken\n"));
+    assertThat(request(token(), Daemon.STATUS), is("OK\nSTATUS []\n"));
+  }
+
+  /**
+   * Tests that the stop command stops the daemon and removes its port file.
+   * @throws IOException If the test fails.
+   * @throws InterruptedException If interrupted while waiting for the daemon to stop.
+   */
+  @Test
+  public void testStop() throws IOException, InterruptedException
+  {
+    start();
+
+    assertThat(request(token(), Daemon.STOP), is("OK\n"));
+    this.daemon.awaitTermination();
+    assertThat(Files.exists(this.portFile), is(false));
+  }
+
+  /**
+   * Starts a daemon whose handler echoes each command and its arguments, failing on {@code BOOM} and
+   * {@code CRASH}.
+   * @throws IOException If the daemon cannot be started.
+   */
+  private void start() throws IOException
+  {
+    this.portFile = this.folder.getRoot().toPath().resolve(Daemon.PORT_FILENAME);
+    this.daemon = new Daemon(this.portFile, (command, args, out) -> {
+      out.println(command + " " + args);
+      if (command.equals("BOOM"))
+      {
+        throw new IllegalArgumentException("no such command");
+      }
+      if (command.equals("CRASH"))
+      {
+        throw new IllegalStateException("broken");
+      }
+    });
+    this.daemon.start();
+  }
+
+  /**
+   * Gets the daemon's token from its port file.
+   * @return The token.
+   * @throws IOException If the port file cannot be read.
+   */
+  private String token() throws IOException
+  {
+    return Files.readAllLines(this.portFile).get(0).split(" ")[1];
+  }
+
+  /**
+   * Sends a request to the daemon.
+   * @param token The token.
+   * @param lines The command and its arguments.
+   * @return The whole response.
+   * @throws IOException If the request fails.
+   */
+  private String request(final String token, final String... lines) throws IOException
+  {
+    final int port = Integer.parseInt(Files.readAllLines(this.portFile).get(0).split(" ")[0]);
+
+    try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+    {
+      final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+      out.write(token + "\n" + String.join("\n", lines) + "\n\n");
+      out.flush();
+
+      final List<String> response =
+          new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).lines()
+              .collect(Collectors.toList());
+
+      return response.stream().map(line -> line + "\n").collect(Collectors.joining());
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link DepthFirstJarLocator}.
+ */
+public class DepthFirstJarLocatorTest
+{
+  /** The search root. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Creates a search tree with duplicate filenames at several depths.
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    create("a/b/c/deep.jar");
+    create("a/b/dup.jar");
+    create("a/dup.jar");
+    create("d/dup.jar");
+    create("d/e/other.jar");
+    create("f/g/other.jar");
+    create("top.jar");
+  }
+
+  /**
+   * Tests that a batch lookup agrees with individual lookups and omits filenames that are not found.
+   */
+  @Test
+  public void testLocateAll()
+  {
+    final JarLocator locator = new DepthFirstJarLocator(this.folder.getRoot().toPath());
+    final Map<String, Path> paths =
+        locator.locateAll(ImmutableSet.of("deep.jar", "dup.jar", "other.jar", "top.jar", "missing.jar"));
+
+    assertThat(paths.size(), is(4));
+    assertThat(paths.containsKey("missing.jar"), is(false));
+
+    for (final Map.Entry<String, Path> entry : paths.entrySet())
+    {
+      assertThat(entry.getKey(), locator.locate(entry.getKey()).get(), is(entry.getValue()));
+    }
+  }
+
+  /**
+   * Tests that every directory read is counted: only the root to find a top level jar, and the whole
+   * tree for a jar that is not there.
+   */
+  @Test
+  public void testDirectoriesScanned()
+  {
+    final JarLocator locator = new DepthFirstJarLocator(this.folder.getRoot().toPath());
+    assertThat(locator.getDirectoriesScanned(), is(0L));
+
+    locator.locate("top.jar");
+    assertThat(locator.getDirectoriesScanned(), is(1L));
+
+    locator.locate("missing.jar");
+    assertThat(locator.getDirectoriesScanned(), is(9L));
+  }
+
+  /**
+   * Creates an empty file (and its parent directories) under the search root.
+   * @param relative The path relative to the search root.
+   * @throws IOException If the file cannot be created.
+   */
+  private void create(final String relative) throws IOException
+  {
+    final Path path = this.folder.getRoot().toPath().resolve(relative);
+
+    Files.createDirectories(path.getParent());
+    Files.createFile(path);
+  }
+}
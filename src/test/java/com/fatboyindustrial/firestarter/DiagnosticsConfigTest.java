@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link DiagnosticsConfig}.
+ */
+public class DiagnosticsConfigTest
+{
+  /** The temporary folder. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that the shorthand form enables each part with its defaults.
+   */
+  @Test
+  public void testShorthand()
+  {
+    final DiagnosticsConfig diagnostics = DiagnosticsConfig.fromConfig(
+        ConfigFactory.parseString("diagnostics { jfr: true, gcLog: true, heapDumps: false }"));
+    final Path dir = Paths.get("/fs/diagnostics/alpha");
+
+    assertThat(diagnostics.isEnabled(), is(true));
+    assertThat(diagnostics.isHeapDumps(), is(false));
+    assertThat(diagnostics.flags(dir, 17), is(ImmutableList.of(
+        "-XX:FlightRecorderOptions=repository=/fs/diagnostics/alpha/jfr",
+        "-XX:StartFlightRecording=name=continuous,settings=default,disk=true,maxsize=262144000,maxage=86400s," +
+        "dumponexit=true,filename=/fs/diagnostics/alpha/exit.jfr",
+        "-Xlog:gc*:file=/fs/diagnostics/alpha/gc.log:time,uptime,level,tags:filecount=5,filesize=20971520")));
+  }
+
+  /**
+   * Tests that GC logs fall back to the pre-unified logging flags on JDK 8.
+   */
+  @Test
+  public void testGcLogJdk8()
+  {
+    final DiagnosticsConfig diagnostics = DiagnosticsConfig.fromConfig(
+        ConfigFactory.parseString("diagnostics { gcLog { files: 3, size: 1M } }"));
+
+    assertThat(diagnostics.flags(Paths.get("/fs/diagnostics/alpha"), 8), is(ImmutableList.of(
+        "-Xloggc:/fs/diagnostics/alpha/gc.log", "-XX:+PrintGCDetails", "-XX:+PrintGCDateStamps",
+        "-XX:+UseGCLogFileRotation", "-XX:NumberOfGCLogFiles=3", "-XX:GCLogFileSize=1024K")));
+  }
+
+  /**
+   * Tests that a flight recording is rejected where the JDK has no flight recorder.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testJfrTooOld()
+  {
+    DiagnosticsConfig.fromConfig(ConfigFactory.parseString("diagnostics { jfr: true }"))
+        .flags(Paths.get("/fs/diagnostics/alpha"), 8);
+  }
+
+  /**
+   * Tests that a recording's limits are read from the full HOCON form.
+   */
+  @Test
+  public void testJfrLimits()
+  {
+    final DiagnosticsConfig diagnostics = DiagnosticsConfig.fromConfig(
+        ConfigFactory.parseString("diagnostics { jfr { maxsize: 64M, maxage: 6h, settings: profile } }"));
+
+    assertThat(diagnostics.flags(Paths.get("/fs/diagnostics/alpha"), 21).get(1),
+               is("-XX:StartFlightRecording=name=continuous,settings=profile,disk=true,maxsize=67108864," +
+                  "maxage=21600s,dumponexit=true,filename=/fs/diagnostics/alpha/exit.jfr"));
+  }
+
+  /**
+   * Tests that the profile used when none is configured adds nothing.
+   */
+  @Test
+  public void testNone()
+  {
+    assertThat(DiagnosticsConfig.NONE.isEnabled(), is(false));
+    assertThat(DiagnosticsConfig.NONE.flags(Paths.get("/fs/diagnostics/alpha"), 8), is(ImmutableList.of()));
+  }
+
+  /**
+   * Tests that preparing a VM's directory keeps only its newest heap dumps.
+   * @throws IOException If the test files cannot be written.
+   */
+  @Test
+  public void testPrepare() throws IOException
+  {
+    final DiagnosticsConfig diagnostics = DiagnosticsConfig.fromConfig(
+        ConfigFactory.parseString("diagnostics { jfr: true, heapDumps { keep: 2 } }"));
+    final Path dir = this.folder.getRoot().toPath().resolve("alpha");
+    final Path dumps = Files.createDirectories(diagnostics.getHeapDumpDir(dir));
+
+    for (int i = 1; i <= 4; i++)
+    {
+      final Path dump = Files.createFile(dumps.resolve("java_pid" + i + ".hprof"));
+      Files.setLastModifiedTime(dump, FileTime.fromMillis(i * 1000L));
+    }
+    Files.createFile(dumps.resolve("notes.txt"));
+
+    diagnostics.prepare(dir);
+
+    assertThat(Files.isDirectory(dir.resolve(DiagnosticsConfig.JFR_DIRNAME)), is(true));
+    assertThat(Files.exists(dumps.resolve("java_pid1.hprof")), is(false));
+    assertThat(Files.exists(dumps.resolve("java_pid2.hprof")), is(false));
+    assertThat(Files.exists(dumps.resolve("java_pid3.hprof")), is(true));
+    assertThat(Files.exists(dumps.resolve("java_pid4.hprof")), is(true));
+    assertThat(Files.exists(dumps.resolve("notes.txt")), is(true));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A stand-in VM for the process-level tests: it logs "started" (followed by any further arguments),
+ * sleeps, and then exits with a given code.  As a standby, it first logs "standby" and waits to be
+ * promoted (exiting if its standard input is closed instead), logging "promoted" when it is.  It uses
+ * only the JDK, so that the test classes alone are its class path.
+ */
+public class ExitingVm
+{
+  /** The argument that starts the stand-in as a warm standby. */
+  public static final String STANDBY = "standby";
+
+  /**
+   * Private constructor - static methods only.
+   */
+  private ExitingVm()
+  {
+    ;
+  }
+
+  /**
+   * Main method.
+   * @param args The exit code, the time to run for in milliseconds, optionally {@link #STANDBY}, and any
+   *             further arguments to log.
+   * @throws Exception If interrupted or standard input cannot be read.
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    final boolean standby = args.length > 2 && args[2].equals(STANDBY);
+    if (standby)
+    {
+      System.out.println("standby");
+      System.out.flush();
+
+      final BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+      if (!StandbyBootstrap.PROMOTE.equals(in.readLine()))
+      {
+        System.exit(0);
+      }
+
+      System.out.println("promoted");
+    }
+
+    final List<String> logged = Arrays.asList(args).subList(standby ? 3 : 2, args.length);
+    System.out.println(logged.isEmpty() ? "started" : "started " + String.join(" ", logged));
+    System.out.flush();
+
+    Thread.sleep(Long.parseLong(args[1]));
+    System.exit(Integer.parseInt(args[0]));
+  }
+
+  /**
+   * Builds the command that runs the stand-in, from the test classes.
+   * @param exitCode The exit code.
+   * @param runMillis The time to run for, in milliseconds.
+   * @param extra Further arguments, such as {@link #STANDBY}.
+   * @return The command, as an argument vector.
+   */
+  public static List<String> command(final int exitCode, final long runMillis, final String... extra)
+  {
+    try
+    {
+      final List<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      command.add("-cp");
+      command.add(Paths.get(ExitingVm.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+      command.add(ExitingVm.class.getName());
+      command.add(String.valueOf(exitCode));
+      command.add(String.valueOf(runMillis));
+      command.addAll(Arrays.asList(extra));
+
+      return command;
+    }
+    catch (URISyntaxException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+}
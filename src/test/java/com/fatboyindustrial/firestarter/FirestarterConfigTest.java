@@ -23,11 +23,20 @@
 
 package com.fatboyindustrial.firestarter;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.typesafe.config.ConfigFactory;
 import org.junit.Test;
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link FirestarterConfig}.
@@ -56,6 +65,8 @@ public class FirestarterConfigTest
     assertThat(vm.getProperties().size(), is(2));
     assertThat(vm.getProperties().get("java.io.tmpdir"), is("/partition2/tmp"));
     assertThat(vm.getProperties().get("my.application.property"), is("Z"));
+    assertThat(vm.getDependsOn().isEmpty(), is(true));
+    assertThat(vm.getReadiness().isPresent(), is(false));
 
     vm = config.getJvms().get(1);
     assertThat(vm.getName(), is("TestJvm2"));
@@ -67,6 +78,10 @@ public class FirestarterConfigTest
     assertThat(vm.getArguments().get(2), is("-variant"));
     assertThat(vm.getArguments().get(3), is("Z"));
     assertThat(vm.getProperties().size(), is(0));
+    assertThat(vm.getDependsOn(), is(ImmutableList.of("TestJvm1")));
+    assertThat(vm.getReadiness().get().getPort(), is(Optional.of(8080)));
+    assertThat(vm.getReadiness().get().getLogPattern().get().pattern(), is("Started in [0-9]+ ms"));
+    assertThat(vm.getReadiness().get().getTimeoutMillis(), is(30000L));
   }
 
   /**
@@ -77,4 +92,70 @@ public class FirestarterConfigTest
   {
     FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterConfigTest_SpaceInName.conf"));
   }
-}
\ No newline at end of file
+
+  /**
+   * Tests that a VM name must be a single path segment, as it names the VM's diagnostics and log files.
+   */
+  @Test
+  public void testVmNameIsPathSegment()
+  {
+    for (final String name : Arrays.asList("", ".", "..", "a/b", "../b", "a\0b"))
+    {
+      try
+      {
+        new VmConfig(name, 64, "target.jar", ImmutableList.of(), ImmutableMap.of());
+        fail("accepted: " + name);
+      }
+      catch (IllegalArgumentException e)
+      {
+        ;
+      }
+    }
+
+    assertThat(new VmConfig("my vm", 64, "target.jar", ImmutableList.of(), ImmutableMap.of()).getName(),
+               is("my vm"));
+  }
+
+  /**
+   * Tests that a VM's arguments and properties cannot hold a NUL, which no process can be given.
+   */
+  @Test
+  public void testNulRefused()
+  {
+    final List<Supplier<VmConfig>> factories = Arrays.asList(
+        () -> new VmConfig("vm", 64, "target.jar", ImmutableList.of("a\0b"), ImmutableMap.of()),
+        () -> new VmConfig("vm", 64, "target.jar", ImmutableList.of(), ImmutableMap.of("a\0b", "c")),
+        () -> new VmConfig("vm", 64, "target.jar", ImmutableList.of(), ImmutableMap.of("a", "b\0c")));
+
+    for (final Supplier<VmConfig> factory : factories)
+    {
+      try
+      {
+        factory.get();
+        fail("accepted a NUL");
+      }
+      catch (IllegalArgumentException e)
+      {
+        ;
+      }
+    }
+  }
+
+  /**
+   * Tests that a top level diagnostics profile applies to every VM, beneath each VM's own profile.
+   */
+  @Test
+  public void testDiagnosticsDefaults()
+  {
+    final FirestarterConfig config = FirestarterConfig.fromConfig(
+        ConfigFactory.parseResourcesAnySyntax("FirestarterConfigTest_Diagnostics.conf"));
+
+    final DiagnosticsConfig shared = config.getJvms().get(0).getDiagnostics();
+    assertThat(shared.isHeapDumps(), is(true));
+    assertThat(shared.flags(Paths.get("/d"), 17).size(), is(1));
+
+    final DiagnosticsConfig own = config.getJvms().get(1).getDiagnostics();
+    assertThat(own.isHeapDumps(), is(true));
+    assertThat(own.flags(Paths.get("/d"), 17).size(), is(3));
+  }
+}
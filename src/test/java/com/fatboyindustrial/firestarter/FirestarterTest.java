@@ -23,14 +23,22 @@
 
 package com.fatboyindustrial.firestarter;
 
+import com.google.common.collect.ImmutableMap;
 import com.typesafe.config.ConfigFactory;
 import org.junit.Test;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link Firestarter}.
@@ -47,7 +55,7 @@ public class FirestarterTest
     final FirestarterConfig config =
         FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_Process.conf"));
 
-    final String line = Firestarter.process(locator, config.getName(), config.getJvms().get(0));
+    final String line = Firestarter.process(locator, config, config.getJvms().get(0));
     final String expected =
         "java -server -XX:+UseConcMarkSweepGC -XX:+HeapDumpOnOutOfMemoryError -Xms128M -Xmx128M " +
         "-Dfirestarter.vmname=TestJvm1 \"-Dmy.application.property=foo-bar-baz\" " +
@@ -57,6 +65,150 @@ public class FirestarterTest
     assertThat(line, is(expected));
   }
 
+  /**
+   * Tests that a VM's garbage collector profile replaces the default collector flags.
+   */
+  @Test
+  public void testProcessGcProfile() throws FileNotFoundException
+  {
+    final JarLocator locator = new StaticDirJarLocator(Paths.get("/home/yossarian/"));
+    final FirestarterConfig config =
+        FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_ProcessGc.conf"));
+
+    final String line = Firestarter.process(locator, config, config.getJvms().get(0));
+    final String expected =
+        "java -server -XX:+UseG1GC -XX:MaxGCPauseMillis=50 -XX:G1HeapRegionSize=4M -XX:+HeapDumpOnOutOfMemoryError " +
+        "-Xms128M -Xmx128M -Dfirestarter.vmname=TestJvm1 -jar /home/yossarian/target1-0.0.1-SNAPSHOT.jar";
+
+    assertThat(line, is(expected));
+  }
+
+  /**
+   * Tests that processing a whole configuration results in one command line per VM.
+   */
+  @Test
+  public void testProcessConfig() throws FileNotFoundException
+  {
+    final JarLocator locator = new StaticDirJarLocator(Paths.get("/home/yossarian/"));
+    final FirestarterConfig config =
+        FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_Process.conf"));
+
+    final List<String> lines = Firestarter.process(locator, config);
+
+    assertThat(lines.size(), is(1));
+    assertThat(lines.get(0), is(Firestarter.process(locator, config, config.getJvms().get(0))));
+  }
+
+  /**
+   * Tests that a launch specification carries the unquoted argument vector.
+   */
+  @Test
+  public void testSpecs() throws FileNotFoundException
+  {
+    final JarLocator locator = new StaticDirJarLocator(Paths.get("/home/yossarian/"));
+    final FirestarterConfig config =
+        FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_Process.conf"));
+
+    final List<LaunchSpec> specs = Firestarter.specs(locator, config);
+
+    assertThat(specs.size(), is(1));
+    assertThat(specs.get(0).getName(), is("TestJvm1"));
+    assertThat(specs.get(0).getCommand().contains("-Dsubliminal.message=Buy StayPuft Marshmallows!"), is(true));
+    assertThat(specs.get(0).getCommand().contains("/home/yossarian/target1-0.0.1-SNAPSHOT.jar"), is(true));
+  }
+
+  /**
+   * Tests that a VM with a warm standby gets a standby command that runs the jar through the bootstrap.
+   */
+  @Test
+  public void testSpecsStandby() throws FileNotFoundException
+  {
+    final JarLocator locator = new StaticDirJarLocator(Paths.get("/home/yossarian/"));
+    final FirestarterConfig config =
+        FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_Standby.conf"));
+
+    final LaunchSpec spec = Firestarter.specs(locator, config).get(0);
+    final List<String> standby = spec.getStandbyCommand().get();
+
+    assertThat(spec.getCommand().contains("-jar"), is(true));
+    assertThat(standby.contains("-jar"), is(false));
+    assertThat(standby.contains("-Dfirestarter.warmup=com.example.Warmup"), is(true));
+    assertThat(standby.subList(standby.size() - 4, standby.size()), is(Arrays.asList(
+        StandbyBootstrap.class.getName(), "/home/yossarian/target1-0.0.1-SNAPSHOT.jar", "--port", "8080")));
+  }
+
+  /**
+   * Tests that a warm standby, which runs alongside the VM, writes its GC log and exit recording to
+   * files of its own rather than to the VM's.
+   */
+  @Test
+  public void testSpecsStandbyDiagnostics() throws FileNotFoundException
+  {
+    final JarLocator locator = new StaticDirJarLocator(Paths.get("/home/yossarian/"));
+    final FirestarterConfig config = FirestarterConfig.fromConfig(
+        ConfigFactory.parseResourcesAnySyntax("FirestarterTest_StandbyDiagnostics.conf"));
+
+    final LaunchSpec spec = Firestarter.specs(locator, config).get(0);
+    final List<String> active = diagnosticFiles(spec.getCommand());
+    final List<String> standby = diagnosticFiles(spec.getStandbyCommand().get());
+
+    assertThat(active.size(), is(2));
+    assertThat(standby.size(), is(2));
+    for (final String file : standby)
+    {
+      assertThat(file, active.contains(file), is(false));
+    }
+  }
+
+  /**
+   * Gets the files that a command's GC log and exit recording flags write to.
+   * @param command The command.
+   * @return The files.
+   */
+  private static List<String> diagnosticFiles(final List<String> command)
+  {
+    final Pattern file = Pattern.compile("(?:-Xlog:gc\\*:file=|-XX:StartFlightRecording=.*filename=)([^:,]+).*");
+
+    return command.stream()
+        .map(file::matcher)
+        .filter(Matcher::matches)
+        .map(matcher -> matcher.group(1))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Tests that a configuration is not launched again while a VM launched from it is still running, and
+   * is once that VM has exited.
+   * @throws IOException If the stand-in process cannot be started.
+   * @throws InterruptedException If interrupted while waiting for it to exit.
+   */
+  @Test
+  public void testCheckNotRunning() throws IOException, InterruptedException
+  {
+    final FirestarterConfig config =
+        FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_Process.conf"));
+    final String name = config.getJvms().get(0).getName();
+    final Process process = new ProcessBuilder("sleep", "60").start();
+
+    try
+    {
+      Firestarter.checkNotRunning(ImmutableMap.of(name, process), config);
+      fail("launched twice");
+    }
+    catch (IllegalArgumentException e)
+    {
+      assertThat(e.getMessage(), is("already running: [" + name + "]"));
+    }
+    finally
+    {
+      process.destroy();
+      process.waitFor();
+    }
+
+    Firestarter.checkNotRunning(ImmutableMap.of(name, process), config);
+    Firestarter.checkNotRunning(ImmutableMap.of(), config);
+  }
+
   /**
    * Tests that the {@link FileNotFoundException} is raised if the jar file cannot be located.
    */
@@ -67,6 +219,6 @@ public class FirestarterTest
     final FirestarterConfig config =
         FirestarterConfig.fromConfig(ConfigFactory.parseResourcesAnySyntax("FirestarterTest_Process.conf"));
 
-    Firestarter.process(locator, config.getName(), config.getJvms().get(0));
+    Firestarter.process(locator, config, config.getJvms().get(0));
   }
 }
\ No newline at end of file
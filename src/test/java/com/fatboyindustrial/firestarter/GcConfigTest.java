@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link GcConfig}.
+ */
+public class GcConfigTest
+{
+  /**
+   * Tests that the default profile keeps CMS on JDK 8 and defers to the JVM afterwards.
+   */
+  @Test
+  public void testDefault()
+  {
+    assertThat(GcConfig.DEFAULT.flags(8), is(ImmutableList.of("-XX:+UseConcMarkSweepGC")));
+    assertThat(GcConfig.DEFAULT.flags(17), is(ImmutableList.of()));
+  }
+
+  /**
+   * Tests that ZGC is unlocked where it is experimental, and made generational where that is optional.
+   */
+  @Test
+  public void testZgc()
+  {
+    final GcConfig zgc = new GcConfig(GcConfig.Collector.ZGC, Optional.empty(), Optional.empty(), ImmutableList.of());
+
+    assertThat(zgc.flags(11), is(ImmutableList.of("-XX:+UnlockExperimentalVMOptions", "-XX:+UseZGC")));
+    assertThat(zgc.flags(17), is(ImmutableList.of("-XX:+UseZGC")));
+    assertThat(zgc.flags(21), is(ImmutableList.of("-XX:+UseZGC", "-XX:+ZGenerational")));
+    assertThat(zgc.flags(25), is(ImmutableList.of("-XX:+UseZGC")));
+  }
+
+  /**
+   * Tests that a collector unavailable in the target JDK is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCmsRemoved()
+  {
+    new GcConfig(GcConfig.Collector.CMS, Optional.empty(), Optional.empty(), ImmutableList.of()).flags(17);
+  }
+
+  /**
+   * Tests that a collector unavailable in the target JDK is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testShenandoahTooOld()
+  {
+    new GcConfig(GcConfig.Collector.SHENANDOAH, Optional.empty(), Optional.empty(), ImmutableList.of()).flags(11);
+  }
+
+  /**
+   * Tests that both the shorthand and the full HOCON forms are read.
+   */
+  @Test
+  public void testFromConfig()
+  {
+    final GcConfig shorthand = GcConfig.fromConfig(ConfigFactory.parseString("gc: parallel"));
+    assertThat(shorthand.flags(17), is(ImmutableList.of("-XX:+UseParallelGC")));
+
+    final GcConfig custom = GcConfig.fromConfig(
+        ConfigFactory.parseString("gc { collector: custom, flags: [ \"-XX:+UseSerialGC\" ] }"));
+    assertThat(custom.flags(17), is(ImmutableList.of("-XX:+UseSerialGC")));
+
+    final GcConfig g1 = GcConfig.fromConfig(ConfigFactory.parseString("gc { collector: G1 }"));
+    assertThat(g1.flags(17), is(ImmutableList.of("-XX:+UseG1GC", "-XX:MaxGCPauseMillis=200")));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link IndexedJarLocator}.
+ */
+public class IndexedJarLocatorTest
+{
+  /** The search root. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Creates a search tree with duplicate filenames at several depths.
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    create("a/b/c/deep.jar");
+    create("a/b/dup.jar");
+    create("a/dup.jar");
+    create("d/dup.jar");
+    create("d/e/other.jar");
+    create("f/g/other.jar");
+    create("top.jar");
+    create("z/top.jar");
+  }
+
+  /**
+   * Tests that a file in the root directory is found.
+   */
+  @Test
+  public void testLocateTopLevel()
+  {
+    final JarLocator locator = new IndexedJarLocator(this.folder.getRoot().toPath());
+
+    assertThat(locator.locate("top.jar"), is(Optional.of(this.folder.getRoot().toPath().resolve("top.jar"))));
+  }
+
+  /**
+   * Tests that a missing file is reported as absent.
+   */
+  @Test
+  public void testLocateMissing()
+  {
+    final JarLocator locator = new IndexedJarLocator(this.folder.getRoot().toPath());
+
+    assertThat(locator.locate("missing.jar"), is(Optional.empty()));
+  }
+
+  /**
+   * Tests that every lookup agrees with the depth-first locator.
+   */
+  @Test
+  public void testMatchesDepthFirst()
+  {
+    final JarLocator indexed = new IndexedJarLocator(this.folder.getRoot().toPath());
+    final JarLocator depthFirst = new DepthFirstJarLocator(this.folder.getRoot().toPath());
+
+    for (final String filename : new String[] { "deep.jar", "dup.jar", "other.jar", "top.jar", "missing.jar" })
+    {
+      assertThat(filename, indexed.locate(filename), is(depthFirst.locate(filename)));
+    }
+  }
+
+  /**
+   * Creates an empty file (and its parent directories) under the search root.
+   * @param relative The path relative to the search root.
+   * @throws IOException If the file cannot be created.
+   */
+  private void create(final String relative) throws IOException
+  {
+    final Path path = this.folder.getRoot().toPath().resolve(relative);
+
+    Files.createDirectories(path.getParent());
+    Files.createFile(path);
+  }
+}
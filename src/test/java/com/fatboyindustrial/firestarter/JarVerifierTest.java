@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link JarVerifier}.
+ */
+public class JarVerifierTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that an intact jar verifies with its SHA-256 hash, and is read only once while unchanged.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testVerifyCached() throws IOException
+  {
+    final Path jar = writeJar("app.jar", "version 1");
+    final JarVerifier verifier = new JarVerifier();
+
+    final String hash = verifier.verify(jar);
+    assertThat(hash, is(com.google.common.io.Files.hash(jar.toFile(), Hashing.sha256()).toString()));
+    assertThat(verifier.verify(jar), is(hash));
+    assertThat(verifier.getJarsRead(), is(1L));
+
+    Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 1000));
+    assertThat(verifier.verify(jar), is(hash));
+    assertThat(verifier.getJarsRead(), is(2L));
+  }
+
+  /**
+   * Tests that a half-copied jar is rejected.
+   * @throws IOException If the test fails.
+   */
+  @Test(expected = ZipException.class)
+  public void testTruncated() throws IOException
+  {
+    final Path jar = writeJar("app.jar", "version 1");
+    final byte[] bytes = Files.readAllBytes(jar);
+    Files.write(jar, Arrays.copyOf(bytes, bytes.length - 10));
+
+    new JarVerifier().verify(jar);
+  }
+
+  /**
+   * Tests that a jar whose central directory is missing its start is rejected.
+   * @throws IOException If the test fails.
+   */
+  @Test(expected = ZipException.class)
+  public void testCorruptDirectory() throws IOException
+  {
+    final Path jar = writeJar("app.jar", "version 1");
+    final byte[] bytes = Files.readAllBytes(jar);
+    final byte[] spliced = new byte[bytes.length - 30];
+    System.arraycopy(bytes, 30, spliced, 0, spliced.length);
+    Files.write(jar, spliced);
+
+    new JarVerifier().verify(jar);
+  }
+
+  /**
+   * Tests that a jar whose structure is whole but whose deflated entry is damaged is rejected.
+   * @throws IOException If the test fails.
+   */
+  @Test(expected = ZipException.class)
+  public void testCorruptEntry() throws IOException
+  {
+    final Path jar = writeJar("app.jar", "version 1");
+    damageEntry(jar);
+
+    new JarVerifier().verify(jar);
+  }
+
+  /**
+   * Tests that a jar whose entry is stored rather than deflated is checked and accepted.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testStoredEntry() throws IOException
+  {
+    final Path jar = writeStoredJar("app.jar", "version 1");
+
+    assertThat(new JarVerifier().verify(jar),
+               is(Hashing.sha256().hashBytes(Files.readAllBytes(jar)).toString()));
+  }
+
+  /**
+   * Tests that a jar whose stored entry is damaged is rejected.
+   * @throws IOException If the test fails.
+   */
+  @Test(expected = ZipException.class)
+  public void testCorruptStoredEntry() throws IOException
+  {
+    final Path jar = writeStoredJar("app.jar", "version 1");
+    damageEntry(jar);
+
+    new JarVerifier().verify(jar);
+  }
+
+  /**
+   * Tests that verifying several jars fails on the one that is not intact.
+   * @throws IOException If the test fails.
+   */
+  @Test(expected = ZipException.class)
+  public void testVerifyAllFailsFast() throws IOException
+  {
+    final Path good = writeJar("good.jar", "good");
+    final Path bad = this.folder.getRoot().toPath().resolve("bad.jar");
+    Files.write(bad, "not a jar".getBytes(StandardCharsets.UTF_8));
+
+    new JarVerifier().verifyAll(ImmutableList.of(good, bad));
+  }
+
+  /**
+   * Tests that the cache file carries results across verifiers.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testCacheFile() throws IOException
+  {
+    final Path jar = writeJar("app.jar", "version 1");
+    final Path cache = this.folder.getRoot().toPath().resolve(JarVerifier.CACHE_FILENAME);
+
+    final JarVerifier first = new JarVerifier(Optional.of(cache), 2);
+    final String hash = first.verifyAll(ImmutableList.of(jar)).get(jar.toAbsolutePath());
+    assertThat(first.getJarsRead(), is(1L));
+    assertThat(Files.isRegularFile(cache), is(true));
+
+    final JarVerifier second = new JarVerifier(Optional.of(cache), 2);
+    assertThat(second.verifyAll(ImmutableList.of(jar)).get(jar.toAbsolutePath()), is(hash));
+    assertThat(second.getJarsRead(), is(0L));
+  }
+
+  /**
+   * Flips the bits of the second byte of a jar's first entry's data, leaving its structure whole.
+   * @param jar The jar file.
+   * @throws IOException If the jar cannot be rewritten.
+   */
+  private static void damageEntry(final Path jar) throws IOException
+  {
+    final byte[] bytes = Files.readAllBytes(jar);
+    final int nameLength = (bytes[26] & 0xff) | (bytes[27] & 0xff) << 8;
+    final int extraLength = (bytes[28] & 0xff) | (bytes[29] & 0xff) << 8;
+    final int data = 30 + nameLength + extraLength;
+    bytes[data + 1] ^= 0xff;
+    Files.write(jar, bytes);
+  }
+
+  /**
+   * Writes a jar holding a single entry.
+   * @param name The jar's file name.
+   * @param content The entry's content.
+   * @return The jar file.
+   * @throws IOException If the jar cannot be written.
+   */
+  private Path writeJar(final String name, final String content) throws IOException
+  {
+    final Path jar = this.folder.getRoot().toPath().resolve(name);
+
+    try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+    {
+      out.putNextEntry(new ZipEntry("version.txt"));
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    }
+
+    return jar;
+  }
+
+  /**
+   * Writes a jar holding a single entry, stored rather than deflated.
+   * @param name The jar's file name.
+   * @param content The entry's content.
+   * @return The jar file.
+   * @throws IOException If the jar cannot be written.
+   */
+  private Path writeStoredJar(final String name, final String content) throws IOException
+  {
+    final Path jar = this.folder.getRoot().toPath().resolve(name);
+    final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    final CRC32 crc = new CRC32();
+    crc.update(bytes);
+
+    try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+    {
+      final ZipEntry entry = new ZipEntry("version.txt");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(bytes.length);
+      entry.setCrc(crc.getValue());
+      out.putNextEntry(entry);
+      out.write(bytes);
+      out.closeEntry();
+    }
+
+    return jar;
+  }
+}
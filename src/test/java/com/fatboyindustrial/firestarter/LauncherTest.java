@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link Launcher}, starting {@link ExitingVm} processes.
+ */
+public class LauncherTest
+{
+  /** The longest a stand-in VM is waited for. */
+  private static final long TIMEOUT_SECONDS = 30;
+
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The launcher under test. */
+  private Launcher launcher;
+
+  /**
+   * Creates the launcher, logging to a temporary folder.
+   */
+  @Before
+  public void setUp()
+  {
+    this.launcher = new Launcher(this.folder.getRoot().toPath().resolve("logs"));
+  }
+
+  /**
+   * Tests that a VM's exit code is seen, and that each start appends to its log file.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testLaunch() throws Exception
+  {
+    final LaunchSpec spec = new LaunchSpec("a", ExitingVm.command(3, 0));
+
+    assertThat(exitCode(this.launcher.launch(spec)), is(3));
+    assertThat(exitCode(this.launcher.launch(spec)), is(3));
+
+    assertThat(log("a"), is("started\nstarted\n"));
+  }
+
+  /**
+   * Tests that a standby waits until it is promoted, and then runs the application.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testPromote() throws Exception
+  {
+    final LaunchSpec spec =
+        new LaunchSpec("a", ExitingVm.command(4, 0), Optional.of(ExitingVm.command(5, 0, ExitingVm.STANDBY)));
+
+    final Process standby = this.launcher.launchStandby(spec);
+    assertThat(standby.waitFor(500, TimeUnit.MILLISECONDS), is(false));
+
+    Launcher.promote(standby);
+
+    assertThat(exitCode(standby), is(5));
+    assertThat(log("a"), is("standby\npromoted\nstarted\n"));
+  }
+
+  /**
+   * Tests that a standby whose standard input is closed exits without running the application.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testStandbyReleased() throws Exception
+  {
+    final LaunchSpec spec =
+        new LaunchSpec("a", ExitingVm.command(4, 0), Optional.of(ExitingVm.command(5, 0, ExitingVm.STANDBY)));
+
+    final Process standby = this.launcher.launchStandby(spec);
+    standby.getOutputStream().close();
+
+    assertThat(exitCode(standby), is(0));
+    assertThat(log("a"), is("standby\n"));
+  }
+
+  /**
+   * Tests that a VM's heap dumps are pruned before each start, as they are before the first.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testPrunesHeapDumps() throws Exception
+  {
+    final DiagnosticsConfig diagnostics =
+        DiagnosticsConfig.fromConfig(ConfigFactory.parseString("diagnostics { heapDumps { keep: 1 } }"));
+    final Path dir = this.folder.getRoot().toPath().resolve("diagnostics/a");
+    final Path dumps = Files.createDirectories(diagnostics.getHeapDumpDir(dir));
+    final LaunchSpec spec =
+        new LaunchSpec("a", ExitingVm.command(0, 0), Optional.empty(), diagnostics, Optional.of(dir));
+
+    for (int i = 1; i <= 3; i++)
+    {
+      final Path dump = Files.createFile(dumps.resolve("java_pid" + i + ".hprof"));
+      Files.setLastModifiedTime(dump, FileTime.fromMillis(i * 1000L));
+    }
+
+    assertThat(exitCode(this.launcher.launch(spec)), is(0));
+
+    assertThat(Files.exists(dumps.resolve("java_pid2.hprof")), is(false));
+    assertThat(Files.exists(dumps.resolve("java_pid3.hprof")), is(true));
+  }
+
+  /**
+   * Waits for a stand-in VM to exit.
+   * @param process The process.
+   * @return The exit code.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  private static int exitCode(final Process process) throws InterruptedException
+  {
+    assertThat(process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+    return process.exitValue();
+  }
+
+  /**
+   * Reads a VM's log file.
+   * @param name The VM name.
+   * @return The log.
+   * @throws IOException If the log cannot be read.
+   */
+  private String log(final String name) throws IOException
+  {
+    return new String(Files.readAllBytes(this.launcher.getLogFile(name)), StandardCharsets.UTF_8);
+  }
+}
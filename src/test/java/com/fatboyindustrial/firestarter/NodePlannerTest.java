@@ -0,0 +1,291 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link NodePlanner}.
+ */
+public class NodePlannerTest
+{
+  /** One gigabyte. */
+  private static final long GIGABYTES = 1024L * 1024 * 1024;
+
+  /** A machine with two NUMA nodes of four processors each. */
+  private static final NumaTopology TWO_NODES = new NumaTopology(ImmutableMap.of(
+      0, ImmutableList.of(0, 1, 2, 3),
+      1, ImmutableList.of(4, 5, 6, 7)));
+
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that percentage heaps are resolved against the node's memory less the reserve.
+   */
+  @Test
+  public void testPercentageHeap()
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(config(
+        "node { reserve: 1G }",
+        "a { heap: 25%, jar: a.jar, args: [] }",
+        "b { heap: 512M, jar: b.jar, args: [] }"), new HostResources(9 * GIGABYTES, 4));
+
+    assertThat(plans.get("a").getHeap(), is(2048));
+    assertThat(plans.get("b").getHeap(), is(512));
+    assertThat(plans.get("a").getCpus().isEmpty(), is(true));
+  }
+
+  /**
+   * Tests that VMs whose heap and overhead exceed the node's memory are refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOvercommit()
+  {
+    NodePlanner.plan(config(
+        "node { reserve: 1G, overhead: 256M, overheadRatio: 0.5 }",
+        "a { heap: 2G, jar: a.jar, args: [] }",
+        "b { heap: 2G, jar: b.jar, args: [] }"), new HostResources(6 * GIGABYTES, 4));
+  }
+
+  /**
+   * Tests that a warm standby's heap and overhead are counted alongside its VM's: a 3.25 GB VM fits in
+   * 5 GB, but not with its standby.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testStandbyCounted()
+  {
+    NodePlanner.plan(config(
+        "node { reserve: 1G, overhead: 256M, overheadRatio: 0 }",
+        "a { heap: 3G, jar: a.jar, args: [], standby: true }"), new HostResources(6 * GIGABYTES, 4));
+  }
+
+  /**
+   * Tests that overcommit is allowed when asked for.
+   */
+  @Test
+  public void testAllowOvercommit()
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(config(
+        "node { allowOvercommit: true }",
+        "a { heap: 8G, jar: a.jar, args: [] }"), new HostResources(GIGABYTES, 4));
+
+    assertThat(plans.get("a").getHeap(), is(8192));
+  }
+
+  /**
+   * Tests that processors are shared out in proportion to heap.
+   */
+  @Test
+  public void testAssignCpus()
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(config(
+        "node { assignCpus: true }",
+        "a { heap: 3G, jar: a.jar, args: [] }",
+        "b { heap: 1G, jar: b.jar, args: [] }",
+        "c { heap: 64M, jar: c.jar, args: [] }"), new HostResources(64 * GIGABYTES, 8));
+
+    assertThat(plans.get("a").getCpus().size(), is(6));
+    assertThat(plans.get("b").getCpus().size(), is(2));
+    assertThat(plans.get("c").getCpus().size(), is(1));
+  }
+
+  /**
+   * Tests that processor lists are formatted as ranges.
+   */
+  @Test
+  public void testCpuList()
+  {
+    assertThat(new VmPlan(64, ImmutableList.of(0, 1, 2, 3)).getCpuList(), is("0-3"));
+    assertThat(new VmPlan(64, ImmutableList.of(7, 0, 1, 4)).getCpuList(), is("0-1,4,7"));
+    assertThat(new VmPlan(64, ImmutableList.of()).getCpuList(), is(""));
+
+    assertThat(CpuList.parse("0-1,4,7"), is(ImmutableList.of(0, 1, 4, 7)));
+    assertThat(CpuList.parse(" 8,2-3\n"), is(ImmutableList.of(2, 3, 8)));
+    assertThat(CpuList.parse(""), is(ImmutableList.<Integer>of()));
+  }
+
+  /**
+   * Tests that a malformed processor list is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCpuListMalformed()
+  {
+    CpuList.parse("3-1");
+  }
+
+  /**
+   * Tests that automatic placement spreads VMs evenly across NUMA nodes, and shares out each node's
+   * processors between the VMs placed on it.
+   */
+  @Test
+  public void testAutoPlacement()
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(config(
+        "node { placement: auto, assignCpus: true }",
+        "a { heap: 4G, jar: a.jar, args: [] }",
+        "b { heap: 2G, jar: b.jar, args: [] }",
+        "c { heap: 2G, jar: c.jar, args: [] }"), new HostResources(64 * GIGABYTES, 8, TWO_NODES));
+
+    assertThat(plans.get("a").getNumaNode(), is(Optional.of(0)));
+    assertThat(plans.get("a").getCpuList(), is("0-3"));
+    assertThat(plans.get("b").getNumaNode(), is(Optional.of(1)));
+    assertThat(plans.get("c").getNumaNode(), is(Optional.of(1)));
+    assertThat(plans.get("b").getCpus().size(), is(2));
+    assertThat(plans.get("c").getCpus().size(), is(2));
+    assertThat(plans.get("a").isSpanningNodes(), is(false));
+  }
+
+  /**
+   * Tests that explicit NUMA nodes and processors are honoured, and that a VM left unbound on a NUMA
+   * machine is marked as spanning nodes.
+   */
+  @Test
+  public void testExplicitPlacement()
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(config(
+        "node { }",
+        "a { heap: 1G, jar: a.jar, args: [], numaNode: 1 }",
+        "b { heap: 1G, jar: b.jar, args: [], cpus: \"2-3\" }",
+        "c { heap: 1G, jar: c.jar, args: [] }"), new HostResources(64 * GIGABYTES, 8, TWO_NODES));
+
+    assertThat(plans.get("a").getNumaNode(), is(Optional.of(1)));
+    assertThat(plans.get("a").getCpus().isEmpty(), is(true));
+    assertThat(plans.get("b").getNumaNode(), is(Optional.<Integer>empty()));
+    assertThat(plans.get("b").getCpuList(), is("2-3"));
+    assertThat(plans.get("b").isSpanningNodes(), is(false));
+    assertThat(plans.get("c").isSpanningNodes(), is(true));
+  }
+
+  /**
+   * Tests that a VM bound to a NUMA node the machine does not have is refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownNumaNode()
+  {
+    NodePlanner.plan(config(
+        "node { }",
+        "a { heap: 1G, jar: a.jar, args: [], numaNode: 2 }"), new HostResources(64 * GIGABYTES, 8, TWO_NODES));
+  }
+
+  /**
+   * Tests that the NUMA topology is read from sysfs, ignoring memory-only nodes.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testDetectTopology() throws IOException
+  {
+    final Path root = this.folder.getRoot().toPath();
+    node(root, 0, "0-3,8-11\n");
+    node(root, 1, "4-7,12-15\n");
+    node(root, 2, "\n");
+
+    final NumaTopology topology = NumaTopology.detect(root);
+
+    assertThat(topology.isNuma(), is(true));
+    assertThat(topology.getNodes().keySet().asList(), is(ImmutableList.of(0, 1)));
+    assertThat(topology.getNodes().get(1), is(ImmutableList.of(4, 5, 6, 7, 12, 13, 14, 15)));
+    assertThat(NumaTopology.detect(root.resolve("missing")).isNuma(), is(false));
+  }
+
+  /**
+   * Tests that only the processors this process may run on are shared out, whatever their numbers.
+   */
+  @Test
+  public void testAssignAllowedCpus()
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(config(
+        "node { assignCpus: true }",
+        "a { heap: 1G, jar: a.jar, args: [] }",
+        "b { heap: 1G, jar: b.jar, args: [] }",
+        "c { heap: 1G, jar: c.jar, args: [], numaNode: 0 }"),
+        new HostResources(64 * GIGABYTES, 4, ImmutableList.of(2, 3, 6, 7), TWO_NODES));
+
+    assertThat(plans.get("a").getCpus(), is(ImmutableList.of(2, 3)));
+    assertThat(plans.get("b").getCpus(), is(ImmutableList.of(6, 7)));
+    assertThat(plans.get("c").getCpus(), is(ImmutableList.of(2, 3)));
+  }
+
+  /**
+   * Tests that the allowed processors are read from the process status, then the cgroup cpuset.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testDetectAllowedCpus() throws IOException
+  {
+    final Path root = this.folder.getRoot().toPath();
+
+    assertThat(HostResources.detect(root, 2).getAllowedCpus(), is(ImmutableList.of(0, 1)));
+
+    Files.createDirectories(root.resolve("sys/fs/cgroup"));
+    Files.write(root.resolve("sys/fs/cgroup/cpuset.cpus.effective"), "4-5\n".getBytes(StandardCharsets.US_ASCII));
+    assertThat(HostResources.detect(root, 2).getAllowedCpus(), is(ImmutableList.of(4, 5)));
+
+    Files.createDirectories(root.resolve("proc/self"));
+    Files.write(root.resolve("proc/self/status"),
+                "Name:\tjava\nCpus_allowed:\t30\nCpus_allowed_list:\t4-5,8\n".getBytes(StandardCharsets.US_ASCII));
+    assertThat(HostResources.detect(root, 3).getAllowedCpus(), is(ImmutableList.of(4, 5, 8)));
+  }
+
+  /**
+   * Writes a NUMA node's processor list beneath the given root.
+   * @param root The file system root.
+   * @param node The node number.
+   * @param cpulist The processor list.
+   * @throws IOException If the file cannot be written.
+   */
+  private static void node(final Path root, final int node, final String cpulist) throws IOException
+  {
+    final Path dir = Files.createDirectories(root.resolve("sys/devices/system/node/node" + node));
+    Files.write(dir.resolve("cpulist"), cpulist.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Creates a configuration.
+   * @param node The node block.
+   * @param jvms The VM blocks.
+   * @return The configuration.
+   */
+  private static FirestarterConfig config(final String node, final String... jvms)
+  {
+    return FirestarterConfig.fromConfig(ConfigFactory.parseString(
+        "name: test\n" + node + "\njvms {\n" + String.join("\n", jvms) + "\n}"));
+  }
+}
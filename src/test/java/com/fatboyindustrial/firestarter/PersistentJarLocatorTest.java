@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link PersistentJarLocator}.
+ */
+public class PersistentJarLocatorTest
+{
+  /** The search root. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The search root path. */
+  private Path root;
+
+  /**
+   * Creates a search tree with duplicate filenames at several depths, its directories last modified
+   * long enough ago for their listings to be trusted.
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    this.root = this.folder.getRoot().toPath();
+
+    create("a/b/c/deep.jar");
+    create("a/b/dup.jar");
+    create("a/dup.jar");
+    create("d/dup.jar");
+    create("d/e/other.jar");
+    create("f/g/other.jar");
+    create("top.jar");
+
+    try (final Stream<Path> paths = Files.walk(this.root))
+    {
+      for (final Path dir : paths.filter(Files::isDirectory).collect(Collectors.toList()))
+      {
+        Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+      }
+    }
+  }
+
+  /**
+   * Tests that lookups agree with the depth-first locator and that the index file is written.
+   */
+  @Test
+  public void testMatchesDepthFirst()
+  {
+    final JarLocator persistent = new PersistentJarLocator(this.root);
+    final JarLocator depthFirst = new DepthFirstJarLocator(this.root);
+
+    for (final String filename : new String[] { "deep.jar", "dup.jar", "other.jar", "top.jar", "missing.jar" })
+    {
+      assertThat(filename, persistent.locate(filename), is(depthFirst.locate(filename)));
+    }
+
+    assertThat(Files.isRegularFile(this.root.resolve(PersistentJarLocator.INDEX_FILENAME)), is(true));
+    assertThat(persistent.locate(PersistentJarLocator.INDEX_FILENAME), is(Optional.empty()));
+  }
+
+  /**
+   * Tests that a directory whose modification time has changed is re-listed.
+   */
+  @Test
+  public void testChangedDirectoryIsRelisted() throws IOException
+  {
+    new PersistentJarLocator(this.root).locate("top.jar");
+
+    final Path dir = this.root.resolve("d/e");
+    final FileTime before = Files.getLastModifiedTime(dir);
+    create("d/e/new.jar");
+    Files.setLastModifiedTime(dir, FileTime.fromMillis(before.toMillis() + 1000));
+
+    assertThat(new PersistentJarLocator(this.root).locate("new.jar"), is(Optional.of(dir.resolve("new.jar"))));
+  }
+
+  /**
+   * Tests that a directory whose modification time is unchanged is served from the index, proving
+   * that it was not re-listed.
+   */
+  @Test
+  public void testUnchangedDirectoryIsReused() throws IOException
+  {
+    new PersistentJarLocator(this.root).locate("top.jar");
+
+    final Path dir = this.root.resolve("d/e");
+    final FileTime before = Files.getLastModifiedTime(dir);
+    create("d/e/new.jar");
+    Files.setLastModifiedTime(dir, before);
+
+    assertThat(new PersistentJarLocator(this.root).locate("new.jar"), is(Optional.empty()));
+  }
+
+  /**
+   * Tests that a directory modified within the same timestamp tick as its listing is re-listed, even
+   * though its modification time is unchanged: a jar added after the listing could not have changed
+   * it.
+   */
+  @Test
+  public void testSameTickChangeIsRelisted() throws IOException
+  {
+    final Path dir = this.root.resolve("d/e");
+    final FileTime tick = FileTime.fromMillis(System.currentTimeMillis());
+    Files.setLastModifiedTime(dir, tick);
+
+    new PersistentJarLocator(this.root).locate("top.jar");
+
+    create("d/e/new.jar");
+    Files.setLastModifiedTime(dir, tick);
+
+    assertThat(new PersistentJarLocator(this.root).locate("new.jar"), is(Optional.of(dir.resolve("new.jar"))));
+  }
+
+  /**
+   * Tests that a long-lived locator finds a jar deployed since its index was built once revalidated,
+   * re-reading only the changed directory, plus the root twice: once because writing the index file
+   * gave it a time too recent to trust its listing, and once more to record the time that writing
+   * the index file again gave it.
+   */
+  @Test
+  public void testRevalidate() throws IOException
+  {
+    final PersistentJarLocator locator = new PersistentJarLocator(this.root);
+    locator.locate("top.jar");
+    final long scanned = locator.getDirectoriesScanned();
+
+    final Path dir = this.root.resolve("d/e");
+    final FileTime before = Files.getLastModifiedTime(dir);
+    create("d/e/new.jar");
+    Files.setLastModifiedTime(dir, FileTime.fromMillis(before.toMillis() + 1000));
+
+    assertThat(locator.locate("new.jar"), is(Optional.empty()));
+
+    locator.revalidate();
+
+    assertThat(locator.locate("new.jar"), is(Optional.of(dir.resolve("new.jar"))));
+    assertThat(locator.getDirectoriesScanned() - scanned, is(3L));
+  }
+
+  /**
+   * Tests that a run over an unchanged tree lists only the root, to which writing the index file gave
+   * a time too recent to trust its listing, and leaves the index file alone.
+   */
+  @Test
+  public void testUnchangedTreeIsNotRescanned() throws IOException
+  {
+    new PersistentJarLocator(this.root).locate("top.jar");
+    final Path index = this.root.resolve(PersistentJarLocator.INDEX_FILENAME);
+    final FileTime written = Files.getLastModifiedTime(index);
+
+    final PersistentJarLocator locator = new PersistentJarLocator(this.root);
+
+    assertThat(locator.locate("top.jar"), is(Optional.of(this.root.resolve("top.jar"))));
+    assertThat(locator.getDirectoriesScanned(), is(1L));
+    assertThat(Files.getLastModifiedTime(index), is(written));
+  }
+
+  /**
+   * Tests that a corrupt index is ignored and rebuilt.
+   */
+  @Test
+  public void testCorruptIndex() throws IOException
+  {
+    Files.write(this.root.resolve(PersistentJarLocator.INDEX_FILENAME), new byte[] { 1, 2, 3 });
+
+    assertThat(new PersistentJarLocator(this.root).locate("deep.jar"),
+               is(Optional.of(this.root.resolve("a/b/c/deep.jar"))));
+  }
+
+  /**
+   * Creates an empty file (and its parent directories) under the search root.
+   * @param relative The path relative to the search root.
+   * @throws IOException If the file cannot be created.
+   */
+  private void create(final String relative) throws IOException
+  {
+    final Path path = this.root.resolve(relative);
+
+    Files.createDirectories(path.getParent());
+    Files.createFile(path);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link RestartPolicy}.
+ */
+public class RestartPolicyTest
+{
+  /** A policy backing off from 1s to 60s, with a crash loop of 3 exits in 10s. */
+  private final RestartPolicy policy = new RestartPolicy(1000, 60000, 30000, 3, 10000, 600000);
+
+  /**
+   * Tests that the backoff doubles with each consecutive failure, up to the maximum.
+   */
+  @Test
+  public void testBackoff()
+  {
+    assertThat(this.policy.backoff(1), is(1000L));
+    assertThat(this.policy.backoff(2), is(2000L));
+    assertThat(this.policy.backoff(3), is(4000L));
+    assertThat(this.policy.backoff(6), is(32000L));
+    assertThat(this.policy.backoff(7), is(60000L));
+    assertThat(this.policy.backoff(Integer.MAX_VALUE), is(60000L));
+  }
+
+  /**
+   * Tests that a VM is only stable once it has run for the stable period.
+   */
+  @Test
+  public void testStable()
+  {
+    assertThat(this.policy.isStable(29999), is(false));
+    assertThat(this.policy.isStable(30000), is(true));
+  }
+
+  /**
+   * Tests that a crash loop is detected only when enough exits fall within the window.
+   */
+  @Test
+  public void testCrashLoop()
+  {
+    assertThat(this.policy.isCrashLoop(ImmutableList.of(1000L, 5000L), 9000), is(false));
+    assertThat(this.policy.isCrashLoop(ImmutableList.of(1000L, 5000L, 9000L), 9000), is(true));
+    assertThat(this.policy.isCrashLoop(ImmutableList.of(1000L, 5000L, 12000L), 12000), is(false));
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link StagingConfig}.
+ */
+public class StagingConfigTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The located jar. */
+  private Path jar;
+
+  /** The staging directory. */
+  private Path dir;
+
+  /** The located jar's hash. */
+  private String hash;
+
+  /** The located jar's content. */
+  private byte[] content;
+
+  /** The verifier that hashes the jars. */
+  private final JarVerifier verifier = new JarVerifier();
+
+  /**
+   * Creates the located jar.
+   * @throws IOException If the jar cannot be written.
+   */
+  @Before
+  public void setUp() throws IOException
+  {
+    this.jar = this.folder.newFolder("release").toPath().resolve("app.jar");
+    this.dir = this.folder.getRoot().toPath().resolve("stage");
+    writeJar(this.jar, "version 1");
+    this.content = Files.readAllBytes(this.jar);
+    this.hash = this.verifier.verify(this.jar);
+  }
+
+  /**
+   * Tests that the shorthand form stages to the default directory and the object form to its own.
+   */
+  @Test
+  public void testFromConfig()
+  {
+    assertThat(StagingConfig.fromConfig(ConfigFactory.parseString("staging: Copy")),
+               is(new StagingConfig(StagingConfig.Mode.COPY, Paths.get(StagingConfig.DEFAULT_DIR))));
+    assertThat(StagingConfig.fromConfig(ConfigFactory.parseString("staging { mode: link, dir: /tmp/x }")),
+               is(new StagingConfig(StagingConfig.Mode.LINK, Paths.get("/tmp/x"))));
+  }
+
+  /**
+   * Tests that an unknown mode is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownMode()
+  {
+    StagingConfig.fromConfig(ConfigFactory.parseString("staging: tmpfs"));
+  }
+
+  /**
+   * Tests that a copied jar is staged once, read-only, by hash, however many names it is located under.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testCopy() throws IOException
+  {
+    final StagingConfig staging = new StagingConfig(StagingConfig.Mode.COPY, this.dir);
+    final Map<String, Path> staged = stage(staging, ImmutableMap.of("app.jar", this.jar, "alias.jar", this.jar));
+    final Path copy = this.dir.resolve(this.hash.substring(0, 16)).resolve("app.jar");
+
+    assertThat(staged, is(ImmutableMap.of("app.jar", copy, "alias.jar", copy)));
+    assertThat(Files.readAllBytes(copy), is(this.content));
+    assertThat(Files.getPosixFilePermissions(copy).contains(PosixFilePermission.OWNER_WRITE), is(false));
+    assertThat(Files.list(copy.getParent()).count(), is(1L));
+    assertThat(Files.getPosixFilePermissions(this.dir), is(PosixFilePermissions.fromString("rwx------")));
+
+    Files.write(this.jar, new byte[] { 4 });
+    stage(staging, ImmutableMap.of("app.jar", this.jar));
+
+    assertThat(Files.readAllBytes(copy), is(this.content));
+  }
+
+  /**
+   * Tests that a linked jar shares the located jar's file.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testLink() throws IOException
+  {
+    final Map<String, Path> staged =
+        stage(new StagingConfig(StagingConfig.Mode.LINK, this.dir), ImmutableMap.of("app.jar", this.jar));
+
+    assertThat(Files.isSameFile(staged.get("app.jar"), this.jar), is(true));
+  }
+
+  /**
+   * Tests that prefaulting and no staging leave the jars where they were located.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testInPlace() throws IOException
+  {
+    final ImmutableMap<String, Path> jars = ImmutableMap.of("app.jar", this.jar);
+
+    assertThat(new StagingConfig(StagingConfig.Mode.PREFAULT, this.dir).stage("test", jars, ImmutableMap.of(),
+                                                                               this.verifier),
+               is(jars));
+    assertThat(StagingConfig.NONE.stage("test", jars, ImmutableMap.of(), this.verifier), is(jars));
+    assertThat(Files.exists(this.dir), is(false));
+  }
+
+  /**
+   * Tests that a staged copy that no longer matches the located jar (here, one written over by another
+   * user of the staging directory) is replaced rather than started from.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testTamperedCopyReplaced() throws IOException
+  {
+    final StagingConfig staging = new StagingConfig(StagingConfig.Mode.COPY, this.dir);
+    final Path copy = stage(staging, ImmutableMap.of("app.jar", this.jar)).get("app.jar");
+
+    copy.toFile().setWritable(true);
+    final byte[] tampered = this.content.clone();
+    tampered[tampered.length / 2] ^= 1;
+    Files.write(copy, tampered);
+    Files.setLastModifiedTime(copy, FileTime.fromMillis(Files.getLastModifiedTime(copy).toMillis() + 1000));
+
+    assertThat(stage(staging, ImmutableMap.of("app.jar", this.jar)).get("app.jar"), is(copy));
+    assertThat(Files.readAllBytes(copy), is(this.content));
+  }
+
+  /**
+   * Tests that a staging directory left open to other users is made private.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testDirectoryMadePrivate() throws IOException
+  {
+    Files.createDirectory(this.dir);
+    Files.setPosixFilePermissions(this.dir, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+    stage(new StagingConfig(StagingConfig.Mode.COPY, this.dir), ImmutableMap.of("app.jar", this.jar));
+
+    assertThat(Files.getPosixFilePermissions(this.dir), is(PosixFilePermissions.fromString("rwx------")));
+  }
+
+  /**
+   * Tests that pruning removes the copies that neither the configuration's VMs nor another
+   * configuration's still start from.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testPrune() throws IOException
+  {
+    final StagingConfig staging = new StagingConfig(StagingConfig.Mode.COPY, this.dir);
+    final Path first = staging.stage("a", ImmutableMap.of("app.jar", this.jar), ImmutableMap.of(this.jar, this.hash),
+                                     this.verifier).get("app.jar");
+    staging.stage("b", ImmutableMap.of("app.jar", this.jar), ImmutableMap.of(this.jar, this.hash), this.verifier);
+
+    writeJar(this.jar, "version 2");
+    final String changed = this.verifier.verify(this.jar);
+    final Path second = staging.stage("a", ImmutableMap.of("app.jar", this.jar), ImmutableMap.of(this.jar, changed),
+                                      this.verifier).get("app.jar");
+
+    staging.prune("a", ImmutableList.of(second));
+    assertThat(Files.exists(first), is(true));
+
+    staging.prune("b", ImmutableList.of());
+    assertThat(Files.exists(first), is(false));
+    assertThat(Files.exists(first.getParent()), is(false));
+    assertThat(Files.exists(second), is(true));
+  }
+
+  /**
+   * Stages jars as the configuration "test", each with the hash of the located jar.
+   * @param staging The staging config.
+   * @param jars The located jars, keyed by file name.
+   * @return The jars the VMs start from, keyed by file name.
+   * @throws IOException If a jar cannot be staged.
+   */
+  private Map<String, Path> stage(final StagingConfig staging, final Map<String, Path> jars) throws IOException
+  {
+    return staging.stage("test", jars, ImmutableMap.of(this.jar, this.hash), this.verifier);
+  }
+
+  /**
+   * Writes a jar holding a single entry.
+   * @param jar The jar file.
+   * @param content The entry's content.
+   * @throws IOException If the jar cannot be written.
+   */
+  private static void writeJar(final Path jar, final String content) throws IOException
+  {
+    try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+    {
+      out.putNextEntry(new ZipEntry("version.txt"));
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link StartupMetrics}.
+ */
+public class StartupMetricsTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that phases accumulate, and that the metrics are written as JSON to a {@code .json} file.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testJson() throws IOException
+  {
+    final Path file = this.folder.getRoot().toPath().resolve("metrics/run.json");
+
+    metrics().write("test", file);
+
+    final String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    assertThat(json, startsWith("{\n  \"config\": \"test\",\n  \"directoriesScanned\": 12,\n"));
+    assertThat(json.contains("\"phases\": { \"parse\": 0.002000, \"locate\": 0.500000, \"total\": "), is(true));
+    assertThat(json.contains("    \"a\\\"b\": { \"spawn\": 0.010000, \"ready\": 1.500000 }"), is(true));
+  }
+
+  /**
+   * Tests that the metrics are written in the Prometheus text format to any other file.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testPrometheus() throws IOException
+  {
+    final Path file = this.folder.getRoot().toPath().resolve("run.prom");
+
+    metrics().write("test", file);
+
+    final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    assertThat(lines, hasItem("# TYPE firestarter_phase_seconds gauge"));
+    assertThat(lines, hasItem("firestarter_phase_seconds{config=\"test\",phase=\"locate\"} 0.500000"));
+    assertThat(lines, hasItem("firestarter_directories_scanned{config=\"test\"} 12"));
+    assertThat(lines, hasItem("firestarter_vm_seconds{config=\"test\",vm=\"a\\\"b\",metric=\"ready\"} 1.500000"));
+    assertThat(Files.exists(file.resolveSibling("run.prom.tmp")), is(false));
+  }
+
+  /**
+   * Creates some metrics.
+   * @return The metrics.
+   */
+  private static StartupMetrics metrics()
+  {
+    final StartupMetrics metrics = new StartupMetrics();
+
+    metrics.recordPhase(StartupMetrics.PARSE, 2_000_000);
+    metrics.recordPhase(StartupMetrics.LOCATE, 200_000_000);
+    metrics.recordPhase(StartupMetrics.LOCATE, 300_000_000);
+    metrics.addDirectoriesScanned(12);
+    metrics.recordVm("a\"b", StartupMetrics.SPAWN, 10_000_000);
+    metrics.recordVm("a\"b", StartupMetrics.READY, 1_500_000_000);
+
+    return metrics;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link StartupScheduler}.
+ */
+public class StartupSchedulerTest
+{
+  /**
+   * Tests that VMs are grouped into dependency layers, keeping configuration order within a layer.
+   */
+  @Test
+  public void testLayers()
+  {
+    final List<List<String>> layers = names(StartupScheduler.layers(ImmutableList.of(
+        vm("web", "cache", "db"),
+        vm("db"),
+        vm("cache", "db"),
+        vm("batch"),
+        vm("report", "web"))));
+
+    assertThat(layers, is(ImmutableList.of(
+        ImmutableList.of("db", "batch"),
+        ImmutableList.of("cache"),
+        ImmutableList.of("web"),
+        ImmutableList.of("report"))));
+  }
+
+  /**
+   * Tests that a dependency cycle is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCycle()
+  {
+    StartupScheduler.layers(ImmutableList.of(vm("a", "c"), vm("b", "a"), vm("c", "b"), vm("d")));
+  }
+
+  /**
+   * Tests that a dependency on an unknown VM is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownDependency()
+  {
+    StartupScheduler.layers(ImmutableList.of(vm("a", "missing")));
+  }
+
+  /**
+   * Creates a VM configuration.
+   * @param name The VM name.
+   * @param dependsOn The names of the VMs it depends on.
+   * @return The VM configuration.
+   */
+  private static VmConfig vm(final String name, final String... dependsOn)
+  {
+    return new VmConfig(name, VmConfig.MIN_VM_SIZE, Optional.empty(), name + ".jar", ImmutableList.of(),
+                        ImmutableMap.of(), ImmutableList.copyOf(dependsOn), Optional.empty(), GcConfig.DEFAULT,
+                        ImmutableList.of(), Optional.empty(), Optional.empty(), DiagnosticsConfig.NONE);
+  }
+
+  /**
+   * Converts layers of VMs to layers of VM names.
+   * @param layers The layers.
+   * @return The names.
+   */
+  private static List<List<String>> names(final List<ImmutableList<VmConfig>> layers)
+  {
+    return layers.stream()
+        .map(layer -> layer.stream().map(VmConfig::getName).collect(Collectors.toList()))
+        .collect(Collectors.toList());
+  }
+}
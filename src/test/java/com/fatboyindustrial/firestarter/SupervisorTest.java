@@ -0,0 +1,401 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Supervisor}, supervising {@link ExitingVm} processes.
+ */
+public class SupervisorTest
+{
+  /** The longest a condition is waited for. */
+  private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  /** The time a stand-in VM that should keep running runs for. */
+  private static final long LONG_RUN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The supervisor under test. */
+  private Supervisor supervisor;
+
+  /**
+   * Stops the supervisor and its VMs.
+   */
+  @After
+  public void tearDown()
+  {
+    if (this.supervisor != null)
+    {
+      this.supervisor.close();
+    }
+  }
+
+  /**
+   * Tests that a VM that exits is restarted after a backoff.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testRestartAfterExit() throws Exception
+  {
+    start(new RestartPolicy(50, 200, 60000, 100, 60000, 60000),
+          config("a {}"), new LaunchSpec("a", ExitingVm.command(3, 100)));
+
+    await(() -> status("a").getRestarts() >= 2);
+
+    assertThat(status("a").getLastExitCode(), is(Optional.of(3)));
+  }
+
+  /**
+   * Tests that a VM that keeps exiting is held back as a crash loop.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testCrashLoop() throws Exception
+  {
+    start(new RestartPolicy(50, 200, 60000, 3, 60000, 60000),
+          config("a {}"), new LaunchSpec("a", ExitingVm.command(1, 0)));
+
+    await(() -> status("a").getState() == VmStatus.State.CRASH_LOOP);
+
+    final int restarts = status("a").getRestarts();
+    Thread.sleep(1000);
+
+    assertThat(status("a").getState(), is(VmStatus.State.CRASH_LOOP));
+    assertThat(status("a").getRestarts(), is(restarts));
+    assertThat(status("a").getLastExitCode(), is(Optional.of(1)));
+  }
+
+  /**
+   * Tests that a VM's warm standby is promoted in its place when it exits.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testStandbyPromoted() throws Exception
+  {
+    start(new RestartPolicy(60000, 60000, 60000, 100, 60000, 60000),
+          config("a {}"),
+          new LaunchSpec("a", ExitingVm.command(3, 1000),
+                         Optional.of(ExitingVm.command(0, LONG_RUN_MILLIS, ExitingVm.STANDBY))));
+
+    await(() -> status("a").getRestarts() == 1);
+
+    assertThat(status("a").getState(), is(VmStatus.State.RUNNING));
+    assertThat(status("a").getLastExitCode(), is(Optional.of(3)));
+    await(() -> log("a").contains("promoted"));
+  }
+
+  /**
+   * Tests that a rollout restarts a VM with a warm standby by promoting a standby started from its new
+   * launch specification.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testRolloutPromotesStandby() throws Exception
+  {
+    final RestartPolicy policy = new RestartPolicy(60000, 60000, 60000, 100, 60000, 60000);
+    start(policy, config("a {}"), standby("a"));
+    await(() -> log("a").contains("standby"));
+
+    final Process before = this.supervisor.processes().get("a");
+    this.supervisor.reconfigure(config("a { args: [again] }"), ImmutableList.of(standby("a")), 1);
+
+    assertThat(before.isAlive(), is(false));
+    assertThat(this.supervisor.processes().get("a").isAlive(), is(true));
+    assertThat(status("a").getRestarts(), is(1));
+    await(() -> log("a").contains("promoted"));
+  }
+
+  /**
+   * Tests that a rollout that fails part way through can be retried: the VM it removed is not removed
+   * again, and the VM it added is restarted rather than started a second time alongside itself.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testReconfigureRetried() throws Exception
+  {
+    final RestartPolicy policy = new RestartPolicy(60000, 60000, 60000, 100, 60000, 60000);
+    start(policy, config("a {}", "b {}"), running("a"), running("b"));
+
+    try
+    {
+      this.supervisor.reconfigure(
+          config("b {}", "c {}", "d { ready { log: never } }"),
+          ImmutableList.of(running("b"), running("c"), new LaunchSpec("d", ExitingVm.command(1, 0))),
+          1);
+      fail("d cannot become ready");
+    }
+    catch (IOException e)
+    {
+      ;
+    }
+
+    final Process added = this.supervisor.processes().get("c");
+
+    final ConfigDiff diff = this.supervisor.reconfigure(
+        config("b {}", "c {}", "d { args: [again] }"),
+        ImmutableList.of(running("b"), running("c"), running("d")),
+        1);
+
+    assertThat(diff.getRemoved(), is(ImmutableList.of("a")));
+    assertThat(diff.getAdded(), is(ImmutableList.of("c", "d")));
+    assertThat(added.isAlive(), is(false));
+    assertThat(this.supervisor.processes().keySet().asList(), is(ImmutableList.of("b", "c", "d")));
+  }
+
+  /**
+   * Tests that a rollout after a failed one removes the VMs that the failed one added but the new
+   * configuration does not have, even though they were never in the supervised configuration.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testReconfigureReverted() throws Exception
+  {
+    final RestartPolicy policy = new RestartPolicy(60000, 60000, 60000, 100, 60000, 60000);
+    start(policy, config("a {}"), running("a"));
+
+    try
+    {
+      this.supervisor.reconfigure(
+          config("a {}", "b {}", "c { ready { log: never } }"),
+          ImmutableList.of(running("a"), running("b"), new LaunchSpec("c", ExitingVm.command(1, 0))),
+          1);
+      fail("c cannot become ready");
+    }
+    catch (IOException e)
+    {
+      ;
+    }
+
+    final Process added = this.supervisor.processes().get("b");
+
+    final ConfigDiff diff = this.supervisor.reconfigure(config("a {}"), ImmutableList.of(running("a")), 1);
+
+    assertThat(diff.getRemoved(), is(ImmutableList.of("b", "c")));
+    assertThat(added.isAlive(), is(false));
+    assertThat(this.supervisor.processes().keySet().asList(), is(ImmutableList.of("a")));
+  }
+
+  /**
+   * Tests that adding a VM when the node's processors are divided between the VMs restarts the VM that
+   * did not change, so that the two are pinned to different processors.
+   * @throws Exception If the test fails.
+   */
+  @Test
+  public void testAddedVmRepinsOthers() throws Exception
+  {
+    final RestartPolicy policy = new RestartPolicy(60000, 60000, 60000, 100, 60000, 60000);
+    final FirestarterConfig before = pinned("a {}");
+    start(policy, before, pinned(before).toArray(new LaunchSpec[0]));
+    await(() -> log("a").contains("started"));
+
+    final FirestarterConfig after = pinned("a {}", "b {}");
+    final ConfigDiff diff = this.supervisor.reconfigure(after, pinned(after), 1);
+
+    assertThat(diff.getChanged(), is(ImmutableList.of("a")));
+    await(() -> cpus("a").isPresent() && cpus("b").isPresent());
+
+    final Set<Integer> overlap = new HashSet<>(cpus("a").get());
+    overlap.retainAll(cpus("b").get());
+    assertThat(overlap.isEmpty(), is(true));
+  }
+
+  /**
+   * Starts the supervisor, waiting for every VM to be running.
+   * @param policy The restart policy.
+   * @param cfg The configuration.
+   * @param specs The launch specifications.
+   * @throws Exception If the VMs do not start.
+   */
+  private void start(final RestartPolicy policy, final FirestarterConfig cfg, final LaunchSpec... specs)
+      throws Exception
+  {
+    final Path root = this.folder.getRoot().toPath();
+    this.supervisor = new Supervisor(new Launcher(root.resolve("logs")), policy, 2, root.resolve("status"));
+    this.supervisor.start(cfg, ImmutableList.copyOf(specs));
+  }
+
+  /**
+   * Builds the launch specification of a VM that keeps running.
+   * @param name The VM name.
+   * @return The launch specification.
+   */
+  private static LaunchSpec running(final String name)
+  {
+    return new LaunchSpec(name, ExitingVm.command(0, LONG_RUN_MILLIS));
+  }
+
+  /**
+   * Builds the launch specification of a VM with a warm standby, both of which keep running.
+   * @param name The VM name.
+   * @return The launch specification.
+   */
+  private static LaunchSpec standby(final String name)
+  {
+    return new LaunchSpec(name, ExitingVm.command(0, LONG_RUN_MILLIS),
+                          Optional.of(ExitingVm.command(0, LONG_RUN_MILLIS, ExitingVm.STANDBY)));
+  }
+
+  /**
+   * Creates a configuration that divides the node's processors between its VMs.
+   * @param jvms The VM blocks, each a name followed by settings beyond the heap, jar and arguments.
+   * @return The configuration.
+   */
+  private static FirestarterConfig pinned(final String... jvms)
+  {
+    return FirestarterConfig.fromConfig(ConfigFactory.parseString("node { assignCpus: true }\n" + hocon(jvms)));
+  }
+
+  /**
+   * Builds the launch specifications of a configuration's VMs on a 4-processor host, each keeping
+   * running and logging the processors it was assigned.
+   * @param cfg The configuration.
+   * @return The launch specifications.
+   */
+  private static List<LaunchSpec> pinned(final FirestarterConfig cfg)
+  {
+    final Map<String, VmPlan> plans = NodePlanner.plan(cfg, new HostResources(64L << 30, 4));
+    return cfg.getJvms().stream()
+        .map(vm -> new LaunchSpec(vm.getName(),
+                                  ExitingVm.command(0, LONG_RUN_MILLIS, plans.get(vm.getName()).getCpuList())))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the processors a VM logged on its latest start.
+   * @param name The VM name.
+   * @return The processors, or absent if the VM has not logged any.
+   */
+  private Optional<List<Integer>> cpus(final String name)
+  {
+    final List<String> started = Arrays.stream(log(name).split("\n"))
+        .filter(line -> line.startsWith("started "))
+        .collect(Collectors.toList());
+
+    return started.isEmpty()
+           ? Optional.empty()
+           : Optional.of(CpuList.parse(started.get(started.size() - 1).substring("started ".length()).trim()));
+  }
+
+  /**
+   * Creates a configuration.
+   * @param jvms The VM blocks, each a name followed by settings beyond the heap, jar and arguments.
+   * @return The configuration.
+   */
+  private static FirestarterConfig config(final String... jvms)
+  {
+    return FirestarterConfig.fromConfig(ConfigFactory.parseString(hocon(jvms)));
+  }
+
+  /**
+   * Builds the text of a configuration.
+   * @param jvms The VM blocks, each a name followed by settings beyond the heap, jar and arguments.
+   * @return The configuration, in HOCON.
+   */
+  private static String hocon(final String... jvms)
+  {
+    final StringBuilder hocon = new StringBuilder("name: test\njvms {\n");
+    for (final String jvm : jvms)
+    {
+      final String name = jvm.substring(0, jvm.indexOf(' '));
+      hocon.append(name).append(" { heap: 64M, jar: ").append(name).append(".jar, args: [] }\n")
+           .append(jvm).append('\n');
+    }
+
+    return hocon.append("}").toString();
+  }
+
+  /**
+   * Gets the status of a VM.
+   * @param name The VM name.
+   * @return The status.
+   */
+  private VmStatus status(final String name)
+  {
+    final List<VmStatus> statuses = this.supervisor.status();
+    return statuses.stream().filter(status -> status.getName().equals(name)).findFirst().get();
+  }
+
+  /**
+   * Reads a VM's log file.
+   * @param name The VM name.
+   * @return The log, or empty if there is none yet.
+   */
+  private String log(final String name)
+  {
+    try
+    {
+      return new String(Files.readAllBytes(this.folder.getRoot().toPath().resolve("logs/" + name + ".log")),
+                        StandardCharsets.UTF_8);
+    }
+    catch (IOException e)
+    {
+      return "";
+    }
+  }
+
+  /**
+   * Waits for a condition to hold, failing the test if it does not within the timeout.
+   * @param condition The condition.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  private static void await(final BooleanSupplier condition) throws InterruptedException
+  {
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean())
+    {
+      if (System.currentTimeMillis() > deadline)
+      {
+        fail("timed out waiting for a condition");
+      }
+      Thread.sleep(50);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 Greg Kopff
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.fatboyindustrial.firestarter;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TelemetryCollector}, {@link ResourceSample} and {@link PerfData}.
+ */
+public class TelemetryCollectorTest
+{
+  /** Temporary folder. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that a process is sampled from its {@code /proc} files and performance counters, including
+   * a command name with spaces and parentheses.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testSample() throws IOException
+  {
+    final Path proc = this.folder.getRoot().toPath();
+    final Path dir = Files.createDirectories(proc.resolve("123"));
+    final Path perfData = proc.resolve("hsperfdata");
+
+    write(dir.resolve("stat"),
+          "123 (java (x) y) S 1 123 123 0 -1 4194560 100 0 0 0 250 50 0 0 20 0 31 0 1000 4000000 2000\n");
+    write(dir.resolve("status"), "Name:\tjava\nVmPeak:\t  900000 kB\nVmRSS:\t  204800 kB\nThreads:\t31\n");
+    Files.write(perfData, perfData(ImmutableMap.<String, Long>builder()
+        .put("sun.os.hrt.frequency", 1_000_000_000L)
+        .put("sun.gc.collector.0.invocations", 7L)
+        .put("sun.gc.collector.0.time", 30_000_000L)
+        .put("sun.gc.collector.1.invocations", 1L)
+        .put("sun.gc.collector.1.time", 20_000_000L)
+        .put("sun.gc.generation.0.space.0.used", 1000L)
+        .put("sun.gc.generation.1.space.0.used", 24L)
+        .build()));
+
+    final ResourceSample sample = ResourceSample.take(123, proc, perfData).get();
+
+    assertThat(sample.getPid(), is(123L));
+    assertThat(sample.getRssBytes(), is(204800L * 1024));
+    assertThat(sample.getCpuMillis(), is(3000L));
+    assertThat(sample.getThreads(), is(31));
+    assertThat(sample.getGcCount(), is(Optional.of(8L)));
+    assertThat(sample.getGcMillis(), is(Optional.of(50L)));
+    assertThat(sample.getHeapUsedBytes(), is(Optional.of(1024L)));
+
+    final ResourceSample bare = ResourceSample.take(123, proc, proc.resolve("missing")).get();
+    assertThat(bare.getGcCount(), is(Optional.<Long>empty()));
+    assertThat(ResourceSample.take(456, proc, perfData).isPresent(), is(false));
+  }
+
+  /**
+   * Tests that the ring buffer drops the oldest sample once full, and that the summary ignores the
+   * step between two processes.
+   */
+  @Test
+  public void testRingBuffer()
+  {
+    final TelemetryCollector collector = new TelemetryCollector(ImmutableMap::of, 3, 1000);
+
+    collector.add("a", sample(0, 1, 0));
+    collector.add("a", sample(1000, 1, 100));
+    collector.add("a", sample(2000, 1, 600));
+    collector.add("a", sample(3000, 2, 0));
+
+    final List<ResourceSample> samples = collector.getSamples().get("a");
+    assertThat(samples.size(), is(3));
+    assertThat(samples.get(0).getTimestamp(), is(1000L));
+    assertThat(collector.toJson(), containsString("\"cpuPercent\": 50.0"));
+  }
+
+  /**
+   * Tests that the samples are served over HTTP.
+   * @throws IOException If the test fails.
+   */
+  @Test
+  public void testServe() throws IOException
+  {
+    try (final TelemetryCollector collector = new TelemetryCollector(ImmutableMap::of))
+    {
+      collector.add("web", sample(0, 1, 0));
+      final InetSocketAddress address = collector.serve(0);
+
+      final HttpURLConnection connection = (HttpURLConnection) new URL(
+          "http", address.getHostString(), address.getPort(), TelemetryCollector.PATH).openConnection();
+
+      assertThat(connection.getResponseCode(), is(200));
+      try (final InputStream in = connection.getInputStream())
+      {
+        assertThat(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8), containsString("\"web\": {"));
+      }
+    }
+  }
+
+  /**
+   * Creates a sample.
+   * @param timestamp The time of the sample.
+   * @param pid The process id.
+   * @param cpuMillis The CPU time consumed.
+   * @return The sample.
+   */
+  private static ResourceSample sample(final long timestamp, final long pid, final long cpuMillis)
+  {
+    return new ResourceSample(
+        timestamp, pid, 1024, cpuMillis, 10, Optional.empty(), Optional.empty(), Optional.empty());
+  }
+
+  /**
+   * Builds a little-endian performance counter file holding long counters.
+   * @param counters The counters.
+   * @return The file contents.
+   */
+  private static byte[] perfData(final Map<String, Long> counters)
+  {
+    final ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.order(ByteOrder.BIG_ENDIAN).putInt(0xcafec0c0).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put((byte) 1).put((byte) 2).put((byte) 0).put((byte) 1);    // little-endian, version 2.0
+    buffer.putInt(0).putInt(0).putLong(0);                             // used, overflow, modification time
+    buffer.putInt(32).putInt(counters.size());
+
+    for (final Map.Entry<String, Long> counter : counters.entrySet())
+    {
+      final byte[] name = counter.getKey().getBytes(StandardCharsets.US_ASCII);
+      final int dataOffset = (20 + name.length + 1 + 7) / 8 * 8;
+      final int start = buffer.position();
+
+      buffer.putInt(dataOffset + 8).putInt(20).putInt(0);
+      buffer.put((byte) 'J').put((byte) 0).put((byte) 0).put((byte) 0);
+      buffer.putInt(dataOffset);
+      buffer.put(name).put((byte) 0);
+      buffer.position(start + dataOffset);
+      buffer.putLong(counter.getValue());
+    }
+
+    final byte[] bytes = new byte[buffer.position()];
+    buffer.flip();
+    buffer.get(bytes);
+
+    return bytes;
+  }
+
+  /**
+   * Writes a file.
+   * @param file The file.
+   * @param text The text.
+   * @throws IOException If the file cannot be written.
+   */
+  private static void write(final Path file, final String text) throws IOException
+  {
+    Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+  }
+}